@@ -0,0 +1,153 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import us.bringardner.io.filesource.FileSource;
+import us.bringardner.io.filesource.FileSourceFactory;
+
+/**
+ * Creates and connects the factory named by the factory parameter and a work directory the benchmark can fill.
+ *
+ * BenchmarkMain sets the factory parameter to every factory registered with the ServiceLoader.
+ * Connection properties for a remote factory are read from system properties named benchmark.&lt;type id&gt;.&lt;property&gt;
+ * (-Dbenchmark.sftp.host=myhost).
+ * The work directory is benchmark.dir (default bjl_benchmarks in the factories current directory) and is deleted after the trial.
+ */
+@State(Scope.Benchmark)
+public abstract class AbstractFactoryBenchmark {
+
+	public static final String PROP_DIR = "benchmark.dir";
+	public static final String DEFAULT_DIR = "bjl_benchmarks";
+
+	@Param({"fileproxy","memory"})
+	public String factory;
+
+	protected FileSourceFactory fileSourceFactory;
+	protected FileSource dir;
+
+	@Setup
+	public void setUpFactory() throws IOException {
+		fileSourceFactory = FileSourceFactory.getFileSourceFactory(factory);
+		if( fileSourceFactory == null ) {
+			throw new IOException("No factory registered for "+factory);
+		}
+		Properties prop = new Properties();
+		String prefix = "benchmark."+factory+".";
+		for(String name : System.getProperties().stringPropertyNames()) {
+			if( name.startsWith(prefix)) {
+				prop.setProperty(name.substring(prefix.length()), System.getProperty(name));
+			}
+		}
+		if( !prop.isEmpty()) {
+			fileSourceFactory.setConnectionProperties(prop);
+		}
+		if( !fileSourceFactory.isConnected() && !fileSourceFactory.connect()) {
+			throw new IOException("Can't connect "+factory);
+		}
+
+		String path = System.getProperty(PROP_DIR);
+		if( path == null ) {
+			dir = fileSourceFactory.getCurrentDirectory().getChild(DEFAULT_DIR);
+		} else {
+			dir = fileSourceFactory.createFileSource(path);
+		}
+		dir = dir.getChild(getClass().getSimpleName());
+		if( dir.exists()) {
+			deleteAll(dir);
+		}
+		if( !dir.mkdirs()) {
+			throw new IOException("Can't create "+dir);
+		}
+		setUp();
+	}
+
+	/**
+	 * Called after the factory is connected and dir has been created.
+	 * @throws IOException
+	 */
+	protected abstract void setUp() throws IOException;
+
+	/**
+	 * Called before dir is deleted and the factory is disconnected.
+	 * @throws IOException
+	 */
+	protected void tearDown() throws IOException {
+	}
+
+	@TearDown
+	public void tearDownFactory() throws IOException {
+		try {
+			tearDown();
+			deleteAll(dir);
+		} finally {
+			fileSourceFactory.disConnect();
+		}
+	}
+
+	/**
+	 * @param file
+	 * @param size
+	 * @return file after writing size bytes to it
+	 * @throws IOException
+	 */
+	protected static FileSource write(FileSource file, long size) throws IOException {
+		byte [] data = new byte[8192];
+		for (int idx = 0; idx < data.length; idx++) {
+			data[idx] = (byte) idx;
+		}
+		try(OutputStream out = file.getOutputStream()) {
+			for(long left = size; left > 0; left -= data.length) {
+				out.write(data, 0, (int) Math.min(left, data.length));
+			}
+		}
+		return file;
+	}
+
+	protected static void deleteAll(FileSource file) throws IOException {
+		if( file.isDirectory()) {
+			FileSource[] kids = file.listFiles();
+			if( kids != null ) {
+				for(FileSource child : kids) {
+					deleteAll(child);
+				}
+			}
+		}
+		if( file.exists() && !file.delete()) {
+			throw new IOException("Can't delete "+file);
+		}
+	}
+
+}
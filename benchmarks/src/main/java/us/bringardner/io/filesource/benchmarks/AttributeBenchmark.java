@@ -0,0 +1,94 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+
+import us.bringardner.io.filesource.FileSource;
+
+/**
+ * The attribute getters of a FileSource.
+ * The cached benchmarks reuse one FileSource, the others resolve the path every time
+ * like an application that creates a FileSource for each request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AttributeBenchmark extends AbstractFactoryBenchmark {
+
+	private FileSource file;
+	private String path;
+
+	@Override
+	protected void setUp() throws IOException {
+		file = write(dir.getChild("attributes.txt"), 1024);
+		path = file.getAbsolutePath();
+	}
+
+	private void getAll(FileSource file, Blackhole hole) throws IOException {
+		hole.consume(file.exists());
+		hole.consume(file.isDirectory());
+		hole.consume(file.isFile());
+		hole.consume(file.length());
+		hole.consume(file.lastModified());
+		hole.consume(file.getOwner());
+		hole.consume(file.getGroup());
+	}
+
+	@Benchmark
+	public void cachedAttributes(Blackhole hole) throws IOException {
+		getAll(file, hole);
+	}
+
+	@Benchmark
+	public void resolvedAttributes(Blackhole hole) throws IOException {
+		getAll(fileSourceFactory.createFileSource(path), hole);
+	}
+
+	@Benchmark
+	public long cachedLength() throws IOException {
+		return file.length();
+	}
+
+	@Benchmark
+	public long resolvedLength() throws IOException {
+		return fileSourceFactory.createFileSource(path).length();
+	}
+
+	@Benchmark
+	public void cachedPermissions(Blackhole hole) throws IOException {
+		hole.consume(file.canRead());
+		hole.consume(file.canWrite());
+		hole.consume(file.canExecute());
+	}
+
+}
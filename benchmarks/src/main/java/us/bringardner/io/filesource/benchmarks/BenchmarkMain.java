@@ -0,0 +1,63 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import us.bringardner.io.filesource.FileSourceFactory;
+
+/**
+ * Run the benchmarks with the normal JMH command line options (java -jar target/benchmarks.jar -h)
+ * but write the results as JSON to target/jmh-result.json and run every factory registered with the ServiceLoader
+ * unless -rf, -rff or -p factory=... are given.
+ */
+public class BenchmarkMain {
+
+	public static final String DEFAULT_RESULT = "target/jmh-result.json";
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd);
+		if( !cmd.getResultFormat().hasValue()) {
+			options.resultFormat(ResultFormatType.JSON);
+		}
+		if( !cmd.getResult().hasValue()) {
+			options.result(DEFAULT_RESULT);
+		}
+		if( !cmd.getParameter("factory").hasValue()) {
+			String [] factories = FileSourceFactory.getRegisterdFactories();
+			if( factories.length > 0 ) {
+				options.param("factory", factories);
+			}
+		}
+		new Runner(options.build()).run();
+	}
+
+}
@@ -0,0 +1,79 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+
+import us.bringardner.io.filesource.FileSource;
+
+/**
+ * listFiles on a directory with width empty files.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ListFilesBenchmark extends AbstractFactoryBenchmark {
+
+	@Param({"100","10000"})
+	public int width;
+
+	private String path;
+
+	@Override
+	protected void setUp() throws IOException {
+		FileSource wide = dir.getChild("wide");
+		if( !wide.mkdirs()) {
+			throw new IOException("Can't create "+wide);
+		}
+		for (int idx = 0; idx < width; idx++) {
+			write(wide.getChild("file"+idx+".txt"), 0);
+		}
+		path = wide.getAbsolutePath();
+	}
+
+	@Benchmark
+	public FileSource[] listFiles() throws IOException {
+		return fileSourceFactory.createFileSource(path).listFiles();
+	}
+
+	@Benchmark
+	public FileSource[] listFilesAndLength() throws IOException {
+		FileSource[] ret = fileSourceFactory.createFileSource(path).listFiles();
+		for(FileSource file : ret) {
+			if( file.length() != 0 ) {
+				throw new IOException("Unexpected length for "+file);
+			}
+		}
+		return ret;
+	}
+
+}
@@ -0,0 +1,119 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.benchmarks;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import us.bringardner.io.filesource.FileSourceFactory;
+import us.bringardner.io.filesource.java.file.FileSourcePath;
+import us.bringardner.io.filesource.memory.MemoryFileSourceFactory;
+
+/**
+ * FileSourcePath operations.
+ * These never touch the file system so one (memory) factory is enough.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PathBenchmark {
+
+	@Param({"/one/two/three/four/five/six/seven/eight.txt"})
+	public String path;
+
+	private FileSourceFactory factory;
+	private FileSourcePath parsed;
+	private FileSourcePath other;
+	private FileSourcePath parent;
+
+	@Setup
+	public void setUp() {
+		factory = new MemoryFileSourceFactory();
+		parsed = new FileSourcePath(path, factory);
+		parent = (FileSourcePath) parsed.getParent().getParent();
+		other = new FileSourcePath("/one/two/nine/ten", factory);
+	}
+
+	@Benchmark
+	public FileSourcePath parse() {
+		return new FileSourcePath(path, factory);
+	}
+
+	@Benchmark
+	public Path getParent() {
+		return parsed.getParent();
+	}
+
+	@Benchmark
+	public Path getFileName() {
+		return parsed.getFileName();
+	}
+
+	@Benchmark
+	public Path resolve() {
+		return parent.resolve("seven/eight.txt");
+	}
+
+	@Benchmark
+	public Path normalize() {
+		return new FileSourcePath("/one/./two/../two/three/../../one/two", factory).normalize();
+	}
+
+	@Benchmark
+	public Path relativize() {
+		return parsed.relativize(other);
+	}
+
+	@Benchmark
+	public boolean startsWith() {
+		return parsed.startsWith(parent);
+	}
+
+	@Benchmark
+	public boolean equalsParsed() {
+		return parsed.equals(new FileSourcePath(path, factory));
+	}
+
+	@Benchmark
+	public int hashCodeParsed() {
+		return new FileSourcePath(path, factory).hashCode();
+	}
+
+	@Benchmark
+	public String toStringDerived() {
+		return parsed.subpath(1, 4).toString();
+	}
+
+}
@@ -0,0 +1,100 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import us.bringardner.io.filesource.FileSource;
+import us.bringardner.io.filesource.java.file.FileSourceFileSystemProvider;
+import us.bringardner.io.filesource.java.file.FileSourcePath;
+
+/**
+ * FileSourceFileSystemProvider copy and readAttributes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProviderBenchmark extends AbstractFactoryBenchmark {
+
+	@Param({"1048576"})
+	public long size;
+
+	private FileSourceFileSystemProvider provider;
+	private FileSourcePath source;
+	private FileSourcePath target;
+
+	@Override
+	protected void setUp() throws IOException {
+		provider = new FileSourceFileSystemProvider();
+		source = new FileSourcePath(write(dir.getChild("source.dat"), size));
+		target = new FileSourcePath(dir.getChild("target.dat"));
+	}
+
+	/**
+	 * copy fails if the target exists
+	 * @throws IOException
+	 */
+	@Setup(Level.Invocation)
+	public void deleteTarget() throws IOException {
+		FileSource file = target.getFileSource();
+		if( file.exists() && !file.delete()) {
+			throw new IOException("Can't delete "+file);
+		}
+	}
+
+	@Benchmark
+	public FileSourcePath copy() throws IOException {
+		provider.copy(source, target);
+		return target;
+	}
+
+	@Benchmark
+	public Map<String, Object> readAttributesBasic() throws IOException {
+		return provider.readAttributes(source, "basic:*");
+	}
+
+	@Benchmark
+	public Map<String, Object> readAttributesPosix() throws IOException {
+		return provider.readAttributes(source, "posix:size,lastModifiedTime,permissions");
+	}
+
+	@Benchmark
+	public BasicFileAttributes readAttributesClass() throws IOException {
+		return provider.readAttributes(source, PosixFileAttributes.class);
+	}
+
+}
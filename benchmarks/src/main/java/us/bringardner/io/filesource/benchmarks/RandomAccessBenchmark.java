@@ -0,0 +1,97 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.benchmarks;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+
+import us.bringardner.io.filesource.IRandomAccessStream;
+
+/**
+ * Reads and writes of one chunk at a random (chunk aligned) position of an open getRandomAccessStream.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RandomAccessBenchmark extends AbstractFactoryBenchmark {
+
+	@Param({"512","8192","65536"})
+	public int chunkSize;
+
+	@Param({"16777216"})
+	public long size;
+
+	private IRandomAccessStream stream;
+	private byte [] chunk;
+	//  The same positions are used for every factory
+	private long [] positions;
+	private int next;
+
+	@Override
+	protected void setUp() throws IOException {
+		stream = write(dir.getChild("random.dat"), size).getRandomAccessStream("rw");
+		chunk = new byte[chunkSize];
+		long chunks = size/chunkSize;
+		Random random = new Random(42);
+		positions = new long[1024];
+		for (int idx = 0; idx < positions.length; idx++) {
+			positions[idx] = (long)(random.nextDouble()*chunks)*chunkSize;
+		}
+	}
+
+	@Override
+	protected void tearDown() throws IOException {
+		stream.close();
+	}
+
+	private long nextPosition() {
+		long ret = positions[next];
+		next = (next+1) % positions.length;
+		return ret;
+	}
+
+	@Benchmark
+	public byte[] read() throws IOException {
+		stream.seek(nextPosition());
+		stream.readFully(chunk);
+		return chunk;
+	}
+
+	@Benchmark
+	public long write() throws IOException {
+		long pos = nextPosition();
+		stream.seek(pos);
+		stream.write(chunk);
+		return pos;
+	}
+
+}
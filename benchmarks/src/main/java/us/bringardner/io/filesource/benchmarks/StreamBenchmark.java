@@ -0,0 +1,90 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+
+import us.bringardner.io.filesource.FileSource;
+
+/**
+ * Sequential reads and writes of a whole file with getInputStream and getOutputStream.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class StreamBenchmark extends AbstractFactoryBenchmark {
+
+	@Param({"1048576","16777216"})
+	public long size;
+
+	@Param({"8192"})
+	public int bufferSize;
+
+	private FileSource in;
+	private FileSource out;
+	private byte [] buffer;
+
+	@Override
+	protected void setUp() throws IOException {
+		in = write(dir.getChild("in.dat"), size);
+		out = dir.getChild("out.dat");
+		buffer = new byte[bufferSize];
+	}
+
+	@Benchmark
+	public long read() throws IOException {
+		long ret = 0;
+		try(InputStream stream = in.getInputStream()) {
+			int got = 0;
+			while( (got = stream.read(buffer)) > 0 ) {
+				ret += got;
+			}
+		}
+		return ret;
+	}
+
+	@Benchmark
+	public long write() throws IOException {
+		long ret = 0;
+		try(OutputStream stream = out.getOutputStream()) {
+			while( ret < size ) {
+				int len = (int) Math.min(buffer.length, size-ret);
+				stream.write(buffer, 0, len);
+				ret += len;
+			}
+		}
+		return ret;
+	}
+
+}
@@ -26,12 +26,78 @@
 package us.bringardner.io.filesource;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 /**
  * This class reads and writes data in Chunks :-) 
+ * 
+ * Up to maxPages chunks are kept in a small page cache so random access
+ * that moves between a few regions of a file (an index page and a data page
+ * for example) does not force a save and reload on every seek.
+ * The least recently used chunk is evicted when the cache is full, dirty 
+ * chunks are written back on eviction, save() and close().
+ * 
+ * Sub classes should use getPageSize() as the size of the chunks returned 
+ * by readChunkForPos.
+ * 
+ * Each controller counts chunk loads and saves, bytes read and written and 
+ * cache hits and misses (see getStatistics()).  The counters of closed controllers are added
+ * to a process wide total (see getTotalStatistics()) that can be published to JMX 
+ * with registerMBean() or by setting the system property FileSource.randomAccessIo.jmx=true.
+ * 
+ * Read ahead is off by default.  When it's turned on (see setReadAhead()) and chunks are loaded 
+ * one after the other the next chunks are read on a background thread.  The number read ahead starts at one, 
+ * doubles each time the next chunk in order is loaded and drops to zero when a chunk is loaded out of order.  
+ * Sub class IO (readChunkForPos, writeChunk and setLength0) is always done holding a lock so 
+ * readChunkForPos is never called at the same time as other sub class IO but it may be called
+ * while the caller is using the factory.  Only turn read ahead on if the sub class reads chunks
+ * through a connection the caller does not share (see FileSourceFactory.createThreadSafeCopy()).
  */
 public abstract class AbstractRandomAccessIoController implements IRandomAccessIoController {
 
+	public static final int DEFAULT_PAGE_SIZE = 1024*64;
+	public static final int DEFAULT_MAX_PAGES = 8;
+	public static final String PROP_JMX = "FileSource.randomAccessIo.jmx";
+	public static final String MBEAN_NAME = "us.bringardner.io.filesource:type=RandomAccessIoStatistics";
+	public static final String PROP_READ_AHEAD = "FileSource.randomAccessIo.readAhead";
+	public static final int DEFAULT_READ_AHEAD = 0;
+
+	private static final LongAdder totalChunkLoads = new LongAdder();
+	private static final LongAdder totalChunkSaves = new LongAdder();
+	private static final LongAdder totalBytesRead = new LongAdder();
+	private static final LongAdder totalBytesWritten = new LongAdder();
+	private static final LongAdder totalCacheHits = new LongAdder();
+	private static final LongAdder totalCacheMisses = new LongAdder();
+	private static final LongAdder totalPrefetchLoads = new LongAdder();
+	private static final LongAdder totalPrefetchHits = new LongAdder();
+	private static ObjectName mbeanName;
+	private static volatile Executor defaultReadAheadExecutor;
+
+	static {
+		if( Boolean.getBoolean(PROP_JMX)) {
+			try {
+				registerMBean();
+			} catch (JMException e) {
+				// Not fatal, the counters are still available from getTotalStatistics
+			}
+		}
+	}
+
 	public class Chunk {
 		public boolean isNew=false;
 		public boolean isDirty=false;
@@ -39,6 +105,10 @@ public abstract class AbstractRandomAccessIoController implements IRandomAccessI
 		public long chunkNumber;
 		public long start;
 		public int size;
+		// zero based offset of the highest write into this chunk 
+		int maxWriteOffset=-1;
+		// used for LRU eviction
+		long lastUsed;
 
 		public Chunk() {
 
@@ -60,6 +130,37 @@ public abstract class AbstractRandomAccessIoController implements IRandomAccessI
 					b2;
 		}	
 
+		boolean overlaps(Chunk other) {
+			return start < (other.start+other.data.length) 
+					&& other.start < (start+data.length);
+		}
+	}
+
+	private class Prefetch {
+		//  The chunk is expected to hold the positions from the key up to end
+		final long end;
+		//  The value of ioGeneration when the prefetch was scheduled
+		final long generation;
+		//  Set by whoever gets to it first, the background thread or a caller that won't wait 
+		final AtomicBoolean started = new AtomicBoolean();
+		final FutureTask<Chunk> task;
+
+		Prefetch(long pos, long end) {
+			this.end = end;
+			generation = ioGeneration;
+			task = new FutureTask<>(()->{
+				Chunk ret = null;
+				if( started.compareAndSet(false, true)) {
+					synchronized (ioLock) {
+						if( !closed && generation == ioGeneration ) {
+							ret = readChunkForPos(pos);
+							prefetchLoads.increment();
+						}
+					}
+				}
+				return ret;
+			});
+		}
 	}
 
 	protected FileSourceFactory factory ;
@@ -68,16 +169,127 @@ public abstract class AbstractRandomAccessIoController implements IRandomAccessI
 	private long lastWritePosition;
 
 	private long lastReadPosition;
-	private int maxWriteOffset=-1;
+	private int pageSize = DEFAULT_PAGE_SIZE;
+	private int maxPages = DEFAULT_MAX_PAGES;
+	//  cached chunks keyed by the start position
+	private TreeMap<Long,Chunk> pages = new TreeMap<>();
 	private Chunk currentChunk;
-	private boolean closed = false;
+	private long useCounter = 0;
+	private volatile boolean closed = false;
+	//  Held for all sub class IO
+	private final Object ioLock = new Object();
+	//  Changed every time the file is written so data read ahead before the write is not used
+	private volatile long ioGeneration;
+	private int readAhead = Integer.getInteger(PROP_READ_AHEAD, DEFAULT_READ_AHEAD);
+	private int readAheadWindow;
+	private Executor readAheadExecutor;
+	//  Where the next chunk starts if the chunks are loaded in order
+	private long nextSequentialPos = -1;
+	//  chunks being read ahead keyed by the position they are expected to start at
+	private TreeMap<Long,Prefetch> prefetches = new TreeMap<>();
+
+	private long chunkLoads;
+	private long chunkSaves;
+	private long bytesRead;
+	private long bytesWritten;
+	private long cacheHits;
+	private long cacheMisses;
+	private final LongAdder prefetchLoads = new LongAdder();
+	private long prefetchHits;
+
+
+	/**
+	 * Publish the process wide totals to the platform MBeanServer as MBEAN_NAME.
+	 * Calling this more than once has no effect.
+	 *  
+	 * @throws JMException
+	 */
+	public static synchronized void registerMBean() throws JMException {
+		if( mbeanName == null ) {
+			ObjectName name = new ObjectName(MBEAN_NAME);
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if( !server.isRegistered(name)) {
+				server.registerMBean(new RandomAccessIoStatisticsMXBean() {
+					@Override
+					public long getChunkLoads() {
+						return totalChunkLoads.sum();
+					}
 
+					@Override
+					public long getChunkSaves() {
+						return totalChunkSaves.sum();
+					}
+
+					@Override
+					public long getBytesRead() {
+						return totalBytesRead.sum();
+					}
+
+					@Override
+					public long getBytesWritten() {
+						return totalBytesWritten.sum();
+					}
+
+					@Override
+					public long getCacheHits() {
+						return totalCacheHits.sum();
+					}
+
+					@Override
+					public long getCacheMisses() {
+						return totalCacheMisses.sum();
+					}
+
+					@Override
+					public long getPrefetchLoads() {
+						return totalPrefetchLoads.sum();
+					}
+
+					@Override
+					public long getPrefetchHits() {
+						return totalPrefetchHits.sum();
+					}
+				}, name);
+			}
+			mbeanName = name;
+		}
+	}
+
+	public static synchronized void unregisterMBean() throws JMException {
+		if( mbeanName != null ) {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if( server.isRegistered(mbeanName)) {
+				server.unregisterMBean(mbeanName);
+			}
+			mbeanName = null;
+		}
+	}
+
+	/**
+	 * @return the sum of the counters of all closed controllers
+	 */
+	public static RandomAccessIoStatistics getTotalStatistics() {
+		return new RandomAccessIoStatistics(
+				totalChunkLoads.sum(), 
+				totalChunkSaves.sum(), 
+				totalBytesRead.sum(), 
+				totalBytesWritten.sum(), 
+				totalCacheHits.sum(), 
+				totalCacheMisses.sum(),
+				totalPrefetchLoads.sum(),
+				totalPrefetchHits.sum());
+	}
 
 	public AbstractRandomAccessIoController(FileSource file) throws IOException {
 		this.file = file;
 		factory = file.getFileSourceFactory();		
 	}
 
+	public AbstractRandomAccessIoController(FileSource file,int pageSize, int maxPages) throws IOException {
+		this(file);
+		setPageSize(pageSize);
+		setMaxPages(maxPages);
+	}
 
 
 	public FileSource getFile() {
@@ -97,23 +309,137 @@ public abstract class AbstractRandomAccessIoController implements IRandomAccessI
 	}
 
 
+	/**
+	 * @return The size of the chunks sub classes should return from readChunkForPos.
+	 */
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	public void setPageSize(int pageSize) {
+		if( pageSize <= 0 ) {
+			throw new IllegalArgumentException("Page size must be greater than 0");
+		}
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * @return The maximum number of chunks held in the cache
+	 */
+	public int getMaxPages() {
+		return maxPages;
+	}
+
+	public void setMaxPages(int maxPages) throws IOException {
+		if( maxPages <= 0 ) {
+			throw new IllegalArgumentException("Max pages must be greater than 0");
+		}
+		this.maxPages = maxPages;
+		while( pages.size() > maxPages) {
+			evict();
+		}
+	}
+
+	/**
+	 * @return The most chunks read ahead of a sequential reader, 0 if read ahead is off
+	 */
+	public int getReadAhead() {
+		return readAhead;
+	}
+
+	/**
+	 * Read ahead saves a round trip to the file at each chunk boundary of a scan 
+	 * at the cost of up to readAhead extra chunks in memory.
+	 * The default is DEFAULT_READ_AHEAD (off) or the system property FileSource.randomAccessIo.readAhead.
+	 * readChunkForPos is called on another thread so the sub class must not share it's connection with the caller.
+	 * 
+	 * @param readAhead 0 turns it off
+	 */
+	public void setReadAhead(int readAhead) {
+		if( readAhead < 0 ) {
+			throw new IllegalArgumentException("Read ahead must not be negative");
+		}
+		this.readAhead = readAhead;
+		if( readAhead == 0 ) {
+			readAheadWindow = 0;
+			discardPrefetches(prefetches);
+		}
+	}
+
+	/**
+	 * @return the number of chunks that will be read ahead after the next chunk load if it's in order
+	 */
+	public int getReadAheadWindow() {
+		return readAheadWindow;
+	}
+
+	/**
+	 * @return A shared pool of daemon threads used when a controller does not have it's own executor
+	 */
+	public static Executor getDefaultReadAheadExecutor() {
+		if( defaultReadAheadExecutor == null ) {
+			synchronized (AbstractRandomAccessIoController.class) {
+				if( defaultReadAheadExecutor == null ) {
+					defaultReadAheadExecutor = Executors.newCachedThreadPool((r)->{
+						Thread t = new Thread(r,"FileSourceReadAhead");
+						t.setDaemon(true);
+						return t;
+					});
+				}
+			}
+		}
+		return defaultReadAheadExecutor;
+	}
 
+	/**
+	 * @return The executor used to read ahead, getDefaultReadAheadExecutor() if one was not set
+	 */
+	public Executor getReadAheadExecutor() {
+		Executor ret = readAheadExecutor;
+		if( ret == null ) {
+			ret = getDefaultReadAheadExecutor();
+		}
+		return ret;
+	}
+
+	public void setReadAheadExecutor(Executor readAheadExecutor) {
+		this.readAheadExecutor = readAheadExecutor;
+	}
+
+	/**
+	 * @return the number of chunks currently in the cache
+	 */
+	public int getCachedPageCount() {
+		return pages.size();
+	}
 
 	public boolean isDirty() {
-		return currentChunk !=null && currentChunk.isDirty;
+		for(Chunk c : pages.values()) {
+			if( c.isDirty ) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	public boolean contains(long pos) {
-		return currentChunk == null ? false: currentChunk.contains(pos);
+		return findChunk(pos) != null;
+	}
+
+	/**
+	 * @return a copy of the counters for this controller
+	 */
+	public RandomAccessIoStatistics getStatistics() {
+		return new RandomAccessIoStatistics(chunkLoads, chunkSaves, bytesRead, bytesWritten, cacheHits, cacheMisses, prefetchLoads.sum(), prefetchHits);
 	}
 
 
 	public long length() throws IOException {
 		file.refresh();
 		long ret = file.length();		
-		if(currentChunk !=null && currentChunk.isNew) {
-			if( maxWriteOffset>=0) {
-				ret += maxWriteOffset+1;
+		for(Chunk c : pages.values()) {
+			if( c.isNew && c.maxWriteOffset>=0) {
+				ret = Math.max(ret, c.start+c.maxWriteOffset+1);
 			}
 		}
 		return ret;
@@ -126,96 +452,359 @@ public abstract class AbstractRandomAccessIoController implements IRandomAccessI
 
 		int ret = -1;
 		if( !closed ) {
-			if(currentChunk == null || 
-					!currentChunk. contains(pos)) {
-				// find and load data
-				System.out.println("");
-				loadChunkFor(pos);
+			Chunk chunk = findCachedChunk(pos);
 
-			}
+			if( chunk.isNew) {
+				if(chunk.isDirty) {
 
-			if( currentChunk.isNew) {
-				if(currentChunk.isDirty) {
-
-					int offset = (int)(pos-currentChunk.start);
-					if( offset < (maxWriteOffset+1)) {
-						ret = currentChunk.data[offset];
+					int offset = (int)(pos-chunk.start);
+					if( offset < (chunk.maxWriteOffset+1)) {
+						ret = chunk.data[offset] & 0xff;
 						lastReadPosition = pos;
 					}				
 				} else {
 					//  will return -1
 				}
-			} else if(currentChunk.contains(pos)) {
-				int offset = (int)(pos-currentChunk.start);
-				ret = currentChunk.data[offset];
+			} else if(chunk.contains(pos)) {
+				int offset = (int)(pos-chunk.start);
+				ret = chunk.data[offset] & 0xff;
 				lastReadPosition = pos;
 			} else {
 				throw new IOException("Logic error");
 			}
+			if( ret >= 0 ) {
+				bytesRead++;
+			}
 		}
 		return ret;
 	}
 
-	public void write(long pos, byte value) throws IOException {
+	/**
+	 * Bulk read, copies slices of the cached chunks.
+	 */
+	@Override
+	public int read(long pos, byte[] b, int off, int len) throws IOException {
 		if(pos<0) {
 			throw new IOException("Negative position");
 		}
-		if( closed ) {
-			throw new IOException("Already closed");
+		if( off < 0 || len < 0 || len > b.length-off) {
+			throw new IndexOutOfBoundsException();
 		}
 
-		if( currentChunk == null) {
-			loadChunkFor(pos);
+		int ret = 0;
+		if( !closed ) {
+			while( ret < len ) {
+				long p = pos+ret;
+				Chunk chunk = findCachedChunk(p);
+				int offset = (int)(p-chunk.start);
+				int available = 0;
+				if( chunk.isNew) {
+					available = (chunk.maxWriteOffset+1)-offset;
+				} else if(chunk.contains(p)) {
+					available = chunk.data.length-offset;
+				} else {
+					throw new IOException("Logic error");
+				}
+				if( available <= 0 ) {
+					break;
+				}
+				int cnt = Math.min(available, len-ret);
+				System.arraycopy(chunk.data, offset, b, off+ret, cnt);
+				ret += cnt;
+				lastReadPosition = p+cnt-1;
+			}
+			bytesRead += ret;
+		}
+		if( ret == 0 && len > 0) {
+			ret = -1;
 		}
+		return ret;
+	}
+
+	public void write(long pos, byte value) throws IOException {
+		Chunk chunk = getChunkForWrite(pos);
+		int offset = (int)(pos-chunk.start);
+		chunk.data[offset] = value;
+		chunk.isDirty = true;
+		chunk.maxWriteOffset = Math.max(offset, chunk.maxWriteOffset);
+		chunk.size = Math.max(offset+1, chunk.size);
+		lastWritePosition = pos;
+		bytesWritten++;
+	}
 
-		if(currentChunk == null || 
-				!contains(pos)
-				) {			
-			loadChunkFor(pos);
+	/**
+	 * Bulk write, copies slices into the cached chunks.
+	 */
+	@Override
+	public void write(long pos, byte[] b, int off, int len) throws IOException {
+		if( off < 0 || len < 0 || len > b.length-off) {
+			throw new IndexOutOfBoundsException();
+		}
+		int done = 0;
+		while( done < len ) {
+			long p = pos+done;
+			Chunk chunk = getChunkForWrite(p);
+			int offset = (int)(p-chunk.start);
+			int cnt = Math.min(chunk.data.length-offset, len-done);
+			System.arraycopy(b, off+done, chunk.data, offset, cnt);
+			chunk.isDirty = true;
+			chunk.maxWriteOffset = Math.max(offset+cnt-1, chunk.maxWriteOffset);
+			chunk.size = Math.max(offset+cnt, chunk.size);
+			done += cnt;
+			lastWritePosition = p+cnt-1;
+		}
+		bytesWritten += len;
+	}
+
+	/**
+	 * Find or load the chunk that can hold a write at pos, expanding the file if needed.
+	 */
+	private Chunk getChunkForWrite(long pos) throws IOException {
+		if(pos<0) {
+			throw new IOException("Negative position");
+		}
+		if( closed ) {
+			throw new IOException("Already closed");
 		}
 
-		int offset = (int)(pos-currentChunk.start);
+		Chunk chunk = findCachedChunk(pos);
+
+		int offset = (int)(pos-chunk.start);
 		if( offset < 0 ) {
-			throw new IOException("Negative offset pos="+pos+" start="+currentChunk.start);
+			throw new IOException("Negative offset pos="+pos+" start="+chunk.start);
 		}
-		if( offset >= currentChunk.data.length ) {
+		if( offset >= chunk.data.length ) {
 			//  We're writing past the end of the file
 			//  by more than the chunk size, so expand the file
 			setLength(pos-1);
-			loadChunkFor(pos);
-			offset = (int)(pos-currentChunk.start);
+			chunk = loadChunkFor(pos);
+			offset = (int)(pos-chunk.start);
 			if( offset < 0 ) {
-				throw new IOException("Negative offset after expanding file pos="+pos+" start="+currentChunk.start);
+				throw new IOException("Negative offset after expanding file pos="+pos+" start="+chunk.start);
 			}
-			if( offset >= currentChunk.data.length ) {
+			if( offset >= chunk.data.length ) {
 				//  we did not solve the problem???
 				throw new IOException("offset >= currentChunk.data.length "
-						+ " pos="+pos+" start="+currentChunk.start
+						+ " pos="+pos+" start="+chunk.start
 						+ " offset="+offset
-						+ " data.length="+currentChunk.data.length
+						+ " data.length="+chunk.data.length
 						);
 			}
 		}
-
-		currentChunk.data[offset] = value;
-		currentChunk.isDirty = true;
-		maxWriteOffset = Math.max(offset, maxWriteOffset);
-		currentChunk.size = Math.max(offset+1, currentChunk.size);
+		return chunk;
 	}
 
-	private void loadChunkFor(long pos) throws IOException {
-		// save any new writes
+	/**
+	 * Find the chunk for pos in the cache or load it, counting the hit or miss.
+	 */
+	private Chunk findCachedChunk(long pos) throws IOException {
+		Chunk ret = findChunk(pos);
+		if( ret == null ) {
+			cacheMisses++;
+			ret = loadChunkFor(pos);
+		} else {
+			cacheHits++;
+		}
+		return ret;
+	}
 
-		if( currentChunk!=null ) {
-			if( currentChunk.isDirty)  {
-				save();
-			} else if(maxWriteOffset!=-1) {
-				throw new IOException("MAx write is not 0 but chunk is not dirty");	
+	/**
+	 * Find the cached chunk that contains pos. 
+	 * @param pos
+	 * @return the chunk or null if pos is not cached
+	 */
+	private Chunk findChunk(long pos) {
+		Chunk ret = null;
+		if( currentChunk != null && currentChunk.contains(pos)) {
+			ret = currentChunk;
+		} else {
+			Map.Entry<Long, Chunk> e = pages.floorEntry(pos);
+			if( e != null && e.getValue().contains(pos)) {
+				ret = currentChunk = e.getValue();
 			}
 		}
+		if( ret != null ) {
+			ret.lastUsed = ++useCounter;
+		}
+		return ret;
+	}
+
+	private Chunk loadChunkFor(long pos) throws IOException {
 		// find and load data
-		currentChunk = readChunkForPos(pos);
+		Chunk ret = takePrefetched(pos);
+		boolean prefetched = ret != null;
+		if( prefetched ) {
+			prefetchHits++;
+		} else {
+			ret = readChunk(pos);
+		}
+		chunkLoads++;
+
+		//  Chunks may change shape when they are saved (new chunks are trimmed)
+		//  so make sure nothing we have in the cache overlaps the new one.
+		//  If something dirty overlaps, write it and read again.
+		while( removeOverlapping(ret)) {
+			ret = readChunk(pos);
+			chunkLoads++;
+		}
+
+		while( pages.size() >= maxPages) {
+			evict();
+		}
 
+		ret.lastUsed = ++useCounter;
+		pages.put(ret.start, ret);
+		currentChunk = ret;
+		readAhead(ret, prefetched);
+
+		return ret;
+	}
+
+	private Chunk readChunk(long pos) throws IOException {
+		synchronized (ioLock) {
+			return readChunkForPos(pos);
+		}
+	}
+
+	/**
+	 * Adjust the read ahead window after chunk was loaded and read ahead the chunks after it.
+	 * 
+	 * @param chunk
+	 * @param prefetched true if chunk was read ahead
+	 */
+	private void readAhead(Chunk chunk, boolean prefetched) {
+		boolean sequential = chunk.start == nextSequentialPos;
+		nextSequentialPos = chunk.start+chunk.data.length;
+		//  A sequential reader is past these
+		discardPrefetches(prefetches.headMap(chunk.start));
+
+		if( readAhead == 0 ) {
+			return;
+		}
+		if( prefetched || sequential ) {
+			//  A chunk the background thread had not started is read by the caller so grow on both
+			readAheadWindow = Math.min(readAhead, Math.max(1, readAheadWindow*2));
+		} else {
+			readAheadWindow = 0;
+			discardPrefetches(prefetches);
+			return;
+		}
+
+		//  A short chunk is the end of the file
+		if( chunk.isNew || chunk.data.length < pageSize ) {
+			return;
+		}
+		long size = chunk.data.length;
+		for (int idx = 1; idx <= readAheadWindow; idx++) {
+			long pos = chunk.start+(size*idx);
+			if( !prefetches.containsKey(pos) && !isCached(pos)) {
+				Prefetch prefetch = new Prefetch(pos, pos+size);
+				try {
+					getReadAheadExecutor().execute(prefetch.task);
+					prefetches.put(pos, prefetch);
+				} catch (RejectedExecutionException e) {
+					//  It will be read when it's needed
+					break;
+				}
+			}
+		}
+	}
+
+	private boolean isCached(long pos) {
+		Map.Entry<Long, Chunk> e = pages.floorEntry(pos);
+		return e != null && e.getValue().contains(pos);
+	}
+
+	/**
+	 * Stop and remove the prefetches in map, a prefetch that is already running will finish but it's chunk is not used.
+	 * @param map
+	 */
+	private void discardPrefetches(Map<Long,Prefetch> map) {
+		for(Prefetch prefetch : map.values()) {
+			prefetch.started.set(true);
+		}
+		map.clear();
+	}
+
+	/**
+	 * Take the chunk read ahead for pos, waiting for it if it's being read.
+	 * 
+	 * @param pos
+	 * @return the chunk or null if pos was not read ahead or the chunk can't be used
+	 */
+	private Chunk takePrefetched(long pos) {
+		Chunk ret = null;
+		Map.Entry<Long, Prefetch> e = prefetches.floorEntry(pos);
+		if( e != null && pos < e.getValue().end ) {
+			Prefetch prefetch = e.getValue();
+			prefetches.remove(e.getKey());
+			//  If it has not started yet it's quicker to read it on this thread
+			if( !prefetch.started.compareAndSet(false, true)) {
+				try {
+					ret = prefetch.task.get();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				} catch (ExecutionException ex) {
+					//  Read it again on this thread so the caller gets the error
+				}
+				if( ret != null && (ret.isNew || !ret.contains(pos) || prefetch.generation != ioGeneration)) {
+					ret = null;
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Remove any cached chunks that overlap chunk.
+	 * 
+	 * @param chunk
+	 * @return true if a dirty chunk was written
+	 * @throws IOException
+	 */
+	private boolean removeOverlapping(Chunk chunk) throws IOException {
+		boolean ret = false;
+		List<Chunk> list = new ArrayList<>();
+		for(Chunk c : pages.values()) {
+			if( c.overlaps(chunk)) {
+				list.add(c);
+			}
+		}
+
+		for(Chunk c : list) {
+			if( c.isDirty ) {
+				saveChunk(c);
+				ret = true;
+			}
+			removeChunk(c);
+		}
+		return ret;
+	}
+
+	private void removeChunk(Chunk c) {
+		pages.remove(c.start);
+		if( currentChunk == c) {
+			currentChunk = null;
+		}
+	}
+
+	/**
+	 * Remove the least recently used chunk from the cache, writing it first if it's dirty.
+	 * @throws IOException
+	 */
+	private void evict() throws IOException {
+		Chunk lru = null;
+		for(Chunk c : pages.values()) {
+			if( lru == null || c.lastUsed < lru.lastUsed) {
+				lru = c;
+			}
+		}
+		if( lru != null ) {
+			if( lru.isDirty ) {
+				saveChunk(lru);
+			}
+			removeChunk(lru);
+		}
 	}
 
 	protected abstract Chunk readChunkForPos(long pos) throws IOException ;
@@ -223,44 +812,63 @@ public abstract class AbstractRandomAccessIoController implements IRandomAccessI
 
 
 	public void save() throws IOException {
-		if( currentChunk !=null ) {
-			if(!currentChunk.isNew && currentChunk.size != currentChunk.data.length) {
-				throw new IOException("Chunk size is not valid chunk size="+currentChunk.size+" data.length = "+currentChunk.data.length);
+		//  TreeMap values are in ascending order so new chunks are appended in order
+		for(Chunk c : new ArrayList<>(pages.values())) {
+			if( c.isDirty ) {
+				saveChunk(c);
 			}
-			if(currentChunk.isDirty) {
-				if(currentChunk.isNew || currentChunk.chunkNumber<=0) {
-					if( maxWriteOffset >= currentChunk.data.length ) {
-						throw new IOException("Maxwrite invalid = "+maxWriteOffset+" data.len="+currentChunk.data.length);
-					}
-					//  chunk is dirty so we know something was written
-					//  the offset is 0 based					
-					int size = maxWriteOffset+1;
-					if( size < currentChunk.data.length) {
-						byte [] tmp = new byte[size];
-						for (int idx = 0; idx < tmp.length; idx++) {
-							tmp[idx] = currentChunk.data[idx];
-						}
-						currentChunk.data = tmp;
-						currentChunk.size = tmp.length;
-					}
+		}
+	}
+
+	private void saveChunk(Chunk chunk) throws IOException {
+		if( chunk.isNew ) {
+			//  new chunks extend the file so any new chunk before this one must be written first
+			for(Chunk c : new ArrayList<>(pages.headMap(chunk.start).values())) {
+				if( c.isNew && c.isDirty) {
+					saveChunk(c);
 				}
-				writeChunk(currentChunk);
 			}
-			currentChunk.isDirty = false;
-			currentChunk.isNew = false;
-			maxWriteOffset = -1;
+		}
 
+		if(!chunk.isNew && chunk.size != chunk.data.length) {
+			throw new IOException("Chunk size is not valid chunk size="+chunk.size+" data.length = "+chunk.data.length);
+		}
+		if(chunk.isDirty) {
+			if(chunk.isNew || chunk.chunkNumber<=0) {
+				if( chunk.maxWriteOffset >= chunk.data.length ) {
+					throw new IOException("Maxwrite invalid = "+chunk.maxWriteOffset+" data.len="+chunk.data.length);
+				}
+				//  chunk is dirty so we know something was written
+				//  the offset is 0 based					
+				int size = chunk.maxWriteOffset+1;
+				if( size < chunk.data.length) {
+					byte [] tmp = new byte[size];
+					System.arraycopy(chunk.data, 0, tmp, 0, size);
+					chunk.data = tmp;
+					chunk.size = tmp.length;
+				}
+			}
+			synchronized (ioLock) {
+				writeChunk(chunk);
+				ioGeneration++;
+			}
+			chunkSaves++;
 		}
+		chunk.isDirty = false;
+		chunk.isNew = false;
+		chunk.maxWriteOffset = -1;
 	}
 
 	protected abstract void writeChunk(Chunk chunk) throws IOException;
 
 	public  void setLength(long newLength) throws IOException{
-		if(maxWriteOffset>=0) {
-			save();
+		save();
+		synchronized (ioLock) {
+			setLength0(newLength);
+			ioGeneration++;
 		}
-		setLength0(newLength);
-		// force reload of next chunk
+		// force reload of all chunks
+		pages.clear();
 		currentChunk = null;
 	}
 
@@ -274,8 +882,22 @@ public abstract class AbstractRandomAccessIoController implements IRandomAccessI
 	@Override
 	public void close() throws Exception {
 		if( !closed ) {
+			discardPrefetches(prefetches);
 			save();
-			closed = true;
+			pages.clear();
+			currentChunk = null;
+			//  Wait for a running prefetch so the sub class can release it's resources 
+			synchronized (ioLock) {
+				closed = true;
+			}
+			totalChunkLoads.add(chunkLoads);
+			totalChunkSaves.add(chunkSaves);
+			totalBytesRead.add(bytesRead);
+			totalBytesWritten.add(bytesWritten);
+			totalCacheHits.add(cacheHits);
+			totalCacheMisses.add(cacheMisses);
+			totalPrefetchLoads.add(prefetchLoads.sum());
+			totalPrefetchHits.add(prefetchHits);
 		}
 
 	}
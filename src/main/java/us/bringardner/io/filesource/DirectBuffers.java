@@ -0,0 +1,73 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * Frees direct and mapped ByteBuffers now rather than waiting for the GC.
+ * 
+ * Uses sun.misc.Unsafe.invokeCleaner when it's available, otherwise free does nothing.
+ * The buffer (and any duplicate or slice of it) must never be used again after it's freed.
+ */
+public final class DirectBuffers {
+
+	private static Object unsafe;
+	private static Method invokeCleaner;
+
+	static {
+		try {
+			Class<?> c = Class.forName("sun.misc.Unsafe");
+			Field f = c.getDeclaredField("theUnsafe");
+			f.setAccessible(true);
+			unsafe = f.get(null);
+			invokeCleaner = c.getMethod("invokeCleaner", ByteBuffer.class);
+		} catch (Throwable e) {
+			//  Not available, the GC will free direct buffers
+			unsafe = null;
+			invokeCleaner = null;
+		}
+	}
+
+	private DirectBuffers() {
+	}
+
+	/**
+	 * @param buffer a direct buffer, heap buffers are ignored
+	 */
+	public static void free(ByteBuffer buffer) {
+		if( invokeCleaner != null && buffer != null && buffer.isDirect()) {
+			try {
+				invokeCleaner.invoke(unsafe, buffer);
+			} catch (Exception e) {
+				// The GC will get it
+			}
+		}
+	}
+
+}
@@ -37,6 +37,8 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.attribute.GroupPrincipal;
 import java.nio.file.attribute.UserPrincipal;
+import java.util.Arrays;
+import java.util.stream.Stream;
 
 import javax.swing.ProgressMonitor;
 
@@ -87,14 +89,14 @@ public interface FileSource extends Serializable, Comparable<Object> {
 		try {
 
 			FileSourceUser me = getFileSourceFactory().whoAmI();
-			if ( getOwner().getName().equalsIgnoreCase(me.getName())) {
+			switch (me.getAccess(getOwner().getName(), getGroup().getName())) {
+			case Owner:
 				return canOwnerRead();
-			} else if( me.hasGroup(
-					getGroup().getName()
-					)) {
+			case Group:
 				return canGroupRead();
-			} 
-			return canOtherRead();
+			default:
+				return canOtherRead();
+			}
 		} catch (Exception e) {
 		}
 		return false;
@@ -112,12 +114,14 @@ public interface FileSource extends Serializable, Comparable<Object> {
 		try {
 
 			FileSourceUser me = getFileSourceFactory().whoAmI();
-			if ( getOwner().getName().equalsIgnoreCase(me.getName())) {
+			switch (me.getAccess(getOwner().getName(), getGroup().getName())) {
+			case Owner:
 				return canOwnerWrite();
-			} else if( me.hasGroup(getGroup().getName())) {
+			case Group:
 				return canGroupWrite();
-			} 
-			return canOtherWrite();
+			default:
+				return canOtherWrite();
+			}
 		} catch (Exception e) {
 		}
 		return false;
@@ -135,12 +139,14 @@ public interface FileSource extends Serializable, Comparable<Object> {
 		try {
 
 			FileSourceUser me = getFileSourceFactory().whoAmI();
-			if ( getOwner().getName().equalsIgnoreCase(me.getName())) {
+			switch (me.getAccess(getOwner().getName(), getGroup().getName())) {
+			case Owner:
 				return canOwnerExecute();
-			} else if( me.hasGroup(getGroup().getName())) {
+			case Group:
 				return canGroupExecute();
-			} 
-			return canOtherExecute();
+			default:
+				return canOtherExecute();
+			}
 		} catch (Exception e) {
 		}
 		return false;
@@ -317,6 +323,35 @@ public interface FileSource extends Serializable, Comparable<Object> {
 
 	public FileSource[] listFiles(FileSourceFilter filter) throws IOException ;	
 
+	/**
+	 * Stream the children of this directory.
+	 * 
+	 * Unlike listFiles the children do not all have to be in memory before the first one is used.
+	 * The default implementation calls listFiles, a FileSource that can read it's children 
+	 * one at a time should override this.
+	 * The stream should be closed (try with resources) to release any resources held by the listing.    
+	 * 
+	 * @param filter only children accepted by the filter are returned, may be null.
+	 * @return the children, empty if this is not a directory.
+	 * @throws IOException
+	 */
+	default Stream<FileSource> streamFiles(FileSourceFilter filter) throws IOException {
+		FileSource [] kids = listFiles(filter);
+		if( kids == null ) {
+			return Stream.empty();
+		}
+		return Arrays.stream(kids);
+	}
+
+	/**
+	 * @return a stream of all the children of this directory. 
+	 * @see #streamFiles(FileSourceFilter)
+	 * @throws IOException
+	 */
+	default Stream<FileSource> streamFiles() throws IOException {
+		return streamFiles(null);
+	}
+
 	public boolean mkdir()  throws IOException ;
 
 	public boolean mkdirs()  throws IOException ;
@@ -0,0 +1,221 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Interns FileSource objects by path so a factory can return the same object (and the metadata it has cached)
+ * every time the same path is resolved.
+ *
+ * The cache holds at most maxSize paths and drops the least recently used when it's full.
+ * Values are held by weak references (dropped as soon as nothing else uses them)
+ * or soft references (kept until the JVM needs the memory).
+ */
+public class FileSourceCache {
+
+	public static final int DEFAULT_MAX_SIZE = 10000;
+
+	public enum ReferenceType {Weak,Soft}
+
+	private interface Ref {
+		String getKey();
+		FileSource get();
+	}
+
+	private static class WeakRef extends WeakReference<FileSource> implements Ref {
+		final String key;
+
+		WeakRef(String key, FileSource file, ReferenceQueue<FileSource> queue) {
+			super(file, queue);
+			this.key = key;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+	}
+
+	private static class SoftRef extends SoftReference<FileSource> implements Ref {
+		final String key;
+
+		SoftRef(String key, FileSource file, ReferenceQueue<FileSource> queue) {
+			super(file, queue);
+			this.key = key;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+	}
+
+	private final int maxSize;
+	private final ReferenceType referenceType;
+	private final ReferenceQueue<FileSource> queue = new ReferenceQueue<>();
+	private final Map<String, Ref> map;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long collected;
+
+	public FileSourceCache() {
+		this(DEFAULT_MAX_SIZE, ReferenceType.Weak);
+	}
+
+	/**
+	 * @param maxSize most paths held, the least recently used is dropped to make room for a new one.
+	 * @param referenceType how the FileSource objects are held
+	 */
+	public FileSourceCache(int maxSize, ReferenceType referenceType) {
+		if( maxSize < 1 ) {
+			throw new IllegalArgumentException("Invalid max size "+maxSize);
+		}
+		this.maxSize = maxSize;
+		this.referenceType = referenceType;
+		map = new LinkedHashMap<String, Ref>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Ref> eldest) {
+				boolean ret = size() > FileSourceCache.this.maxSize;
+				if( ret ) {
+					evictions++;
+				}
+				return ret;
+			}
+		};
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public ReferenceType getReferenceType() {
+		return referenceType;
+	}
+
+	/**
+	 * Remove the paths whose FileSource has been garbage collected
+	 */
+	private void purge() {
+		Reference<? extends FileSource> ref = null;
+		while( (ref = queue.poll()) != null ) {
+			Ref r = (Ref) ref;
+			//  The path may have been interned again since
+			if( map.get(r.getKey()) == r ) {
+				map.remove(r.getKey());
+				collected++;
+			}
+		}
+	}
+
+	/**
+	 * @param path
+	 * @return the FileSource interned for path or null
+	 */
+	public synchronized FileSource get(String path) {
+		purge();
+		FileSource ret = null;
+		Ref ref = map.get(path);
+		if( ref != null ) {
+			ret = ref.get();
+		}
+		if( ret == null ) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return ret;
+	}
+
+	/**
+	 * @param path
+	 * @param file
+	 * @return the FileSource already interned for path or file if there isn't one
+	 */
+	public synchronized FileSource intern(String path, FileSource file) {
+		purge();
+		Ref ref = map.get(path);
+		FileSource ret = ref == null ? null : ref.get();
+		if( ret == null ) {
+			ret = file;
+			map.put(path, referenceType == ReferenceType.Soft ? new SoftRef(path, file, queue) : new WeakRef(path, file, queue));
+		}
+		return ret;
+	}
+
+	public synchronized void remove(String path) {
+		map.remove(path);
+	}
+
+	public synchronized void clear() {
+		map.clear();
+		purge();
+	}
+
+	/**
+	 * @return number of paths held, some may have been collected but not yet removed
+	 */
+	public synchronized int size() {
+		purge();
+		return map.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return number of paths dropped to stay under maxSize
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return number of paths dropped because the FileSource was garbage collected
+	 */
+	public synchronized long getCollected() {
+		return collected;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "size="+map.size()+" maxSize="+maxSize+" hits="+hits+" misses="+misses+" evictions="+evictions+" collected="+collected;
+	}
+
+}
@@ -0,0 +1,551 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import us.bringardner.io.filesource.fileproxy.FileProxy;
+
+/**
+ * Copy files from one FileSource to another.
+ *
+ * copy(from,to) copies one file on the calling thread.
+ * submit(from,to) copies the file on the executor, at most maxTransfers files are copied at the same time
+ * and submit waits for one to finish when they are all busy.  await() waits for all submitted copies to finish.
+ *
+ * Files larger than one buffer are copied with two buffers, one is filled by a reader task while the other is written
+ * so the source and target are never waiting on each other.  The buffer size grows with the file (minBufferSize to maxBufferSize).
+ * When both files are FileProxy the copy uses FileChannel.transferTo.
+ *
+ * The listener is called from many threads at once so it must be thread safe.
+ */
+public class FileSourceCopier {
+
+	public static final int DEFAULT_MIN_BUFFER_SIZE = 1024*64;
+	public static final int DEFAULT_MAX_BUFFER_SIZE = 1024*1024*4;
+	public static final long DEFAULT_PROGRESS_INTERVAL = 1000;
+
+	/**
+	 * Totals for all of the files copied (or being copied) by a FileSourceCopier.
+	 */
+	public static class Progress {
+		private final int files;
+		private final int filesCompleted;
+		private final long bytes;
+		private final long elapsedMillis;
+
+		Progress(int files, int filesCompleted, long bytes, long elapsedMillis) {
+			this.files = files;
+			this.filesCompleted = filesCompleted;
+			this.bytes = bytes;
+			this.elapsedMillis = elapsedMillis;
+		}
+
+		/**
+		 * @return number of files copied or started
+		 */
+		public int getFiles() {
+			return files;
+		}
+
+		public int getFilesCompleted() {
+			return filesCompleted;
+		}
+
+		/**
+		 * @return bytes written to all targets
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		public double getBytesPerSecond() {
+			return elapsedMillis == 0 ? 0 : (bytes*1000.0)/elapsedMillis;
+		}
+
+		@Override
+		public String toString() {
+			return "files="+filesCompleted+"/"+files+" bytes="+bytes+" seconds="+(elapsedMillis/1000.0)+" bps="+((long)getBytesPerSecond());
+		}
+	}
+
+	public interface ProgressListener {
+		/**
+		 * Called at most once every progressInterval while files are being copied and once when await finishes.
+		 *
+		 * @param progress
+		 */
+		void progress(Progress progress);
+
+		/**
+		 * Called when each file is copied.
+		 *
+		 * @param from
+		 * @param to
+		 * @param size number of bytes copied
+		 * @param millis time it took to copy the file
+		 */
+		default void completed(FileSource from, FileSource to, long size, long millis) {
+		}
+	}
+
+	/**
+	 * A buffer passed between the reader and writer, len is -1 at end of file.
+	 */
+	private static class Chunk {
+		final byte [] data;
+		int len;
+		IOException error;
+
+		Chunk(int size) {
+			data = new byte[size];
+		}
+	}
+
+	private int maxTransfers = 4;
+	private int minBufferSize = DEFAULT_MIN_BUFFER_SIZE;
+	private int maxBufferSize = DEFAULT_MAX_BUFFER_SIZE;
+	private long progressInterval = DEFAULT_PROGRESS_INTERVAL;
+	private ProgressListener listener;
+	private ExecutorService executor;
+
+	private Semaphore transfers;
+	private final AtomicInteger pending = new AtomicInteger();
+	private final AtomicReference<IOException> error = new AtomicReference<>();
+	private final AtomicInteger files = new AtomicInteger();
+	private final AtomicInteger filesCompleted = new AtomicInteger();
+	private final AtomicLong bytes = new AtomicLong();
+	private final AtomicLong lastReport = new AtomicLong();
+	private volatile long startTime = 0;
+
+	public FileSourceCopier() {
+	}
+
+	public int getMaxTransfers() {
+		return maxTransfers;
+	}
+
+	/**
+	 * @param maxTransfers the number of files submit copies at the same time.
+	 */
+	public synchronized void setMaxTransfers(int maxTransfers) {
+		if( maxTransfers < 1 ) {
+			throw new IllegalArgumentException("Invalid max transfers "+maxTransfers);
+		}
+		if( transfers != null ) {
+			throw new IllegalStateException("Can't change max transfers after a file has been submitted");
+		}
+		this.maxTransfers = maxTransfers;
+	}
+
+	public int getMinBufferSize() {
+		return minBufferSize;
+	}
+
+	public void setMinBufferSize(int minBufferSize) {
+		if( minBufferSize < 1 ) {
+			throw new IllegalArgumentException("Invalid buffer size "+minBufferSize);
+		}
+		this.minBufferSize = minBufferSize;
+	}
+
+	public int getMaxBufferSize() {
+		return maxBufferSize;
+	}
+
+	public void setMaxBufferSize(int maxBufferSize) {
+		if( maxBufferSize < 1 ) {
+			throw new IllegalArgumentException("Invalid buffer size "+maxBufferSize);
+		}
+		this.maxBufferSize = maxBufferSize;
+	}
+
+	public long getProgressInterval() {
+		return progressInterval;
+	}
+
+	/**
+	 * @param progressInterval minimum milliseconds between calls to ProgressListener.progress
+	 */
+	public void setProgressInterval(long progressInterval) {
+		this.progressInterval = progressInterval;
+	}
+
+	public ProgressListener getListener() {
+		return listener;
+	}
+
+	public void setListener(ProgressListener listener) {
+		this.listener = listener;
+	}
+
+	public ExecutorService getExecutor() {
+		ExecutorService ret = executor;
+		if( ret == null ) {
+			ret = FileSourceExecutors.getDefaultExecutor();
+		}
+		return ret;
+	}
+
+	/**
+	 * @param executor runs the submitted copies and the reader for each large copy, a copy reads on it's own thread when no thread is free for the reader.
+	 * It belongs to the caller and is not shut down by the copier, null restores the default.
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * @return the totals so far
+	 */
+	public Progress getProgress() {
+		long start = startTime;
+		return new Progress(files.get(), filesCompleted.get(), bytes.get(), start == 0 ? 0 : System.currentTimeMillis()-start);
+	}
+
+	/**
+	 * Copy a file on the calling thread.
+	 *
+	 * @param from
+	 * @param to
+	 * @return the number of bytes copied
+	 * @throws IOException
+	 */
+	public long copy(FileSource from, FileSource to) throws IOException {
+		if( startTime == 0 ) {
+			synchronized (this) {
+				if( startTime == 0 ) {
+					startTime = System.currentTimeMillis();
+					lastReport.set(startTime);
+				}
+			}
+		}
+		files.incrementAndGet();
+		long start = System.currentTimeMillis();
+		long ret = 0;
+		if( from instanceof FileProxy && to instanceof FileProxy ) {
+			ret = transfer((FileProxy)from, (FileProxy)to);
+		} else {
+			ret = pipe(from, to);
+		}
+		filesCompleted.incrementAndGet();
+		ProgressListener l = listener;
+		if( l != null ) {
+			l.completed(from, to, ret, System.currentTimeMillis()-start);
+		}
+		return ret;
+	}
+
+	/**
+	 * Copy a file on the executor.  Waits until fewer than maxTransfers copies are running.
+	 *
+	 * @param from
+	 * @param to
+	 * @throws IOException the error from a copy that has already failed, nothing more is copied once a copy fails.
+	 */
+	public void submit(FileSource from, FileSource to) throws IOException {
+		checkError();
+		Semaphore sem = getTransfers();
+		try {
+			sem.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Copy interrupted");
+		}
+		pending.incrementAndGet();
+		try {
+			getExecutor().execute(()->{
+				try {
+					if( error.get() == null ) {
+						copy(from, to);
+					}
+				} catch (IOException e) {
+					error.compareAndSet(null, new IOException("Can't copy "+from+" to "+to,e));
+				} catch (RuntimeException e) {
+					error.compareAndSet(null, new IOException("Can't copy "+from+" to "+to,e));
+				} finally {
+					done(sem);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			done(sem);
+			throw new IOException("Can't copy "+from,e);
+		}
+	}
+
+	private synchronized Semaphore getTransfers() {
+		if( transfers == null ) {
+			transfers = new Semaphore(maxTransfers);
+		}
+		return transfers;
+	}
+
+	private void done(Semaphore sem) {
+		sem.release();
+		if( pending.decrementAndGet() == 0 ) {
+			synchronized (pending) {
+				pending.notifyAll();
+			}
+		}
+	}
+
+	private void checkError() throws IOException {
+		IOException e = error.get();
+		if( e != null ) {
+			throw e;
+		}
+	}
+
+	/**
+	 * Wait for all submitted copies to finish.
+	 *
+	 * @throws IOException the first error from a submitted copy.
+	 */
+	public void await() throws IOException {
+		synchronized (pending) {
+			while( pending.get() > 0 ) {
+				try {
+					pending.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Copy interrupted");
+				}
+			}
+		}
+		ProgressListener l = listener;
+		if( l != null ) {
+			l.progress(getProgress());
+		}
+		checkError();
+	}
+
+	private int getBufferSize(long length) {
+		//  About a quarter of the file so there are a few reads to overlap with the writes
+		long ret = Long.highestOneBit(Math.max(1, length/4));
+		ret = Math.min(maxBufferSize, Math.max(minBufferSize, ret));
+		return (int) ret;
+	}
+
+	private void written(long cnt) {
+		bytes.addAndGet(cnt);
+		ProgressListener l = listener;
+		if( l != null ) {
+			long now = System.currentTimeMillis();
+			long last = lastReport.get();
+			if( now-last >= progressInterval && lastReport.compareAndSet(last, now)) {
+				l.progress(getProgress());
+			}
+		}
+	}
+
+	/**
+	 * Copy between two local files with FileChannel.transferTo
+	 */
+	private long transfer(FileProxy from, FileProxy to) throws IOException {
+		long ret = 0;
+		try(FileChannel in = FileChannel.open(from.getTarget().toPath(), StandardOpenOption.READ)) {
+			try(FileChannel out = FileChannel.open(to.getTarget().toPath(), StandardOpenOption.WRITE,StandardOpenOption.CREATE,StandardOpenOption.TRUNCATE_EXISTING)) {
+				long size = in.size();
+				int chunk = getBufferSize(size);
+				while( ret < size ) {
+					long cnt = in.transferTo(ret, Math.min(chunk, size-ret), out);
+					if( cnt <= 0 ) {
+						break;
+					}
+					ret += cnt;
+					written(cnt);
+				}
+			}
+		} finally {
+			FileProxy.refresh(to.getTarget());
+		}
+		return ret;
+	}
+
+	/**
+	 * Copy with streams, large files are read by a separate task so reads and writes overlap.
+	 */
+	private long pipe(FileSource from, FileSource to) throws IOException {
+		int size = getBufferSize(from.length());
+		long ret = 0;
+		try(InputStream in = from.getInputStream()) {
+			try(OutputStream out = to.getOutputStream()) {
+				Chunk chunk = new Chunk(size);
+				fill(in, chunk);
+				if( chunk.len < size ) {
+					//  It all fit in one buffer
+					if( chunk.len > 0 ) {
+						out.write(chunk.data, 0, chunk.len);
+						ret = chunk.len;
+						written(ret);
+					}
+				} else {
+					ret = pipe(in, out, chunk);
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * The reader task only starts if it wins started, if the executor has no thread for it
+	 * the writer wins instead and reads the rest of the file itself (submit and the reader share the executor). 
+	 */
+	private long pipe(InputStream in, OutputStream out, Chunk first) throws IOException {
+		BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(2);
+		BlockingQueue<Chunk> full = new ArrayBlockingQueue<>(2);
+		free.add(new Chunk(first.data.length));
+		full.add(first);
+		AtomicBoolean cancelled = new AtomicBoolean();
+		AtomicBoolean started = new AtomicBoolean();
+		CountDownLatch readerDone = new CountDownLatch(1);
+
+		try {
+			getExecutor().execute(()->{
+				if( !started.compareAndSet(false, true)) {
+					return;
+				}
+				try {
+					Chunk chunk = null;
+					do {
+						chunk = free.take();
+						if( cancelled.get() ) {
+							return;
+						}
+						try {
+							fill(in, chunk);
+						} catch (IOException e) {
+							chunk.error = e;
+						}
+						full.put(chunk);
+					} while( chunk.len >= 0 && chunk.error == null );
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					readerDone.countDown();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			//  The writer will do the reads
+		}
+
+		long ret = 0;
+		try {
+			Chunk chunk = null;
+			while( true ) {
+				chunk = full.poll();
+				if( chunk == null ) {
+					if( started.compareAndSet(false, true)) {
+						//  The reader never got a thread, copy the rest on this one
+						readerDone.countDown();
+						chunk = free.take();
+						while( true ) {
+							fill(in, chunk);
+							if( chunk.len < 0 ) {
+								break;
+							}
+							out.write(chunk.data, 0, chunk.len);
+							ret += chunk.len;
+							written(chunk.len);
+						}
+						break;
+					}
+					chunk = full.take();
+				}
+				if( chunk.error != null ) {
+					throw chunk.error;
+				}
+				if( chunk.len < 0 ) {
+					break;
+				}
+				out.write(chunk.data, 0, chunk.len);
+				ret += chunk.len;
+				written(chunk.len);
+				free.put(chunk);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Copy interrupted");
+		} finally {
+			//  Let the reader stop if the writer failed and wait for it before the caller closes the streams
+			cancelled.set(true);
+			free.offer(new Chunk(0));
+			if( started.compareAndSet(false, true)) {
+				readerDone.countDown();
+			}
+			awaitReader(readerDone);
+		}
+
+		return ret;
+	}
+
+	private static void awaitReader(CountDownLatch readerDone) {
+		boolean interrupted = false;
+		while( true ) {
+			try {
+				readerDone.await();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if( interrupted ) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Read until the chunk is full or the end of the stream, len is -1 if nothing is left.
+	 */
+	private static void fill(InputStream in, Chunk chunk) throws IOException {
+		int len = 0;
+		int got = 0;
+		while( len < chunk.data.length && (got = in.read(chunk.data, len, chunk.data.length-len)) >= 0 ) {
+			len += got;
+		}
+		chunk.len = (len == 0 && got < 0) ? -1 : len;
+	}
+
+}
@@ -0,0 +1,72 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The executor shared by the parts of FileSource that run tasks in the background 
+ * (FileSourceTreeWalker, FileSourceCopier and the AsynchronousFileChannels of the NIO provider) 
+ * when the caller does not give them one.
+ */
+public final class FileSourceExecutors {
+
+	private static volatile ExecutorService defaultExecutor;
+
+	private FileSourceExecutors() {
+	}
+
+	/**
+	 * 
+	 * @return An executor that starts a virtual thread for each task when the JVM supports it 
+	 * and a cached pool of daemon threads when it does not.  It is never shut down.
+	 */
+	public static ExecutorService getDefaultExecutor() {
+		if( defaultExecutor == null ) {
+			synchronized (FileSourceExecutors.class) {
+				if( defaultExecutor == null ) {
+					ExecutorService ret = null;
+					try {
+						//  Compiled for 11 so use reflection to find virtual threads (21+)
+						Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+						ret = (ExecutorService) m.invoke(null);
+					} catch (Exception e) {
+						ret = Executors.newCachedThreadPool((r)->{
+							Thread t = new Thread(r,"FileSourceAsynchronousIo");
+							t.setDaemon(true);
+							return t;
+						});
+					}
+					defaultExecutor = ret;
+				}
+			}
+		}
+		return defaultExecutor;
+	}
+
+}
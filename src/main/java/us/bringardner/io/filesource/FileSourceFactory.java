@@ -32,17 +32,13 @@ package us.bringardner.io.filesource;
 import java.awt.Component;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.Serializable;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLStreamHandler;
 import java.net.URLStreamHandlerFactory;
-import java.nio.file.FileSystems;
 import java.nio.file.Paths;
-import java.nio.file.attribute.UserPrincipal;
-import java.nio.file.attribute.UserPrincipalLookupService;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -110,40 +106,15 @@ public abstract class FileSourceFactory extends BaseObject implements URLStreamH
 	public static final FileSourceFactory fileProxyFactory = new FileProxyFactory();
 	public static final String PROP_JAVA_PROTOCOL_HANDLER_PKGS = "java.protocol.handler.pkgs";
 
-	private static int _sessionId = 0;
-
-	private static synchronized int getNextId() {
-		return _sessionId++;
-	}
-
-
-	private static class FactorySession {
-		int id = getNextId();
-		String key;
-		FileSourceFactory factory;
-		int instanceCount = 0;
-
-		public FactorySession(FileSourceFactory factory) {
-			this.factory = factory;
-			StringBuilder buf = new StringBuilder(factory.getTypeId()+":");
-			Properties p = factory.getConnectProperties();
-			for(String name : p.stringPropertyNames()) {
-				if(! "password".equalsIgnoreCase(name)) {
-					buf.append(name+"="+p.getProperty(name));
-				}
-			}
-			key = buf.toString();
-		}
-
-	}
-
-	private static Map<Integer,FactorySession> sessions = new HashMap<>();
-	private static Map<String,FactorySession> sessionsKeyMap = new HashMap<>();
+	//  Connected factories by session id and connection properties
+	private static final FileSourceSessionRegistry sessionRegistry = new FileSourceSessionRegistry();
 
 	private volatile static FileSourceFactory defaultFactory;
 	private volatile static Map<String, String> types;
 	private static LogHelper logger = new LogHelper(FileSourceFactory.class);
 	private int sessionId=-1;
+	//  False for private copies leased from a FileSourceSessionRegistry, they can't be found by session id
+	private volatile boolean sessionIdRequired = true;
 
 	private static ServiceLoader<FileSourceFactory> factoryLoader= ServiceLoader.load(FileSourceFactory.class);
 
@@ -201,15 +172,13 @@ public abstract class FileSourceFactory extends BaseObject implements URLStreamH
 		if( tmp != null ) {
 			try {
 				int sessionid = Integer.parseInt(tmp);
-				FactorySession session = sessions.get(sessionid);
+				FileSourceFactory session = sessionRegistry.getSession(sessionid);
 				if( session != null ) {
-					return session.factory;
+					return session;
 				} else {
 					if( sessionid < 0 ) {
-						FactorySession s = new FactorySession(fileProxyFactory);
-						s.id = sessionid;
-						sessions.put(sessionid, s);
-						return s.factory;
+						sessionRegistry.register(sessionid, fileProxyFactory);
+						return fileProxyFactory;
 					}
 				}
 			} catch (Exception e) {
@@ -270,6 +239,14 @@ public abstract class FileSourceFactory extends BaseObject implements URLStreamH
 		return sessionId;
 	}
 
+	/**
+	 * 
+	 * @return the registry of connected factories used by getFileSource(URL)
+	 */
+	public static FileSourceSessionRegistry getSessionRegistry() {
+		return sessionRegistry;
+	}
+
 
 
 
@@ -413,19 +390,9 @@ public abstract class FileSourceFactory extends BaseObject implements URLStreamH
 		boolean ret = isConnected();
 		if( !ret || getTypeId().equals(FileProxyFactory.FACTORY_ID)) {
 			ret = connectImpl();
-			if( ret ) {
-				//  this is a newly connected session so cache it
-				FactorySession s = new FactorySession(this);
-				sessions.put(s.id, s);
-				sessionId = s.id;
-				FactorySession session = sessionsKeyMap.get(s.key);
-				if( session != null) {
-					session.instanceCount++;
-					logger.getLogger().warn("Factory session alread exists for "+s.key+" sessions="+session.instanceCount);
-				} else {
-					s.instanceCount=1;
-					sessionsKeyMap.put(s.key, s);
-				}
+			if( ret && sessionId < 0 && sessionIdRequired ) {
+				//  this is a newly connected session so give it an id
+				sessionId = sessionRegistry.register(this);
 			}
 		}
 		return ret;
@@ -451,7 +418,31 @@ public abstract class FileSourceFactory extends BaseObject implements URLStreamH
 	 * @throws IOException 
 	 */
 	public  void disConnect() throws IOException {
-		disConnectImpl();
+		try {
+			disConnectImpl();
+		} finally {
+			releaseSessionId();
+		}
+	}
+
+	/**
+	 * Remove the session id so a disconnected factory is not found by getFileSourceFactory(URI).
+	 */
+	private void releaseSessionId() {
+		if( sessionId >= 0 ) {
+			sessionRegistry.unregister(sessionId, this);
+			sessionId = -1;
+		}
+	}
+
+	/**
+	 * @param sessionIdRequired false if this factory should not have a session id (a copy for the private use of one caller)
+	 */
+	void setSessionIdRequired(boolean sessionIdRequired) {
+		this.sessionIdRequired = sessionIdRequired;
+		if( !sessionIdRequired ) {
+			releaseSessionId();
+		}
 	}
 
 	protected abstract void disConnectImpl() throws IOException;
@@ -570,9 +561,8 @@ public abstract class FileSourceFactory extends BaseObject implements URLStreamH
 				throw new IOException("No Filesource Factory avilible for id="+url);
 			}
 			factory.setConnectionProperties(url);
-			if( !factory.connect()) {
-				throw new IOException("Can't connect to "+url);
-			}
+			//  Reuse the connection to the same server instead of connecting for every url
+			factory = sessionRegistry.getSession(factory);
 
 			FileSourceUri fsuri = new FileSourceUri(uri);
 
@@ -614,67 +604,13 @@ public abstract class FileSourceFactory extends BaseObject implements URLStreamH
 	 */
 	public abstract String getURL();
 
+	/**
+	 * 
+	 * @return the user running this JVM, it's found once and shared by all factories.
+	 */
 	public FileSourceUser whoAmI() {
-
-
 		if( localPrinciple == null ) {
-			//*nix, including macOS,  system use id
-			String [] command = {"id"};
-
-			if( isWindows() ) {
-				String tmp []  = {"whoami","/user","/groups","/fo","list"};
-				command = tmp;
-			} 
-
-			ProcessBuilder builder = new ProcessBuilder(command);
-			Process process;
-			try {
-				process = builder.start();
-				int status = -1;
-				try {
-					status = process.waitFor();
-				} catch (InterruptedException e) {
-				}
-
-				String out = "";
-				try (InputStream reader = process.getInputStream()) {
-					out = new String(reader.readAllBytes());
-				}
-
-				String err = "";
-				try (InputStream reader = process.getErrorStream()) {
-					err = new String(reader.readAllBytes());
-				}
-
-				if( status == 0 ) {
-					FileSourceUser tmp = FileSourceUser.fromId(out.toString());
-					if( tmp != null ) {
-						localPrinciple = tmp;
-					}
-				} else {
-					throw new IOException(err);
-				}
-				
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
-			if( localPrinciple == null ) {
-				localPrinciple = new FileSourceUser();
-				UserPrincipalLookupService svr = FileSystems.getDefault().getUserPrincipalLookupService();
-				UserPrincipal user;
-				try {
-					user = svr.lookupPrincipalByName(System.getProperty("user"));
-					if( user !=null ) {
-						localPrinciple.setName(user.getName());
-					} else {
-						localPrinciple.setName("UnKnown");
-					}
-				} catch (IOException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
-
-			}
+			localPrinciple = FileSourceUser.getLocalUser();
 		}
 
 		return localPrinciple;
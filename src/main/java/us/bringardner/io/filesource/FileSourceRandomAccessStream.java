@@ -36,7 +36,41 @@ public class FileSourceRandomAccessStream extends AbstractRandomAccessStream {
 	}
 
 
-	
+	/**
+	 * Read a block of data through the controller rather than one byte at a time.
+	 */
+	@Override
+	public int readBytes(byte[] b, int off, int len) throws IOException {
+		if( closed ) {
+			throw new IOException("Can't read closed");
+		}
+		if( len == 0 ) {
+			return 0;
+		}
+
+		int ret = io.read(pointer, b, off, len);
+		if( ret > 0 ) {
+			pointer += ret;
+		}
+		return ret;
+	}
+
+	/**
+	 * Write a block of data through the controller rather than one byte at a time.
+	 */
+	@Override
+	public void writeBytes(byte[] b, int off, int len) throws IOException {
+		if( readOnly) {
+			throw new IOException("Can't write in read only mode");
+		}
+
+		if( closed ) {
+			throw new IOException("Can't write closed");
+		}
+
+		io.write(pointer, b, off, len);
+		pointer += len;
+	}
 
 	@Override
 	public void write(int b) throws IOException {
@@ -135,6 +169,19 @@ public class FileSourceRandomAccessStream extends AbstractRandomAccessStream {
 	}
 
 
+	/**
+	 * Write anything the controller is holding (dirty chunks) to the file without closing the stream.
+	 * @throws IOException
+	 */
+	public void save() throws IOException {
+		if( closed ) {
+			throw new IOException("Can't save closed");
+		}
+		if( !readOnly ) {
+			io.save();
+		}
+	}
+
 	@Override
 	public void close() throws IOException {
 		try {
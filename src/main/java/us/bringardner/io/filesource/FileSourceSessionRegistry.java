@@ -0,0 +1,423 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import us.bringardner.core.util.LogHelper;
+
+/**
+ * Connected FileSourceFactories keyed by their connection properties.
+ *
+ * getSession returns one shared, connected factory for each set of connection properties
+ * so resolving many URLs for the same server only connects once.
+ * lease returns a factory for the exclusive use of the caller (created with createThreadSafeCopy of the shared factory)
+ * that should be given back with release.  Released factories are reused by the next lease and
+ * are disconnected when they have not been used for idleTimeout milliseconds.
+ *
+ * The key includes the password but it is never part of toString or the log.
+ */
+public class FileSourceSessionRegistry {
+
+	public static final long DEFAULT_IDLE_TIMEOUT = 1000*60*5;
+
+	private static final LogHelper logger = new LogHelper(FileSourceSessionRegistry.class);
+
+	private static class Key {
+		final String key;
+		final String password;
+
+		Key(FileSourceFactory factory) {
+			key = getKey(factory);
+			Properties p = factory.getConnectProperties();
+			String tmp = null;
+			for(String name : p.stringPropertyNames()) {
+				if( "password".equalsIgnoreCase(name)) {
+					tmp = p.getProperty(name);
+				}
+			}
+			password = tmp;
+		}
+
+		@Override
+		public int hashCode() {
+			return key.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return key.equals(other.key) && Objects.equals(password, other.password);
+		}
+
+		@Override
+		public String toString() {
+			return key;
+		}
+	}
+
+	private static class Idle {
+		final FileSourceFactory factory;
+		final long since = System.currentTimeMillis();
+
+		Idle(FileSourceFactory factory) {
+			this.factory = factory;
+		}
+	}
+
+	private static class Pool {
+		final Key key;
+		//  Returned by getSession and copied by lease
+		volatile FileSourceFactory shared;
+		//  Released factories, most recently used first
+		final Deque<Idle> idle = new ArrayDeque<>();
+		//  Leased factories and the number of leases (a thread safe factory can be leased more than once)
+		final Map<FileSourceFactory, Integer> leased = new IdentityHashMap<>();
+
+		Pool(Key key) {
+			this.key = key;
+		}
+	}
+
+	private final Map<Key, Pool> pools = new ConcurrentHashMap<>();
+	private final Map<Integer, FileSourceFactory> sessions = new ConcurrentHashMap<>();
+	private final AtomicInteger nextId = new AtomicInteger();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong connects = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+	private volatile long lastSweep = System.currentTimeMillis();
+
+	public FileSourceSessionRegistry() {
+	}
+
+	/**
+	 * @param factory
+	 * @return the type id and connection properties of the factory without the password
+	 */
+	public static String getKey(FileSourceFactory factory) {
+		StringBuilder buf = new StringBuilder(factory.getTypeId()+":");
+		Properties p = factory.getConnectProperties();
+		//  Sorted so the same properties always make the same key
+		for(String name : new TreeSet<>(p.stringPropertyNames())) {
+			if(! "password".equalsIgnoreCase(name)) {
+				buf.append(name+"="+p.getProperty(name)+";");
+			}
+		}
+		return buf.toString();
+	}
+
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	/**
+	 * @param idleTimeout milliseconds a released factory is kept before it's disconnected
+	 */
+	public void setIdleTimeout(long idleTimeout) {
+		if( idleTimeout < 0 ) {
+			throw new IllegalArgumentException("Invalid idle timeout "+idleTimeout);
+		}
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * @return number of times a connected factory was reused
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return number of times a factory had to be connected or copied
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return number of factories connected by the registry
+	 */
+	public long getConnects() {
+		return connects.get();
+	}
+
+	/**
+	 * @return number of idle factories removed from the registry
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	public int getIdleCount() {
+		int ret = 0;
+		for(Pool pool : pools.values()) {
+			synchronized (pool) {
+				ret += pool.idle.size();
+			}
+		}
+		return ret;
+	}
+
+	public int getLeasedCount() {
+		int ret = 0;
+		for(Pool pool : pools.values()) {
+			synchronized (pool) {
+				for(Integer cnt : pool.leased.values()) {
+					ret += cnt;
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Give the factory a session id that can be used in a URI to find it with getSession(int)
+	 *
+	 * @param factory
+	 * @return the new session id
+	 */
+	int register(FileSourceFactory factory) {
+		int ret = nextId.getAndIncrement();
+		sessions.put(ret, factory);
+		return ret;
+	}
+
+	void register(int id, FileSourceFactory factory) {
+		sessions.putIfAbsent(id, factory);
+	}
+
+	/**
+	 * Remove the session id, called when the factory is disconnected.
+	 * 
+	 * @param id
+	 * @param factory
+	 */
+	void unregister(int id, FileSourceFactory factory) {
+		sessions.remove(id, factory);
+	}
+
+	/**
+	 * @return number of factories that can be found by session id
+	 */
+	public int getSessionCount() {
+		return sessions.size();
+	}
+
+	/**
+	 * @param id
+	 * @return the factory with the session id or null
+	 */
+	public FileSourceFactory getSession(int id) {
+		return sessions.get(id);
+	}
+
+	private Pool getPool(FileSourceFactory factory) {
+		return pools.computeIfAbsent(new Key(factory), (k)->new Pool(k));
+	}
+
+	private FileSourceFactory getShared(Pool pool, FileSourceFactory factory) throws IOException {
+		FileSourceFactory ret = pool.shared;
+		if( ret != null && ret.isConnected()) {
+			hits.incrementAndGet();
+			return ret;
+		}
+		synchronized (pool) {
+			ret = pool.shared;
+			if( ret != null && ret.isConnected()) {
+				hits.incrementAndGet();
+				return ret;
+			}
+			misses.incrementAndGet();
+			if( !factory.connect()) {
+				throw new IOException("Can't connect to "+pool.key);
+			}
+			connects.incrementAndGet();
+			pool.shared = factory;
+		}
+		return factory;
+	}
+
+	/**
+	 * Find the connected factory with the same connection properties as factory
+	 * or connect factory if there isn't one.
+	 *
+	 * @param factory a factory with it's connection properties set, it is connected and returned on a miss.
+	 * @return a connected factory shared by everyone that uses the same connection properties.
+	 * @throws IOException if factory can't connect
+	 */
+	public FileSourceFactory getSession(FileSourceFactory factory) throws IOException {
+		return getShared(getPool(factory), factory);
+	}
+
+	/**
+	 * Get a connected factory for the exclusive use of the caller.
+	 *
+	 * @param factory a factory with it's connection properties set
+	 * @return an idle factory released by another caller or a copy of the shared factory
+	 * @throws IOException if a new factory can't connect
+	 */
+	public FileSourceFactory lease(FileSourceFactory factory) throws IOException {
+		sweep(false);
+		Pool pool = getPool(factory);
+		List<FileSourceFactory> dead = new ArrayList<>();
+		FileSourceFactory ret = null;
+		synchronized (pool) {
+			while( ret == null && !pool.idle.isEmpty()) {
+				FileSourceFactory tmp = pool.idle.pollFirst().factory;
+				if( tmp.isConnected()) {
+					ret = tmp;
+				} else {
+					evictions.incrementAndGet();
+					dead.add(tmp);
+				}
+			}
+			if( ret != null ) {
+				hits.incrementAndGet();
+				pool.leased.merge(ret, 1, Integer::sum);
+			}
+		}
+		disconnect(pool, dead);
+		if( ret != null ) {
+			return ret;
+		}
+
+		FileSourceFactory shared = getShared(pool, factory);
+		if( shared != factory ) {
+			//  Count the copy as a miss even though the shared factory was found
+			hits.decrementAndGet();
+			misses.incrementAndGet();
+		}
+		ret = shared.createThreadSafeCopy();
+		if( ret != shared ) {
+			//  Copies are only used by the caller so they don't need to be found by session id
+			ret.setSessionIdRequired(false);
+			if( !ret.isConnected()) {
+				if( !ret.connect()) {
+					throw new IOException("Can't connect to "+pool.key);
+				}
+				connects.incrementAndGet();
+			}
+		}
+		synchronized (pool) {
+			pool.leased.merge(ret, 1, Integer::sum);
+		}
+		return ret;
+	}
+
+	/**
+	 * Give back a factory returned by lease.
+	 *
+	 * @param factory
+	 */
+	public void release(FileSourceFactory factory) {
+		Pool pool = pools.get(new Key(factory));
+		if( pool == null ) {
+			throw new IllegalStateException("Factory is not leased "+getKey(factory));
+		}
+		synchronized (pool) {
+			Integer cnt = pool.leased.get(factory);
+			if( cnt == null ) {
+				throw new IllegalStateException("Factory is not leased "+pool.key);
+			}
+			if( cnt == 1 ) {
+				pool.leased.remove(factory);
+				pool.idle.addFirst(new Idle(factory));
+			} else {
+				pool.leased.put(factory, cnt-1);
+			}
+		}
+		sweep(false);
+	}
+
+	/**
+	 * Disconnect factories that have been idle for more than idleTimeout.
+	 * This is done as factories are leased and released so it's only needed to free connections sooner.
+	 */
+	public void evictIdle() {
+		sweep(true);
+	}
+
+	private void sweep(boolean force) {
+		long now = System.currentTimeMillis();
+		if( !force && now-lastSweep < Math.min(idleTimeout, 1000) ) {
+			return;
+		}
+		lastSweep = now;
+		for(Pool pool : pools.values()) {
+			List<FileSourceFactory> dead = new ArrayList<>();
+			synchronized (pool) {
+				//  The oldest are at the end
+				Iterator<Idle> it = pool.idle.descendingIterator();
+				while( it.hasNext()) {
+					Idle idle = it.next();
+					if( now-idle.since < idleTimeout ) {
+						break;
+					}
+					it.remove();
+					evictions.incrementAndGet();
+					dead.add(idle.factory);
+				}
+			}
+			disconnect(pool, dead);
+		}
+	}
+
+	private void disconnect(Pool pool, List<FileSourceFactory> dead) {
+		for(FileSourceFactory factory : dead) {
+			boolean inUse = false;
+			synchronized (pool) {
+				//  Thread safe factories are the shared factory or may have been leased again
+				inUse = factory == pool.shared || pool.leased.containsKey(factory);
+			}
+			if( !inUse ) {
+				try {
+					factory.disConnect();
+				} catch (IOException e) {
+					logger.logError("Can't disconnect idle factory for "+pool.key, e);
+				}
+			}
+		}
+	}
+
+}
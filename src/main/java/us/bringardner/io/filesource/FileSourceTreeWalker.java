@@ -0,0 +1,398 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.FileSystemLoopException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Walk a FileSource tree and call a Visitor for each file and directory.
+ *
+ * Each directory is listed by a separate task so the children of many directories are read at the same time.
+ * By default the tasks run on a ForkJoinPool with one thread per core,
+ * for remote factories where most of the time is spent waiting on the network
+ * setVirtualThreads(true) runs every directory on it's own virtual thread (when the JVM has them).
+ *
+ * The visitor is called from many threads at once so it must be thread safe.
+ * preVisitDirectory is always called before any of the directories children are visited
+ * and postVisitDirectory is called after all of them (and all of their children) have been visited.
+ *
+ * Like java.nio.file.Files.walkFileTree, a directory at maxDepth is passed to visitFile,
+ * links are not followed unless followLinks is true.  When links are followed each directory is only walked once,
+ * finding one a second time (a loop or two links to the same directory) is reported to visitFailed as a FileSystemLoopException.
+ */
+public class FileSourceTreeWalker {
+
+	public interface Visitor {
+
+		/**
+		 * Called before the children of a directory are visited.
+		 *
+		 * @param dir
+		 * @param parent the directory dir was found in, null for the root
+		 * @param depth 0 for the root
+		 * @return false to skip the children of this directory (postVisitDirectory is not called).
+		 * @throws IOException to stop the walk
+		 */
+		default boolean preVisitDirectory(FileSource dir, FileSource parent, int depth) throws IOException {
+			return true;
+		}
+
+		/**
+		 * Called for every file and for directories that are not walked (maxDepth or links).
+		 *
+		 * @param file
+		 * @param parent the directory file was found in, null for the root
+		 * @param depth 0 for the root
+		 * @throws IOException to stop the walk
+		 */
+		void visitFile(FileSource file, FileSource parent, int depth) throws IOException;
+
+		/**
+		 * Called after all of the children of a directory have been visited.
+		 *
+		 * @param dir
+		 * @param parent the directory dir was found in, null for the root
+		 * @param depth 0 for the root
+		 * @throws IOException to stop the walk
+		 */
+		default void postVisitDirectory(FileSource dir, FileSource parent, int depth) throws IOException {
+		}
+
+		/**
+		 * Called when a file or directory can't be read.
+		 * The default stops the walk by throwing the error.
+		 *
+		 * @param file
+		 * @param error
+		 * @throws IOException to stop the walk
+		 */
+		default void visitFailed(FileSource file, IOException error) throws IOException {
+			throw error;
+		}
+	}
+
+	private static class Node {
+		final FileSource file;
+		//  The FileSource to list, not the same as file when file is a link
+		final FileSource dir;
+		final Node parent;
+		final int depth;
+		//  One for listing this directory and one for each child directory that has not finished
+		final AtomicInteger pending = new AtomicInteger(1);
+
+		Node(FileSource file, FileSource dir, Node parent, int depth) {
+			this.file = file;
+			this.dir = dir;
+			this.parent = parent;
+			this.depth = depth;
+		}
+	}
+
+	private class Walk {
+		final Visitor visitor;
+		final ExecutorService executor;
+		final Set<String> visited = ConcurrentHashMap.newKeySet();
+		final AtomicReference<IOException> error = new AtomicReference<>();
+		final CountDownLatch done = new CountDownLatch(1);
+
+		Walk(Visitor visitor, ExecutorService executor) {
+			this.visitor = visitor;
+			this.executor = executor;
+		}
+
+		boolean isTerminated() {
+			return error.get() != null;
+		}
+
+		void terminate(IOException e) {
+			error.compareAndSet(null, e);
+		}
+
+		void failed(FileSource file, IOException e) {
+			try {
+				visitor.visitFailed(file, e);
+			} catch (IOException e1) {
+				terminate(e1);
+			}
+		}
+
+		void submit(Node node) {
+			try {
+				executor.execute(()->list(node));
+			} catch (RejectedExecutionException e) {
+				terminate(new IOException("Can't walk "+node.file,e));
+				complete(node);
+			}
+		}
+
+		void list(Node node) {
+			try(Stream<FileSource> kids = node.dir.streamFiles(filter)) {
+				Iterator<FileSource> it = kids.iterator();
+				while( !isTerminated() && it.hasNext()) {
+					FileSource file = it.next();
+					try {
+						visit(file, node);
+					} catch (IOException e) {
+						//  Thrown by the visitor
+						terminate(e);
+					}
+				}
+			} catch (IOException e) {
+				failed(node.file, e);
+			} catch (UncheckedIOException e) {
+				failed(node.file, e.getCause());
+			} catch (DirectoryIteratorException e) {
+				failed(node.file, e.getCause());
+			} catch (RuntimeException e) {
+				terminate(new IOException(e));
+			} finally {
+				complete(node);
+			}
+		}
+
+		/**
+		 * Visit one child of parent
+		 * @throws IOException if the visitor wants to stop
+		 */
+		void visit(FileSource file, Node parent) throws IOException {
+			int depth = parent.depth+1;
+			FileSource dir = null;
+			boolean loop = false;
+			if( depth < maxDepth ) {
+				try {
+					dir = getDirectory(file);
+					loop = dir != null && followLinks && !visited.add(dir.getCanonicalPath());
+				} catch (IOException e) {
+					failed(file, e);
+					return;
+				}
+			}
+
+			if( dir == null ) {
+				visitor.visitFile(file, parent.file, depth);
+			} else if( loop ) {
+				failed(file, new FileSystemLoopException(file.getAbsolutePath()));
+			} else if( visitor.preVisitDirectory(file, parent.file, depth)) {
+				parent.pending.incrementAndGet();
+				submit(new Node(file, dir, parent, depth));
+			}
+		}
+
+		/**
+		 * Called when a directory is listed and when each of it's child directories is done.
+		 */
+		void complete(Node node) {
+			if( node.pending.decrementAndGet() == 0 ) {
+				if( !isTerminated()) {
+					try {
+						visitor.postVisitDirectory(node.file, node.parent == null ? null : node.parent.file, node.depth);
+					} catch (IOException e) {
+						terminate(e);
+					} catch (RuntimeException e) {
+						terminate(new IOException(e));
+					}
+				}
+				if( node.parent == null ) {
+					done.countDown();
+				} else {
+					complete(node.parent);
+				}
+			}
+		}
+	}
+
+	private int maxDepth = Integer.MAX_VALUE;
+	private FileSourceFilter filter;
+	private boolean followLinks = false;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private boolean virtualThreads = false;
+	private ExecutorService executor;
+
+	public FileSourceTreeWalker() {
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * @param maxDepth the deepest level visited, 0 only visits the root and 1 the roots children.
+	 */
+	public void setMaxDepth(int maxDepth) {
+		if( maxDepth < 0 ) {
+			throw new IllegalArgumentException("Invalid max depth "+maxDepth);
+		}
+		this.maxDepth = maxDepth;
+	}
+
+	public FileSourceFilter getFilter() {
+		return filter;
+	}
+
+	/**
+	 * @param filter Files (and directories) not accepted by the filter are not visited or walked, null accepts everything.
+	 */
+	public void setFilter(FileSourceFilter filter) {
+		this.filter = filter;
+	}
+
+	public boolean isFollowLinks() {
+		return followLinks;
+	}
+
+	/**
+	 * @param followLinks true to walk into directories found through getLinkedTo()
+	 */
+	public void setFollowLinks(boolean followLinks) {
+		this.followLinks = followLinks;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * @param parallelism number of threads in the ForkJoinPool, 1 walks the tree on one thread.
+	 */
+	public void setParallelism(int parallelism) {
+		if( parallelism < 1 ) {
+			throw new IllegalArgumentException("Invalid parallelism "+parallelism);
+		}
+		this.parallelism = parallelism;
+	}
+
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	/**
+	 * @param virtualThreads true to list each directory on it's own virtual thread instead of using a ForkJoinPool.
+	 */
+	public void setVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * @param executor used to list directories instead of a ForkJoinPool or virtual threads.
+	 * It belongs to the caller and is not shut down by the walker, null restores the default.
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * @param file
+	 * @return the FileSource to list if file is a directory that should be walked, otherwise null.
+	 * @throws IOException
+	 */
+	private FileSource getDirectory(FileSource file) throws IOException {
+		FileSource ret = null;
+		FileSource link = file.getLinkedTo();
+		if( link == null ) {
+			if( file.isDirectory()) {
+				ret = file;
+			}
+		} else if( followLinks ) {
+			if( file.isDirectory()) {
+				ret = file;
+			} else if( link.isDirectory()) {
+				ret = link;
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Walk the tree starting at root and wait for it to finish.
+	 *
+	 * @param root
+	 * @param visitor
+	 * @throws IOException the first exception thrown by the visitor.
+	 */
+	public void walk(FileSource root, Visitor visitor) throws IOException {
+		FileSource dir = maxDepth > 0 ? getDirectory(root) : null;
+		if( dir == null ) {
+			visitor.visitFile(root, null, 0);
+			return;
+		}
+		if( !visitor.preVisitDirectory(root, null, 0)) {
+			return;
+		}
+
+		ExecutorService pool = executor;
+		boolean shutdown = false;
+		if( pool == null ) {
+			if( virtualThreads ) {
+				pool = FileSourceExecutors.getDefaultExecutor();
+			} else {
+				pool = new ForkJoinPool(parallelism);
+				shutdown = true;
+			}
+		}
+
+		try {
+			Walk walk = new Walk(visitor, pool);
+			if( followLinks ) {
+				walk.visited.add(dir.getCanonicalPath());
+			}
+			walk.submit(new Node(root, dir, null, 0));
+			try {
+				walk.done.await();
+			} catch (InterruptedException e) {
+				walk.terminate(new InterruptedIOException("Walk interrupted"));
+				Thread.currentThread().interrupt();
+			}
+			IOException error = walk.error.get();
+			if( error != null ) {
+				throw error;
+			}
+		} finally {
+			if( shutdown ) {
+				pool.shutdown();
+			}
+		}
+	}
+
+}
@@ -2,19 +2,37 @@ package us.bringardner.io.filesource;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.nio.file.attribute.GroupPrincipal;
 import java.nio.file.attribute.UserPrincipal;
+import java.nio.file.attribute.UserPrincipalLookupService;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class FileSourceUser extends FileSourcePrinciple implements UserPrincipal {
 	
 	
+	/**
+	 * Which of the permission sets (owner, group or other) applies to a user
+	 */
+	public enum Access {Owner,Group,Other}
+
 	Map<Integer,FileSourceGroup> groups = new TreeMap<>();
 	FileSourceGroup group;
+	//  groups by lower case name for hasGroup(String)
+	private Map<String,FileSourceGroup> groupNames = new HashMap<>();
+	//  Access by owner and group name
+	private Map<String,Access> accessCache = new ConcurrentHashMap<>();
+	private static volatile FileSourceUser localUser;
 	
 	/*
 	 User name                    tony
@@ -135,7 +153,7 @@ Local Group Memberships      *Administrators       *Remote Desktop Users
 	public FileSourceUser(int uid,String name,int gid,String groupName) {
 		super(uid, name);
 		group = new FileSourceGroup(gid,groupName);	
-		groups.put(gid, group);
+		addGroup(group);
 	}
 	
 	public boolean hasGroup(int id) {
@@ -150,13 +168,29 @@ Local Group Memberships      *Administrators       *Remote Desktop Users
 			}
 		}
 		
-		boolean ret = false;
-		for(GroupPrincipal g : groups.values()) {
-			if( (ret=g.getName().equalsIgnoreCase(groupName))) {
-				break;
+		return groupNames.containsKey(groupName.toLowerCase());
+	}
+
+	/**
+	 * Decide which permission set applies to this user for a file, the answer is cached by owner and group name. 
+	 * 
+	 * @param owner name of the file owner
+	 * @param group name of the file group
+	 * @return Owner if this user owns the file, Group if this user is in the file's group otherwise Other.  
+	 */
+	public Access getAccess(String owner, String group) {
+		String key = owner+'\n'+group;
+		Access ret = accessCache.get(key);
+		if( ret == null ) {
+			if( owner.equalsIgnoreCase(getName())) {
+				ret = Access.Owner;
+			} else if( hasGroup(group)) {
+				ret = Access.Group;
+			} else {
+				ret = Access.Other;
 			}
+			accessCache.put(key, ret);
 		}
-		
 		return ret;
 	}
 	
@@ -173,7 +207,11 @@ Local Group Memberships      *Administrators       *Remote Desktop Users
 
 	public void setGroups(Map<Integer, FileSourceGroup> groups) {
 		this.groups.clear();
-		this.groups.putAll(groups);			
+		groupNames.clear();
+		accessCache.clear();
+		for(FileSourceGroup g : groups.values()) {
+			addGroup(g);
+		}
 	}
 
 
@@ -309,7 +347,9 @@ Attributes: Mandatory group, Enabled by default, Enabled group
 	}
 	
 	public void addGroup(FileSourceGroup g) {
-			groups.put(g.getId(), g);		
+		groups.put(g.getId(), g);		
+		groupNames.put(g.getName().toLowerCase(), g);
+		accessCache.clear();
 	}
 
 	public void setGroup(FileSourceGroup group) {
@@ -342,4 +382,165 @@ Attributes: Mandatory group, Enabled by default, Enabled group
 	public boolean hasGroup(UserPrincipal principal) {
 		return hasGroup(principal.getName());
 	}
+	@Override
+	public void setName(String name) {
+		super.setName(name);
+		accessCache.clear();
+	}
+
+	/**
+	 * The user running this JVM, found the first time it's needed and shared by every factory.
+	 * 
+	 * @return the local user
+	 */
+	public static FileSourceUser getLocalUser() {
+		FileSourceUser ret = localUser;
+		if( ret == null ) {
+			synchronized (FileSourceUser.class) {
+				ret = localUser;
+				if( ret == null ) {
+					//  Linux can be read from /proc and /etc without starting a process 
+					ret = fromProc(Paths.get("/proc/self/status"),Paths.get("/etc/passwd"),Paths.get("/etc/group"));
+					if( ret == null ) {
+						ret = fromCommand();
+					}
+					if( ret == null ) {
+						ret = new FileSourceUser();
+						UserPrincipalLookupService svr = FileSystems.getDefault().getUserPrincipalLookupService();
+						try {
+							UserPrincipal user = svr.lookupPrincipalByName(System.getProperty("user.name"));
+							if( user !=null ) {
+								ret.setName(user.getName());
+							} else {
+								ret.setName("UnKnown");
+							}
+						} catch (IOException e) {
+							e.printStackTrace();
+						}
+					}
+					localUser = ret;
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Run id (whoami on Windows) and parse the response
+	 * @return the user or null if the command failed 
+	 */
+	private static FileSourceUser fromCommand() {
+		FileSourceUser ret = null;
+		//*nix, including macOS,  system use id
+		String [] command = {"id"};
+
+		if( FileSourceFactory.isWindows() ) {
+			String tmp []  = {"whoami","/user","/groups","/fo","list"};
+			command = tmp;
+		} 
+
+		ProcessBuilder builder = new ProcessBuilder(command);
+		try {
+			Process process = builder.start();
+			String out = "";
+			try (InputStream reader = process.getInputStream()) {
+				out = new String(reader.readAllBytes());
+			}
+
+			String err = "";
+			try (InputStream reader = process.getErrorStream()) {
+				err = new String(reader.readAllBytes());
+			}
+
+			int status = -1;
+			try {
+				status = process.waitFor();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			if( status == 0 ) {
+				ret = fromId(out);
+			} else {
+				throw new IOException(err);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return ret;
+	}
+
+	/**
+	 * Build the user from the effective uid, gid and groups in /proc/self/status 
+	 * and the names in /etc/passwd and /etc/group.
+	 * 
+	 * @return the user or null if the files can't be read or a name can't be found (for example users from LDAP). 
+	 */
+	static FileSourceUser fromProc(Path status, Path passwd, Path group) {
+		if( FileSourceFactory.isWindows() || !Files.isReadable(status)) {
+			return null;
+		}
+		try {
+			int uid = -1;
+			int gid = -1;
+			List<Integer> ids = new ArrayList<>();
+			for(String line : Files.readAllLines(status)) {
+				//  Real, effective, saved and file system ids, id shows the effective ones 
+				String [] parts = line.trim().split("\\s+");
+				if( parts[0].equals("Uid:") && parts.length > 2) {
+					uid = Integer.parseInt(parts[2]);
+				} else if( parts[0].equals("Gid:") && parts.length > 2) {
+					gid = Integer.parseInt(parts[2]);
+				} else if( parts[0].equals("Groups:")) {
+					for (int idx = 1; idx < parts.length; idx++) {
+						ids.add(Integer.parseInt(parts[idx]));
+					}
+				}
+			}
+			if( uid < 0 || gid < 0 ) {
+				return null;
+			}
+
+			Map<Integer,String> users = readNames(passwd);
+			Map<Integer,String> groupNames = readNames(group);
+			String name = users.get(uid);
+			String groupName = groupNames.get(gid);
+			if( name == null || groupName == null ) {
+				return null;
+			}
+
+			FileSourceUser ret = new FileSourceUser(uid, name, gid, groupName);
+			for(Integer id : ids) {
+				String tmp = groupNames.get(id);
+				if( tmp == null ) {
+					return null;
+				}
+				ret.addGroup(new FileSourceGroup(id, tmp));
+			}
+			return ret;
+		} catch (IOException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param file /etc/passwd or /etc/group 
+	 * @return names by id (the first and third fields) 
+	 * @throws IOException
+	 */
+	private static Map<Integer,String> readNames(Path file) throws IOException {
+		Map<Integer,String> ret = new HashMap<>();
+		for(String line : Files.readAllLines(file)) {
+			String [] parts = line.split(":");
+			if( parts.length > 2 && !line.startsWith("#")) {
+				try {
+					ret.putIfAbsent(Integer.parseInt(parts[2]), parts[0]);
+				} catch (NumberFormatException e) {
+					// skip it
+				}
+			}
+		}
+		return ret;
+	}
+
 }
@@ -12,4 +12,41 @@ public interface IRandomAccessIoController extends AutoCloseable {
 	void setLength(long newLength) throws IOException;
 	void save() throws IOException;
 	FileSource getFile();
+
+	/**
+	 * Read up to len bytes starting at position.
+	 * Implementations should override this to avoid a call per byte.
+	 * 
+	 * @return the number of bytes read or -1 if position is at the end of the file.
+	 */
+	default int read(long position, byte[] b, int off, int len) throws IOException {
+		if( off < 0 || len < 0 || len > b.length-off) {
+			throw new IndexOutOfBoundsException();
+		}
+		int ret = 0;
+		while( ret < len ) {
+			int i = read(position+ret);
+			if( i < 0 ) {
+				break;
+			}
+			b[off+ret++] = (byte) i;
+		}
+		if( ret == 0 && len > 0) {
+			ret = -1;
+		}
+		return ret;
+	}
+
+	/**
+	 * Write len bytes starting at position.
+	 * Implementations should override this to avoid a call per byte.
+	 */
+	default void write(long position, byte[] b, int off, int len) throws IOException {
+		if( off < 0 || len < 0 || len > b.length-off) {
+			throw new IndexOutOfBoundsException();
+		}
+		for (int idx = 0; idx < len; idx++) {
+			write(position+idx, b[off+idx]);
+		}
+	}
 }
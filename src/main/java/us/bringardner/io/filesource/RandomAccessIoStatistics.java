@@ -0,0 +1,114 @@
+/**
+ * <PRE>
+ * 
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ * 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *   
+ *   
+ *	@author Tony Bringardner   
+ *
+ *
+ * ~version~
+ */
+package us.bringardner.io.filesource;
+
+/**
+ * A point in time copy of the counters kept by AbstractRandomAccessIoController.
+ */
+public class RandomAccessIoStatistics implements RandomAccessIoStatisticsMXBean {
+
+	private final long chunkLoads;
+	private final long chunkSaves;
+	private final long bytesRead;
+	private final long bytesWritten;
+	private final long cacheHits;
+	private final long cacheMisses;
+	private final long prefetchLoads;
+	private final long prefetchHits;
+
+	public RandomAccessIoStatistics(long chunkLoads, long chunkSaves, long bytesRead, long bytesWritten,
+			long cacheHits, long cacheMisses) {
+		this(chunkLoads, chunkSaves, bytesRead, bytesWritten, cacheHits, cacheMisses, 0, 0);
+	}
+
+	public RandomAccessIoStatistics(long chunkLoads, long chunkSaves, long bytesRead, long bytesWritten,
+			long cacheHits, long cacheMisses, long prefetchLoads, long prefetchHits) {
+		this.chunkLoads = chunkLoads;
+		this.chunkSaves = chunkSaves;
+		this.bytesRead = bytesRead;
+		this.bytesWritten = bytesWritten;
+		this.cacheHits = cacheHits;
+		this.cacheMisses = cacheMisses;
+		this.prefetchLoads = prefetchLoads;
+		this.prefetchHits = prefetchHits;
+	}
+
+	@Override
+	public long getChunkLoads() {
+		return chunkLoads;
+	}
+
+	@Override
+	public long getChunkSaves() {
+		return chunkSaves;
+	}
+
+	@Override
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	@Override
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	@Override
+	public long getCacheHits() {
+		return cacheHits;
+	}
+
+	@Override
+	public long getCacheMisses() {
+		return cacheMisses;
+	}
+
+	@Override
+	public long getPrefetchLoads() {
+		return prefetchLoads;
+	}
+
+	@Override
+	public long getPrefetchHits() {
+		return prefetchHits;
+	}
+
+	/**
+	 * @return hits / (hits+misses) or 0 if there has been no IO
+	 */
+	public double getCacheHitRatio() {
+		long total = cacheHits+cacheMisses;
+		return total == 0 ? 0 : ((double)cacheHits)/total;
+	}
+
+	@Override
+	public String toString() {
+		return "chunkLoads=" + chunkLoads + ", chunkSaves=" + chunkSaves + ", bytesRead=" + bytesRead
+				+ ", bytesWritten=" + bytesWritten + ", cacheHits=" + cacheHits + ", cacheMisses=" + cacheMisses
+				+ ", prefetchLoads=" + prefetchLoads + ", prefetchHits=" + prefetchHits;
+	}
+
+}
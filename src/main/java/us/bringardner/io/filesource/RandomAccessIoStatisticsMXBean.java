@@ -0,0 +1,68 @@
+/**
+ * <PRE>
+ * 
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ * 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *   
+ *   
+ *	@author Tony Bringardner   
+ *
+ *
+ * ~version~
+ */
+package us.bringardner.io.filesource;
+
+/**
+ * Counters kept by AbstractRandomAccessIoController.
+ * 
+ */
+public interface RandomAccessIoStatisticsMXBean {
+
+	/**
+	 * @return number of chunks read from the file
+	 */
+	public long getChunkLoads();
+
+	/**
+	 * @return number of chunks written to the file
+	 */
+	public long getChunkSaves();
+
+	public long getBytesRead();
+
+	public long getBytesWritten();
+
+	/**
+	 * @return number of reads and writes that found their chunk in the cache
+	 */
+	public long getCacheHits();
+
+	/**
+	 * @return number of reads and writes that had to load a chunk
+	 */
+	public long getCacheMisses();
+
+	/**
+	 * @return number of chunks read ahead by a background thread
+	 */
+	public long getPrefetchLoads();
+
+	/**
+	 * @return number of chunks read ahead that were used (also counted in chunkLoads)
+	 */
+	public long getPrefetchHits();
+
+}
@@ -28,7 +28,7 @@ package us.bringardner.io.filesource;
 import java.awt.GraphicsEnvironment;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.file.FileSystemLoopException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
@@ -36,7 +36,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Queue;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.BiConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -46,10 +49,8 @@ import javax.swing.JOptionPane;
 import us.bringardner.core.BaseThread;
 import us.bringardner.io.ILineReader;
 import us.bringardner.io.ILineWriter;
-import us.bringardner.io.IStreamMonitor;
 import us.bringardner.io.LFLineReader;
 import us.bringardner.io.LFLineWriter;
-import us.bringardner.io.MonitoredInputStream;
 import us.bringardner.io.filesource.fileproxy.FileProxyFactory;
 
 
@@ -145,98 +146,97 @@ public class Terminal extends BaseThread {
 	 * @throws IOException 
 	 */
 	private void copy(FileSource from, FileSource to,boolean verbose) throws IOException {
-		if(verbose) out.writeLine("Copy "+from+" ->"+to);
-
 		if( !from.exists() ) {
 			throw new IOException("Can't copy from a non existent file:"+from.getAbsolutePath());
 		}
-		if( from.isDirectory()) {
-			if( !to.exists()) {
-				if( !to.mkdirs()) {
-					throw new IOException("Can't create directcory at "+to);				
-				}
-			}
-			FileSource[] kids = from.listFiles();
-			if( kids != null ) {
-				for(FileSource from2 : kids) {
-					FileSource to2 = to.getChild(from2.getName());
-					copy(from2,to2,verbose);
-				}
-			}
-		} else {
-			final long size1 = from.length();
-			final String name = from.getName();
-
-
-			InputStream in = new MonitoredInputStream( from.getInputStream(),(1024*10),new IStreamMonitor() {
+		FileSourceCopier copier = new FileSourceCopier();
+		if( verbose ) {
+			copier.setListener(new FileSourceCopier.ProgressListener() {
 
-				public void update(long total, long transfered) {
-					double perc = ((double)total/(double)size1)*100.0; 
+				@Override
+				public void progress(FileSourceCopier.Progress progress) {
 					try {
-						out.writeLine("update "+name+" size="+size1+" total="+total+" transfered="+transfered+" percent="+perc);
+						writeLine("Copied "+progress);
 					} catch (IOException e) {
 						// Not implemented
 						e.printStackTrace();
-					}					
+					}
 				}
 
-				public void start() {
+				@Override
+				public void completed(FileSource from, FileSource to, long size, long millis) {
+					double seconds = millis/1000.0;
 					try {
-						out.writeLine("Copy started for "+name);
+						writeLine(to.getName()+" seconds "+(seconds)+" size="+size+" bps="+(seconds == 0 ? size : (long)(size/seconds)));
 					} catch (IOException e) {
 						// Not implemented
 						e.printStackTrace();
 					}
 				}
+			});
+		}
 
+		if( !from.isDirectory()) {
+			if(verbose) writeLine("Copy "+from+" ->"+to);
+			FileSource parent = to.getParentFile();
+			if( parent != null && !parent.exists()) {
+				parent.mkdirs();
+			}
+			copier.copy(from, to);
+			return;
+		}
 
-				public void complete(long total) {
-					try {
-						out.writeLine("Copy completed for "+name);
-					} catch (IOException e) {
-						// Not implemented
-						e.printStackTrace();
+		//  The directory each source directory is copied to
+		Map<FileSource, FileSource> targets = new ConcurrentHashMap<>();
+		FileSourceTreeWalker walker = new FileSourceTreeWalker();
+		walker.setFollowLinks(true);
+		try {
+			walker.walk(from, new FileSourceTreeWalker.Visitor() {
+
+				@Override
+				public boolean preVisitDirectory(FileSource dir, FileSource parent, int depth) throws IOException {
+					FileSource target = parent == null ? to : targets.get(parent).getChild(dir.getName());
+					if(verbose) writeLine("Copy "+dir+" ->"+target);
+					if( !target.exists()) {
+						if( !target.mkdirs()) {
+							throw new IOException("Can't create directcory at "+target);				
+						}
 					}
-
+					targets.put(dir, target);
+					return true;
 				}
-			});
 
-			try { 
-				FileSource parent = to.getParentFile();
-				if( parent != null && !parent.exists()) {
-					parent.mkdirs();
+				@Override
+				public void visitFile(FileSource file, FileSource parent, int depth) throws IOException {
+					FileSource target = targets.get(parent).getChild(file.getName());
+					if(verbose) writeLine("Copy "+file+" ->"+target);
+					copier.submit(file, target);
 				}
 
-				OutputStream out2 = to.getOutputStream();
-				long start = System.currentTimeMillis();
-				int size = 0;
-				try {
-					byte data[] = new byte[10*1024];
-					int got = 0;
+				@Override
+				public void postVisitDirectory(FileSource dir, FileSource parent, int depth) throws IOException {
+					targets.remove(dir);
+				}
 
-					while((got=in.read(data)) >=0 ) {
-						size += got;
-						out2.write(data, 0, got);
-					}
-				} finally {
-					try {
-						out2.close();
-					} catch (Exception e) {
+				@Override
+				public void visitFailed(FileSource file, IOException error) throws IOException {
+					if( error instanceof FileSystemLoopException ) {
+						writeLine("Skipping "+file+", it links to a directory that has already been copied");
+					} else {
+						throw error;
 					}
 				}
-				long time = System.currentTimeMillis()-start;
-				double seconds = (time/1000);
-				double bps = size/seconds;
-				if( verbose ) out.writeLine(to.getName()+" seconds "+(seconds)+" size="+size+" bps="+bps);
-			} finally {
-				try {
-					in.close();
-				} catch (Exception e) {
-				}
+			});
+		} catch (IOException e) {
+			//  Let the files already submitted finish before reporting the error
+			try {
+				copier.await();
+			} catch (IOException e1) {
+				e.addSuppressed(e1);
 			}
-
+			throw e;
 		}
-
+		copier.await();
 	}
 
 
@@ -982,47 +982,60 @@ public class Terminal extends BaseThread {
 				return;
 			}
 
-			FileSource[] kids = dir.listFiles();
-			if( kids != null ) {
-
-				for(FileSource file : kids) {
+			FileSourceTreeWalker walker = new FileSourceTreeWalker();
+			walker.setFollowLinks(true);
+			if( !recursive ) {
+				walker.setMaxDepth(1);
+			} else if( depth > 0 ) {
+				//  depth counts from the children of dir  
+				walker.setMaxDepth(depth+1);
+			}
 
-					boolean print = true;
-					if( depth > 0 ) {
-						print = currDepth<=depth;
-					}
-					if( rx != null ) {
-						Matcher m = rx.matcher(file.getName());
-						print =  m.matches();							
-					}
+			walker.walk(dir, new FileSourceTreeWalker.Visitor() {
 
-					if( print && size != null ) {
-						long len = file.length();
-						switch (size.type) {
-						case LessThan: print = len < size.a;break;
-						case LessThanOrEqual: print = len <= size.a;break;
-						case GreterThan: print = len > size.a;break;
-						case GreaterThanOrEqual: print = len >= size.a;break;
-						case Equal: print = len == size.a;break;
-						case Between: print = len >= size.a && len < size.b;break;
-						default:
-							break;
-						}
+				@Override
+				public boolean preVisitDirectory(FileSource file, FileSource parent, int level) throws IOException {
+					visitFile(file, parent, level);
+					return true;
+				}
 
-					}
-					if( print ) {
-						out.writeLine("\t"+file.toString());
+				@Override
+				public void visitFile(FileSource file, FileSource parent, int level) throws IOException {
+					if( level > currDepth && matches(file, rx, size)) {
+						writeLine("\t"+file.toString());
 					}
 				}
 
-				if( recursive ) {
-					for(FileSource file : kids) {
-						if( file.isDirectory()) {
-							search(file,recursive,rx,size,depth, currDepth+1);
-						}
-					}
+				@Override
+				public void visitFailed(FileSource file, IOException error) throws IOException {
+					//  Keep searching
+					writeLine("\tCan't search "+file+" "+error);
+				}
+			});
+		}
+
+		private boolean matches(FileSource file, Pattern rx, Size size) throws IOException {
+			boolean print = true;
+			if( rx != null ) {
+				Matcher m = rx.matcher(file.getName());
+				print =  m.matches();							
+			}
+
+			if( print && size != null ) {
+				long len = file.length();
+				switch (size.type) {
+				case LessThan: print = len < size.a;break;
+				case LessThanOrEqual: print = len <= size.a;break;
+				case GreterThan: print = len > size.a;break;
+				case GreaterThanOrEqual: print = len >= size.a;break;
+				case Equal: print = len == size.a;break;
+				case Between: print = len >= size.a && len < size.b;break;
+				default:
+					break;
 				}
+
 			}
+			return print;
 		}
 
 	}
@@ -1134,6 +1147,40 @@ public class Terminal extends BaseThread {
 		}
 
 		private void delete(FileSource file, boolean recursive, boolean verbose) throws IOException {
+			if( recursive ) {
+				//  Links are not followed so only the link is deleted, not what it points to
+				FileSourceTreeWalker walker = new FileSourceTreeWalker();
+				walker.walk(file, new FileSourceTreeWalker.Visitor() {
+
+					@Override
+					public boolean preVisitDirectory(FileSource dir, FileSource parent, int depth) throws IOException {
+						if( verbose) {
+							writeLine("Deleting "+dir);
+						}
+						return true;
+					}
+
+					@Override
+					public void visitFile(FileSource file, FileSource parent, int depth) throws IOException {
+						if( verbose) {
+							writeLine("Deleting "+file);
+						}
+						if( !file.delete()) {
+							throw new IOException("Can'r delete "+file);
+						}
+					}
+
+					@Override
+					public void postVisitDirectory(FileSource dir, FileSource parent, int depth) throws IOException {
+						//  All of the children are gone
+						if( !dir.delete()) {
+							throw new IOException("Can'r delete "+dir);
+						}
+					}
+				});
+				return;
+			}
+
 			if( verbose) {
 				out.writeLine("Deleting "+file);
 			}
@@ -1141,12 +1188,7 @@ public class Terminal extends BaseThread {
 			if( file.isDirectory() ) {
 				FileSource[] kids = file.listFiles();
 				if( kids != null && kids.length>0) {
-					if( !recursive) {
-						throw new IOException("Can't delete "+file+"\nuse -r to delete directories with contenet.");
-					}
-					for(FileSource f: kids) {
-						delete(f,recursive,verbose);
-					}
+					throw new IOException("Can't delete "+file+"\nuse -r to delete directories with contenet.");
 				}
 			}
 			if( !file.delete()) {
@@ -1165,7 +1207,7 @@ public class Terminal extends BaseThread {
 		}
 
 		public String help() {
-			return "List compunets in a FileSource factory";
+			return "List compunets in a FileSource factory\n\tls [-alR] [#!]path\n\tuse -a to show hidden files, -l for the long format and -R to list sub directories";
 		}
 
 
@@ -1173,11 +1215,13 @@ public class Terminal extends BaseThread {
 
 			boolean showHidden = false;
 			boolean showLong   = false;
+			boolean recursive  = false;
 			List<String> files = new ArrayList<>();
 			for(int idx=1; idx < args.length; idx++ ) {
 				if(args[idx].startsWith("-")) {
 					showHidden = args[idx].contains("a");
 					showLong = args[idx].contains("l");
+					recursive = args[idx].contains("R");
 				} else {
 					files.add(args[idx]);
 				}
@@ -1185,7 +1229,7 @@ public class Terminal extends BaseThread {
 
 			if( files.size() == 0) {
 				FileSource dir = connected.get(currentFactory).getCurrentDirectory();
-				list(dir,showHidden,showLong);			
+				list(dir,showHidden,showLong,recursive);			
 			} else {
 				for(int idx=0,sz=files.size(); idx < sz; idx++ ) {
 					String arg = files.get(idx);
@@ -1196,7 +1240,7 @@ public class Terminal extends BaseThread {
 							List<Object> ret = followPath(val.path, connected.get(val.factory));
 							if( ret != null && ret.size()>0) {						
 								Object obj2 =  ret.get(ret.size()-1);
-								list1(obj2 ,showHidden,showLong);
+								list1(obj2 ,showHidden,showLong,recursive);
 							}
 						}
 					}
@@ -1204,7 +1248,7 @@ public class Terminal extends BaseThread {
 			}
 		}
 
-		private boolean list1(Object obj,boolean showHidden,boolean showLong) throws IOException {
+		private boolean list1(Object obj,boolean showHidden,boolean showLong,boolean recursive) throws IOException {
 			boolean ret = false;
 			if( obj == null ) {
 				out.writeLine("No matches found.");
@@ -1212,10 +1256,10 @@ public class Terminal extends BaseThread {
 				if (obj instanceof List) {
 					List<?> list = (List<?>) obj;
 					for(Object obj2 : list) {
-						ret = list1(obj2,showHidden,showLong);
+						ret = list1(obj2,showHidden,showLong,recursive);
 					} 
 				} else if( obj instanceof FileSource) {
-					list((FileSource)obj,showHidden,showLong);
+					list((FileSource)obj,showHidden,showLong,recursive);
 					ret = true;
 				} else {
 					throw new IllegalStateException("Object is not valid class.  Class  = "+obj.getClass());
@@ -1224,8 +1268,10 @@ public class Terminal extends BaseThread {
 			return ret;
 		}
 
-		private void list(FileSource dir,boolean showHidden,boolean showLong) throws IOException {
-			if( dir.isDirectory()) {
+		private void list(FileSource dir,boolean showHidden,boolean showLong,boolean recursive) throws IOException {
+			if( recursive && dir.isDirectory()) {
+				listRecursive(dir, showHidden, showLong);
+			} else if( dir.isDirectory()) {
 				FileSource[] kids = dir.listFiles();
 				if( kids != null ) {
 					for(FileSource f : kids) {
@@ -1236,6 +1282,59 @@ public class Terminal extends BaseThread {
 				print(dir,showHidden,showLong);
 			}
 		}
+
+		/**
+		 * The tree is read in parallel but printed one directory at a time in name order (like ls -R).
+		 */
+		private void listRecursive(FileSource root,boolean showHidden,boolean showLong) throws IOException {
+			//  The children found in each directory
+			Map<FileSource, Queue<FileSource>> listing = new ConcurrentHashMap<>();
+			FileSourceTreeWalker walker = new FileSourceTreeWalker();
+			walker.walk(root, new FileSourceTreeWalker.Visitor() {
+
+				@Override
+				public boolean preVisitDirectory(FileSource dir, FileSource parent, int depth) throws IOException {
+					if( parent != null ) {
+						visitFile(dir, parent, depth);
+						if( !showHidden && isHidden(dir)) {
+							return false;
+						}
+					}
+					listing.put(dir, new ConcurrentLinkedQueue<>());
+					return true;
+				}
+
+				@Override
+				public void visitFile(FileSource file, FileSource parent, int depth) throws IOException {
+					listing.get(parent).add(file);
+				}
+
+				@Override
+				public void visitFailed(FileSource file, IOException error) throws IOException {
+					writeLine(file+": "+error.getMessage());
+				}
+			});
+
+			printListing(root, listing, showHidden, showLong);
+		}
+
+		private void printListing(FileSource dir, Map<FileSource, Queue<FileSource>> listing, boolean showHidden,boolean showLong) throws IOException {
+			List<FileSource> kids = new ArrayList<>(listing.get(dir));
+			kids.sort((a,b)->a.getName().compareTo(b.getName()));
+			out.writeLine(dir.getAbsolutePath()+":");
+			for(FileSource f : kids) {
+				print(f,showHidden,showLong);
+			}
+			if( !showLong ) {
+				out.writeLine("");
+			}
+			for(FileSource f : kids) {
+				if( listing.containsKey(f)) {
+					out.writeLine("");
+					printListing(f, listing, showHidden, showLong);
+				}
+			}
+		}
 	};
 
 	Map<String,CommandProcessor> procs = new TreeMap<String, CommandProcessor>();
@@ -1616,6 +1715,17 @@ public class Terminal extends BaseThread {
 		}
 	}
 
+	/**
+	 * writeLine for output that can come from more than one thread at a time.  
+	 * @param line
+	 * @throws IOException
+	 */
+	private void writeLine(String line) throws IOException {
+		synchronized (out) {
+			out.writeLine(line);
+		}
+	}
+
 	private boolean isHidden(FileSource file) throws IOException {		
 		boolean ret = file.isHidden() || file.getName().startsWith(".");
 		return ret;
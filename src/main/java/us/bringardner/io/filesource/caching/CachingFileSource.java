@@ -0,0 +1,519 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.caching;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.attribute.GroupPrincipal;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.stream.Stream;
+
+import javax.swing.ProgressMonitor;
+
+import us.bringardner.io.filesource.FileSource;
+import us.bringardner.io.filesource.FileSourceFactory;
+import us.bringardner.io.filesource.FileSourceFilter;
+import us.bringardner.io.filesource.IRandomAccessStream;
+import us.bringardner.io.filesource.ISeekableInputStream;
+
+/**
+ * A FileSource created by a CachingFileSourceFactory.
+ * Content is read through the ContentCache of the factory, everything else is passed on to the wrapped FileSource.
+ * Changes made through this FileSource drop the cached content.
+ */
+public class CachingFileSource implements FileSource {
+
+	private static final long serialVersionUID = 1L;
+
+	private final CachingFileSourceFactory factory;
+	private final FileSource delegate;
+
+	CachingFileSource(CachingFileSourceFactory factory, FileSource delegate) {
+		this.factory = factory;
+		this.delegate = delegate;
+	}
+
+	public FileSource getDelegate() {
+		return delegate;
+	}
+
+	@Override
+	public FileSourceFactory getFileSourceFactory() {
+		return factory;
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		if( !delegate.isFile()) {
+			return delegate.getInputStream();
+		}
+		return new CachingInputStream(this, delegate, factory.getCache());
+	}
+
+	@Override
+	public InputStream getInputStream(long startingPosition) throws IOException {
+		if( !delegate.isFile()) {
+			return delegate.getInputStream(startingPosition);
+		}
+		CachingInputStream ret = new CachingInputStream(this, delegate, factory.getCache());
+		ret.seek(startingPosition);
+		return ret;
+	}
+
+	@Override
+	public ISeekableInputStream getSeekableInputStream() throws IOException {
+		if( !delegate.isFile()) {
+			return delegate.getSeekableInputStream();
+		}
+		return new CachingInputStream(this, delegate, factory.getCache());
+	}
+
+	@Override
+	public IRandomAccessStream getRandomAccessStream(String mode) throws IOException {
+		if( !"r".equals(mode)) {
+			factory.getCache().invalidate(delegate.getAbsolutePath());
+		}
+		return delegate.getRandomAccessStream(mode);
+	}
+
+	@Override
+	public boolean renameTo(FileSource dest) throws IOException {
+		FileSource target = CachingFileSourceFactory.unwrap(dest);
+		factory.getCache().invalidate(delegate.getAbsolutePath());
+		factory.getCache().invalidate(target.getAbsolutePath());
+		return delegate.renameTo(target);
+	}
+
+	@Override
+	public int compareTo(Object o) {
+		if (o instanceof FileSource) {
+			o = CachingFileSourceFactory.unwrap((FileSource) o);
+		}
+		return delegate.compareTo(o);
+	}
+
+	@Override
+	public String getContentType() {
+		return delegate.getContentType();
+	}
+
+	@Override
+	public String getAbsolutePath() {
+		return delegate.getAbsolutePath();
+	}
+
+	@Override
+	public String getName() {
+		return delegate.getName();
+	}
+
+	@Override
+	public String getParent() {
+		return delegate.getParent();
+	}
+
+	@Override
+	public boolean isChildOfMine(FileSource child) throws IOException {
+		return delegate.isChildOfMine(CachingFileSourceFactory.unwrap(child));
+	}
+
+	@Override
+	public Stream<FileSource> streamFiles(FileSourceFilter filter) throws IOException {
+		return delegate.streamFiles(filter).map(factory::wrap);
+	}
+
+	@Override
+	public void dereferenceChilderen() {
+		delegate.dereferenceChilderen();
+	}
+
+	@Override
+	public URL toURL() throws MalformedURLException {
+		return delegate.toURL();
+	}
+
+	@Override
+	public boolean isVersionSupported() throws IOException {
+		return delegate.isVersionSupported();
+	}
+
+	@Override
+	public void refresh() throws IOException {
+		delegate.refresh();
+	}
+
+	@Override
+	public String getTitle() throws IOException {
+		return delegate.getTitle();
+	}
+
+	@Override
+	public long getCreateDate() throws IOException {
+		return delegate.getCreateDate();
+	}
+
+	@Override
+	public boolean canRead() throws IOException {
+		return delegate.canRead();
+	}
+
+	@Override
+	public boolean canWrite() throws IOException {
+		return delegate.canWrite();
+	}
+
+	@Override
+	public boolean canExecute() throws IOException {
+		return delegate.canExecute();
+	}
+
+	@Override
+	public boolean canOwnerRead() throws IOException {
+		return delegate.canOwnerRead();
+	}
+
+	@Override
+	public boolean canOwnerWrite() throws IOException {
+		return delegate.canOwnerWrite();
+	}
+
+	@Override
+	public boolean canOwnerExecute() throws IOException {
+		return delegate.canOwnerExecute();
+	}
+
+	@Override
+	public boolean canGroupRead() throws IOException {
+		return delegate.canGroupRead();
+	}
+
+	@Override
+	public boolean canGroupWrite() throws IOException {
+		return delegate.canGroupWrite();
+	}
+
+	@Override
+	public boolean canGroupExecute() throws IOException {
+		return delegate.canGroupExecute();
+	}
+
+	@Override
+	public boolean canOtherRead() throws IOException {
+		return delegate.canOtherRead();
+	}
+
+	@Override
+	public boolean canOtherWrite() throws IOException {
+		return delegate.canOtherWrite();
+	}
+
+	@Override
+	public boolean canOtherExecute() throws IOException {
+		return delegate.canOtherExecute();
+	}
+
+	@Override
+	public boolean createNewFile() throws IOException {
+		return delegate.createNewFile();
+	}
+
+	@Override
+	public FileSource getChild(String path) throws IOException {
+		return factory.wrap(delegate.getChild(path));
+	}
+
+	@Override
+	public boolean delete() throws IOException {
+		factory.getCache().invalidate(delegate.getAbsolutePath());
+		return delegate.delete();
+	}
+
+	@Override
+	public boolean exists() throws IOException {
+		return delegate.exists();
+	}
+
+	@Override
+	public String getCanonicalPath() throws IOException {
+		return delegate.getCanonicalPath();
+	}
+
+	@Override
+	public FileSource getParentFile() throws IOException {
+		return factory.wrap(delegate.getParentFile());
+	}
+
+	@Override
+	public boolean isDirectory() throws IOException {
+		return delegate.isDirectory();
+	}
+
+	@Override
+	public boolean isFile() throws IOException {
+		return delegate.isFile();
+	}
+
+	@Override
+	public boolean isHidden() throws IOException {
+		return delegate.isHidden();
+	}
+
+	@Override
+	public long length() throws IOException {
+		return delegate.length();
+	}
+
+	@Override
+	public long lastAccessTime() throws IOException {
+		return delegate.lastAccessTime();
+	}
+
+	@Override
+	public long creationTime() throws IOException {
+		return delegate.creationTime();
+	}
+
+	@Override
+	public long lastModified() throws IOException {
+		return delegate.lastModified();
+	}
+
+	@Override
+	public String[] list() throws IOException {
+		return delegate.list();
+	}
+
+	@Override
+	public String[] list(FileSourceFilter filter) throws IOException {
+		return delegate.list(filter);
+	}
+
+	@Override
+	public FileSource[] listFiles() throws IOException {
+		return factory.wrap(delegate.listFiles());
+	}
+
+	@Override
+	public FileSource[] listFiles(FileSourceFilter filter) throws IOException {
+		return factory.wrap(delegate.listFiles(filter));
+	}
+
+	@Override
+	public FileSource[] listFiles(ProgressMonitor progress) throws IOException {
+		return factory.wrap(delegate.listFiles(progress));
+	}
+
+	@Override
+	public boolean mkdir() throws IOException {
+		return delegate.mkdir();
+	}
+
+	@Override
+	public boolean mkdirs() throws IOException {
+		return delegate.mkdirs();
+	}
+
+	@Override
+	public boolean setLastModifiedTime(long time) throws IOException {
+		factory.getCache().invalidate(delegate.getAbsolutePath());
+		return delegate.setLastModifiedTime(time);
+	}
+
+	@Override
+	public boolean setLastAccessTime(long time) throws IOException {
+		return delegate.setLastAccessTime(time);
+	}
+
+	@Override
+	public boolean setCreateTime(long time) throws IOException {
+		return delegate.setCreateTime(time);
+	}
+
+	@Override
+	public boolean setExecutable(boolean b) throws IOException {
+		return delegate.setExecutable(b);
+	}
+
+	@Override
+	public boolean setReadable(boolean b) throws IOException {
+		return delegate.setReadable(b);
+	}
+
+	@Override
+	public boolean setWritable(boolean b) throws IOException {
+		return delegate.setWritable(b);
+	}
+
+	@Override
+	public boolean setExecutable(boolean b, boolean ownerOnly) throws IOException {
+		return delegate.setExecutable(b, ownerOnly);
+	}
+
+	@Override
+	public boolean setReadable(boolean b, boolean ownerOnly) throws IOException {
+		return delegate.setReadable(b, ownerOnly);
+	}
+
+	@Override
+	public boolean setWritable(boolean b, boolean ownerOnly) throws IOException {
+		return delegate.setWritable(b, ownerOnly);
+	}
+
+	@Override
+	public boolean setOwnerExecutable(boolean b) throws IOException {
+		return delegate.setOwnerExecutable(b);
+	}
+
+	@Override
+	public boolean setOwnerReadable(boolean b) throws IOException {
+		return delegate.setOwnerReadable(b);
+	}
+
+	@Override
+	public boolean setOwnerWritable(boolean b) throws IOException {
+		return delegate.setOwnerWritable(b);
+	}
+
+	@Override
+	public boolean setGroupExecutable(boolean b) throws IOException {
+		return delegate.setGroupExecutable(b);
+	}
+
+	@Override
+	public boolean setGroupReadable(boolean b) throws IOException {
+		return delegate.setGroupReadable(b);
+	}
+
+	@Override
+	public boolean setGroupWritable(boolean b) throws IOException {
+		return delegate.setGroupWritable(b);
+	}
+
+	@Override
+	public boolean setOtherExecutable(boolean b) throws IOException {
+		return delegate.setOtherExecutable(b);
+	}
+
+	@Override
+	public boolean setOtherReadable(boolean b) throws IOException {
+		return delegate.setOtherReadable(b);
+	}
+
+	@Override
+	public boolean setOtherWritable(boolean b) throws IOException {
+		return delegate.setOtherWritable(b);
+	}
+
+	@Override
+	public boolean setReadOnly() throws IOException {
+		return delegate.setReadOnly();
+	}
+
+	@Override
+	public OutputStream getOutputStream() throws IOException {
+		factory.getCache().invalidate(delegate.getAbsolutePath());
+		return delegate.getOutputStream();
+	}
+
+	@Override
+	public OutputStream getOutputStream(boolean append) throws IOException {
+		factory.getCache().invalidate(delegate.getAbsolutePath());
+		return delegate.getOutputStream(append);
+	}
+
+	@Override
+	public long getVersion() throws IOException {
+		return delegate.getVersion();
+	}
+
+	@Override
+	public long getVersionDate() throws IOException {
+		return delegate.getVersionDate();
+	}
+
+	@Override
+	public boolean setVersionDate(long time) throws IOException {
+		return delegate.setVersionDate(time);
+	}
+
+	@Override
+	public boolean setVersion(long version, boolean saveChange) throws IOException {
+		factory.getCache().invalidate(delegate.getAbsolutePath());
+		return delegate.setVersion(version, saveChange);
+	}
+
+	@Override
+	public long getMaxVersion() throws IOException {
+		return delegate.getMaxVersion();
+	}
+
+	@Override
+	public FileSource getLinkedTo() throws IOException {
+		return factory.wrap(delegate.getLinkedTo());
+	}
+
+	@Override
+	public GroupPrincipal getGroup() throws IOException {
+		return delegate.getGroup();
+	}
+
+	@Override
+	public boolean setGroup(GroupPrincipal group) throws IOException {
+		return delegate.setGroup(group);
+	}
+
+	@Override
+	public UserPrincipal getOwner() throws IOException {
+		return delegate.getOwner();
+	}
+
+	@Override
+	public boolean setOwner(UserPrincipal owner) throws IOException {
+		return delegate.setOwner(owner);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof CachingFileSource) {
+			obj = ((CachingFileSource) obj).delegate;
+		}
+		return delegate.equals(obj);
+	}
+
+	@Override
+	public int hashCode() {
+		return delegate.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return delegate.toString();
+	}
+
+}
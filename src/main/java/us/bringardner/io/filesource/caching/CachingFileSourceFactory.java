@@ -0,0 +1,223 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.caching;
+
+import java.awt.Component;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Properties;
+
+import us.bringardner.io.filesource.FileSource;
+import us.bringardner.io.filesource.FileSourceFactory;
+import us.bringardner.io.filesource.FileSourceUser;
+
+/**
+ * Wraps a (slow) FileSourceFactory and keeps the content read through the FileSources it returns in a ContentCache,
+ * so reading a file again (or any part of it that has been read) does not go back to the wrapped factory
+ * as long as the length and last modified time of the file have not changed.
+ *
+ * Only content is cached, attributes, listings and writes go to the wrapped factory.
+ * The type id, URL and connection properties are those of the wrapped factory.
+ * Copies made with createThreadSafeCopy share the cache of the original.
+ */
+public class CachingFileSourceFactory extends FileSourceFactory {
+
+	private static final long serialVersionUID = 1L;
+
+	private final FileSourceFactory delegate;
+	private final ContentCache cache;
+
+	/**
+	 * Cache up to ContentCache.DEFAULT_MAX_BYTES in memory
+	 * @param delegate
+	 * @throws IOException
+	 */
+	public CachingFileSourceFactory(FileSourceFactory delegate) throws IOException {
+		this(delegate, new ContentCache());
+	}
+
+	public CachingFileSourceFactory(FileSourceFactory delegate, ContentCache cache) {
+		if( delegate == null ) {
+			throw new IllegalArgumentException("No factory to cache");
+		}
+		this.delegate = delegate;
+		this.cache = cache;
+	}
+
+	public FileSourceFactory getDelegate() {
+		return delegate;
+	}
+
+	public ContentCache getCache() {
+		return cache;
+	}
+
+	FileSource wrap(FileSource file) {
+		FileSource ret = file;
+		if( file != null && !(file instanceof CachingFileSource)) {
+			ret = new CachingFileSource(this, file);
+		}
+		return ret;
+	}
+
+	FileSource[] wrap(FileSource[] files) {
+		FileSource[] ret = null;
+		if( files != null ) {
+			//  files may be an array of the wrapped type
+			ret = new FileSource[files.length];
+			for (int idx = 0; idx < files.length; idx++) {
+				ret[idx] = wrap(files[idx]);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @param file
+	 * @return the FileSource wrapped by file or file if it's not a CachingFileSource
+	 */
+	public static FileSource unwrap(FileSource file) {
+		if (file instanceof CachingFileSource) {
+			return ((CachingFileSource) file).getDelegate();
+		}
+		return file;
+	}
+
+	@Override
+	public FileSource[] listRoots() throws IOException {
+		return wrap(delegate.listRoots());
+	}
+
+	@Override
+	public FileSource getCurrentDirectory() throws IOException {
+		return wrap(delegate.getCurrentDirectory());
+	}
+
+	@Override
+	public boolean isVersionSupported() {
+		return delegate.isVersionSupported();
+	}
+
+	@Override
+	public void setCurrentDirectory(FileSource dir) throws IOException {
+		delegate.setCurrentDirectory(unwrap(dir));
+	}
+
+	@Override
+	public FileSource createFileSource(String fullPath) throws IOException {
+		return wrap(delegate.createFileSource(fullPath));
+	}
+
+	@Override
+	public String getTypeId() {
+		return delegate.getTypeId();
+	}
+
+	@Override
+	public boolean isConnected() {
+		return delegate.isConnected();
+	}
+
+	@Override
+	protected boolean connectImpl() throws IOException {
+		return delegate.connect();
+	}
+
+	@Override
+	public Component getEditPropertiesComponent() {
+		return delegate.getEditPropertiesComponent();
+	}
+
+	@Override
+	protected void disConnectImpl() throws IOException {
+		delegate.disConnect();
+	}
+
+	@Override
+	public FileSourceFactory createThreadSafeCopy() {
+		FileSourceFactory copy = delegate.createThreadSafeCopy();
+		if( copy == delegate ) {
+			return this;
+		}
+		return new CachingFileSourceFactory(copy, cache);
+	}
+
+	@Override
+	public Properties getConnectProperties() {
+		return delegate.getConnectProperties();
+	}
+
+	@Override
+	public char getPathSeperatorChar() {
+		return delegate.getPathSeperatorChar();
+	}
+
+	@Override
+	public char getSeperatorChar() {
+		return delegate.getSeperatorChar();
+	}
+
+	@Override
+	public FileSource createSymbolicLink(FileSource newFileLink, FileSource existingFile) throws IOException {
+		return wrap(delegate.createSymbolicLink(unwrap(newFileLink), unwrap(existingFile)));
+	}
+
+	@Override
+	public FileSource createLink(FileSource newFileLink, FileSource existingFile) throws IOException {
+		return wrap(delegate.createLink(unwrap(newFileLink), unwrap(existingFile)));
+	}
+
+	@Override
+	public void setConnectionProperties(URL url) {
+		delegate.setConnectionProperties(url);
+	}
+
+	@Override
+	public void setConnectionProperties(Properties prop) {
+		delegate.setConnectionProperties(prop);
+	}
+
+	@Override
+	public String getTitle() {
+		return delegate.getTitle();
+	}
+
+	@Override
+	public String getURL() {
+		return delegate.getURL();
+	}
+
+	@Override
+	public FileSourceUser whoAmI() {
+		return delegate.whoAmI();
+	}
+
+	@Override
+	public String toString() {
+		return "Caching "+delegate;
+	}
+
+}
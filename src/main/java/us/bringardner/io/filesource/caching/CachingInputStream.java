@@ -0,0 +1,174 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.caching;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import us.bringardner.core.util.LogHelper;
+import us.bringardner.io.filesource.FileSource;
+import us.bringardner.io.filesource.ISeekableInputStream;
+
+/**
+ * Reads the content of a file from the ContentCache and reads (and caches) the ranges that are missing from the file.
+ * The stream to the file is kept open while the reads are sequential and only reopened after a seek or a cached range.
+ * Caching is best effort, if the cache can't be written the entry is dropped and the bytes read from the file are still returned.
+ */
+class CachingInputStream extends InputStream implements ISeekableInputStream {
+
+	private static final LogHelper logger = new LogHelper(CachingInputStream.class);
+
+	private final FileSource file;
+	private final FileSource origin;
+	private final ContentCache cache;
+	private final ContentCache.Entry entry;
+	private final byte [] one = new byte[1];
+	private long pos;
+	private InputStream remote;
+	private long remotePos;
+	private boolean closed;
+
+	/**
+	 * @param file returned by getFile
+	 * @param origin the wrapped FileSource the content is read from
+	 * @param cache
+	 * @throws IOException
+	 */
+	CachingInputStream(FileSource file, FileSource origin, ContentCache cache) throws IOException {
+		this.file = file;
+		this.origin = origin;
+		this.cache = cache;
+		//  The attributes may have been cached by the wrapped FileSource
+		origin.refresh();
+		entry = cache.open(origin.getAbsolutePath(), origin.length(), origin.lastModified());
+	}
+
+	@Override
+	public int read() throws IOException {
+		int ret = read(one, 0, 1);
+		return ret < 0 ? -1 : one[0] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if( closed ) {
+			throw new IOException("Stream closed");
+		}
+		if( len == 0 ) {
+			return 0;
+		}
+		long length = entry.getLength();
+		if( pos >= length ) {
+			return -1;
+		}
+		len = (int) Math.min(len, length-pos);
+		int ret = cache.read(entry, pos, b, off, len);
+		if( ret < 0 ) {
+			int toRead = (int) Math.min(len, cache.getMissing(entry, pos));
+			if( remote == null || remotePos != pos ) {
+				closeRemote();
+				remote = origin.getInputStream(pos);
+				remotePos = pos;
+			}
+			ret = remote.read(b, off, toRead);
+			if( ret < 0 ) {
+				//  The file is shorter than it was when the stream was opened
+				return -1;
+			}
+			remotePos += ret;
+			try {
+				cache.write(entry, pos, b, off, ret);
+			} catch (IOException e) {
+				logger.logError("Can't cache "+origin, e);
+				cache.invalidate(entry);
+			}
+		}
+		pos += ret;
+
+		return ret;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long start = pos;
+		seek(Math.max(0, Math.min(entry.getLength(), pos+n)));
+		return pos-start;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return (int) Math.min(Integer.MAX_VALUE, entry.getLength()-pos);
+	}
+
+	@Override
+	public long length() throws IOException {
+		return entry.getLength();
+	}
+
+	@Override
+	public void seek(long pos) throws IOException {
+		if( pos < 0 ) {
+			throw new IOException("Invalid position "+pos);
+		}
+		this.pos = pos;
+	}
+
+	@Override
+	public long getFilePointer() throws IOException {
+		return pos;
+	}
+
+	@Override
+	public FileSource getFile() throws IOException {
+		return file;
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		return this;
+	}
+
+	private void closeRemote() throws IOException {
+		if( remote != null ) {
+			InputStream tmp = remote;
+			remote = null;
+			tmp.close();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if( !closed ) {
+			closed = true;
+			try {
+				closeRemote();
+			} finally {
+				cache.close(entry);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,455 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.caching;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import us.bringardner.core.util.LogHelper;
+import us.bringardner.io.filesource.FileSource;
+import us.bringardner.io.filesource.IRandomAccessStream;
+import us.bringardner.io.filesource.memory.MemoryFileSourceFactory;
+
+/**
+ * The content of remote files kept in a local directory (a FileProxy or memory directory).
+ *
+ * Each file has an Entry holding the ranges of it's content that have been read, so a stream
+ * that starts in the middle of a file or seeks only caches what it reads.
+ * An Entry is only used while the length and last modified time of the file match the ones it was created with.
+ *
+ * The cache is bounded by the total bytes held, when it is full the least recently used entries 
+ * that are not being read are removed.
+ */
+public class ContentCache {
+
+	public static final long DEFAULT_MAX_BYTES = 1024*1024*64;
+	private static final String PREFIX = "content-";
+	private static final String SUFFIX = ".cache";
+	private static final LogHelper logger = new LogHelper(ContentCache.class);
+
+	/**
+	 * The cached content of one file
+	 */
+	class Entry {
+		final String key;
+		final long length;
+		final long lastModified;
+		final FileSource file;
+		//  Cached ranges start -> end (exclusive), they never overlap or touch
+		final TreeMap<Long, Long> ranges = new TreeMap<>();
+		long cachedBytes;
+		IRandomAccessStream stream;
+		//  These are guarded by the cache
+		int users;
+		volatile boolean removed;
+		//  The part of cachedBytes included in the cache's totalBytes
+		long countedBytes;
+
+		Entry(String key, long length, long lastModified, FileSource file) {
+			this.key = key;
+			this.length = length;
+			this.lastModified = lastModified;
+			this.file = file;
+		}
+
+		long getLength() {
+			return length;
+		}
+
+		/**
+		 * @param pos
+		 * @return the end of the cached range that holds pos or -1
+		 */
+		long getCachedEnd(long pos) {
+			Map.Entry<Long, Long> range = ranges.floorEntry(pos);
+			return range != null && range.getValue() > pos ? range.getValue() : -1;
+		}
+
+		/**
+		 * @param pos
+		 * @return the start of the next cached range after pos or length
+		 */
+		long getNextStart(long pos) {
+			Long ret = ranges.higherKey(pos);
+			return ret == null ? length : ret;
+		}
+
+		/**
+		 * @param start
+		 * @param end
+		 * @return the number of bytes that were not already in a range
+		 */
+		long add(long start, long end) {
+			long before = cachedBytes;
+			Map.Entry<Long, Long> range = ranges.floorEntry(start);
+			if( range != null && range.getValue() >= start ) {
+				start = range.getKey();
+				end = Math.max(end, range.getValue());
+				cachedBytes -= range.getValue()-range.getKey();
+				ranges.remove(range.getKey());
+			}
+			Map.Entry<Long, Long> next = null;
+			while( (next = ranges.ceilingEntry(start)) != null && next.getKey() <= end ) {
+				end = Math.max(end, next.getValue());
+				cachedBytes -= next.getValue()-next.getKey();
+				ranges.remove(next.getKey());
+			}
+			ranges.put(start, end);
+			cachedBytes += end-start;
+			return cachedBytes-before;
+		}
+
+		IRandomAccessStream getStream() throws IOException {
+			if( stream == null ) {
+				if( !file.exists()) {
+					//  Not every FileSource supports createNewFile
+					file.getOutputStream().close();
+				}
+				stream = file.getRandomAccessStream("rw");
+				stream.setLength(length);
+			}
+			return stream;
+		}
+
+		/**
+		 * Close and delete the cache file
+		 */
+		synchronized void discard() {
+			try {
+				if( stream != null ) {
+					stream.close();
+					stream = null;
+				}
+				if( file.exists() && !file.delete()) {
+					logger.logError("Can't delete cache file "+file);
+				}
+			} catch (IOException e) {
+				logger.logError("Can't delete cache file "+file, e);
+			}
+			ranges.clear();
+		}
+	}
+
+	private final FileSource dir;
+	private volatile long maxBytes;
+	//  Least recently used first
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long totalBytes;
+	private long nextId;
+	private long bytesFromCache;
+	private long bytesFromOrigin;
+	private long evictions;
+	private long invalidations;
+
+	/**
+	 * Cache up to DEFAULT_MAX_BYTES in memory.
+	 * @throws IOException
+	 */
+	public ContentCache() throws IOException {
+		this(new MemoryFileSourceFactory().createFileSource("/contentCache"), DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * @param dir where the cached content is kept, it's created if needed.  
+	 * Files left by an earlier cache in the same directory are deleted because the ranges they hold are not known.
+	 * @param maxBytes most bytes of content kept
+	 * @throws IOException
+	 */
+	public ContentCache(FileSource dir, long maxBytes) throws IOException {
+		if( maxBytes < 1 ) {
+			throw new IllegalArgumentException("Invalid max bytes "+maxBytes);
+		}
+		this.dir = dir;
+		this.maxBytes = maxBytes;
+		if( !dir.exists() && !dir.mkdirs()) {
+			throw new IOException("Can't create cache directory "+dir);
+		}
+		FileSource [] kids = dir.listFiles();
+		if( kids != null ) {
+			for(FileSource kid : kids) {
+				String name = kid.getName();
+				if( name.startsWith(PREFIX) && name.endsWith(SUFFIX) && !kid.delete()) {
+					throw new IOException("Can't delete old cache file "+kid);
+				}
+			}
+		}
+	}
+
+	public FileSource getDirectory() {
+		return dir;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public void setMaxBytes(long maxBytes) {
+		if( maxBytes < 1 ) {
+			throw new IllegalArgumentException("Invalid max bytes "+maxBytes);
+		}
+		this.maxBytes = maxBytes;
+		discard(evict());
+	}
+
+	/**
+	 * Get the entry for key and mark it in use until close is called.
+	 * 
+	 * @param key
+	 * @param length of the file now
+	 * @param lastModified of the file now
+	 * @return the entry for key, a new one if the file has changed
+	 * @throws IOException
+	 */
+	Entry open(String key, long length, long lastModified) throws IOException {
+		Entry old = null;
+		Entry ret = null;
+		synchronized (this) {
+			ret = entries.get(key);
+			if( ret != null && (ret.length != length || ret.lastModified != lastModified)) {
+				old = remove(ret);
+				invalidations++;
+				ret = null;
+			}
+			if( ret == null ) {
+				ret = new Entry(key, length, lastModified, dir.getChild(PREFIX+(nextId++)+SUFFIX));
+				entries.put(key, ret);
+			}
+			ret.users++;
+		}
+		discard(old);
+		return ret;
+	}
+
+	void close(Entry entry) {
+		List<Entry> list = null;
+		synchronized (this) {
+			entry.users--;
+			list = evict();
+			if( entry.removed && entry.users == 0 ) {
+				list.add(entry);
+			}
+		}
+		discard(list);
+	}
+
+	/**
+	 * Drop the cached content of key, called when the file is changed through the cache.
+	 * @param key
+	 */
+	public void invalidate(String key) {
+		Entry old = null;
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if( entry != null ) {
+				old = remove(entry);
+				invalidations++;
+			}
+		}
+		discard(old);
+	}
+
+	/**
+	 * Drop entry if it's still the cached content of it's key, called when the cache file can't be written.
+	 * @param entry
+	 */
+	void invalidate(Entry entry) {
+		Entry old = null;
+		synchronized (this) {
+			if( !entry.removed && entries.get(entry.key) == entry ) {
+				old = remove(entry);
+				invalidations++;
+			}
+		}
+		discard(old);
+	}
+
+	public void clear() {
+		List<Entry> list = new ArrayList<>();
+		synchronized (this) {
+			for(Entry entry : new ArrayList<>(entries.values())) {
+				Entry old = remove(entry);
+				if( old != null ) {
+					list.add(old);
+				}
+			}
+		}
+		discard(list);
+	}
+
+	/**
+	 * Remove entry from the map, must be called while synchronized.
+	 * @return entry if it can be discarded now, null if it's still in use.
+	 */
+	private Entry remove(Entry entry) {
+		entries.remove(entry.key);
+		entry.removed = true;
+		totalBytes -= entry.countedBytes;
+		return entry.users == 0 ? entry : null;
+	}
+
+	/**
+	 * Remove least recently used entries until the cache is under maxBytes, must be called while synchronized.
+	 * @return the removed entries
+	 */
+	private List<Entry> evict() {
+		List<Entry> ret = new ArrayList<>();
+		Iterator<Entry> it = entries.values().iterator();
+		while( totalBytes > maxBytes && it.hasNext()) {
+			Entry entry = it.next();
+			if( entry.users == 0 ) {
+				it.remove();
+				entry.removed = true;
+				totalBytes -= entry.countedBytes;
+				evictions++;
+				ret.add(entry);
+			}
+		}
+		return ret;
+	}
+
+	private void discard(Entry entry) {
+		if( entry != null ) {
+			entry.discard();
+		}
+	}
+
+	private void discard(List<Entry> list) {
+		for(Entry entry : list) {
+			entry.discard();
+		}
+	}
+
+	/**
+	 * Read from the cache.
+	 * 
+	 * @return number of bytes read or -1 if pos is not cached
+	 * @throws IOException
+	 */
+	int read(Entry entry, long pos, byte[] b, int off, int len) throws IOException {
+		int ret = -1;
+		synchronized (entry) {
+			long end = entry.getCachedEnd(pos);
+			if( end > pos ) {
+				ret = (int) Math.min(len, end-pos);
+				IRandomAccessStream stream = entry.getStream();
+				stream.seek(pos);
+				stream.readFully(b, off, ret);
+			}
+		}
+		if( ret > 0 ) {
+			synchronized (this) {
+				bytesFromCache += ret;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the number of bytes after pos that are not cached
+	 */
+	long getMissing(Entry entry, long pos) {
+		synchronized (entry) {
+			return entry.getNextStart(pos)-pos;
+		}
+	}
+
+	/**
+	 * Save content read from the file.
+	 * @throws IOException
+	 */
+	void write(Entry entry, long pos, byte[] b, int off, int len) throws IOException {
+		long added = 0;
+		synchronized (entry) {
+			if( entry.removed ) {
+				//  The file changed or the entry was evicted while it was being read
+				return;
+			}
+			IRandomAccessStream stream = entry.getStream();
+			stream.seek(pos);
+			stream.write(b, off, len);
+			added = entry.add(pos, pos+len);
+		}
+		List<Entry> list = null;
+		synchronized (this) {
+			bytesFromOrigin += len;
+			if( !entry.removed ) {
+				//  cachedBytes is guarded by the entry so the cache only uses the bytes it has counted
+				entry.countedBytes += added;
+				totalBytes += added;
+			}
+			list = evict();
+		}
+		discard(list);
+	}
+
+	/**
+	 * @return bytes of content held
+	 */
+	public synchronized long getTotalBytes() {
+		return totalBytes;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getBytesFromCache() {
+		return bytesFromCache;
+	}
+
+	/**
+	 * @return bytes read from the wrapped factory
+	 */
+	public synchronized long getBytesFromOrigin() {
+		return bytesFromOrigin;
+	}
+
+	/**
+	 * @return number of entries removed to stay under maxBytes
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return number of entries removed because the file changed
+	 */
+	public synchronized long getInvalidations() {
+		return invalidations;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "size="+entries.size()+" totalBytes="+totalBytes+" maxBytes="+maxBytes+" bytesFromCache="+bytesFromCache
+				+" bytesFromOrigin="+bytesFromOrigin+" evictions="+evictions+" invalidations="+invalidations;
+	}
+
+}
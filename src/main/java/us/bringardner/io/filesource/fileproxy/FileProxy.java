@@ -36,12 +36,18 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
 import java.nio.file.Path;
-import java.nio.file.attribute.BasicFileAttributeView;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileOwnerAttributeView;
 import java.nio.file.attribute.FileTime;
@@ -53,7 +59,12 @@ import java.nio.file.attribute.UserPrincipal;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.swing.ProgressMonitor;
 
@@ -61,8 +72,11 @@ import us.bringardner.io.filesource.FileSource;
 import us.bringardner.io.filesource.FileSourceFactory;
 import us.bringardner.io.filesource.FileSourceFilter;
 import us.bringardner.io.filesource.FileSourceRandomAccessStream;
+import us.bringardner.io.filesource.FileSourceUser;
+import us.bringardner.io.filesource.IRandomAccessIoController;
 import us.bringardner.io.filesource.IRandomAccessStream;
 import us.bringardner.io.filesource.ISeekableInputStream;
+import us.bringardner.io.filesource.fileproxy.FileProxyFactory.RandomAccessIo;
 
 
 /**
@@ -107,24 +121,75 @@ public class FileProxy implements FileSource {
 		public boolean setGroup(GroupPrincipal group) throws IOException; 
 	}
 
+	/**
+	 * Permissions come from the attribute snapshot rather than a stat for each call
+	 * (java.io.File is only used if the file system does not have POSIX attributes).
+	 */
 	private class PosixPermissionManager implements PermissionManager {
+
+		/**
+		 * Decide if the local user has a permission the way access(2) does, 
+		 * from the owner, group and mode of the file a link points to.
+		 * @return false if the file does not exist
+		 */
+		private boolean canAccess(PosixFilePermission owner, PosixFilePermission group, PosixFilePermission other) throws IOException {
+			Attributes a = getAttributes();
+			if( !(a.data instanceof PosixFileAttributes)) {
+				return false;
+			}
+			PosixFileAttributes attr = (PosixFileAttributes) a.data;
+			Set<PosixFilePermission> perms = attr.permissions();
+			FileSourceUser me = getFileSourceFactory().whoAmI();
+			if( me.getId() == 0 && "root".equals(me.getName())) {
+				//  root can read and write anything and execute anything that is executable by someone
+				return owner != PosixFilePermission.OWNER_EXECUTE 
+						|| attr.isDirectory()
+						|| perms.contains(owner) || perms.contains(group) || perms.contains(other);
+			}
+			switch (me.getAccess(attr.owner().getName(), attr.group().getName())) {
+			case Owner:
+				return perms.contains(owner);
+			case Group:
+				return perms.contains(group);
+			default:
+				return perms.contains(other);
+			}
+		}
+
+		/**
+		 * @return true if the file has the permission, false if it does not exist
+		 */
+		private boolean hasPermission(PosixFilePermission p) throws IOException {
+			PosixFileAttributes attr = getAttributes().posix();
+			return attr != null && attr.permissions().contains(p);
+		}
+
 		/* (non-Javadoc)
 		 * @see us.bringardner.io.FileSource#canRead()
 		 */
 		public boolean canRead() throws IOException {
-			return target.canRead();
+			if( !Attributes.POSIX ) {
+				return target.canRead();
+			}
+			return canAccess(PosixFilePermission.OWNER_READ, PosixFilePermission.GROUP_READ, PosixFilePermission.OTHERS_READ);
 		}
 
 		/* (non-Javadoc)
 		 * @see us.bringardner.io.FileSource#canWrite()
 		 */
-		public boolean canWrite() {
-			return target.canWrite();
+		public boolean canWrite() throws IOException {
+			if( !Attributes.POSIX ) {
+				return target.canWrite();
+			}
+			return canAccess(PosixFilePermission.OWNER_WRITE, PosixFilePermission.GROUP_WRITE, PosixFilePermission.OTHERS_WRITE);
 		}
 		
 		@Override
 		public boolean canExecute() throws IOException {
-			return target.canExecute();
+			if( !Attributes.POSIX ) {
+				return target.canExecute();
+			}
+			return canAccess(PosixFilePermission.OWNER_EXECUTE, PosixFilePermission.GROUP_EXECUTE, PosixFilePermission.OTHERS_EXECUTE);
 		}
 
 		@Override
@@ -139,11 +204,11 @@ public class FileProxy implements FileSource {
 
 		@Override
 		public boolean canOwnerRead() throws IOException {		 
-			return canRead();
+			return hasPermission(PosixFilePermission.OWNER_READ);
 		}
 		@Override
 		public boolean canOwnerWrite() throws IOException {		
-			return canWrite();
+			return hasPermission(PosixFilePermission.OWNER_WRITE);
 		}
 		@Override
 		public boolean canGroupRead() throws IOException {
@@ -333,28 +398,179 @@ public class FileProxy implements FileSource {
 
 	}
 
+	/**
+	 * An immutable copy of the file attributes.  
+	 * 
+	 * On a POSIX file system everything comes from one readAttributes call, 
+	 * a second call is only needed to follow a symbolic link.
+	 * The link attributes are used for permissions and group (like ls -l),
+	 * everything else comes from the file the link points to (like java.io.File).
+	 */
+	private static class Attributes {
+		private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+		final long loadTime = System.currentTimeMillis();
+		//  Read before the attributes so a change made while they are read expires them
+		final long changeCount = FileProxy.changeCount.get();
+		final int changeSlot;
+		final long pathChangeCount;
+		final BasicFileAttributes link;
+		final BasicFileAttributes data;
+
+		Attributes(File target, int changeSlot) {
+			this(toPath(target), changeSlot);
+		}
+
+		Attributes(Path path, int changeSlot) {
+			this.changeSlot = changeSlot;
+			pathChangeCount = pathChangeCounts.get(changeSlot);
+			link = path == null ? null : read(path,LinkOption.NOFOLLOW_LINKS);
+			data = link != null && link.isSymbolicLink() ? read(path) : link;
+		}
+
+		private static Path toPath(File target) {
+			Path ret = null;
+			try {
+				ret = target.toPath();
+			} catch (InvalidPathException e) {
+				// Not a valid path so it does not exist
+			}
+			return ret;
+		}
+
+		private static BasicFileAttributes read(Path path,LinkOption ...options) {
+			BasicFileAttributes ret = null;
+			try {
+				if( POSIX ) {
+					ret = Files.readAttributes(path, PosixFileAttributes.class,options);
+				} else {
+					ret = Files.readAttributes(path, BasicFileAttributes.class,options);
+				}
+			} catch (IOException | UnsupportedOperationException e) {
+				// does not exist or can't be read
+			}
+			return ret;
+		}
+
+		boolean isExpired(long ttl) {
+			return ttl <= 0 
+					|| changeCount != FileProxy.changeCount.get() 
+					|| pathChangeCount != pathChangeCounts.get(changeSlot) 
+					|| System.currentTimeMillis()-loadTime >= ttl;
+		}
+
+		boolean exists() {
+			return data != null;
+		}
+
+		PosixFileAttributes posix() {
+			return link instanceof PosixFileAttributes ? (PosixFileAttributes) link : null;
+		}
+	}
+
 	private static final long serialVersionUID = 1L;
+	//  Incremented by refreshAll 
+	private static final AtomicLong changeCount = new AtomicLong();
+	//  Incremented when a FileProxy changes a file or one of it's children.
+	//  Paths are hashed into a fixed number of slots so this does not grow, a collision only costs an extra read.  
+	private static final int CHANGE_SLOTS = 4096;
+	private static final AtomicLongArray pathChangeCounts = new AtomicLongArray(CHANGE_SLOTS);
 	File target; 
+	private final int changeSlot;
 	private String name;
 	private FileSourceFactory theCreator ;
 	private GroupPrincipal group;
 	private UserPrincipal owner;
 	private PermissionManager permissions;
+	private volatile Attributes attributes;
 
 	public FileProxy(File target,FileSourceFactory creator) {
 		permissions= FileSourceFactory.isWindows()?new WindowsPermissionManager(target): new PosixPermissionManager();
 		this.target = target;
 		this.theCreator = creator;
+		changeSlot = getChangeSlot(target.getAbsolutePath());
+	}
+
+	private static int getChangeSlot(String path) {
+		int h = path.hashCode();
+		return (h ^ (h >>> 16)) & (CHANGE_SLOTS-1);
+	}
+
+	/**
+	 * Discard the attributes held for file and it's parent directory by every FileProxy.
+	 * A file reached through a link is only refreshed when the attribute ttl expires.
+	 * Call this after changing a local file some other way (a FileChannel for example).
+	 * @param file
+	 */
+	public static void refresh(File file) {
+		File abs = file.getAbsoluteFile();
+		pathChangeCounts.incrementAndGet(getChangeSlot(abs.getPath()));
+		String parent = abs.getParent();
+		if( parent != null ) {
+			pathChangeCounts.incrementAndGet(getChangeSlot(parent));
+		}
+	}
+
+	/**
+	 * @param file
+	 * @return the FileProxy for file, interned if the factory has a file cache
+	 */
+	private FileProxy newProxy(File file) {
+		if (theCreator instanceof FileProxyFactory) {
+			return ((FileProxyFactory) theCreator).getFileProxy(file);
+		}
+		return new FileProxy(file, theCreator);
+	}
+
+	/**
+	 * @return the attributes read from the file system no more than attributeTtl milliseconds ago. 
+	 */
+	private Attributes getAttributes() {
+		Attributes ret = attributes;
+		if( ret == null || ret.isExpired(getAttributeTtl())) {
+			attributes = ret = new Attributes(target, changeSlot);
+		}
+		return ret;
+	}
+
+	private long getAttributeTtl() {
+		FileSourceFactory factory = getFileSourceFactory();
+		if (factory instanceof FileProxyFactory) {
+			return ((FileProxyFactory) factory).getAttributeTtl();
+		}
+		return FileProxyFactory.getDefaultAttributeTtl();
+	}
+
+	/**
+	 * Discard the attributes held by every FileProxy.
+	 * Changes made through a FileProxy only discard the attributes of the file and it's parent,
+	 * call this after changing local files some other way (java.io.File, java.nio.file.Files ...).  
+	 */
+	public static void refreshAll() {
+		changeCount.incrementAndGet();
 	}
 
-	private synchronized	Set<PosixFilePermission> getPosixPermissions() throws IOException {
+	/**
+	 * Discard the attributes after a change made through this object.
+	 * More than one FileProxy can point to the same file so they are all discarded.
+	 * @param ret
+	 * @return ret
+	 */
+	private boolean changed(boolean ret) {
+		attributes = null;
+		refresh(target);
+		return ret;
+	}
+
+	private Set<PosixFilePermission> getPosixPermissions() throws IOException {
+		Attributes a = getAttributes();
+		if( a.link == null ) {
+			throw new NoSuchFileException(target.getPath());
+		}
 		Set<PosixFilePermission> ret = new HashSet<PosixFilePermission>() ;
-		PosixFileAttributeView view2 = Files.getFileAttributeView(target.toPath(), PosixFileAttributeView.class,LinkOption.NOFOLLOW_LINKS);
-		if (view2 != null) {
-			PosixFileAttributes at = view2.readAttributes();
-			if( at != null ) {
-				ret = at.permissions();
-			}
+		PosixFileAttributes at = a.posix();
+		if( at != null ) {
+			ret.addAll(at.permissions());
 		}
 
 		return ret;
@@ -362,6 +578,8 @@ public class FileProxy implements FileSource {
 
 
 	private boolean setPosixPermision(boolean b, PosixFilePermission p) throws IOException {
+		//  Read the current permissions so a change made by someone else is not lost
+		refresh();
 		Set<PosixFilePermission> perms = getPosixPermissions();
 		
 		if(b) {
@@ -376,7 +594,7 @@ public class FileProxy implements FileSource {
 			}
 		}	
 		// no errors so I assume it worked
-		return true;
+		return changed(true);
 	}
 	
 	
@@ -456,7 +674,7 @@ public class FileProxy implements FileSource {
 	 * @see us.bringardner.io.FileSource#createNewFile()
 	 */
 	public boolean createNewFile() throws IOException {
-		return target.createNewFile();
+		return changed(target.createNewFile());
 	}
 
 	/* (non-Javadoc)
@@ -464,14 +682,14 @@ public class FileProxy implements FileSource {
 	 */
 	public boolean delete() {
 
-		return target.delete();
+		return changed(target.delete());
 	}
 
 	/* (non-Javadoc)
 	 * @see us.bringardner.io.FileSource#exists()
 	 */
 	public boolean exists() {
-		return target.exists();
+		return getAttributes().exists();
 	}
 
 	/* (non-Javadoc)
@@ -526,7 +744,7 @@ public class FileProxy implements FileSource {
 		FileSource ret = null;
 		File f = target.getParentFile();
 		if( f != null ) {
-			ret = new FileProxy(f,theCreator);
+			ret = newProxy(f);
 		}
 
 		return ret;
@@ -538,32 +756,32 @@ public class FileProxy implements FileSource {
 	 * @see us.bringardner.io.FileSource#isDirectory()
 	 */
 	public boolean isDirectory() {
-
-		return target.isDirectory();
+		Attributes a = getAttributes();
+		return a.exists() && a.data.isDirectory();
 	}
 
 	/* (non-Javadoc)
 	 * @see us.bringardner.io.FileSource#isFile()
 	 */
 	public boolean isFile() {
-
-		return target.isFile();
+		Attributes a = getAttributes();
+		return a.exists() && a.data.isRegularFile();
 	}
 
 	/* (non-Javadoc)
 	 * @see us.bringardner.io.FileSource#length()
 	 */
 	public long length() {
-
-		return target.length();
+		Attributes a = getAttributes();
+		return a.exists() ? a.data.size() : 0;
 	}
 
 	/* (non-Javadoc)
 	 * @see us.bringardner.io.FileSource#lastModified()
 	 */
 	public long lastModified() {
-		long ret = target.lastModified();
-		return ret;
+		Attributes a = getAttributes();
+		return a.exists() ? a.data.lastModifiedTime().toMillis() : 0;
 	}
 
 	/* (non-Javadoc)
@@ -577,6 +795,9 @@ public class FileProxy implements FileSource {
 	 * @see us.bringardner.io.FileSource#listFiles(us.bringardner.io.FileSourceFilter)
 	 */
 	public FileSource[] listFiles(FileSourceFilter filter) {
+		if( isPrefetchAttributes()) {
+			return listFilesWithAttributes(filter);
+		}
 		File [] ret1 = target.listFiles();
 		ArrayList<FileProxy> list = new ArrayList<FileProxy>();
 		FileSource [] ret = null;
@@ -584,7 +805,7 @@ public class FileProxy implements FileSource {
 		if( ret1 != null ) {
 			int sz = 0;
 			for(int idx=0; idx < ret1.length; idx++ ) {
-				FileProxy tmp  = new FileProxy(ret1[idx],theCreator);
+				FileProxy tmp  = newProxy(ret1[idx]);
 				if(filter==null || filter.accept(tmp)){
 					list.add(tmp);
 					sz ++;
@@ -601,12 +822,92 @@ public class FileProxy implements FileSource {
 		return ret;
 	}
 
+	private boolean isPrefetchAttributes() {
+		FileSourceFactory factory = getFileSourceFactory();
+		if (factory instanceof FileProxyFactory) {
+			return ((FileProxyFactory) factory).isPrefetchAttributes();
+		}
+		return false;
+	}
+
+	/**
+	 * List the directory and read the attributes of each child in one pass
+	 * so the filter (and the caller) can use isDirectory, length ... without going back to the disk.
+	 *    
+	 * @param filter
+	 * @return the children or null if this is not a directory or can't be read 
+	 */
+	private FileSource[] listFilesWithAttributes(FileSourceFilter filter) {
+		Path path = Attributes.toPath(target);
+		if( path == null ) {
+			return null;
+		}
+
+		List<FileSource> list = new ArrayList<FileSource>();
+		try(DirectoryStream<Path> dir = Files.newDirectoryStream(path)) {
+			for(Path child : dir) {
+				FileProxy tmp = newChild(child, true);
+				if(filter==null || filter.accept(tmp)){
+					list.add(tmp);
+				}
+			}
+		} catch (IOException | DirectoryIteratorException e) {
+			// Same as File.listFiles 
+			return null;
+		}
+
+		return list.toArray(new FileSource[list.size()]);
+	}
+
+	private FileProxy newChild(Path child, boolean prefetch) {
+		FileProxy ret = newProxy(child.toFile());
+		if( prefetch ) {
+			ret.attributes = new Attributes(child, ret.changeSlot);
+		}
+		return ret;
+	}
+
+	/**
+	 * Reads the directory one entry at a time using a DirectoryStream,
+	 * the DirectoryStream is closed when the stream is closed.  
+	 * 
+	 * @see us.bringardner.io.filesource.FileSource#streamFiles(us.bringardner.io.filesource.FileSourceFilter)
+	 */
+	@Override
+	public Stream<FileSource> streamFiles(FileSourceFilter filter) throws IOException {
+		Path path = Attributes.toPath(target);
+		if( path == null ) {
+			return Stream.empty();
+		}
+		DirectoryStream<Path> dir;
+		try {
+			dir = Files.newDirectoryStream(path);
+		} catch (NotDirectoryException | NoSuchFileException e) {
+			return Stream.empty();
+		}
+
+		boolean prefetch = isPrefetchAttributes();
+		Stream<FileSource> ret = StreamSupport.stream(dir.spliterator(), false)
+				.map(child -> (FileSource)newChild(child, prefetch));
+		if( filter != null ) {
+			ret = ret.filter(filter::accept);
+		}
+
+		return ret.onClose(()->{
+			try {
+				dir.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
 	/* (non-Javadoc)
 	 * @see us.bringardner.io.FileSource#mkdir()
 	 */
 	public boolean mkdir() {
 
-		return target.mkdir();
+		return changed(target.mkdir());
 	}
 
 	/* (non-Javadoc)
@@ -614,7 +915,7 @@ public class FileProxy implements FileSource {
 	 */
 	public boolean mkdirs() {
 
-		return target.mkdirs();
+		return changed(target.mkdirs());
 	}
 
 	/* (non-Javadoc)
@@ -625,7 +926,9 @@ public class FileProxy implements FileSource {
 		boolean ret = false;
 
 		try {
-			ret = target.renameTo(new File (dest.getCanonicalPath()));
+			File to = new File (dest.getCanonicalPath());
+			ret = changed(target.renameTo(to));
+			refresh(to);
 			name = null;
 		} catch (IOException e) {
 			e.printStackTrace();
@@ -640,7 +943,7 @@ public class FileProxy implements FileSource {
 	 */
 	@Override
 	public boolean setLastModifiedTime(long time) {
-		return target.setLastModified(time);		
+		return changed(target.setLastModified(time));		
 	}
 
 
@@ -648,7 +951,7 @@ public class FileProxy implements FileSource {
 	 * @see us.bringardner.io.FileSource#setReadOnly()
 	 */
 	public boolean setReadOnly() {
-		return target.setReadOnly();
+		return changed(target.setReadOnly());
 	}
 
 	/* (non-Javadoc)
@@ -662,7 +965,7 @@ public class FileProxy implements FileSource {
 	 * @see us.bringardner.io.FileSource#getOutputStream()
 	 */
 	public OutputStream getOutputStream() throws FileNotFoundException {
-		return new FileOutputStream(target);
+		return getOutputStream(false);
 	}
 
 	/* (non-Javadoc)
@@ -670,7 +973,18 @@ public class FileProxy implements FileSource {
 	 */
 	public OutputStream getOutputStream(boolean append) throws FileNotFoundException {
 
-		return new FileOutputStream(target,append);
+		FileOutputStream ret = new FileOutputStream(target,append) {
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					changed(true);
+				}
+			}
+		};
+		changed(true);
+		return ret;
 	}
 
 
@@ -713,14 +1027,14 @@ public class FileProxy implements FileSource {
 	 * @see us.bringardner.io.filesource.FileSource#getChild(java.lang.String)
 	 */
 	public FileSource getChild(String path) throws IOException {
-		return new FileProxy(new File(target,path),theCreator);
+		return newProxy(new File(target,path));
 	}
 
 	/* (non-Javadoc)
 	 * @see us.bringardner.io.filesource.FileSource#getCreateDate()
 	 */
 	public long getCreateDate() {
-		return target.lastModified();
+		return lastModified();
 	}
 
 	public static String getContentType(String name) {
@@ -793,6 +1107,10 @@ public class FileProxy implements FileSource {
 
 	@Override
 	public UserPrincipal getOwner() throws IOException {
+		PosixFileAttributes at = getAttributes().posix();
+		if( at != null ) {
+			return at.owner();
+		}
 		if(owner == null ) {
 			synchronized (this) {
 				owner = Files.getOwner(target.toPath());	
@@ -804,6 +1122,10 @@ public class FileProxy implements FileSource {
 
 	@Override
 	public GroupPrincipal getGroup() throws IOException {
+		PosixFileAttributes attrs = getAttributes().posix();
+		if( attrs != null && attrs.group() != null ) {
+			return attrs.group();
+		}
 		if( group == null ) {
 			synchronized (this) {
 				if (permissions instanceof WindowsPermissionManager) {
@@ -895,7 +1217,7 @@ public class FileProxy implements FileSource {
 
 	@Override
 	public void refresh() {
-		// Nothing to do for local files
+		attributes = null;
 
 	}
 
@@ -919,16 +1241,11 @@ public class FileProxy implements FileSource {
 		FileSource ret = null;
 		try {
 
-			Path path = target.toPath();
-			BasicFileAttributeView view = Files.getFileAttributeView(path, BasicFileAttributeView.class,LinkOption.NOFOLLOW_LINKS);
-			if (view != null) {
-				BasicFileAttributes at = view.readAttributes();
-				if( at.isSymbolicLink()) {
-					Path newPath = Files.readSymbolicLink(path);
-					if( newPath != null) {
-						ret = new FileProxy(newPath.toFile(), theCreator);
-					}
-
+			BasicFileAttributes at = getAttributes().link;
+			if( at != null && at.isSymbolicLink()) {
+				Path newPath = Files.readSymbolicLink(target.toPath());
+				if( newPath != null) {
+					ret = new FileProxy(newPath.toFile(), theCreator);
 				}
 			}
 
@@ -948,22 +1265,28 @@ public class FileProxy implements FileSource {
 
 	@Override
 	public ISeekableInputStream getSeekableInputStream() throws IOException {
-
-		return new FileProxySeekableInputStream(this);
+		int bufferSize = FileProxyFactory.DEFAULT_SEEKABLE_BUFFER_SIZE;
+		long mappedSize = 0;
+		FileSourceFactory factory = getFileSourceFactory();
+		if (factory instanceof FileProxyFactory) {
+			bufferSize = ((FileProxyFactory) factory).getSeekableBufferSize();
+			mappedSize = ((FileProxyFactory) factory).getMappedSeekableSize();
+		}
+		return new FileProxySeekableInputStream(this, bufferSize, mappedSize);
 	}
 
 
 
 	@Override
 	public boolean setExecutable(boolean executable, boolean ownerOnly) throws IOException {
-		return permissions.setExecutable(executable, ownerOnly);		
+		return changed(permissions.setExecutable(executable, ownerOnly));		
 	}
 
 
 
 	@Override
 	public boolean setReadable(boolean readable, boolean ownerOnly) throws IOException {
-		return permissions.setReadable(readable, ownerOnly);
+		return changed(permissions.setReadable(readable, ownerOnly));
 
 	}
 
@@ -971,7 +1294,7 @@ public class FileProxy implements FileSource {
 
 	@Override
 	public boolean setWritable(boolean writetable, boolean ownerOnly) throws IOException {
-		return permissions.setWritable(writetable, ownerOnly);
+		return changed(permissions.setWritable(writetable, ownerOnly));
 
 	}
 
@@ -979,7 +1302,7 @@ public class FileProxy implements FileSource {
 
 	@Override
 	public boolean setExecutable(boolean executable)  throws IOException {
-		return permissions.setExecutable(executable);
+		return changed(permissions.setExecutable(executable));
 
 	}
 
@@ -987,8 +1310,7 @@ public class FileProxy implements FileSource {
 
 	@Override
 	public boolean setReadable(boolean readable) throws IOException {
-		boolean ret = permissions.setReadable(readable);
-		return ret;
+		return changed(permissions.setReadable(readable));
 
 	}
 
@@ -996,81 +1318,85 @@ public class FileProxy implements FileSource {
 
 	@Override
 	public boolean setWritable(boolean writetable)  throws IOException {
-		return permissions.setWritable(writetable);		
+		return changed(permissions.setWritable(writetable));		
 	}
 
 	@Override
 	public boolean setGroupExecutable(boolean executable) throws IOException {
-		return permissions.setGroupExecutable(executable);		
+		return changed(permissions.setGroupExecutable(executable));		
 	}
 
 	@Override
 	public boolean setGroupReadable(boolean readable) throws IOException {
-		return permissions.setGroupReadable(readable);
+		return changed(permissions.setGroupReadable(readable));
 	}
 
 	@Override
 	public boolean setGroupWritable(boolean writeable) throws IOException {
-		return permissions.setGroupWritable(writeable);
+		return changed(permissions.setGroupWritable(writeable));
 	}
 
 	@Override
 	public boolean setOwnerReadable(boolean readable) throws IOException {
-		return permissions.setOwnerReadable(readable);
+		return changed(permissions.setOwnerReadable(readable));
 	}
 
 	@Override
 	public boolean setOwnerWritable(boolean writeable) throws IOException {
-		return permissions.setOwnerWritable(writeable);
+		return changed(permissions.setOwnerWritable(writeable));
 	}
 
 	@Override
 	public boolean setOwnerExecutable(boolean executable) throws IOException {		
-		return permissions.setOwnerExecutable(executable);
+		return changed(permissions.setOwnerExecutable(executable));
 	}
 
 	@Override
 	public boolean setOtherReadable(boolean readable) throws IOException {
-		return permissions.setOtherReadable(readable);
+		return changed(permissions.setOtherReadable(readable));
 	}
 
 	@Override
 	public boolean setOtherWritable(boolean writeable) throws IOException {
-		return permissions.setOtherWritable(writeable);
+		return changed(permissions.setOtherWritable(writeable));
 	}
 
 	@Override
 	public boolean setOtherExecutable(boolean executable) throws IOException {
-		return permissions.setOtherExecutable(executable);
+		return changed(permissions.setOtherExecutable(executable));
 	}
 
 	@Override
 	public long lastAccessTime() throws IOException {
-		BasicFileAttributes attrs = Files.readAttributes(target.toPath(), BasicFileAttributes.class);
-		FileTime time = attrs.lastAccessTime();
-		return time.toMillis();
+		Attributes a = getAttributes();
+		if( !a.exists() ) {
+			throw new NoSuchFileException(target.getPath());
+		}
+		return a.data.lastAccessTime().toMillis();
 	}
 
 	@Override
 	public long creationTime() throws IOException {
-		BasicFileAttributes attrs = Files.readAttributes(target.toPath(), BasicFileAttributes.class);
-		FileTime time = attrs.creationTime();
-		return time.toMillis();		
+		Attributes a = getAttributes();
+		if( !a.exists() ) {
+			throw new NoSuchFileException(target.getPath());
+		}
+		return a.data.creationTime().toMillis();		
 	}
 
 	@Override
 	public boolean setLastAccessTime(long time) throws IOException {		
-		return permissions.setLastAccessTime(time);
+		return changed(permissions.setLastAccessTime(time));
 	}
 
 	@Override
 	public boolean setCreateTime(long time) throws IOException {
-		return permissions.setCreateTime(time);
+		return changed(permissions.setCreateTime(time));
 	}
 
 	@Override
 	public boolean setGroup(GroupPrincipal group) throws IOException {
-		return permissions.setGroup(group);
+		return changed(permissions.setGroup(group));
 	}
 
 	@Override
@@ -1081,13 +1407,41 @@ public class FileProxy implements FileSource {
 		} catch (Exception e) {
 			return false;
 		}				
-		return true;
+		return changed(true);
 	}
 
 	@Override
 	public IRandomAccessStream getRandomAccessStream(String mode) throws IOException {
+		RandomAccessIo io = RandomAccessIo.RandomAccessFile;
+		FileSourceFactory factory = getFileSourceFactory();
+		if (factory instanceof FileProxyFactory) {
+			io = ((FileProxyFactory) factory).getRandomAccessIo();
+		}
+		return getRandomAccessStream(mode, io);
+	}
+
+	/**
+	 * @param mode same as getRandomAccessStream(mode)
+	 * @param io The type of IO to use
+	 * @return
+	 * @throws IOException
+	 */
+	public IRandomAccessStream getRandomAccessStream(String mode,RandomAccessIo io) throws IOException {
+		IRandomAccessIoController controller = null;
+		switch (io) {
+		case RandomAccessFile:
+			controller = new FileProxyRandomAccessIoController(this, mode);
+			break;
+		case Mapped:
+			controller = new FileProxyChannelIoController(this, mode, true);
+			break;
+		case Channel:
+		default:
+			controller = new FileProxyChannelIoController(this, mode);
+			break;
+		}
 
-		return new FileSourceRandomAccessStream(new FileProxyRandomAccessIoController(this, mode), mode);
+		return new FileSourceRandomAccessStream(controller, mode);
 	}
 
 }
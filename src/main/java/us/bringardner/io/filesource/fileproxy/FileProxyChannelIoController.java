@@ -0,0 +1,390 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.fileproxy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+import us.bringardner.io.filesource.DirectBuffers;
+import us.bringardner.io.filesource.FileSource;
+import us.bringardner.io.filesource.IRandomAccessIoController;
+
+/**
+ * Random access IO for a FileProxy using FileChannel positional reads and writes.
+ *
+ * Data is staged in a reusable window.  Normally the window is a direct ByteBuffer
+ * so a run of single byte reads or writes costs one system call per window instead of two per byte.
+ * When mapped is requested for a read only stream the window is a MappedByteBuffer
+ * and reads never leave memory.  Mapping is only used for read only streams,
+ * a writable mapping would have to be re-created every time the file grows.
+ * The file is mapped in mapSize regions, a region stays mapped until the window moves to another one.
+ */
+public class FileProxyChannelIoController implements IRandomAccessIoController {
+
+	public static final int DEFAULT_BUFFER_SIZE = 1024*64;
+	public static final long DEFAULT_MAP_SIZE = 1024*1024*64;
+
+	private FileProxy file;
+	private FileChannel channel;
+	private boolean readOnly;
+	private boolean mapped;
+	private long mapSize = DEFAULT_MAP_SIZE;
+	// direct buffer or a mapped region of the file
+	private ByteBuffer window;
+	// start of the mapped region or -1 if nothing is mapped
+	private long mapStart = -1;
+	private long windowStart = -1;
+	// number of valid bytes in the window
+	private int windowLength = 0;
+	// range of the window that has not been written to the file
+	private int dirtyStart = -1;
+	private int dirtyEnd = -1;
+	private boolean closed = false;
+
+	public FileProxyChannelIoController(FileProxy file,String mode) throws IOException {
+		this(file,mode,false);
+	}
+
+	public FileProxyChannelIoController(FileProxy file,String mode, boolean mapped) throws IOException {
+		this(file, mode, mapped, DEFAULT_BUFFER_SIZE);
+	}
+
+	public FileProxyChannelIoController(FileProxy file,String mode, boolean mapped, int bufferSize) throws IOException {
+		this.file = file;
+		Set<OpenOption> options = new HashSet<>();
+		options.add(StandardOpenOption.READ);
+
+		if( mode.equals("r")) {
+			readOnly = true;
+		} else if(mode.equals("rw") || mode.equals("rws") || mode.equals("rwd")) {
+			options.add(StandardOpenOption.WRITE);
+			options.add(StandardOpenOption.CREATE);
+			if( mode.equals("rws")) {
+				options.add(StandardOpenOption.SYNC);
+			} else if( mode.equals("rwd")) {
+				options.add(StandardOpenOption.DSYNC);
+			}
+		} else {
+			throw new IllegalArgumentException("invalid mode = "+mode);
+		}
+
+		this.mapped = mapped && readOnly;
+		channel = FileChannel.open(file.target.toPath(), options);
+		if( !this.mapped ) {
+			window = ByteBuffer.allocateDirect(bufferSize);
+		}
+	}
+
+	public boolean isMapped() {
+		return mapped;
+	}
+
+	public long getMapSize() {
+		return mapSize;
+	}
+
+	/**
+	 * @param mapSize the maximum number of bytes mapped at one time
+	 */
+	public void setMapSize(long mapSize) {
+		if( mapSize <= 0 || mapSize > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Invalid map size "+mapSize);
+		}
+		this.mapSize = mapSize;
+	}
+
+	/**
+	 * @return the channel used by this controller.
+	 */
+	public FileChannel getChannel() {
+		return channel;
+	}
+
+	private void checkOpen() throws IOException {
+		if( closed ) {
+			throw new IOException("Already closed");
+		}
+	}
+
+	private boolean inWindow(long pos) {
+		return windowStart >=0 && pos >= windowStart && pos < windowStart+windowLength;
+	}
+
+	/**
+	 * Move the window so it starts at pos.
+	 *
+	 * @param pos
+	 * @return true if any data was available at pos
+	 * @throws IOException
+	 */
+	private boolean loadWindow(long pos) throws IOException {
+		flush();
+		long size = channel.size();
+		windowStart = pos;
+		windowLength = 0;
+
+		if( mapped ) {
+			if( pos < size ) {
+				long start = pos-(pos%mapSize);
+				long len = Math.min(mapSize, size-start);
+				if( start != mapStart || len != window.capacity()) {
+					unmap();
+					window = channel.map(MapMode.READ_ONLY, start, len);
+					mapStart = start;
+				}
+				windowStart = start;
+				windowLength = window.capacity();
+			}
+		} else {
+			window.clear();
+			while( window.hasRemaining() && pos+window.position() < size) {
+				if( channel.read(window, pos+window.position()) < 0 ) {
+					break;
+				}
+			}
+			windowLength = window.position();
+		}
+
+		return windowLength > 0;
+	}
+
+	/**
+	 * Release the mapped region now rather than when the GC finds it.
+	 */
+	private void unmap() {
+		if( mapStart >= 0 ) {
+			DirectBuffers.free(window);
+			window = null;
+			mapStart = -1;
+		}
+	}
+
+	/**
+	 * Write the dirty part of the window to the file.
+	 * @throws IOException
+	 */
+	private void flush() throws IOException {
+		if( dirtyStart >= 0 ) {
+			ByteBuffer tmp = window.duplicate();
+			tmp.limit(dirtyEnd);
+			tmp.position(dirtyStart);
+			while( tmp.hasRemaining()) {
+				channel.write(tmp, windowStart+tmp.position());
+			}
+			dirtyStart = dirtyEnd = -1;
+			FileProxy.refresh(file.target);
+		}
+	}
+
+	private void markDirty(int start, int end) {
+		if( dirtyStart < 0 ) {
+			dirtyStart = start;
+			dirtyEnd = end;
+		} else {
+			dirtyStart = Math.min(dirtyStart, start);
+			dirtyEnd = Math.max(dirtyEnd, end);
+		}
+		windowLength = Math.max(windowLength, end);
+	}
+
+	/**
+	 * @param pos
+	 * @return true if a write at pos can go in the current window
+	 */
+	private boolean canWriteInWindow(long pos) {
+		return windowStart >= 0
+				&& pos >= windowStart
+				&& pos <= windowStart+windowLength
+				&& pos < windowStart+window.capacity();
+	}
+
+	@Override
+	public int read(long position) throws IOException {
+		checkOpen();
+		if( position < 0 ) {
+			throw new IOException("Negative position");
+		}
+		if( !inWindow(position) && !loadWindow(position)) {
+			return -1;
+		}
+
+		return window.get((int)(position-windowStart)) & 0xff;
+	}
+
+	@Override
+	public int read(long position, byte[] b, int off, int len) throws IOException {
+		checkOpen();
+		if( position < 0 ) {
+			throw new IOException("Negative position");
+		}
+		if( off < 0 || len < 0 || len > b.length-off) {
+			throw new IndexOutOfBoundsException();
+		}
+
+		int ret = 0;
+		while( ret < len ) {
+			long p = position+ret;
+			if( !inWindow(p) && !loadWindow(p)) {
+				break;
+			}
+			int offset = (int)(p-windowStart);
+			int cnt = Math.min(len-ret, windowLength-offset);
+			ByteBuffer tmp = window.duplicate();
+			tmp.position(offset);
+			tmp.get(b, off+ret, cnt);
+			ret += cnt;
+		}
+
+		if( ret == 0 && len > 0 ) {
+			ret = -1;
+		}
+		return ret;
+	}
+
+	@Override
+	public void write(long position, byte value) throws IOException {
+		checkOpen();
+		if( readOnly ) {
+			throw new IOException("Can't write in read only mode");
+		}
+		if( position < 0 ) {
+			throw new IOException("Negative position");
+		}
+		if( !canWriteInWindow(position)) {
+			loadWindow(position);
+		}
+		int offset = (int)(position-windowStart);
+		window.put(offset, value);
+		markDirty(offset, offset+1);
+	}
+
+	@Override
+	public void write(long position, byte[] b, int off, int len) throws IOException {
+		checkOpen();
+		if( readOnly ) {
+			throw new IOException("Can't write in read only mode");
+		}
+		if( position < 0 ) {
+			throw new IOException("Negative position");
+		}
+		if( off < 0 || len < 0 || len > b.length-off) {
+			throw new IndexOutOfBoundsException();
+		}
+
+		if( len >= window.capacity()) {
+			//  Large writes go directly to the channel
+			flush();
+			ByteBuffer tmp = ByteBuffer.wrap(b, off, len);
+			while( tmp.hasRemaining()) {
+				channel.write(tmp, position+(tmp.position()-off));
+			}
+			if( windowStart >= 0 && windowStart < position+len && position < windowStart+windowLength) {
+				windowStart = -1;
+				windowLength = 0;
+			}
+			FileProxy.refresh(file.target);
+			return;
+		}
+
+		int done = 0;
+		while( done < len ) {
+			long p = position+done;
+			if( !canWriteInWindow(p)) {
+				loadWindow(p);
+			}
+			int offset = (int)(p-windowStart);
+			int cnt = Math.min(len-done, window.capacity()-offset);
+			ByteBuffer tmp = window.duplicate();
+			tmp.position(offset);
+			tmp.put(b, off+done, cnt);
+			markDirty(offset, offset+cnt);
+			done += cnt;
+		}
+	}
+
+	@Override
+	public long length() throws IOException {
+		checkOpen();
+		long ret = channel.size();
+		if( windowStart >= 0 ) {
+			ret = Math.max(ret, windowStart+windowLength);
+		}
+		return ret;
+	}
+
+	@Override
+	public void setLength(long newLength) throws IOException {
+		checkOpen();
+		if( readOnly ) {
+			throw new IOException("Can't set length in read only mode");
+		}
+		flush();
+		long size = channel.size();
+		if( newLength < size ) {
+			channel.truncate(newLength);
+		} else if( newLength > size ) {
+			channel.write(ByteBuffer.wrap(new byte[1]), newLength-1);
+		}
+		windowStart = -1;
+		windowLength = 0;
+		FileProxy.refresh(file.target);
+	}
+
+	@Override
+	public void save() throws IOException {
+		if( !closed ) {
+			flush();
+		}
+	}
+
+	@Override
+	public FileSource getFile() {
+		return file;
+	}
+
+	@Override
+	public void close() throws Exception {
+		if( !closed ) {
+			try {
+				flush();
+			} finally {
+				closed = true;
+				if( mapped ) {
+					unmap();
+				}
+				window = null;
+				channel.close();
+			}
+		}
+	}
+
+}
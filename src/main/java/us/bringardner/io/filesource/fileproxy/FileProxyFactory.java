@@ -40,6 +40,7 @@ import java.util.List;
 import java.util.Properties;
 
 import us.bringardner.io.filesource.FileSource;
+import us.bringardner.io.filesource.FileSourceCache;
 import us.bringardner.io.filesource.FileSourceFactory;
 
 
@@ -49,14 +50,36 @@ import us.bringardner.io.filesource.FileSourceFactory;
  */
 public class FileProxyFactory extends FileSourceFactory {
 
+	/**
+	 * How FileProxy.getRandomAccessStream does it's IO
+	 *   RandomAccessFile: java.io.RandomAccessFile, one seek and read / write per byte (the default).
+	 *   Channel: FileChannel positional IO through a reusable direct buffer.
+	 *   Mapped:  Like Channel but read only streams use a MappedByteBuffer.   
+	 */
+	public enum RandomAccessIo {RandomAccessFile,Channel,Mapped}
+
 	/**
 	 * 
 	 */
 	private static final long serialVersionUID = 1L;
 	public final String LOCAL_INDICATOR="~";
 	public static final String FACTORY_ID = "fileproxy";
+	public static final String PROP_RANDOM_ACCESS_IO = "FileProxy.randomAccessIo";
+	public static final String PROP_ATTRIBUTE_TTL = "FileProxy.attributeTtl";
+	public static final long DEFAULT_ATTRIBUTE_TTL = 0;
+	public static final String PROP_PREFETCH_ATTRIBUTES = "FileProxy.prefetchAttributes";
+	public static final String PROP_INTERN_FILES = "FileProxy.internFiles";
+	public static final String PROP_SEEKABLE_BUFFER_SIZE = "FileProxy.seekableBufferSize";
+	public static final int DEFAULT_SEEKABLE_BUFFER_SIZE = 8192;
+	public static final String PROP_MAPPED_SEEKABLE_SIZE = "FileProxy.mappedSeekableSize";
 	private volatile FileSource [] roots;
 	private volatile FileSource currentDirectory;
+	private volatile RandomAccessIo randomAccessIo = getDefaultRandomAccessIo();
+	private volatile long attributeTtl = getDefaultAttributeTtl();
+	private volatile boolean prefetchAttributes = "true".equalsIgnoreCase(System.getProperty(PROP_PREFETCH_ATTRIBUTES));
+	private volatile FileSourceCache fileCache = "true".equalsIgnoreCase(System.getProperty(PROP_INTERN_FILES)) ? new FileSourceCache() : null;
+	private volatile int seekableBufferSize = (int) getLongProperty(PROP_SEEKABLE_BUFFER_SIZE, DEFAULT_SEEKABLE_BUFFER_SIZE);
+	private volatile long mappedSeekableSize = getLongProperty(PROP_MAPPED_SEEKABLE_SIZE, 0);
 
 	/**
 	 * 
@@ -66,6 +89,163 @@ public class FileProxyFactory extends FileSourceFactory {
 	}
 
 
+	private static RandomAccessIo getDefaultRandomAccessIo() {
+		RandomAccessIo ret = RandomAccessIo.RandomAccessFile;
+		String tmp = System.getProperty(PROP_RANDOM_ACCESS_IO);
+		if( tmp != null ) {
+			for(RandomAccessIo io : RandomAccessIo.values()) {
+				if( io.name().equalsIgnoreCase(tmp.trim())) {
+					ret = io;
+				}
+			}
+		}
+		return ret;
+	}
+
+	static long getDefaultAttributeTtl() {
+		return getLongProperty(PROP_ATTRIBUTE_TTL, DEFAULT_ATTRIBUTE_TTL);
+	}
+
+	private static long getLongProperty(String name, long def) {
+		long ret = def;
+		String tmp = System.getProperty(name);
+		if( tmp != null ) {
+			try {
+				ret = Long.parseLong(tmp.trim());
+			} catch (NumberFormatException e) {
+				// use the default
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the number of milliseconds a FileProxy keeps the attributes it read from the file system.
+	 */
+	public long getAttributeTtl() {
+		return attributeTtl;
+	}
+
+	/**
+	 * Changes made through a FileProxy are always seen right away,
+	 * changes made by anything else can take up to attributeTtl milliseconds to be seen.
+	 * The default is zero (no caching), a caller that owns the directory tree can opt in.
+	 * Prefetched attributes are only used when the ttl is greater than zero.
+	 * 
+	 * @param attributeTtl milliseconds to keep attributes, zero reads them on every call.
+	 */
+	public void setAttributeTtl(long attributeTtl) {
+		if( attributeTtl < 0 ) {
+			throw new IllegalArgumentException("Invalid attribute ttl "+attributeTtl);
+		}
+		this.attributeTtl = attributeTtl;
+	}
+
+	/**
+	 * @return true if FileProxy.listFiles reads the attributes of each child while it lists the directory.
+	 */
+	public boolean isPrefetchAttributes() {
+		return prefetchAttributes;
+	}
+
+	/**
+	 * Prefetching costs one extra read per child but the filter and the caller 
+	 * can then use isDirectory, length, lastModified ... without going back to the disk.
+	 * Off by default, turn it on when the caller looks at the attributes of most children.  
+	 *  
+	 * @param prefetchAttributes
+	 */
+	public void setPrefetchAttributes(boolean prefetchAttributes) {
+		this.prefetchAttributes = prefetchAttributes;
+	}
+
+	/**
+	 * @return size of the read buffer used by FileProxy.getSeekableInputStream()
+	 */
+	public int getSeekableBufferSize() {
+		return seekableBufferSize;
+	}
+
+	/**
+	 * A seek that stays inside the buffer does not read the file again
+	 * and a read of at least this many bytes goes straight to the file.
+	 * 
+	 * @param seekableBufferSize
+	 */
+	public void setSeekableBufferSize(int seekableBufferSize) {
+		if( seekableBufferSize < 1 ) {
+			throw new IllegalArgumentException("Invalid seekable buffer size "+seekableBufferSize);
+		}
+		this.seekableBufferSize = seekableBufferSize;
+	}
+
+	/**
+	 * @return largest file memory mapped by FileProxy.getSeekableInputStream(), 0 if files are never mapped.
+	 */
+	public long getMappedSeekableSize() {
+		return mappedSeekableSize;
+	}
+
+	/**
+	 * Mapping avoids a copy for every read of a small file that is read many times.
+	 * A mapped file must not be truncated while the stream is open.
+	 * 
+	 * @param mappedSeekableSize 0 (the default) never maps
+	 */
+	public void setMappedSeekableSize(long mappedSeekableSize) {
+		if( mappedSeekableSize < 0 ) {
+			throw new IllegalArgumentException("Invalid mapped seekable size "+mappedSeekableSize);
+		}
+		this.mappedSeekableSize = mappedSeekableSize;
+	}
+
+	/**
+	 * @return the cache used to intern FileProxy objects or null if they are not interned.
+	 */
+	public FileSourceCache getFileCache() {
+		return fileCache;
+	}
+
+	/**
+	 * When a cache is set createFileSource, getChild, getParentFile and listFiles 
+	 * return the same FileProxy for the same absolute path for as long as the cache holds it
+	 * so the attributes, owner and group it has read are reused.
+	 * 
+	 * @param fileCache null (the default) creates a new FileProxy every time.
+	 */
+	public void setFileCache(FileSourceCache fileCache) {
+		this.fileCache = fileCache;
+	}
+
+	/**
+	 * @param file
+	 * @return the FileProxy interned for file or a new one
+	 */
+	FileProxy getFileProxy(File file) {
+		FileSourceCache cache = fileCache;
+		if( cache == null ) {
+			return new FileProxy(file, this);
+		}
+		//  Absolute not canonical so a link and the file it points to are not the same FileSource
+		String path = file.getAbsolutePath();
+		FileSource ret = cache.get(path);
+		if( ret == null ) {
+			ret = cache.intern(path, new FileProxy(file, this));
+		}
+		return (FileProxy) ret;
+	}
+
+	/**
+	 * @return the IO type used by FileProxy.getRandomAccessStream(mode)
+	 */
+	public RandomAccessIo getRandomAccessIo() {
+		return randomAccessIo;
+	}
+
+	public void setRandomAccessIo(RandomAccessIo randomAccessIo) {
+		this.randomAccessIo = randomAccessIo;
+	}
+
 	/* Set The Current dir (Ignored for FileProxy)
 	 * @see us.bringardner.io.FileSourceFactory#setCurrentDirectory(us.bringardner.io.FileSource)
 	 */
@@ -200,7 +380,7 @@ public class FileProxyFactory extends FileSourceFactory {
 			file = new File(root,realPath);
 		}
 
-		return new FileProxy(file,this);
+		return getFileProxy(file);
 	}
 
 
@@ -268,6 +448,7 @@ public class FileProxyFactory extends FileSourceFactory {
 			if (existing instanceof FileProxy) {
 				FileProxy tfp = (FileProxy) existing;
 				Path path = Files.createSymbolicLink(sfp.target.toPath(), tfp.target.toPath());
+				FileProxy.refresh(sfp.target);
 
 				ret = new FileProxy(path.toFile(), this); 
 			}
@@ -285,6 +466,9 @@ public class FileProxyFactory extends FileSourceFactory {
 			if (newLink instanceof FileProxy) {
 				FileProxy nlfp = (FileProxy) newLink;
 				Path path = Files.createLink(nlfp.target.toPath(), efp.target.toPath());
+				//  The link count of the existing file changes too
+				FileProxy.refresh(nlfp.target);
+				FileProxy.refresh(efp.target);
 				ret = new FileProxy(path.toFile(), this); 
 			}
 		}
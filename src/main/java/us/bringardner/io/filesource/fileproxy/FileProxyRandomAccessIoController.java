@@ -18,7 +18,8 @@ public class FileProxyRandomAccessIoController implements IRandomAccessIoControl
 	
 	@Override
 	public void close() throws Exception {
-		target.close();		
+		target.close();
+		FileProxy.refresh(file.target);
 	}
 
 	@Override
@@ -33,6 +34,18 @@ public class FileProxyRandomAccessIoController implements IRandomAccessIoControl
 		target.write(value);		
 	}
 
+	@Override
+	public int read(long position, byte[] b, int off, int len) throws IOException {
+		target.seek(position);
+		return target.read(b, off, len);
+	}
+
+	@Override
+	public void write(long position, byte[] b, int off, int len) throws IOException {
+		target.seek(position);
+		target.write(b, off, len);
+	}
+
 	@Override
 	public long length() throws IOException {
 		return target.length();
@@ -40,13 +53,14 @@ public class FileProxyRandomAccessIoController implements IRandomAccessIoControl
 
 	@Override
 	public void setLength(long newLength) throws IOException {
-		target.setLength(newLength);		
+		target.setLength(newLength);
+		FileProxy.refresh(file.target);
 	}
 
 	@Override
 	public void save() throws IOException {
-		// Nothing to do
-		
+		// Nothing is buffered, just make sure the new length and time are seen
+		FileProxy.refresh(file.target);
 	}
 
 	@Override
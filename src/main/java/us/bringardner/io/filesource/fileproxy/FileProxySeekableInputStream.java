@@ -27,49 +27,178 @@ package us.bringardner.io.filesource.fileproxy;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
+import us.bringardner.io.filesource.DirectBuffers;
 import us.bringardner.io.filesource.FileSource;
 import us.bringardner.io.filesource.ISeekableInputStream;
 
+/**
+ * Reads a file through a FileChannel and a buffer that is reused for every read.
+ * Seeks only move the position, so a seek that stays inside the bytes already buffered does not read the file again.
+ * 
+ * Files no larger than FileProxyFactory.getMappedSeekableSize() are memory mapped instead,
+ * a mapped file must not be truncated while it's being read.
+ * The mapping is released when the stream is closed rather than when it's garbage collected.
+ */
 public class FileProxySeekableInputStream implements ISeekableInputStream {
 
-	private FileProxy target;
-	private RandomAccessFile ram;
-	FileProxySeekableInputStream(FileProxy target) throws IOException {
+	private final FileProxy target;
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	private final boolean mapped;
+	//  The position in the file of the first byte in the buffer (always 0 when mapped)
+	private long bufferStart;
+	private long pos;
+	private boolean closed;
+
+	/**
+	 * @param target
+	 * @param bufferSize size of the read buffer
+	 * @param mappedSize files this size or smaller are mapped, 0 never maps
+	 * @throws IOException
+	 */
+	FileProxySeekableInputStream(FileProxy target, int bufferSize, long mappedSize) throws IOException {
 		this.target = target;
-		ram = new RandomAccessFile(target.target, "r");
+		FileChannel tmp = FileChannel.open(target.target.toPath(), StandardOpenOption.READ);
+		try {
+			long size = tmp.size();
+			mapped = size > 0 && size <= mappedSize && size <= Integer.MAX_VALUE;
+			if( mapped ) {
+				buffer = tmp.map(FileChannel.MapMode.READ_ONLY, 0, size);
+				//  The mapping stays valid after the channel is closed
+				tmp.close();
+				tmp = null;
+			} else {
+				buffer = ByteBuffer.allocate(Math.max(1, bufferSize));
+				buffer.limit(0);
+			}
+		} catch (IOException | RuntimeException e) {
+			if( tmp != null ) {
+				tmp.close();
+			}
+			throw e;
+		}
+		channel = tmp;
 	}
-	
+
+	/**
+	 * @return true if the file is memory mapped
+	 */
+	public boolean isMapped() {
+		return mapped;
+	}
+
+	private void checkOpen() throws IOException {
+		if( closed ) {
+			throw new IOException("Stream closed");
+		}
+	}
+
+	/**
+	 * @return number of buffered bytes at pos, 0 if pos is not in the buffer
+	 */
+	private int getBuffered() {
+		long idx = pos-bufferStart;
+		return idx >= 0 && idx < buffer.limit() ? (int) (buffer.limit()-idx) : 0;
+	}
+
+	/**
+	 * Fill the buffer starting at pos
+	 * @return number of bytes in the buffer, 0 at the end of the file
+	 * @throws IOException
+	 */
+	private int fill() throws IOException {
+		bufferStart = pos;
+		buffer.clear();
+		while( buffer.hasRemaining()) {
+			if( channel.read(buffer, bufferStart+buffer.position()) < 0 ) {
+				break;
+			}
+		}
+		buffer.flip();
+		return buffer.limit();
+	}
+
 	@Override
 	public long length() throws IOException {
-		return ram.length();
+		checkOpen();
+		return mapped ? buffer.capacity() : channel.size();
 	}
 
 	@Override
-	public void seek(long length) throws IOException {
-		ram.seek(length);
-
+	public void seek(long pos) throws IOException {
+		checkOpen();
+		if( pos < 0 ) {
+			throw new IOException("Invalid position "+pos);
+		}
+		this.pos = pos;
 	}
 
 	@Override
 	public int read() throws IOException {
-		return ram.read();
+		checkOpen();
+		if( getBuffered() == 0 && (mapped || fill() == 0)) {
+			return -1;
+		}
+		return buffer.get((int) (pos++ - bufferStart)) & 0xff;
 	}
 
 	@Override
-	public int read(byte[] data, int i, int toRead) throws IOException {
-		return ram.read(data, i, toRead);
+	public int read(byte[] data, int offset, int len) throws IOException {
+		checkOpen();
+		if( len == 0 ) {
+			return 0;
+		}
+		int available = getBuffered();
+		if( available == 0 ) {
+			if( mapped ) {
+				return -1;
+			}
+			if( len >= buffer.capacity()) {
+				//  Too big to be worth copying through the buffer
+				int ret = channel.read(ByteBuffer.wrap(data, offset, len), pos);
+				if( ret > 0 ) {
+					pos += ret;
+				}
+				return ret;
+			}
+			if( (available = fill()) == 0 ) {
+				return -1;
+			}
+		}
+		int ret = Math.min(len, available);
+		buffer.position((int) (pos-bufferStart));
+		buffer.get(data, offset, ret);
+		pos += ret;
+		return ret;
+	}
+
+	@Override
+	public int read(byte[] data) throws IOException {
+		return read(data, 0, data.length);
 	}
 
 	@Override
 	public void close() throws IOException {
-		ram.close();
+		if( !closed ) {
+			closed = true;
+			if( channel != null ) {
+				channel.close();
+			}
+			if( mapped ) {
+				//  Every read checks closed first so nothing can touch the buffer after this
+				DirectBuffers.free(buffer);
+			}
+		}
 	}
 
 	@Override
 	public long getFilePointer() throws IOException {
-		return ram.getFilePointer();
+		checkOpen();
+		return pos;
 	}
 
 	@Override
@@ -77,24 +206,40 @@ public class FileProxySeekableInputStream implements ISeekableInputStream {
 		return target;
 	}
 
+	/**
+	 * @return an InputStream that reads from (and moves) the position of this stream, closing it closes this stream.
+	 */
 	@Override
 	public InputStream getInputStream() throws IOException {
 		return new InputStream() {
-			
+
 			@Override
 			public int read() throws IOException {
-				return ram.read();
+				return FileProxySeekableInputStream.this.read();
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				return FileProxySeekableInputStream.this.read(b, off, len);
+			}
+
+			@Override
+			public long skip(long n) throws IOException {
+				long ret = Math.max(0, Math.min(n, length()-pos));
+				seek(pos+ret);
+				return ret;
+			}
+
+			@Override
+			public int available() throws IOException {
+				return (int) Math.max(0, Math.min(Integer.MAX_VALUE, length()-pos));
 			}
+
 			@Override
 			public void close() throws IOException {
-				ram.close();
+				FileProxySeekableInputStream.this.close();
 			}
 		};
 	}
 
-	@Override
-	public int read(byte[] data) throws IOException {
-		return ram.read(data);
-	}
-
 }
@@ -0,0 +1,192 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.instrumented;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Count, errors, bytes and a latency histogram for each Operation of an InstrumentedFileSourceFactory.
+ *
+ * Everything is kept in LongAdders and LatencyHistograms so recording a call never locks or allocates.
+ */
+public class FileSourceStatistics implements FileSourceStatisticsMXBean {
+
+	public static final String MBEAN_NAME_PREFIX = "us.bringardner.io.filesource:type=FileSourceStatistics,name=";
+
+	public enum Operation {
+		CreateFileSource,
+		GetChild,
+		GetParent,
+		ListFiles,
+		Exists,
+		IsDirectory,
+		IsFile,
+		Length,
+		LastModified,
+		//  All of the other attribute getters
+		GetAttribute,
+		SetAttribute,
+		CreateNewFile,
+		Mkdir,
+		Mkdirs,
+		Delete,
+		RenameTo,
+		CreateLink,
+		OpenInput,
+		OpenOutput,
+		OpenRandomAccess,
+		Read,
+		Write,
+		Flush,
+		Seek,
+		Close,
+		Connect,
+		Disconnect
+	}
+
+	private static class Counters {
+		final LongAdder count = new LongAdder();
+		final LongAdder errors = new LongAdder();
+		final LongAdder bytes = new LongAdder();
+		final LongAdder nanos = new LongAdder();
+		final LongAccumulator max = new LongAccumulator(Math::max, 0);
+		final LatencyHistogram histogram = new LatencyHistogram();
+	}
+
+	private static final Operation [] operations = Operation.values();
+	private final Counters [] counters = new Counters[operations.length];
+	private ObjectName mbeanName;
+
+	public FileSourceStatistics() {
+		for (int idx = 0; idx < counters.length; idx++) {
+			counters[idx] = new Counters();
+		}
+	}
+
+	/**
+	 * @param operation
+	 * @param start System.nanoTime() when the call started
+	 * @param bytes read or written by the call
+	 * @param error true if the call threw an exception
+	 */
+	public void record(Operation operation, long start, long bytes, boolean error) {
+		long nanos = System.nanoTime()-start;
+		Counters c = counters[operation.ordinal()];
+		c.count.increment();
+		if( error ) {
+			c.errors.increment();
+		}
+		if( bytes > 0 ) {
+			c.bytes.add(bytes);
+		}
+		c.nanos.add(nanos);
+		c.max.accumulate(nanos);
+		c.histogram.record(nanos);
+	}
+
+	public OperationStatistics getStatistics(Operation operation) {
+		Counters c = counters[operation.ordinal()];
+		return new OperationStatistics(
+				operation.name(),
+				c.count.sum(),
+				c.errors.sum(),
+				c.bytes.sum(),
+				c.nanos.sum(),
+				c.max.get(),
+				c.histogram.getCounts());
+	}
+
+	@Override
+	public List<OperationStatistics> getOperations() {
+		List<OperationStatistics> ret = new ArrayList<>();
+		for(Operation operation : operations) {
+			if( counters[operation.ordinal()].count.sum() > 0 ) {
+				ret.add(getStatistics(operation));
+			}
+		}
+		return ret;
+	}
+
+	@Override
+	public void reset() {
+		for(Counters c : counters) {
+			c.count.reset();
+			c.errors.reset();
+			c.bytes.reset();
+			c.nanos.reset();
+			c.max.reset();
+			c.histogram.reset();
+		}
+	}
+
+	/**
+	 * Publish these statistics to the platform MBeanServer as MBEAN_NAME_PREFIX+name.
+	 *
+	 * @param name
+	 * @throws JMException
+	 */
+	public synchronized void registerMBean(String name) throws JMException {
+		unregisterMBean();
+		ObjectName tmp = new ObjectName(MBEAN_NAME_PREFIX+ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, tmp);
+		mbeanName = tmp;
+	}
+
+	public synchronized void unregisterMBean() throws JMException {
+		if( mbeanName != null ) {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if( server.isRegistered(mbeanName)) {
+				server.unregisterMBean(mbeanName);
+			}
+			mbeanName = null;
+		}
+	}
+
+	/**
+	 * @return the name these statistics are registered as or null
+	 */
+	public synchronized ObjectName getMBeanName() {
+		return mbeanName;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder ret = new StringBuilder();
+		for(OperationStatistics stats : getOperations()) {
+			ret.append(stats).append('\n');
+		}
+		return ret.toString();
+	}
+
+}
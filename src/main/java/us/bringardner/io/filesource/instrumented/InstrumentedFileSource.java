@@ -0,0 +1,1060 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.instrumented;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.attribute.GroupPrincipal;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.stream.Stream;
+
+import javax.swing.ProgressMonitor;
+
+import us.bringardner.io.filesource.FileSource;
+import us.bringardner.io.filesource.FileSourceFactory;
+import us.bringardner.io.filesource.FileSourceFilter;
+import us.bringardner.io.filesource.IRandomAccessStream;
+import us.bringardner.io.filesource.ISeekableInputStream;
+import us.bringardner.io.filesource.instrumented.FileSourceStatistics.Operation;
+
+/**
+ * A FileSource created by an InstrumentedFileSourceFactory.
+ * Every call that may touch the file system is timed and passed on to the wrapped FileSource,
+ * FileSources and streams returned by the wrapped FileSource are wrapped so their calls are recorded too.
+ */
+public class InstrumentedFileSource implements FileSource {
+
+	private static final long serialVersionUID = 1L;
+
+	private final InstrumentedFileSourceFactory factory;
+	private final FileSource delegate;
+	private final FileSourceStatistics statistics;
+
+	InstrumentedFileSource(InstrumentedFileSourceFactory factory, FileSource delegate) {
+		this.factory = factory;
+		this.delegate = delegate;
+		this.statistics = factory.getStatistics();
+	}
+
+	public FileSource getDelegate() {
+		return delegate;
+	}
+
+	@Override
+	public FileSourceFactory getFileSourceFactory() {
+		return factory;
+	}
+
+	@Override
+	public int compareTo(Object o) {
+		if (o instanceof FileSource) {
+			o = InstrumentedFileSourceFactory.unwrap((FileSource) o);
+		}
+		return delegate.compareTo(o);
+	}
+
+	@Override
+	public String getContentType() {
+		return delegate.getContentType();
+	}
+
+	@Override
+	public String getAbsolutePath() {
+		return delegate.getAbsolutePath();
+	}
+
+	@Override
+	public String getName() {
+		return delegate.getName();
+	}
+
+	@Override
+	public String getParent() {
+		return delegate.getParent();
+	}
+
+	@Override
+	public boolean isChildOfMine(FileSource child) throws IOException {
+		return delegate.isChildOfMine(InstrumentedFileSourceFactory.unwrap(child));
+	}
+
+	@Override
+	public Stream<FileSource> streamFiles(FileSourceFilter filter) throws IOException {
+		long start = System.nanoTime();
+		try {
+			Stream<FileSource> ret = delegate.streamFiles(filter);
+			statistics.record(Operation.ListFiles, start, 0, false);
+			return ret.map(factory::wrap);
+		} catch (IOException e) {
+			statistics.record(Operation.ListFiles, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public void dereferenceChilderen() {
+		delegate.dereferenceChilderen();
+	}
+
+	@Override
+	public URL toURL() throws MalformedURLException {
+		return delegate.toURL();
+	}
+
+	@Override
+	public boolean isVersionSupported() throws IOException {
+		return delegate.isVersionSupported();
+	}
+
+	@Override
+	public void refresh() throws IOException {
+		delegate.refresh();
+	}
+
+	@Override
+	public String getTitle() throws IOException {
+		return delegate.getTitle();
+	}
+
+	@Override
+	public long getCreateDate() throws IOException {
+		long start = System.nanoTime();
+		try {
+			long ret = delegate.getCreateDate();
+			statistics.record(Operation.GetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.GetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean canRead() throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.canRead();
+			statistics.record(Operation.GetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.GetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean canWrite() throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.canWrite();
+			statistics.record(Operation.GetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.GetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean canExecute() throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.canExecute();
+			statistics.record(Operation.GetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.GetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean canOwnerRead() throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.canOwnerRead();
+			statistics.record(Operation.GetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.GetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean canOwnerWrite() throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.canOwnerWrite();
+			statistics.record(Operation.GetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.GetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean canOwnerExecute() throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.canOwnerExecute();
+			statistics.record(Operation.GetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.GetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean canGroupRead() throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.canGroupRead();
+			statistics.record(Operation.GetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.GetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean canGroupWrite() throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.canGroupWrite();
+			statistics.record(Operation.GetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.GetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean canGroupExecute() throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.canGroupExecute();
+			statistics.record(Operation.GetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.GetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean canOtherRead() throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.canOtherRead();
+			statistics.record(Operation.GetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.GetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean canOtherWrite() throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.canOtherWrite();
+			statistics.record(Operation.GetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.GetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean canOtherExecute() throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.canOtherExecute();
+			statistics.record(Operation.GetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.GetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean createNewFile() throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.createNewFile();
+			statistics.record(Operation.CreateNewFile, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.CreateNewFile, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public FileSource getChild(String path) throws IOException {
+		long start = System.nanoTime();
+		try {
+			FileSource ret = delegate.getChild(path);
+			statistics.record(Operation.GetChild, start, 0, false);
+			return factory.wrap(ret);
+		} catch (IOException e) {
+			statistics.record(Operation.GetChild, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean delete() throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.delete();
+			statistics.record(Operation.Delete, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.Delete, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean exists() throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.exists();
+			statistics.record(Operation.Exists, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.Exists, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public String getCanonicalPath() throws IOException {
+		long start = System.nanoTime();
+		try {
+			String ret = delegate.getCanonicalPath();
+			statistics.record(Operation.GetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.GetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public FileSource getParentFile() throws IOException {
+		long start = System.nanoTime();
+		try {
+			FileSource ret = delegate.getParentFile();
+			statistics.record(Operation.GetParent, start, 0, false);
+			return factory.wrap(ret);
+		} catch (IOException e) {
+			statistics.record(Operation.GetParent, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean isDirectory() throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.isDirectory();
+			statistics.record(Operation.IsDirectory, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.IsDirectory, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean isFile() throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.isFile();
+			statistics.record(Operation.IsFile, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.IsFile, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean isHidden() throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.isHidden();
+			statistics.record(Operation.GetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.GetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public long length() throws IOException {
+		long start = System.nanoTime();
+		try {
+			long ret = delegate.length();
+			statistics.record(Operation.Length, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.Length, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public long lastAccessTime() throws IOException {
+		long start = System.nanoTime();
+		try {
+			long ret = delegate.lastAccessTime();
+			statistics.record(Operation.GetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.GetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public long creationTime() throws IOException {
+		long start = System.nanoTime();
+		try {
+			long ret = delegate.creationTime();
+			statistics.record(Operation.GetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.GetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public long lastModified() throws IOException {
+		long start = System.nanoTime();
+		try {
+			long ret = delegate.lastModified();
+			statistics.record(Operation.LastModified, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.LastModified, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public String[] list() throws IOException {
+		long start = System.nanoTime();
+		try {
+			String[] ret = delegate.list();
+			statistics.record(Operation.ListFiles, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.ListFiles, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public String[] list(FileSourceFilter filter) throws IOException {
+		long start = System.nanoTime();
+		try {
+			String[] ret = delegate.list(filter);
+			statistics.record(Operation.ListFiles, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.ListFiles, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public FileSource[] listFiles() throws IOException {
+		long start = System.nanoTime();
+		try {
+			FileSource[] ret = delegate.listFiles();
+			statistics.record(Operation.ListFiles, start, 0, false);
+			return factory.wrap(ret);
+		} catch (IOException e) {
+			statistics.record(Operation.ListFiles, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public FileSource[] listFiles(FileSourceFilter filter) throws IOException {
+		long start = System.nanoTime();
+		try {
+			FileSource[] ret = delegate.listFiles(filter);
+			statistics.record(Operation.ListFiles, start, 0, false);
+			return factory.wrap(ret);
+		} catch (IOException e) {
+			statistics.record(Operation.ListFiles, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public FileSource[] listFiles(ProgressMonitor progress) throws IOException {
+		long start = System.nanoTime();
+		try {
+			FileSource[] ret = delegate.listFiles(progress);
+			statistics.record(Operation.ListFiles, start, 0, false);
+			return factory.wrap(ret);
+		} catch (IOException e) {
+			statistics.record(Operation.ListFiles, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean mkdir() throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.mkdir();
+			statistics.record(Operation.Mkdir, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.Mkdir, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean mkdirs() throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.mkdirs();
+			statistics.record(Operation.Mkdirs, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.Mkdirs, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean renameTo(FileSource dest) throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.renameTo(InstrumentedFileSourceFactory.unwrap(dest));
+			statistics.record(Operation.RenameTo, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.RenameTo, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean setLastModifiedTime(long time) throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.setLastModifiedTime(time);
+			statistics.record(Operation.SetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.SetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean setLastAccessTime(long time) throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.setLastAccessTime(time);
+			statistics.record(Operation.SetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.SetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean setCreateTime(long time) throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.setCreateTime(time);
+			statistics.record(Operation.SetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.SetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean setExecutable(boolean b) throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.setExecutable(b);
+			statistics.record(Operation.SetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.SetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean setReadable(boolean b) throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.setReadable(b);
+			statistics.record(Operation.SetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.SetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean setWritable(boolean b) throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.setWritable(b);
+			statistics.record(Operation.SetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.SetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean setExecutable(boolean b, boolean ownerOnly) throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.setExecutable(b, ownerOnly);
+			statistics.record(Operation.SetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.SetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean setReadable(boolean b, boolean ownerOnly) throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.setReadable(b, ownerOnly);
+			statistics.record(Operation.SetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.SetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean setWritable(boolean b, boolean ownerOnly) throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.setWritable(b, ownerOnly);
+			statistics.record(Operation.SetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.SetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean setOwnerExecutable(boolean b) throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.setOwnerExecutable(b);
+			statistics.record(Operation.SetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.SetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean setOwnerReadable(boolean b) throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.setOwnerReadable(b);
+			statistics.record(Operation.SetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.SetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean setOwnerWritable(boolean b) throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.setOwnerWritable(b);
+			statistics.record(Operation.SetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.SetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean setGroupExecutable(boolean b) throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.setGroupExecutable(b);
+			statistics.record(Operation.SetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.SetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean setGroupReadable(boolean b) throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.setGroupReadable(b);
+			statistics.record(Operation.SetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.SetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean setGroupWritable(boolean b) throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.setGroupWritable(b);
+			statistics.record(Operation.SetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.SetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean setOtherExecutable(boolean b) throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.setOtherExecutable(b);
+			statistics.record(Operation.SetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.SetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean setOtherReadable(boolean b) throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.setOtherReadable(b);
+			statistics.record(Operation.SetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.SetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean setOtherWritable(boolean b) throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.setOtherWritable(b);
+			statistics.record(Operation.SetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.SetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean setReadOnly() throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.setReadOnly();
+			statistics.record(Operation.SetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.SetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		long start = System.nanoTime();
+		try {
+			InputStream ret = delegate.getInputStream();
+			statistics.record(Operation.OpenInput, start, 0, false);
+			return new InstrumentedInputStream(ret, statistics);
+		} catch (IOException e) {
+			statistics.record(Operation.OpenInput, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public InputStream getInputStream(long startingPosition) throws IOException {
+		long start = System.nanoTime();
+		try {
+			InputStream ret = delegate.getInputStream(startingPosition);
+			statistics.record(Operation.OpenInput, start, 0, false);
+			return new InstrumentedInputStream(ret, statistics);
+		} catch (IOException e) {
+			statistics.record(Operation.OpenInput, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public OutputStream getOutputStream() throws IOException {
+		long start = System.nanoTime();
+		try {
+			OutputStream ret = delegate.getOutputStream();
+			statistics.record(Operation.OpenOutput, start, 0, false);
+			return new InstrumentedOutputStream(ret, statistics);
+		} catch (IOException e) {
+			statistics.record(Operation.OpenOutput, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public OutputStream getOutputStream(boolean append) throws IOException {
+		long start = System.nanoTime();
+		try {
+			OutputStream ret = delegate.getOutputStream(append);
+			statistics.record(Operation.OpenOutput, start, 0, false);
+			return new InstrumentedOutputStream(ret, statistics);
+		} catch (IOException e) {
+			statistics.record(Operation.OpenOutput, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public IRandomAccessStream getRandomAccessStream(String mode) throws IOException {
+		long start = System.nanoTime();
+		try {
+			IRandomAccessStream ret = delegate.getRandomAccessStream(mode);
+			statistics.record(Operation.OpenRandomAccess, start, 0, false);
+			return new InstrumentedRandomAccessStream(ret, delegate, mode, statistics);
+		} catch (IOException e) {
+			statistics.record(Operation.OpenRandomAccess, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public ISeekableInputStream getSeekableInputStream() throws IOException {
+		long start = System.nanoTime();
+		try {
+			ISeekableInputStream ret = delegate.getSeekableInputStream();
+			statistics.record(Operation.OpenInput, start, 0, false);
+			return new InstrumentedSeekableInputStream(ret, this, statistics);
+		} catch (IOException e) {
+			statistics.record(Operation.OpenInput, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public long getVersion() throws IOException {
+		long start = System.nanoTime();
+		try {
+			long ret = delegate.getVersion();
+			statistics.record(Operation.GetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.GetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public long getVersionDate() throws IOException {
+		long start = System.nanoTime();
+		try {
+			long ret = delegate.getVersionDate();
+			statistics.record(Operation.GetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.GetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean setVersionDate(long time) throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.setVersionDate(time);
+			statistics.record(Operation.SetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.SetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean setVersion(long version, boolean saveChange) throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.setVersion(version, saveChange);
+			statistics.record(Operation.SetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.SetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public long getMaxVersion() throws IOException {
+		long start = System.nanoTime();
+		try {
+			long ret = delegate.getMaxVersion();
+			statistics.record(Operation.GetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.GetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public FileSource getLinkedTo() throws IOException {
+		long start = System.nanoTime();
+		try {
+			FileSource ret = delegate.getLinkedTo();
+			statistics.record(Operation.GetAttribute, start, 0, false);
+			return factory.wrap(ret);
+		} catch (IOException e) {
+			statistics.record(Operation.GetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public GroupPrincipal getGroup() throws IOException {
+		long start = System.nanoTime();
+		try {
+			GroupPrincipal ret = delegate.getGroup();
+			statistics.record(Operation.GetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.GetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean setGroup(GroupPrincipal group) throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.setGroup(group);
+			statistics.record(Operation.SetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.SetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public UserPrincipal getOwner() throws IOException {
+		long start = System.nanoTime();
+		try {
+			UserPrincipal ret = delegate.getOwner();
+			statistics.record(Operation.GetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.GetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean setOwner(UserPrincipal owner) throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.setOwner(owner);
+			statistics.record(Operation.SetAttribute, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.SetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof InstrumentedFileSource) {
+			obj = ((InstrumentedFileSource) obj).delegate;
+		}
+		return delegate.equals(obj);
+	}
+
+	@Override
+	public int hashCode() {
+		return delegate.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return delegate.toString();
+	}
+
+}
@@ -0,0 +1,261 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.instrumented;
+
+import java.awt.Component;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Properties;
+
+import us.bringardner.io.filesource.FileSource;
+import us.bringardner.io.filesource.FileSourceFactory;
+import us.bringardner.io.filesource.FileSourceUser;
+import us.bringardner.io.filesource.instrumented.FileSourceStatistics.Operation;
+
+/**
+ * Wraps any FileSourceFactory and records the count, errors, bytes and latency of each call made 
+ * through the FileSources (and streams) it returns in a FileSourceStatistics.
+ *
+ * The type id, URL and connection properties are those of the wrapped factory, so a URL made from 
+ * an instrumented FileSource resolves to the wrapped factory.
+ * Copies made with createThreadSafeCopy share the statistics of the original.
+ */
+public class InstrumentedFileSourceFactory extends FileSourceFactory {
+
+	private static final long serialVersionUID = 1L;
+
+	private final FileSourceFactory delegate;
+	private final FileSourceStatistics statistics;
+
+	public InstrumentedFileSourceFactory(FileSourceFactory delegate) {
+		this(delegate, new FileSourceStatistics());
+	}
+
+	public InstrumentedFileSourceFactory(FileSourceFactory delegate, FileSourceStatistics statistics) {
+		if( delegate == null ) {
+			throw new IllegalArgumentException("No factory to instrument");
+		}
+		this.delegate = delegate;
+		this.statistics = statistics;
+	}
+
+	public FileSourceFactory getDelegate() {
+		return delegate;
+	}
+
+	public FileSourceStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * @param file
+	 * @return file wrapped so it's calls are recorded
+	 */
+	FileSource wrap(FileSource file) {
+		FileSource ret = file;
+		if( file != null && !(file instanceof InstrumentedFileSource)) {
+			ret = new InstrumentedFileSource(this, file);
+		}
+		return ret;
+	}
+
+	FileSource[] wrap(FileSource[] files) {
+		FileSource[] ret = null;
+		if( files != null ) {
+			//  files may be an array of the wrapped type
+			ret = new FileSource[files.length];
+			for (int idx = 0; idx < files.length; idx++) {
+				ret[idx] = wrap(files[idx]);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @param file
+	 * @return the FileSource wrapped by file or file if it's not an InstrumentedFileSource
+	 */
+	public static FileSource unwrap(FileSource file) {
+		if (file instanceof InstrumentedFileSource) {
+			return ((InstrumentedFileSource) file).getDelegate();
+		}
+		return file;
+	}
+
+	@Override
+	public FileSource[] listRoots() throws IOException {
+		return wrap(delegate.listRoots());
+	}
+
+	@Override
+	public FileSource getCurrentDirectory() throws IOException {
+		return wrap(delegate.getCurrentDirectory());
+	}
+
+	@Override
+	public boolean isVersionSupported() {
+		return delegate.isVersionSupported();
+	}
+
+	@Override
+	public void setCurrentDirectory(FileSource dir) throws IOException {
+		delegate.setCurrentDirectory(unwrap(dir));
+	}
+
+	@Override
+	public FileSource createFileSource(String fullPath) throws IOException {
+		long start = System.nanoTime();
+		try {
+			FileSource ret = delegate.createFileSource(fullPath);
+			statistics.record(Operation.CreateFileSource, start, 0, false);
+			return wrap(ret);
+		} catch (IOException e) {
+			statistics.record(Operation.CreateFileSource, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public String getTypeId() {
+		return delegate.getTypeId();
+	}
+
+	@Override
+	public boolean isConnected() {
+		return delegate.isConnected();
+	}
+
+	@Override
+	protected boolean connectImpl() throws IOException {
+		long start = System.nanoTime();
+		try {
+			boolean ret = delegate.connect();
+			statistics.record(Operation.Connect, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.Connect, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public Component getEditPropertiesComponent() {
+		return delegate.getEditPropertiesComponent();
+	}
+
+	@Override
+	protected void disConnectImpl() throws IOException {
+		long start = System.nanoTime();
+		try {
+			delegate.disConnect();
+			statistics.record(Operation.Disconnect, start, 0, false);
+		} catch (IOException e) {
+			statistics.record(Operation.Disconnect, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public FileSourceFactory createThreadSafeCopy() {
+		FileSourceFactory copy = delegate.createThreadSafeCopy();
+		if( copy == delegate ) {
+			return this;
+		}
+		return new InstrumentedFileSourceFactory(copy, statistics);
+	}
+
+	@Override
+	public Properties getConnectProperties() {
+		return delegate.getConnectProperties();
+	}
+
+	@Override
+	public char getPathSeperatorChar() {
+		return delegate.getPathSeperatorChar();
+	}
+
+	@Override
+	public char getSeperatorChar() {
+		return delegate.getSeperatorChar();
+	}
+
+	@Override
+	public FileSource createSymbolicLink(FileSource newFileLink, FileSource existingFile) throws IOException {
+		long start = System.nanoTime();
+		try {
+			FileSource ret = delegate.createSymbolicLink(unwrap(newFileLink), unwrap(existingFile));
+			statistics.record(Operation.CreateLink, start, 0, false);
+			return wrap(ret);
+		} catch (IOException e) {
+			statistics.record(Operation.CreateLink, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public FileSource createLink(FileSource newFileLink, FileSource existingFile) throws IOException {
+		long start = System.nanoTime();
+		try {
+			FileSource ret = delegate.createLink(unwrap(newFileLink), unwrap(existingFile));
+			statistics.record(Operation.CreateLink, start, 0, false);
+			return wrap(ret);
+		} catch (IOException e) {
+			statistics.record(Operation.CreateLink, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public void setConnectionProperties(URL url) {
+		delegate.setConnectionProperties(url);
+	}
+
+	@Override
+	public void setConnectionProperties(Properties prop) {
+		delegate.setConnectionProperties(prop);
+	}
+
+	@Override
+	public String getTitle() {
+		return delegate.getTitle();
+	}
+
+	@Override
+	public String getURL() {
+		return delegate.getURL();
+	}
+
+	@Override
+	public FileSourceUser whoAmI() {
+		return delegate.whoAmI();
+	}
+
+	@Override
+	public String toString() {
+		return "Instrumented "+delegate;
+	}
+
+}
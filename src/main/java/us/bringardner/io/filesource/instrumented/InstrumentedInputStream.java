@@ -0,0 +1,109 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.instrumented;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import us.bringardner.io.filesource.instrumented.FileSourceStatistics.Operation;
+
+/**
+ * Records the reads and close of an InputStream returned by an InstrumentedFileSource.
+ */
+class InstrumentedInputStream extends InputStream {
+
+	private final InputStream delegate;
+	private final FileSourceStatistics statistics;
+
+	InstrumentedInputStream(InputStream delegate, FileSourceStatistics statistics) {
+		this.delegate = delegate;
+		this.statistics = statistics;
+	}
+
+	@Override
+	public int read() throws IOException {
+		long start = System.nanoTime();
+		try {
+			int ret = delegate.read();
+			statistics.record(Operation.Read, start, ret < 0 ? 0 : 1, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.Read, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		long start = System.nanoTime();
+		try {
+			int ret = delegate.read(b, off, len);
+			statistics.record(Operation.Read, start, ret, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.Read, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		return delegate.skip(n);
+	}
+
+	@Override
+	public int available() throws IOException {
+		return delegate.available();
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {
+		delegate.mark(readlimit);
+	}
+
+	@Override
+	public synchronized void reset() throws IOException {
+		delegate.reset();
+	}
+
+	@Override
+	public boolean markSupported() {
+		return delegate.markSupported();
+	}
+
+	@Override
+	public void close() throws IOException {
+		long start = System.nanoTime();
+		try {
+			delegate.close();
+			statistics.record(Operation.Close, start, 0, false);
+		} catch (IOException e) {
+			statistics.record(Operation.Close, start, 0, true);
+			throw e;
+		}
+	}
+
+}
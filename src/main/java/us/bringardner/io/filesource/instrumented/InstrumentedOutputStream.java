@@ -0,0 +1,94 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.instrumented;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import us.bringardner.io.filesource.instrumented.FileSourceStatistics.Operation;
+
+/**
+ * Records the writes, flushes and close of an OutputStream returned by an InstrumentedFileSource.
+ */
+class InstrumentedOutputStream extends OutputStream {
+
+	private final OutputStream delegate;
+	private final FileSourceStatistics statistics;
+
+	InstrumentedOutputStream(OutputStream delegate, FileSourceStatistics statistics) {
+		this.delegate = delegate;
+		this.statistics = statistics;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		long start = System.nanoTime();
+		try {
+			delegate.write(b);
+			statistics.record(Operation.Write, start, 1, false);
+		} catch (IOException e) {
+			statistics.record(Operation.Write, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		long start = System.nanoTime();
+		try {
+			delegate.write(b, off, len);
+			statistics.record(Operation.Write, start, len, false);
+		} catch (IOException e) {
+			statistics.record(Operation.Write, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		long start = System.nanoTime();
+		try {
+			delegate.flush();
+			statistics.record(Operation.Flush, start, 0, false);
+		} catch (IOException e) {
+			statistics.record(Operation.Flush, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		long start = System.nanoTime();
+		try {
+			delegate.close();
+			statistics.record(Operation.Close, start, 0, false);
+		} catch (IOException e) {
+			statistics.record(Operation.Close, start, 0, true);
+			throw e;
+		}
+	}
+
+}
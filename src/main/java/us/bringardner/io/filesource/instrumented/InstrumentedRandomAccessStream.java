@@ -0,0 +1,164 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.instrumented;
+
+import java.io.IOException;
+
+import us.bringardner.io.filesource.AbstractRandomAccessStream;
+import us.bringardner.io.filesource.FileSource;
+import us.bringardner.io.filesource.IRandomAccessStream;
+import us.bringardner.io.filesource.instrumented.FileSourceStatistics.Operation;
+
+/**
+ * Records the reads, writes and seeks of an IRandomAccessStream returned by an InstrumentedFileSource.
+ * The DataInput and DataOutput methods of AbstractRandomAccessStream are built on these so they are recorded too.
+ */
+class InstrumentedRandomAccessStream extends AbstractRandomAccessStream {
+
+	private final IRandomAccessStream delegate;
+	private final FileSourceStatistics statistics;
+
+	/**
+	 * @param delegate
+	 * @param file the wrapped FileSource delegate was opened on
+	 * @param mode delegate was opened with
+	 * @param statistics
+	 * @throws IOException
+	 */
+	InstrumentedRandomAccessStream(IRandomAccessStream delegate, FileSource file, String mode, FileSourceStatistics statistics) throws IOException {
+		super(file, mode);
+		this.delegate = delegate;
+		this.statistics = statistics;
+	}
+
+	@Override
+	public int read() throws IOException {
+		long start = System.nanoTime();
+		try {
+			int ret = delegate.read();
+			statistics.record(Operation.Read, start, ret < 0 ? 0 : 1, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.Read, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public int readBytes(byte[] b, int off, int len) throws IOException {
+		long start = System.nanoTime();
+		try {
+			int ret = delegate.read(b, off, len);
+			statistics.record(Operation.Read, start, ret, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.Read, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		long start = System.nanoTime();
+		try {
+			delegate.write(b);
+			statistics.record(Operation.Write, start, 1, false);
+		} catch (IOException e) {
+			statistics.record(Operation.Write, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public void writeBytes(byte[] b, int off, int len) throws IOException {
+		long start = System.nanoTime();
+		try {
+			delegate.write(b, off, len);
+			statistics.record(Operation.Write, start, len, false);
+		} catch (IOException e) {
+			statistics.record(Operation.Write, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public long getFilePointer() throws IOException {
+		if (delegate instanceof AbstractRandomAccessStream) {
+			return ((AbstractRandomAccessStream) delegate).getFilePointer();
+		}
+		throw new IOException("getFilePointer is not supported by "+delegate.getClass().getName());
+	}
+
+	@Override
+	public void seek(long pos) throws IOException {
+		long start = System.nanoTime();
+		try {
+			delegate.seek(pos);
+			statistics.record(Operation.Seek, start, 0, false);
+		} catch (IOException e) {
+			statistics.record(Operation.Seek, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public long length() throws IOException {
+		long start = System.nanoTime();
+		try {
+			long ret = delegate.length();
+			statistics.record(Operation.Length, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.Length, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public void setLength(long newLength) throws IOException {
+		long start = System.nanoTime();
+		try {
+			delegate.setLength(newLength);
+			statistics.record(Operation.SetAttribute, start, 0, false);
+		} catch (IOException e) {
+			statistics.record(Operation.SetAttribute, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		long start = System.nanoTime();
+		try {
+			delegate.close();
+			statistics.record(Operation.Close, start, 0, false);
+		} catch (IOException e) {
+			statistics.record(Operation.Close, start, 0, true);
+			throw e;
+		}
+	}
+
+}
@@ -0,0 +1,133 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.instrumented;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import us.bringardner.io.filesource.FileSource;
+import us.bringardner.io.filesource.ISeekableInputStream;
+import us.bringardner.io.filesource.instrumented.FileSourceStatistics.Operation;
+
+/**
+ * Records the reads and seeks of an ISeekableInputStream returned by an InstrumentedFileSource.
+ */
+class InstrumentedSeekableInputStream implements ISeekableInputStream {
+
+	private final ISeekableInputStream delegate;
+	private final FileSource file;
+	private final FileSourceStatistics statistics;
+
+	InstrumentedSeekableInputStream(ISeekableInputStream delegate, FileSource file, FileSourceStatistics statistics) {
+		this.delegate = delegate;
+		this.file = file;
+		this.statistics = statistics;
+	}
+
+	@Override
+	public long length() throws IOException {
+		long start = System.nanoTime();
+		try {
+			long ret = delegate.length();
+			statistics.record(Operation.Length, start, 0, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.Length, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public void seek(long pos) throws IOException {
+		long start = System.nanoTime();
+		try {
+			delegate.seek(pos);
+			statistics.record(Operation.Seek, start, 0, false);
+		} catch (IOException e) {
+			statistics.record(Operation.Seek, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		long start = System.nanoTime();
+		try {
+			int ret = delegate.read();
+			statistics.record(Operation.Read, start, ret < 0 ? 0 : 1, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.Read, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public int read(byte[] data, int offset, int len) throws IOException {
+		long start = System.nanoTime();
+		try {
+			int ret = delegate.read(data, offset, len);
+			statistics.record(Operation.Read, start, ret, false);
+			return ret;
+		} catch (IOException e) {
+			statistics.record(Operation.Read, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public int read(byte[] data) throws IOException {
+		return read(data, 0, data.length);
+	}
+
+	@Override
+	public void close() throws IOException {
+		long start = System.nanoTime();
+		try {
+			delegate.close();
+			statistics.record(Operation.Close, start, 0, false);
+		} catch (IOException e) {
+			statistics.record(Operation.Close, start, 0, true);
+			throw e;
+		}
+	}
+
+	@Override
+	public long getFilePointer() throws IOException {
+		return delegate.getFilePointer();
+	}
+
+	@Override
+	public FileSource getFile() throws IOException {
+		return file;
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		return new InstrumentedInputStream(delegate.getInputStream(), statistics);
+	}
+
+}
@@ -0,0 +1,146 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.instrumented;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of latencies in nanoseconds.
+ *
+ * Like an HdrHistogram, values are counted in buckets whose width doubles with each power of two,
+ * every power of two is split into 16 sub buckets so any value is reported within about 6% of it's real value.
+ * Values up to 2^37 nanoseconds (a little over two minutes) have their own bucket, larger values are counted in the last one.
+ *
+ * The counts are striped by thread so threads recording at the same time rarely update the same counter,
+ * recording never locks or allocates.
+ */
+public class LatencyHistogram {
+
+	public static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_EXPONENT = 36;
+	public static final int BUCKETS = (MAX_EXPONENT-SUB_BUCKET_BITS+2)*SUB_BUCKETS;
+	private static final int STRIPES = Integer.highestOneBit(Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors())));
+
+	/**
+	 * @param value
+	 * @return index of the bucket value is counted in
+	 */
+	public static int getBucket(long value) {
+		if( value < SUB_BUCKETS ) {
+			return value < 0 ? 0 : (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if( exponent > MAX_EXPONENT ) {
+			return BUCKETS-1;
+		}
+		int shift = exponent - SUB_BUCKET_BITS;
+		return (shift+1)*SUB_BUCKETS + (int)((value >>> shift) & (SUB_BUCKETS-1));
+	}
+
+	/**
+	 * @param bucket
+	 * @return the smallest value counted in bucket
+	 */
+	public static long getLowestValue(int bucket) {
+		if( bucket < SUB_BUCKETS ) {
+			return bucket;
+		}
+		int shift = bucket/SUB_BUCKETS - 1;
+		return ((long)(SUB_BUCKETS + bucket%SUB_BUCKETS)) << shift;
+	}
+
+	/**
+	 * @param bucket
+	 * @return the largest value counted in bucket
+	 */
+	public static long getHighestValue(int bucket) {
+		if( bucket < SUB_BUCKETS ) {
+			return bucket;
+		}
+		if( bucket == BUCKETS-1 ) {
+			return Long.MAX_VALUE;
+		}
+		int shift = bucket/SUB_BUCKETS - 1;
+		return getLowestValue(bucket) + (1L << shift) - 1;
+	}
+
+	private final AtomicLongArray counts = new AtomicLongArray(STRIPES*BUCKETS);
+
+	public LatencyHistogram() {
+	}
+
+	@SuppressWarnings("deprecation")
+	public void record(long nanos) {
+		int stripe = (int) Thread.currentThread().getId() & (STRIPES-1);
+		counts.incrementAndGet(stripe*BUCKETS + getBucket(nanos));
+	}
+
+	/**
+	 * @return the number of values counted in each bucket
+	 */
+	public long[] getCounts() {
+		long [] ret = new long[BUCKETS];
+		for (int stripe = 0; stripe < STRIPES; stripe++) {
+			int base = stripe*BUCKETS;
+			for (int idx = 0; idx < BUCKETS; idx++) {
+				ret[idx] += counts.get(base+idx);
+			}
+		}
+		return ret;
+	}
+
+	public void reset() {
+		for (int idx = 0, len = counts.length(); idx < len; idx++) {
+			counts.set(idx, 0);
+		}
+	}
+
+	/**
+	 * @param counts as returned by getCounts
+	 * @param percentile 0 to 100
+	 * @return the largest value in the bucket that holds the percentile or 0 if nothing is counted
+	 */
+	public static long getValueAtPercentile(long [] counts, double percentile) {
+		long total = 0;
+		for(long cnt : counts) {
+			total += cnt;
+		}
+		if( total == 0 ) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+		long seen = 0;
+		for (int idx = 0; idx < counts.length; idx++) {
+			seen += counts[idx];
+			if( seen >= target ) {
+				return getHighestValue(idx);
+			}
+		}
+		return getHighestValue(counts.length-1);
+	}
+
+}
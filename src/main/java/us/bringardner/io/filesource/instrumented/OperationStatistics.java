@@ -0,0 +1,117 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.instrumented;
+
+/**
+ * A point in time copy of the counters kept for one operation by FileSourceStatistics.
+ * All times are in nanoseconds.
+ */
+public class OperationStatistics {
+
+	private final String operation;
+	private final long count;
+	private final long errors;
+	private final long bytes;
+	private final long totalNanos;
+	private final long maxNanos;
+	private final long [] histogram;
+
+	public OperationStatistics(String operation, long count, long errors, long bytes, long totalNanos, long maxNanos, long [] histogram) {
+		this.operation = operation;
+		this.count = count;
+		this.errors = errors;
+		this.bytes = bytes;
+		this.totalNanos = totalNanos;
+		this.maxNanos = maxNanos;
+		this.histogram = histogram;
+	}
+
+	public String getOperation() {
+		return operation;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return number of calls that threw an IOException
+	 */
+	public long getErrors() {
+		return errors;
+	}
+
+	/**
+	 * @return bytes read or written, only counted for stream operations
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	public long getMeanNanos() {
+		return count == 0 ? 0 : totalNanos/count;
+	}
+
+	/**
+	 * @param percentile 0 to 100
+	 * @return the latency that percentile of the calls were at or below (to the resolution of LatencyHistogram)
+	 */
+	public long getPercentileNanos(double percentile) {
+		return Math.min(maxNanos, LatencyHistogram.getValueAtPercentile(histogram, percentile));
+	}
+
+	public long getP50Nanos() {
+		return getPercentileNanos(50);
+	}
+
+	public long getP90Nanos() {
+		return getPercentileNanos(90);
+	}
+
+	public long getP99Nanos() {
+		return getPercentileNanos(99);
+	}
+
+	public long getP999Nanos() {
+		return getPercentileNanos(99.9);
+	}
+
+	@Override
+	public String toString() {
+		return operation + ": count=" + count + ", errors=" + errors + ", bytes=" + bytes + ", mean=" + getMeanNanos()
+				+ ", p50=" + getP50Nanos() + ", p90=" + getP90Nanos() + ", p99=" + getP99Nanos() + ", p999=" + getP999Nanos()
+				+ ", max=" + maxNanos;
+	}
+
+}
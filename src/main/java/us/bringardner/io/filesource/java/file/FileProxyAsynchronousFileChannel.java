@@ -0,0 +1,149 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.java.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileLock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import us.bringardner.io.filesource.fileproxy.FileProxy;
+
+/**
+ * The AsynchronousFileChannel of a local file opened through the provider.
+ * 
+ * Passes everything on to the real channel and discards the attributes FileProxy holds for the file
+ * when a write completes, after truncate and on close so they never show the old size or time.
+ */
+class FileProxyAsynchronousFileChannel extends AsynchronousFileChannel {
+
+	private final AsynchronousFileChannel channel;
+	private final File target;
+
+	FileProxyAsynchronousFileChannel(AsynchronousFileChannel channel, File target) {
+		this.channel = channel;
+		this.target = target;
+		FileProxy.refresh(target);
+	}
+
+	@Override
+	public boolean isOpen() {
+		return channel.isOpen();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			channel.close();
+		} finally {
+			FileProxy.refresh(target);
+		}
+	}
+
+	@Override
+	public long size() throws IOException {
+		return channel.size();
+	}
+
+	@Override
+	public AsynchronousFileChannel truncate(long size) throws IOException {
+		channel.truncate(size);
+		FileProxy.refresh(target);
+		return this;
+	}
+
+	@Override
+	public void force(boolean metaData) throws IOException {
+		channel.force(metaData);
+	}
+
+	@Override
+	public <A> void lock(long position, long size, boolean shared, A attachment,
+			CompletionHandler<FileLock, ? super A> handler) {
+		channel.lock(position, size, shared, attachment, handler);
+	}
+
+	@Override
+	public Future<FileLock> lock(long position, long size, boolean shared) {
+		return channel.lock(position, size, shared);
+	}
+
+	@Override
+	public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+		return channel.tryLock(position, size, shared);
+	}
+
+	@Override
+	public <A> void read(ByteBuffer dst, long position, A attachment, CompletionHandler<Integer, ? super A> handler) {
+		channel.read(dst, position, attachment, handler);
+	}
+
+	@Override
+	public Future<Integer> read(ByteBuffer dst, long position) {
+		return channel.read(dst, position);
+	}
+
+	@Override
+	public <A> void write(ByteBuffer src, long position, A attachment, CompletionHandler<Integer, ? super A> handler) {
+		channel.write(src, position, attachment, new CompletionHandler<Integer, A>() {
+
+			@Override
+			public void completed(Integer result, A attachment) {
+				FileProxy.refresh(target);
+				handler.completed(result, attachment);
+			}
+
+			@Override
+			public void failed(Throwable exc, A attachment) {
+				FileProxy.refresh(target);
+				handler.failed(exc, attachment);
+			}
+		});
+	}
+
+	@Override
+	public Future<Integer> write(ByteBuffer src, long position) {
+		CompletableFuture<Integer> ret = new CompletableFuture<>();
+		write(src, position, null, new CompletionHandler<Integer, Void>() {
+
+			@Override
+			public void completed(Integer result, Void attachment) {
+				ret.complete(result);
+			}
+
+			@Override
+			public void failed(Throwable exc, Void attachment) {
+				ret.completeExceptionally(exc);
+			}
+		});
+		return ret;
+	}
+
+}
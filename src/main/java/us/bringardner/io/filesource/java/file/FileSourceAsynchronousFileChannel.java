@@ -0,0 +1,225 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.java.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileLock;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import us.bringardner.io.filesource.ISeekableInputStream;
+
+/**
+ * An AsynchronousFileChannel for any FileSource.
+ *
+ * Each read or write is a positional operation that runs as a task on the executor.  
+ * The executor belongs to the caller and is not shut down when the channel is closed.
+ * 
+ * Writes (and reads when the channel is writable, so they see the writes) go through one FileSourceFileChannel
+ * and are done one at a time.  Reads from a read only channel each use their own ISeekableInputStream so they run in parallel,
+ * up to MAX_IDLE_READERS streams are kept open for the next reads.
+ * Locking is not supported.
+ */
+public class FileSourceAsynchronousFileChannel extends AsynchronousFileChannel {
+
+	public static final int MAX_IDLE_READERS = 8;
+	private static final int TRANSFER_SIZE = 1024*64;
+
+	private FileSourceFileChannel channel;
+	private ExecutorService executor;
+	private final BlockingQueue<ISeekableInputStream> readers = new ArrayBlockingQueue<>(MAX_IDLE_READERS);
+
+	public FileSourceAsynchronousFileChannel(FileSourceFileChannel channel, ExecutorService executor) {
+		this.channel = channel;
+		this.executor = executor;
+	}
+
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	private <T> Future<T> submit(Callable<T> task) {
+		if( !isOpen()) {
+			CompletableFuture<T> ret = new CompletableFuture<>();
+			ret.completeExceptionally(new ClosedChannelException());
+			return ret;
+		}
+		return executor.submit(task);
+	}
+
+	private <T,A> void execute(Callable<T> task, A attachment, CompletionHandler<T, ? super A> handler) {
+		if( handler == null ) {
+			throw new NullPointerException("handler");
+		}
+		if( !isOpen()) {
+			handler.failed(new ClosedChannelException(), attachment);
+			return;
+		}
+		executor.execute(()->{
+			T ret = null;
+			try {
+				ret = task.call();
+			} catch (Throwable e) {
+				handler.failed(e, attachment);
+				return;
+			}
+			handler.completed(ret, attachment);
+		});
+	}
+
+	@Override
+	public boolean isOpen() {
+		return channel.isOpen();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			channel.close();
+		} finally {
+			ISeekableInputStream in = null;
+			while( (in = readers.poll()) != null ) {
+				in.close();
+			}
+		}
+	}
+
+	@Override
+	public long size() throws IOException {
+		return channel.size();
+	}
+
+	@Override
+	public AsynchronousFileChannel truncate(long size) throws IOException {
+		channel.truncate(size);
+		return this;
+	}
+
+	@Override
+	public void force(boolean metaData) throws IOException {
+		channel.force(metaData);
+	}
+
+	@Override
+	public <A> void lock(long position, long size, boolean shared, A attachment,
+			CompletionHandler<FileLock, ? super A> handler) {
+		throw new UnsupportedOperationException("lock is not supported");
+	}
+
+	@Override
+	public Future<FileLock> lock(long position, long size, boolean shared) {
+		throw new UnsupportedOperationException("lock is not supported");
+	}
+
+	@Override
+	public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+		throw new UnsupportedOperationException("tryLock is not supported");
+	}
+
+	@Override
+	public <A> void read(ByteBuffer dst, long position, A attachment,
+			CompletionHandler<Integer, ? super A> handler) {
+		checkPosition(position);
+		execute(()->readAt(dst, position), attachment, handler);
+	}
+
+	@Override
+	public Future<Integer> read(ByteBuffer dst, long position) {
+		checkPosition(position);
+		return submit(()->readAt(dst, position));
+	}
+
+	@Override
+	public <A> void write(ByteBuffer src, long position, A attachment,
+			CompletionHandler<Integer, ? super A> handler) {
+		checkPosition(position);
+		execute(()->channel.write(src, position), attachment, handler);
+	}
+
+	@Override
+	public Future<Integer> write(ByteBuffer src, long position) {
+		checkPosition(position);
+		return submit(()->channel.write(src, position));
+	}
+
+	private int readAt(ByteBuffer dst, long position) throws IOException {
+		if( channel.isWritable()) {
+			return channel.read(dst, position);
+		}
+		if( !isOpen()) {
+			throw new ClosedChannelException();
+		}
+		if( !dst.hasRemaining()) {
+			return 0;
+		}
+
+		ISeekableInputStream in = readers.poll();
+		if( in == null ) {
+			in = channel.getFile().getSeekableInputStream();
+		}
+		boolean reuse = false;
+		try {
+			in.seek(position);
+			int ret = 0;
+			if( dst.hasArray()) {
+				ret = in.read(dst.array(), dst.arrayOffset()+dst.position(), dst.remaining());
+				if( ret > 0 ) {
+					dst.position(dst.position()+ret);
+				}
+			} else {
+				byte [] tmp = new byte[Math.min(dst.remaining(), TRANSFER_SIZE)];
+				ret = in.read(tmp, 0, tmp.length);
+				if( ret > 0 ) {
+					dst.put(tmp, 0, ret);
+				}
+			}
+			reuse = true;
+			return ret;
+		} finally {
+			if( !reuse || !readers.offer(in) ) {
+				in.close();
+			} else if( !isOpen() && readers.remove(in)) {
+				//  Closed while we were reading
+				in.close();
+			}
+		}
+	}
+
+	private void checkPosition(long position) {
+		if( position < 0 ) {
+			throw new IllegalArgumentException("Negative position");
+		}
+	}
+
+}
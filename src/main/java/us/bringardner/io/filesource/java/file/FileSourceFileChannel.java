@@ -0,0 +1,406 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~V000.00.01-V000.00.00-
+ */
+package us.bringardner.io.filesource.java.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.locks.ReentrantLock;
+
+import us.bringardner.io.filesource.FileSource;
+import us.bringardner.io.filesource.FileSourceRandomAccessStream;
+import us.bringardner.io.filesource.IRandomAccessStream;
+
+/**
+ * A FileChannel (and so a SeekableByteChannel) for any FileSource
+ * that supports getRandomAccessStream.
+ *
+ * The channel keeps it's own position and seeks the stream before each operation
+ * so positional reads and writes do not change the channel position.
+ * Memory mapping and locking are not supported.
+ */
+public class FileSourceFileChannel extends FileChannel {
+
+	private static final int TRANSFER_SIZE = 1024*64;
+
+	private FileSource file;
+	private IRandomAccessStream stream;
+	private boolean readable;
+	private boolean writable;
+	private boolean append;
+	private boolean deleteOnClose;
+	private long position = 0;
+	//  Not a monitor so a virtual thread waiting for IO does not pin it's carrier
+	private final ReentrantLock lock = new ReentrantLock();
+
+	public FileSourceFileChannel(FileSource file, IRandomAccessStream stream,boolean readable, boolean writable, boolean append, boolean deleteOnClose) {
+		this.file = file;
+		this.stream = stream;
+		this.readable = readable;
+		this.writable = writable;
+		this.append = append;
+		this.deleteOnClose = deleteOnClose;
+	}
+
+	public FileSource getFile() {
+		return file;
+	}
+
+	/**
+	 * @return true if the channel was opened for writing
+	 */
+	boolean isWritable() {
+		return writable;
+	}
+
+	private void checkOpen() throws IOException {
+		if( !isOpen()) {
+			throw new ClosedChannelException();
+		}
+	}
+
+	private void checkReadable() throws IOException {
+		checkOpen();
+		if( !readable ) {
+			throw new NonReadableChannelException();
+		}
+	}
+
+	private void checkWritable() throws IOException {
+		checkOpen();
+		if( !writable ) {
+			throw new NonWritableChannelException();
+		}
+	}
+
+	/**
+	 * Read from pos into dst without changing the channel position
+	 */
+	private int readAt(ByteBuffer dst, long pos) throws IOException {
+		int len = dst.remaining();
+		if( len == 0 ) {
+			return 0;
+		}
+
+		int ret = 0;
+		lock.lock();
+		try {
+			stream.seek(pos);
+			if( dst.hasArray()) {
+				ret = stream.read(dst.array(), dst.arrayOffset()+dst.position(), len);
+				if( ret > 0 ) {
+					dst.position(dst.position()+ret);
+				}
+			} else {
+				byte [] tmp = new byte[Math.min(len, TRANSFER_SIZE)];
+				ret = stream.read(tmp, 0, tmp.length);
+				if( ret > 0 ) {
+					dst.put(tmp, 0, ret);
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+		return ret;
+	}
+
+	/**
+	 * Write src at pos without changing the channel position
+	 */
+	private int writeAt(ByteBuffer src, long pos) throws IOException {
+		int len = src.remaining();
+		lock.lock();
+		try {
+			stream.seek(pos);
+			if( src.hasArray()) {
+				stream.write(src.array(), src.arrayOffset()+src.position(), len);
+				src.position(src.position()+len);
+			} else {
+				byte [] tmp = new byte[Math.min(len, TRANSFER_SIZE)];
+				int done = 0;
+				while( done < len ) {
+					int cnt = Math.min(tmp.length, len-done);
+					src.get(tmp, 0, cnt);
+					stream.write(tmp, 0, cnt);
+					done += cnt;
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+		return len;
+	}
+
+	@Override
+	public int read(ByteBuffer dst) throws IOException {
+		checkReadable();
+		lock.lock();
+		try {
+			int ret = readAt(dst, position);
+			if( ret > 0 ) {
+				position += ret;
+			}
+			return ret;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+		if( offset < 0 || length < 0 || offset > dsts.length-length) {
+			throw new IndexOutOfBoundsException();
+		}
+		checkReadable();
+		long ret = 0;
+		lock.lock();
+		try {
+			for (int idx = offset; idx < offset+length; idx++) {
+				if( !dsts[idx].hasRemaining()) {
+					continue;
+				}
+				int cnt = read(dsts[idx]);
+				if( cnt < 0 ) {
+					if( ret == 0 ) {
+						ret = -1;
+					}
+					break;
+				}
+				ret += cnt;
+				if( dsts[idx].hasRemaining()) {
+					break;
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+		return ret;
+	}
+
+	@Override
+	public int write(ByteBuffer src) throws IOException {
+		checkWritable();
+		lock.lock();
+		try {
+			if( append ) {
+				position = stream.length();
+			}
+			int ret = writeAt(src, position);
+			position += ret;
+			return ret;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+		if( offset < 0 || length < 0 || offset > srcs.length-length) {
+			throw new IndexOutOfBoundsException();
+		}
+		checkWritable();
+		long ret = 0;
+		lock.lock();
+		try {
+			for (int idx = offset; idx < offset+length; idx++) {
+				ret += write(srcs[idx]);
+			}
+		} finally {
+			lock.unlock();
+		}
+		return ret;
+	}
+
+	@Override
+	public long position() throws IOException {
+		checkOpen();
+		return position;
+	}
+
+	@Override
+	public FileChannel position(long newPosition) throws IOException {
+		checkOpen();
+		if( newPosition < 0 ) {
+			throw new IllegalArgumentException("Negative position");
+		}
+		lock.lock();
+		try {
+			position = newPosition;
+		} finally {
+			lock.unlock();
+		}
+		return this;
+	}
+
+	@Override
+	public long size() throws IOException {
+		checkOpen();
+		lock.lock();
+		try {
+			return stream.length();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public FileChannel truncate(long size) throws IOException {
+		if( size < 0 ) {
+			throw new IllegalArgumentException("Negative size");
+		}
+		checkWritable();
+		lock.lock();
+		try {
+			if( size < stream.length()) {
+				stream.setLength(size);
+			}
+			if( position > size ) {
+				position = size;
+			}
+		} finally {
+			lock.unlock();
+		}
+		return this;
+	}
+
+	@Override
+	public void force(boolean metaData) throws IOException {
+		checkOpen();
+		if( writable && stream instanceof FileSourceRandomAccessStream ) {
+			lock.lock();
+			try {
+				//  Write the chunks the controller is holding
+				((FileSourceRandomAccessStream)stream).save();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	@Override
+	public long transferTo(long pos, long count, WritableByteChannel target) throws IOException {
+		checkReadable();
+		if( pos < 0 || count < 0 ) {
+			throw new IllegalArgumentException("Negative position or count");
+		}
+		long ret = 0;
+		ByteBuffer buf = ByteBuffer.allocate((int)Math.min(count, TRANSFER_SIZE));
+		while( ret < count ) {
+			buf.clear();
+			buf.limit((int)Math.min(buf.capacity(), count-ret));
+			int got = readAt(buf, pos+ret);
+			if( got <= 0 ) {
+				break;
+			}
+			buf.flip();
+			while( buf.hasRemaining()) {
+				target.write(buf);
+			}
+			ret += got;
+		}
+
+		return ret;
+	}
+
+	@Override
+	public long transferFrom(ReadableByteChannel src, long pos, long count) throws IOException {
+		checkWritable();
+		if( pos < 0 || count < 0 ) {
+			throw new IllegalArgumentException("Negative position or count");
+		}
+		long ret = 0;
+		ByteBuffer buf = ByteBuffer.allocate((int)Math.min(count, TRANSFER_SIZE));
+		while( ret < count ) {
+			buf.clear();
+			buf.limit((int)Math.min(buf.capacity(), count-ret));
+			int got = src.read(buf);
+			if( got <= 0 ) {
+				break;
+			}
+			buf.flip();
+			writeAt(buf, pos+ret);
+			ret += got;
+		}
+		return ret;
+	}
+
+	@Override
+	public int read(ByteBuffer dst, long pos) throws IOException {
+		checkReadable();
+		if( pos < 0 ) {
+			throw new IllegalArgumentException("Negative position");
+		}
+		return readAt(dst, pos);
+	}
+
+	@Override
+	public int write(ByteBuffer src, long pos) throws IOException {
+		checkWritable();
+		if( pos < 0 ) {
+			throw new IllegalArgumentException("Negative position");
+		}
+		return writeAt(src, pos);
+	}
+
+	@Override
+	public MappedByteBuffer map(MapMode mode, long pos, long size) throws IOException {
+		throw new UnsupportedOperationException("map is not supported for "+file.getFileSourceFactory().getTypeId());
+	}
+
+	@Override
+	public FileLock lock(long pos, long size, boolean shared) throws IOException {
+		throw new UnsupportedOperationException("lock is not supported for "+file.getFileSourceFactory().getTypeId());
+	}
+
+	@Override
+	public FileLock tryLock(long pos, long size, boolean shared) throws IOException {
+		throw new UnsupportedOperationException("tryLock is not supported for "+file.getFileSourceFactory().getTypeId());
+	}
+
+	@Override
+	protected void implCloseChannel() throws IOException {
+		lock.lock();
+		try {
+			try {
+				stream.close();
+			} finally {
+				if( deleteOnClose ) {
+					file.delete();
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+}
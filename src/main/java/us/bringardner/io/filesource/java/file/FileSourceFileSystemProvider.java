@@ -25,10 +25,11 @@
  */
 package us.bringardner.io.filesource.java.file;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.lang.reflect.Method;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.nio.channels.AsynchronousFileChannel;
@@ -36,9 +37,11 @@ import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.AccessMode;
 import java.nio.file.CopyOption;
+import java.nio.file.DirectoryIteratorException;
 import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.DirectoryStream.Filter;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.FileStore;
 import java.nio.file.FileSystem;
 import java.nio.file.LinkOption;
@@ -60,17 +63,25 @@ import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.UserPrincipal;
 import java.nio.file.spi.FileSystemProvider;
 import java.security.ProviderException;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
 //import java.nio.file.spi.FileSystemProvider;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import us.bringardner.io.filesource.FileSource;
+import us.bringardner.io.filesource.FileSourceCopier;
+import us.bringardner.io.filesource.FileSourceExecutors;
 import us.bringardner.io.filesource.FileSourceFactory;
+import us.bringardner.io.filesource.IRandomAccessStream;
+import us.bringardner.io.filesource.fileproxy.FileProxy;
 
 
 
@@ -81,10 +92,65 @@ public class FileSourceFileSystemProvider extends FileSystemProvider {
 
 	private int streamBufferSize = 10240;
 
+	//  Attribute name to accessor for the views supported by readAttributes(Path,String)
+	private static final Map<String, Function<PosixFileAttributes, Object>> BASIC_ATTRIBUTES;
+	private static final Map<String, Function<PosixFileAttributes, Object>> POSIX_ATTRIBUTES;
+	static {
+		Map<String, Function<PosixFileAttributes, Object>> map = new HashMap<>();
+		map.put("lastModifiedTime", PosixFileAttributes::lastModifiedTime);
+		map.put("lastAccessTime", PosixFileAttributes::lastAccessTime);
+		map.put("creationTime", PosixFileAttributes::creationTime);
+		map.put("size", PosixFileAttributes::size);
+		map.put("isRegularFile", PosixFileAttributes::isRegularFile);
+		map.put("isDirectory", PosixFileAttributes::isDirectory);
+		map.put("isSymbolicLink", PosixFileAttributes::isSymbolicLink);
+		map.put("isOther", PosixFileAttributes::isOther);
+		map.put("fileKey", PosixFileAttributes::fileKey);
+		BASIC_ATTRIBUTES = Collections.unmodifiableMap(new HashMap<>(map));
+
+		map.put("owner", PosixFileAttributes::owner);
+		map.put("group", PosixFileAttributes::group);
+		map.put("permissions", PosixFileAttributes::permissions);
+		POSIX_ATTRIBUTES = Collections.unmodifiableMap(map);
+	}
+
+	private volatile ExecutorService asynchronousExecutor;
+
 	public FileSourceFileSystemProvider() {
 
 	}
 
+	/**
+	 * 
+	 * @return FileSourceExecutors.getDefaultExecutor(), virtual threads when the JVM supports them 
+	 * and a cached pool of daemon threads when it does not.
+	 */
+	public static ExecutorService getDefaultAsynchronousExecutor() {
+		return FileSourceExecutors.getDefaultExecutor();
+	}
+
+	/**
+	 * 
+	 * @return the executor used by AsynchronousFileChannels when the caller does not provide one.
+	 */
+	public ExecutorService getAsynchronousExecutor() {
+		ExecutorService ret = asynchronousExecutor;
+		if( ret == null ) {
+			ret = getDefaultAsynchronousExecutor();
+		}
+		return ret;
+	}
+
+	/**
+	 * Set the executor used by AsynchronousFileChannels when the caller does not provide one.
+	 * Null restores the default.
+	 * 
+	 * @param executor
+	 */
+	public void setAsynchronousExecutor(ExecutorService executor) {
+		this.asynchronousExecutor = executor;
+	}
+
 	private static transient  FileSourceFileSystemProvider singleton;
 
 
@@ -395,19 +461,104 @@ public class FileSourceFileSystemProvider extends FileSystemProvider {
 
 	@Override
 	public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
-		throw new UnsupportedOperationException("SeekableByteChannel Not supported");
+		return newFileChannel(path, options, attrs);
 	}
 
 	@Override
 	public AsynchronousFileChannel newAsynchronousFileChannel(Path path, Set<? extends OpenOption> options,
 			ExecutorService executor, FileAttribute<?>... attrs) throws IOException {
-		throw new UnsupportedOperationException("AsynchronousFileChannel Not supported");
+		validate(path);
+		FileSource file = ((FileSourcePath)path).getFileSource();
+
+		if (file instanceof FileProxy) {
+			//  The local file system already has a real asynchronous channel
+			File target = ((FileProxy) file).getTarget();
+			return new FileProxyAsynchronousFileChannel(AsynchronousFileChannel.open(target.toPath(), options, executor, attrs), target);
+		}
+
+		if( executor == null ) {
+			executor = getAsynchronousExecutor();
+		}
+
+		return new FileSourceAsynchronousFileChannel(openFileSourceChannel(path, file, options), executor);
 	}
 
 	@Override
 	public FileChannel newFileChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs)
 			throws IOException {
-		throw new UnsupportedOperationException("FileChannel Not supported");
+		validate(path);
+		FileSource file = ((FileSourcePath)path).getFileSource();
+
+		if (file instanceof FileProxy) {
+			//  The local file system already has a real channel
+			File target = ((FileProxy) file).getTarget();
+			return new FileProxyFileChannel(FileChannel.open(target.toPath(), options, attrs), target);
+		}
+
+		return openFileSourceChannel(path, file, options);
+	}
+
+	private FileSourceFileChannel openFileSourceChannel(Path path, FileSource file, Set<? extends OpenOption> options) throws IOException {
+		boolean read = false;
+		boolean write = false;
+		boolean append = false;
+		boolean create = false;
+		boolean createNew = false;
+		boolean truncate = false;
+		boolean deleteOnClose = false;
+
+		for(OpenOption op : options) {
+			if (op instanceof StandardOpenOption) {
+				StandardOpenOption op1 = (StandardOpenOption) op;
+				switch (op1) {
+				case READ: read = true; break;
+				case WRITE: write = true; break;
+				case APPEND: append = true; write = true; break;
+				case CREATE: create = true; break;
+				case CREATE_NEW: createNew = true; break;
+				case TRUNCATE_EXISTING: truncate = true; break;
+				case DELETE_ON_CLOSE: deleteOnClose = true; break;
+				case DSYNC:
+				case SYNC:
+				case SPARSE:
+					//  hints only
+					break;
+				default:
+					throw new UnsupportedOperationException("Unsupported open option="+op);
+				}
+			} else if( op != LinkOption.NOFOLLOW_LINKS) {
+				throw new UnsupportedOperationException("Unsupported open option="+op);
+			}
+		}
+
+		if( !write ) {
+			read = true;
+		}
+
+		if( append && (options.contains(StandardOpenOption.READ) || truncate)) {
+			throw new IllegalArgumentException("APPEND can't be used with READ or TRUNCATE_EXISTING");
+		}
+
+		if( file.exists()) {
+			if( write && createNew ) {
+				throw new FileAlreadyExistsException(path.toString());
+			}
+			if( file.isDirectory()) {
+				throw new IOException(path.toString()+" is a directory");
+			}
+		} else if( !write || !(create || createNew)) {
+			throw new NoSuchFileException(path.toString());
+		} else {
+			//  not every FileSource implements createNewFile
+			file.getOutputStream().close();
+		}
+
+		IRandomAccessStream stream = file.getRandomAccessStream(write ? "rw" : "r");
+		if( write && truncate ) {
+			stream.setLength(0);
+		}
+
+		return new FileSourceFileChannel(file, stream, read, write, append, deleteOnClose);
 	}
 
 	@Override
@@ -423,42 +574,59 @@ public class FileSourceFileSystemProvider extends FileSystemProvider {
 			throw new IOException(""+file+" is not a diirectory");
 		}
 
-		FileSource[] kids = file.listFiles();
-
+		//  Children are read as the iterator is used, not all at once
+		Stream<FileSource> kids = file.streamFiles();
 
 		return  new DirectoryStream<Path>() {
-			int pos = 0;
+			boolean closed = false;
+			Iterator<FileSource> it;
 
 			@Override
 			public void close() throws IOException {
-				pos = kids.length;				
+				closed = true;
+				try {
+					kids.close();
+				} catch (UncheckedIOException e) {
+					throw e.getCause();
+				}
 			}
 
 			@Override
 			public Iterator<Path> iterator() {
+				if( closed ) {
+					throw new IllegalStateException("Directory stream is closed");
+				}
+				if( it != null ) {
+					throw new IllegalStateException("Iterator already obtained");
+				}
+				it = kids.iterator();
 
 				return new Iterator<Path>() {
+					Path next;
 
 					@Override
 					public Path next() {
-						return new FileSourcePath(kids[pos++]);
+						if( !hasNext()) {
+							throw new NoSuchElementException();
+						}
+						Path ret = next;
+						next = null;
+						return ret;
 					}
 
 					@Override
 					public boolean hasNext() {
-						boolean ret = false;
-						while(!ret && pos< kids.length ) {
-							FileSourcePath path = new FileSourcePath(kids[pos]);
+						while(next == null && !closed && it.hasNext() ) {
+							FileSourcePath path = ((FileSourcePath)dir).resolve(it.next());
 							try {
-								if( filter.accept(path)) {
-									ret = true;
-								} else {
-									pos++;
+								if( filter == null || filter.accept(path)) {
+									next = path;
 								}
 							} catch (IOException e) {
+								throw new DirectoryIteratorException(e);
 							}
 						}
-						return ret;
+						return next != null;
 					}
 				};
 			}
@@ -611,17 +779,10 @@ public class FileSourceFileSystemProvider extends FileSystemProvider {
 			}
 
 		} else {
-			try(InputStream in = sf.getInputStream()) {
-				try(OutputStream out = tf.getOutputStream()) {
-					byte [] data = new byte[streamBufferSize];
-					int got = 0;
-					while( (got=in.read(data)) >= 0) {
-						if( got > 0 ) {
-							out.write(data,0,got);
-						}
-					}
-				}							
-			}
+			FileSourceCopier copier = new FileSourceCopier();
+			copier.setMinBufferSize(streamBufferSize);
+			copier.setExecutor(getAsynchronousExecutor());
+			copier.copy(sf, tf);
 		}
 
 		if( copyAttributes ) {
@@ -764,46 +925,31 @@ public class FileSourceFileSystemProvider extends FileSystemProvider {
 	public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
 		Map<String, Object>  ret = new HashMap<String, Object>();
 
-		Class<?> cls = BasicFileAttributes.class;
-		Object attr =  readAttributes(path, BasicFileAttributes.class);
-		String val = null;
-		String [] parts = attributes.split("[:]");
-		if( parts.length >= 2) {
-			val= parts[1];
-			if(parts[0].toLowerCase().equals("posix")) {
-
-				attr =  readAttributes(path, PosixFileAttributes.class);
-				cls = attr.getClass();
+		Map<String, Function<PosixFileAttributes, Object>> accessors = BASIC_ATTRIBUTES;
+		String val = attributes;
+		int idx = attributes.indexOf(':');
+		if( idx >= 0 ) {
+			val = attributes.substring(idx+1);
+			if( attributes.substring(0, idx).equalsIgnoreCase("posix")) {
+				accessors = POSIX_ATTRIBUTES;
 			}
-		} else {
-			val = attributes;
 		}
 
-
-
-		parts = val.split("[,]");
-		for(String name : parts) {
-			try {
-				if( name.contains("*")) {
-					for(Method m : cls.getDeclaredMethods()) {
-						try {
-							m.setAccessible(true);
-							Object v = m.invoke(attr);
-							if( v != null ) {
-								ret.put(m.getName(), v);
-							}
-						} catch (Exception e) {
-						}
+		//  Each accessor reads one value so only the requested attributes are read from the file
+		PosixFileAttributes attr = new FileSourcePosixFileAttributes(((FileSourcePath)path).getFileSource());
+		for(String name : val.split(",")) {
+			if( name.contains("*")) {
+				for(Map.Entry<String, Function<PosixFileAttributes, Object>> e : accessors.entrySet()) {
+					Object v = e.getValue().apply(attr);
+					if( v != null ) {
+						ret.put(e.getKey(), v);
 					}
-				} else {	
-					Method m = cls.getMethod(name);
-					if( m != null ) {
-						m.setAccessible(true);
-						Object v = m.invoke(attr);
-						ret.put(name, v);
-					}					
 				}
-			} catch (Throwable e) {
+			} else {
+				Function<PosixFileAttributes, Object> accessor = accessors.get(name);
+				if( accessor != null ) {
+					ret.put(name, accessor.apply(attr));
+				}
 				// bad name, skip it
 			}
 		}
@@ -38,8 +38,9 @@ import java.nio.file.WatchEvent.Kind;
 import java.nio.file.WatchEvent.Modifier;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import us.bringardner.io.filesource.FileSource;
 import us.bringardner.io.filesource.FileSourceFactory;
@@ -47,6 +48,13 @@ import us.bringardner.io.filesource.FileSourceUri;
 
 
 
+/**
+ * A Path for a FileSource.
+ * 
+ * The path is parsed once into a root and an array of names.  Paths derived from this one 
+ * (getParent, getName, subpath, ...) share the names array and only keep the range they use.
+ * Comparisons are done a name at a time and the string and hash code are only built once. 
+ */
 public class FileSourcePath implements Path {
 
 	static {
@@ -54,12 +62,21 @@ public class FileSourcePath implements Path {
 		FileSourceFactory.getAllHandlerPkgs();
 	}
 
+	private static final String [] EMPTY = {""};
+
 	FileSourceFactory factory ;
-	String rawPath;
+	//  Built from root and names the first time it's needed
+	private String rawPath;
 	private FileSource file;
 	private FileSourceUri fsuri;
 	private FileSystem fileSystem;
-	private static Pattern windows = Pattern.compile("^[a-z][:]*");
+	//  "" for a relative path
+	private String root;
+	//  Shared with paths derived from this one, this path uses names[begin] to names[end-1]
+	private String [] names;
+	private int begin;
+	private int end;
+	private int hash;
 
 
 
@@ -67,7 +84,7 @@ public class FileSourcePath implements Path {
 	public FileSourcePath(URI uri) throws IOException {
 
 		fsuri = new FileSourceUri(uri);
-		rawPath = fsuri.getPath();
+		String path = fsuri.getPath();
 		factory = FileSourceFactory.getFileSourceFactory(uri);
 		if( factory == null ) {
 			if( fsuri.getFactoryId()==null ) {
@@ -77,28 +94,117 @@ public class FileSourcePath implements Path {
 			}
 		}
 		//  only '/' are valid in URI
-		rawPath = rawPath.replace('/', factory.getSeperatorChar());
+		parse(path.replace('/', factory.getSeperatorChar()));
 
 	}
 
 
 	public FileSourcePath(String path, FileSourceFactory factory2) {
-		rawPath = path;
 		factory = factory2;		
-		
+		parse(path);
 	}
 
 
 	public FileSourcePath(FileSource file) {
-		rawPath = file.getAbsolutePath(); 
 		factory = file.getFileSourceFactory();
 		this.file = file;
+		parse(file.getAbsolutePath());
+	}
+
+	/**
+	 * A path derived from another, names is shared and not copied.
+	 */
+	private FileSourcePath(FileSourcePath from, String root, String [] names, int begin, int end) {
+		this.factory = from.factory;
+		this.fileSystem = from.fileSystem;
+		this.root = root;
+		this.names = names;
+		this.begin = begin;
+		this.end = end;
+	}
+
+	/**
+	 * Split path into root and names, empty names (from repeated or trailing separators) are dropped.
+	 */
+	private void parse(String path) {
+		char sep = factory.getSeperatorChar();
+		int len = path.length();
+		int pos = 0;
+		if( len > 0 && path.charAt(0) == sep ) {
+			root = String.valueOf(sep);
+			pos = 1;
+		} else if( len > 1 && path.charAt(1) == ':' && Character.isLetter(path.charAt(0))) {
+			//  Windows drive
+			pos = 2;
+			if( len > 2 && path.charAt(2) == sep ) {
+				pos = 3;
+			}
+			root = path.substring(0, pos);
+		} else {
+			root = "";
+		}
+
+		List<String> list = new ArrayList<>();
+		while( pos < len ) {
+			int next = path.indexOf(sep, pos);
+			if( next < 0 ) {
+				next = len;
+			}
+			if( next > pos ) {
+				list.add(path.substring(pos, next));
+			}
+			pos = next+1;
+		}
+
+		if( list.isEmpty() && root.isEmpty()) {
+			//  The empty path has one empty name
+			names = EMPTY;
+			end = 1;
+			rawPath = "";
+		} else {
+			names = list.toArray(new String[list.size()]);
+			end = names.length;
+		}
+	}
+
+	private FileSourcePath derive(String root, int begin, int end) {
+		if( root.isEmpty() && begin == end ) {
+			return new FileSourcePath(this, root, EMPTY, 0, 1);
+		}
+		return new FileSourcePath(this, root, names, begin, end);
 	}
 
+	/**
+	 * @param other
+	 * @return other as a FileSourcePath with the same factory as this one
+	 */
+	private FileSourcePath toFileSourcePath(Path other) {
+		if (other instanceof FileSourcePath) {
+			return (FileSourcePath) other;
+		}
+		// Testing only
+		return new FileSourcePath(other.toString(), factory);
+	}
+
+	private boolean isEmpty() {
+		return root.isEmpty() && end-begin == 1 && names[begin].isEmpty();
+	}
 
 	@Override
 	public String toString() {
-		return rawPath;
+		String ret = rawPath;
+		if( ret == null ) {
+			char sep = factory.getSeperatorChar();
+			StringBuilder buf = new StringBuilder(root);
+			for (int idx = begin; idx < end; idx++) {
+				if( idx > begin ) {
+					buf.append(sep);
+				}
+				buf.append(names[idx]);
+			}
+			rawPath = ret = buf.toString();
+		}
+		return ret;
 	}
 
 	@Override
@@ -112,105 +218,100 @@ public class FileSourcePath implements Path {
 
 	@Override
 	public boolean isAbsolute() {
-		boolean ret = rawPath.length()>0 && rawPath.charAt(0)==factory.getPathSeperatorChar();
-		if( !ret) {
-			Matcher mm = windows.matcher(rawPath);
-			ret = mm.matches();
-		}
-
-		return ret;
+		return !root.isEmpty();
 	}
 
 	@Override
 	public Path getRoot() {
-		char sep = factory.getSeperatorChar();
-		if( rawPath.charAt(0) == sep) {
-			return new FileSourcePath(""+sep,factory);
+		if( root.isEmpty()) {
+			return null;
 		}
-
-		String root = split()[0];
-		return new FileSourcePath(root, factory);
+		return derive(root, begin, begin);
 	}
 
 	@Override
 	public Path getFileName() {
-		String [] parts = split();
-		return new FileSourcePath(parts[parts.length-1],factory );
-	}
-
-	private String[] split() {
-		char sep = factory.getSeperatorChar();
-		String path = rawPath;
-		if(path.length()>0 && path.charAt(0) == sep) {
-			path = path.substring(1);
+		if( end == begin ) {
+			return null;
 		}
-		String rx = "["+sep+"]";
-		if( sep == '\\') {
-			rx = "[\\\\]";
+		if( root.isEmpty() && end-begin == 1 ) {
+			return this;
 		}
-		String [] ret= path.split(rx);
-		return ret;
+		return derive("", end-1, end);
 	}
 
-
 	@Override
 	public Path getParent() {
-		String ret = rawPath;
-		int idx = rawPath.lastIndexOf(factory.getSeperatorChar());
-		if( idx> 0 ) {
-			ret = ret.substring(0,idx);
+		if( end == begin ) {
+			//  A root has no parent
+			return null;
+		}
+		if( end-begin == 1 ) {
+			return getRoot();
 		}
-		return new FileSourcePath(ret,factory);
+		return derive(root, begin, end-1);
 	}
 
 	@Override
 	public int getNameCount() {
-		return split().length;
+		return end-begin;
 	}
 
 	@Override
 	public Path getName(int index) {
-		String [] parts = split();
-		return new FileSourcePath(parts[index],factory );
+		if( index < 0 || index >= end-begin ) {
+			throw new IllegalArgumentException("Invalid index "+index);
+		}
+		return derive("", begin+index, begin+index+1);
 	}
 
 	@Override
 	public Path subpath(int beginIndex, int endIndex) {
-		String [] parts = split();
-		StringBuilder ret = new StringBuilder();
-		for (int idx = beginIndex; idx < parts.length && idx < endIndex; idx++) {
-			if( idx > beginIndex || idx == 0 ) {
-				ret.append(factory.getSeperatorChar());
+		if( beginIndex < 0 || beginIndex >= end-begin || endIndex > end-begin || beginIndex >= endIndex ) {
+			throw new IllegalArgumentException("Invalid range "+beginIndex+" to "+endIndex);
+		}
+		return derive("", begin+beginIndex, begin+endIndex);
+	}
+
+	/**
+	 * @return true if count names starting at names[start] match other's names starting at other.names[otherStart]
+	 */
+	private boolean namesMatch(int start, FileSourcePath other, int otherStart, int count) {
+		for (int idx = 0; idx < count; idx++) {
+			if( !names[start+idx].equals(other.names[otherStart+idx])) {
+				return false;
 			}
-			ret.append(parts[idx]);
 		}
-		return new FileSourcePath(ret.toString(), factory);
+		return true;
 	}
 
 	@Override
 	public boolean startsWith(Path other) {
-		boolean ret = false;
-		if (other instanceof FileSourcePath) {
-			FileSourcePath fsp = (FileSourcePath) other;
-			ret = rawPath.startsWith(fsp.rawPath);
-		} else {
-			// Testing only
-			ret = rawPath.startsWith(other.toString());
+		FileSourcePath fsp = toFileSourcePath(other);
+		int count = fsp.getNameCount();
+		if( !root.equals(fsp.root) || count > getNameCount()) {
+			return false;
 		}
-		return ret;
+		if( fsp.isEmpty()) {
+			return isEmpty();
+		}
+		return namesMatch(begin, fsp, fsp.begin, count);
 	}
 
 	@Override
 	public boolean endsWith(Path other) {
-		boolean ret = false;
-		if (other instanceof FileSourcePath) {
-			FileSourcePath fsp = (FileSourcePath) other;
-			ret = rawPath.endsWith(fsp.rawPath);
-		} else {
-			// testing only
-			ret = rawPath.endsWith(other.toString());
+		FileSourcePath fsp = toFileSourcePath(other);
+		int count = fsp.getNameCount();
+		if( fsp.isAbsolute()) {
+			return equals(fsp);
 		}
-		return ret;
+		if( count > getNameCount()) {
+			return false;
+		}
+		if( fsp.isEmpty()) {
+			return isEmpty();
+		}
+		return namesMatch(end-count, fsp, fsp.begin, count);
 	}
 
 	public static String normalizeString(String path,char seperator) {
@@ -223,14 +324,40 @@ public class FileSourcePath implements Path {
 		return ret;
 	}
 
+	/**
+	 * Remove "." and resolve ".." the same way the default file system does. 
+	 * A ".." at the root is dropped and leading ".." in a relative path are kept.
+	 */
 	@Override
 	public Path normalize() {
-		rawPath = normalizeString(rawPath, factory.getSeperatorChar());
-		try {
-			file = factory.createFileSource(rawPath);
-		} catch (IOException e) {
+		List<String> list = new ArrayList<>();
+		boolean changed = false;
+		for (int idx = begin; idx < end; idx++) {
+			String name = names[idx];
+			if( name.equals(".")) {
+				changed = true;
+			} else if( name.equals("..")) {
+				int last = list.size()-1;
+				if( last >= 0 && !list.get(last).equals("..")) {
+					list.remove(last);
+					changed = true;
+				} else if( !root.isEmpty()) {
+					changed = true;
+				} else {
+					list.add(name);
+				}
+			} else {
+				list.add(name);
+			}
+		}
+		if( !changed ) {
+			return this;
+		}
+		if( list.isEmpty()) {
+			return derive(root, 0, 0);
 		}
-		return this;
+		String [] tmp = list.toArray(new String[list.size()]);
+		return new FileSourcePath(this, root, tmp, 0, tmp.length);
 	}
 
 	public Path resolve(String other) {		
@@ -249,31 +376,45 @@ public class FileSourcePath implements Path {
 	 */
 	@Override
 	public Path resolve(Path other) {
+		FileSourcePath fsp = toFileSourcePath(other);
 
-
-		if( other.isAbsolute()) {
+		if( fsp.isAbsolute()) {
 			//If the other parameter is an absolute path then this method trivially returns other.
 			return other;
 		}
 	
-		//FileSourcePath fsp = ((FileSourcePath)other);
-
-		if( other.getNameCount()==0 ) {
+		if( fsp.isEmpty() ) {
 			//If other is an empty path then this method trivially returns this path.
 			return this;
 		}
+		if( isEmpty()) {
+			return fsp;
+		}
+
 		//Otherwise this method considers this path to be a directory and resolves the given path against this path.
-		FileSource file = getFileSource();
+		int count = getNameCount();
+		String [] tmp = Arrays.copyOfRange(names, begin, begin+count+fsp.getNameCount());
+		System.arraycopy(fsp.names, fsp.begin, tmp, count, fsp.getNameCount());
+		return new FileSourcePath(this, root, tmp, 0, tmp.length);
+	}
 
-		if( file !=null ) {
-			try {
-				FileSource file2 = file.getChild(other.toString());
-				return new FileSourcePath(file2);
-			} catch (IOException e) {
-				e.printStackTrace();
-			}			
+	/**
+	 * Resolve the name of child against this path.
+	 * 
+	 * @param child a file in the directory this path refers to
+	 * @return a path that ends with child's name and uses child as it's FileSource
+	 */
+	FileSourcePath resolve(FileSource child) {
+		String [] tmp = null;
+		if( isEmpty()) {
+			tmp = new String[] {child.getName()};
+		} else {
+			tmp = Arrays.copyOfRange(names, begin, end+1);
+			tmp[tmp.length-1] = child.getName();
 		}
-		return null;
+		FileSourcePath ret = new FileSourcePath(this, root, tmp, 0, tmp.length);
+		ret.file = child;
+		return ret;
 	}
 
 	@Override
@@ -281,11 +422,9 @@ public class FileSourcePath implements Path {
 
 		if (other instanceof FileSourcePath) {
 			FileSourcePath child = (FileSourcePath) other;
-			String me = this.toString();
-			String u = child.toString();
-			if( u.equals(me)) {
+			if( equals(child)) {
 				// empty 
-				return new FileSourcePath("", factory);
+				return derive("", 0, 0);
 			}
 
 			// can only relativize paths of the same type
@@ -293,26 +432,27 @@ public class FileSourcePath implements Path {
 				throw new IllegalArgumentException("'other' is different type of Path");
 
 			// this path is the empty path
-			if (this.rawPath.isEmpty())
+			if (isEmpty())
 				return child;
 
-
-			me = toAbsolutePath().toString();
-			u = child.toAbsolutePath().toString();
-
-			String tmp = null;
-			if(u.startsWith(me)) {
-				tmp = u.substring(me.length());
-			} else {
-				tmp = u;
+			int count = getNameCount();
+			int childCount = child.getNameCount();
+			int same = 0;
+			while( same < count && same < childCount && names[begin+same].equals(child.names[child.begin+same])) {
+				same++;
 			}
 
-			while( tmp.startsWith(""+factory.getSeperatorChar())) {
-				tmp = tmp.substring(1);
+			//  Up to the common parent then down to other
+			String [] tmp = new String[count-same+childCount-same];
+			for (int idx = 0; idx < count-same; idx++) {
+				tmp[idx] = "..";
+			}
+			System.arraycopy(child.names, child.begin+same, tmp, count-same, childCount-same);
+			if( tmp.length == 0 ) {
+				return derive("", 0, 0);
 			}
 
-
-			return new FileSourcePath(tmp, factory);			
+			return new FileSourcePath(this, "", tmp, 0, tmp.length);			
 		}
 		throw new ProviderMismatchException();
 	}
@@ -326,7 +466,7 @@ public class FileSourcePath implements Path {
 
 		URI ret=null;
 		try {
-			ret = new URI(String.format("filesource:%s?sourcetype=%s",rawPath,factory.getTypeId()));
+			ret = new URI(String.format("filesource:%s?sourcetype=%s",toString(),factory.getTypeId()));
 		} catch (URISyntaxException e) {
 			e.printStackTrace();
 		}
@@ -338,7 +478,7 @@ public class FileSourcePath implements Path {
 
 		if( file == null ) {
 			try {
-				file = factory.createFileSource(rawPath);
+				file = factory.createFileSource(toString());
 			} catch (IOException e) {
 			}
 		}
@@ -348,13 +488,13 @@ public class FileSourcePath implements Path {
 	@Override
 	public Path toAbsolutePath() {	
 
+		if( isAbsolute()) {
+			return this;
+		}
 		FileSource file = getFileSource();
 		if( file == null ) {
 			return null;
 		}
-		if( isAbsolute()) {
-			return this;
-		}
 
 		return new FileSourcePath(file);
 
@@ -363,7 +503,7 @@ public class FileSourcePath implements Path {
 	@Override
 	public Path toRealPath(LinkOption... options) throws IOException {
 		try {
-			FileSource file = factory.createFileSource(rawPath);
+			FileSource file = factory.createFileSource(toString());
 			FileSource link = file.getLinkedTo();
 			FileSource ret = file;
 			if( link !=null ) {
@@ -383,26 +523,63 @@ public class FileSourcePath implements Path {
 
 	}
 
-	/*
-	 * Compares two abstract paths lexicographically. The ordering defined by this method is provider specific, 
-	 * and in the case of the default provider, platform specific. This method does not access the file system and neither file is required to exist.
-	 * This method may not be used to compare paths that are associated with different file system providers.
-	 */
 	@Override
 	public WatchKey register(WatchService watcher, Kind<?>[] events, Modifier... modifiers) throws IOException {
 
 		return null;
 	}
 
+	/*
+	 * Compares two abstract paths lexicographically. The ordering defined by this method is provider specific, 
+	 * and in the case of the default provider, platform specific. This method does not access the file system and neither file is required to exist.
+	 * This method may not be used to compare paths that are associated with different file system providers.
+	 */
 	@Override
 	public int compareTo(Path other) {
 
 		if (!(other instanceof FileSourcePath)) {
 			throw new ProviderMismatchException();			
 		}
+		FileSourcePath fsp = (FileSourcePath) other;
+
+		int ret = root.compareTo(fsp.root);
+		int count = Math.min(getNameCount(), fsp.getNameCount());
+		for (int idx = 0; ret == 0 && idx < count; idx++) {
+			ret = names[begin+idx].compareTo(fsp.names[fsp.begin+idx]);
+		}
+		if( ret == 0 ) {
+			ret = getNameCount()-fsp.getNameCount();
+		}
 
-		int	ret = normalize().toString().compareTo(other.toAbsolutePath().toString());
+		return ret;
+	}
 
+	@Override
+	public boolean equals(Object obj) {
+		if( obj == this ) {
+			return true;
+		}
+		if (!(obj instanceof FileSourcePath)) {
+			return false;
+		}
+		FileSourcePath fsp = (FileSourcePath) obj;
+		return hashCode() == fsp.hashCode() 
+				&& getNameCount() == fsp.getNameCount()
+				&& root.equals(fsp.root)
+				&& factory.getTypeId().equals(fsp.factory.getTypeId())
+				&& namesMatch(begin, fsp, fsp.begin, getNameCount());
+	}
+
+	@Override
+	public int hashCode() {
+		int ret = hash;
+		if( ret == 0 ) {
+			ret = root.hashCode();
+			for (int idx = begin; idx < end; idx++) {
+				ret = ret*31+names[idx].hashCode();
+			}
+			hash = ret;
+		}
 		return ret;
 	}
 
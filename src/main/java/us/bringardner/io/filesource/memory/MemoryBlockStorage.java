@@ -0,0 +1,598 @@
+/**
+ * <PRE>
+ *
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ *
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *
+ *
+ *	@author Tony Bringardner
+ *
+ *
+ * ~version~
+ */
+package us.bringardner.io.filesource.memory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The content of a MemoryFileSource.
+ *
+ * Data is kept in a list of fixed size pages rather than one array so
+ * files are not limited to the size of an array, appending never copies
+ * what is already written and a write only touches the pages it covers.
+ * Pages are allocated when they are first written, a page that has never been
+ * written (a hole left by setLength or a write past the end) reads as zeros.
+ * 
+ * Pages come from a PageAllocator so they can be on the heap or in direct (off heap) 
+ * buffers and so the owner can keep track of how much memory is in use.
+ * 
+ * Readers use a Snapshot, an immutable view that shares the pages with the storage.
+ * Pages are reference counted, a write to a page that is held by an open Snapshot
+ * copies the page first (copy on write) so opening a stream never copies the file 
+ * and all of the readers opened between two writes share one Snapshot.
+ * A Snapshot should be closed, one that is dropped without being closed gives it's
+ * pages back when the GC finds it (so a stream that is never closed does not hold memory forever).
+ *
+ */
+public class MemoryBlockStorage {
+
+	/**
+	 * Supplies and takes back the pages used by a MemoryBlockStorage.
+	 */
+	public interface PageAllocator {
+		/**
+		 * 
+		 * @param size
+		 * @return a new zero filled page
+		 * @throws IOException if the page can't be allocated (out of budget for example)
+		 */
+		public ByteBuffer allocate(int size) throws IOException;
+
+		/**
+		 * The page is no longer used by the storage. 
+		 * @param page
+		 */
+		public void release(ByteBuffer page);
+	}
+
+	public static final int DEFAULT_PAGE_SIZE = 1024*64;
+
+	/**
+	 * Allocates heap pages and does not keep track of anything.
+	 */
+	public static final PageAllocator HEAP_ALLOCATOR = new PageAllocator() {
+
+		@Override
+		public ByteBuffer allocate(int size) {
+			return ByteBuffer.allocate(size);
+		}
+
+		@Override
+		public void release(ByteBuffer page) {
+			// Nothing to do, the GC owns it
+		}
+	};
+
+	/**
+	 * A page and the number of holders (the storage and open snapshots).
+	 * Only changed while holding the storage lock.
+	 */
+	private static class Page {
+		final ByteBuffer buffer;
+		int refs = 1;
+
+		Page(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+	}
+
+	//  Releases the pages of snapshots that are not closed
+	private static final Cleaner cleaner = Cleaner.create();
+
+	/**
+	 * Gives the pages of a Snapshot back, run by close or by the cleaner if the Snapshot was never closed.
+	 * It must not refer to the Snapshot or the Snapshot would never be cleaned.
+	 */
+	private static class SnapshotPages implements Runnable {
+		final MemoryBlockStorage storage;
+		final List<Page> pages;
+
+		SnapshotPages(MemoryBlockStorage storage, List<Page> pages) {
+			this.storage = storage;
+			this.pages = pages;
+		}
+
+		@Override
+		public void run() {
+			synchronized (storage) {
+				for(Page page : pages) {
+					storage.unref(page);
+				}
+			}
+		}
+	}
+
+	/**
+	 * An immutable view of the content at the time it was opened.
+	 * Reads do not lock, the pages it holds are never written.
+	 * Every call to openSnapshot must be matched by a call to close, 
+	 * if it's not the pages are released when the Snapshot is garbage collected.
+	 */
+	public class Snapshot implements Closeable {
+		private final List<Page> pages;
+		private final long length;
+		private final Cleaner.Cleanable cleanable;
+		private int opens = 0;
+
+		private Snapshot(List<Page> pages, long length) {
+			this.pages = pages;
+			this.length = length;
+			cleanable = cleaner.register(this, new SnapshotPages(MemoryBlockStorage.this, pages));
+		}
+
+		public long length() {
+			return length;
+		}
+
+		/**
+		 * @param pos
+		 * @return the byte at pos as an int from 0 to 255 or -1 if pos is past the end
+		 */
+		public int read(long pos) {
+			return MemoryBlockStorage.this.read(pages, length, pos);
+		}
+
+		/**
+		 * Copy up to len bytes starting at pos into b.
+		 *
+		 * @return the number of bytes copied or -1 if pos is past the end
+		 */
+		public int read(long pos, byte[] b, int off, int len) {
+			return MemoryBlockStorage.this.read(pages, length, pos, b, off, len);
+		}
+
+		@Override
+		public void close() {
+			synchronized (MemoryBlockStorage.this) {
+				if( opens > 0 && --opens == 0 ) {
+					if( current == this ) {
+						current = null;
+					}
+					cleanable.clean();
+				}
+			}
+		}
+
+		/**
+		 * @param startingPos
+		 * @return a stream that reads this snapshot and closes it when the stream is closed
+		 */
+		public InputStream getInputStream(long startingPos) {
+			return new InputStream() {
+				long pos = startingPos;
+				long mark = startingPos;
+				boolean closed = false;
+
+				private void checkOpen() throws IOException {
+					if( closed ) {
+						throw new IOException("Stream closed");
+					}
+				}
+
+				@Override
+				public int read() throws IOException {
+					checkOpen();
+					int ret = Snapshot.this.read(pos);
+					if( ret >= 0 ) {
+						pos++;
+					}
+					return ret;
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException {
+					checkOpen();
+					int ret = Snapshot.this.read(pos, b, off, len);
+					if( ret > 0 ) {
+						pos += ret;
+					}
+					return ret;
+				}
+
+				@Override
+				public long skip(long n) throws IOException {
+					long ret = Math.max(0, Math.min(n, length-pos));
+					pos += ret;
+					return ret;
+				}
+
+				@Override
+				public int available() throws IOException {
+					return (int) Math.max(0,Math.min(Integer.MAX_VALUE, length-pos));
+				}
+
+				@Override
+				public boolean markSupported() {
+					return true;
+				}
+
+				@Override
+				public synchronized void mark(int readlimit) {
+					mark = pos;
+				}
+
+				@Override
+				public synchronized void reset() throws IOException {
+					pos = mark;
+				}
+
+				@Override
+				public void close() throws IOException {
+					if( !closed ) {
+						closed = true;
+						Snapshot.this.close();
+					}
+				}
+			};
+		}
+	}
+
+	private final int pageSize;
+	private final PageAllocator allocator;
+	private ArrayList<Page> pages = new ArrayList<>();
+	private long length = 0;
+	//  shared by readers until the next change
+	private Snapshot current;
+	//  set by release, nothing can be written after that
+	private boolean released = false;
+
+	public MemoryBlockStorage() {
+		this(DEFAULT_PAGE_SIZE);
+	}
+
+	public MemoryBlockStorage(int pageSize) {
+		this(pageSize,HEAP_ALLOCATOR);
+	}
+
+	public MemoryBlockStorage(int pageSize, PageAllocator allocator) {
+		if( pageSize <= 0 ) {
+			throw new IllegalArgumentException("Page size must be greater than 0");
+		}
+		if( allocator == null ) {
+			throw new IllegalArgumentException("Allocator can not be null");
+		}
+		this.pageSize = pageSize;
+		this.allocator = allocator;
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * @return number of pages that have been allocated
+	 */
+	public synchronized int getAllocatedPageCount() {
+		int ret = 0;
+		for(Page p : pages) {
+			if( p != null ) {
+				ret++;
+			}
+		}
+		return ret;
+	}
+
+	public PageAllocator getAllocator() {
+		return allocator;
+	}
+
+	/**
+	 * Get a view of the current content. 
+	 * The caller must close the snapshot when it's done with it. 
+	 * 
+	 * @return the current snapshot
+	 */
+	public synchronized Snapshot openSnapshot() {
+		if( current == null ) {
+			List<Page> tmp = Arrays.asList(pages.toArray(new Page[pages.size()]));
+			for(Page page : tmp) {
+				if( page != null ) {
+					page.refs++;
+				}
+			}
+			current = new Snapshot(tmp, length);
+		}
+		current.opens++;
+		return current;
+	}
+
+	private void unref(Page page) {
+		if( page != null && --page.refs == 0 ) {
+			allocator.release(page.buffer);
+		}
+	}
+
+	private int pageIndex(long pos) {
+		long ret = pos/pageSize;
+		if( ret > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Position is too large "+pos);
+		}
+		return (int) ret;
+	}
+
+	/**
+	 * Get a page that can be written, allocating it or copying it if a snapshot holds it.
+	 */
+	private ByteBuffer getPageForWrite(int idx) throws IOException {
+		checkReleased();
+		current = null;
+		while( pages.size() <= idx) {
+			pages.add(null);
+		}
+		Page ret = pages.get(idx);
+		if( ret == null ) {
+			ret = new Page(allocator.allocate(pageSize));
+			pages.set(idx, ret);
+		} else if( ret.refs > 1) {
+			Page copy = new Page(allocator.allocate(pageSize));
+			copyPage(ret.buffer, copy.buffer);
+			ret.refs--;
+			pages.set(idx, copy);
+			ret = copy;
+		}
+		return ret.buffer;
+	}
+
+	private static void copyPage(ByteBuffer from, ByteBuffer to) {
+		if( from.hasArray() && to.hasArray()) {
+			System.arraycopy(from.array(), from.arrayOffset(), to.array(), to.arrayOffset(), from.capacity());
+		} else {
+			ByteBuffer tmp = to.duplicate();
+			tmp.clear();
+			ByteBuffer src = from.duplicate();
+			src.clear();
+			tmp.put(src);
+		}
+	}
+
+	private static void copyFrom(ByteBuffer page, int offset, byte [] b, int off, int len) {
+		if( page.hasArray()) {
+			System.arraycopy(page.array(), page.arrayOffset()+offset, b, off, len);
+		} else {
+			ByteBuffer tmp = page.duplicate();
+			tmp.position(offset);
+			tmp.get(b, off, len);
+		}
+	}
+
+	public synchronized long length() {
+		return length;
+	}
+
+	private int read(List<Page> pages, long length, long pos) {
+		if( pos < 0 ) {
+			throw new IllegalArgumentException("Negative position");
+		}
+		int ret = -1;
+		if( pos < length ) {
+			int idx = pageIndex(pos);
+			Page page = idx < pages.size() ? pages.get(idx) : null;
+			ret = page == null ? 0 : page.buffer.get((int)(pos % pageSize)) & 0xff;
+		}
+		return ret;
+	}
+
+	private int read(List<Page> pages, long length, long pos, byte[] b, int off, int len) {
+		if( pos < 0 ) {
+			throw new IllegalArgumentException("Negative position");
+		}
+		if( off < 0 || len < 0 || len > b.length-off) {
+			throw new IndexOutOfBoundsException();
+		}
+		if( pos >= length ) {
+			return len == 0 ? 0 : -1;
+		}
+
+		int ret = (int) Math.min(len, length-pos);
+		int done = 0;
+		while( done < ret ) {
+			long p = pos+done;
+			int idx = pageIndex(p);
+			int offset = (int)(p % pageSize);
+			int cnt = Math.min(ret-done, pageSize-offset);
+			Page page = idx < pages.size() ? pages.get(idx) : null;
+			if( page == null ) {
+				for (int i = 0; i < cnt; i++) {
+					b[off+done+i] = 0;
+				}
+			} else {
+				copyFrom(page.buffer, offset, b, off+done, cnt);
+			}
+			done += cnt;
+		}
+
+		return ret;
+	}
+
+	/**
+	 * @param pos
+	 * @return the byte at pos as an int from 0 to 255 or -1 if pos is past the end
+	 */
+	public synchronized int read(long pos) {
+		return read(pages, length, pos);
+	}
+
+	/**
+	 * Copy up to len bytes starting at pos into b.
+	 *
+	 * @return the number of bytes copied or -1 if pos is past the end
+	 */
+	public synchronized int read(long pos, byte[] b, int off, int len) {
+		return read(pages, length, pos, b, off, len);
+	}
+
+	public synchronized void write(long pos, byte value) throws IOException {
+		if( pos < 0 ) {
+			throw new IllegalArgumentException("Negative position");
+		}
+		getPageForWrite(pageIndex(pos)).put((int)(pos % pageSize), value);
+		length = Math.max(length, pos+1);
+	}
+
+	public synchronized void write(long pos, byte[] b, int off, int len) throws IOException {
+		if( pos < 0 ) {
+			throw new IllegalArgumentException("Negative position");
+		}
+		if( off < 0 || len < 0 || len > b.length-off) {
+			throw new IndexOutOfBoundsException();
+		}
+		int done = 0;
+		while( done < len ) {
+			long p = pos+done;
+			int offset = (int)(p % pageSize);
+			int cnt = Math.min(len-done, pageSize-offset);
+			ByteBuffer page = getPageForWrite(pageIndex(p));
+			if( page.hasArray()) {
+				System.arraycopy(b, off+done, page.array(), page.arrayOffset()+offset, cnt);
+			} else {
+				ByteBuffer tmp = page.duplicate();
+				tmp.position(offset);
+				tmp.put(b, off+done, cnt);
+			}
+			done += cnt;
+		}
+		if( len > 0 ) {
+			length = Math.max(length, pos+len);
+		}
+	}
+
+	/**
+	 * Add data to the end.
+	 */
+	public synchronized void append(byte[] b, int off, int len) throws IOException {
+		write(length, b, off, len);
+	}
+
+	/**
+	 * Truncate or extend the storage.
+	 * Truncating releases the pages past the new end, extending does not allocate anything.
+	 *
+	 * @param newLength
+	 * @throws IOException 
+	 */
+	public synchronized void setLength(long newLength) throws IOException {
+		if( newLength < 0 ) {
+			throw new IllegalArgumentException("Negative length");
+		}
+		checkReleased();
+		current = null;
+		if( newLength < length ) {
+			int keep = (int) ((newLength+pageSize-1)/pageSize);
+			while( pages.size() > keep) {
+				unref(pages.remove(pages.size()-1));
+			}
+			//  clear the tail of the last page so growing again reads zeros
+			int offset = (int)(newLength % pageSize);
+			if( offset > 0 && keep > 0 && keep <= pages.size() && pages.get(keep-1) != null) {
+				ByteBuffer page = getPageForWrite(keep-1);
+				for (int idx = offset; idx < pageSize; idx++) {
+					page.put(idx, (byte)0);
+				}
+			}
+			pages.trimToSize();
+		}
+		length = newLength;
+	}
+
+	private void checkReleased() throws IOException {
+		if( released ) {
+			throw new IOException("Can't write, the storage has been released (the file was deleted or replaced)");
+		}
+	}
+
+	/**
+	 * @return true if release has been called
+	 */
+	public synchronized boolean isReleased() {
+		return released;
+	}
+
+	/**
+	 * Give all of the pages back to the allocator and set the length to 0.
+	 * Pages held by open snapshots are released when the snapshot is closed.
+	 * Writes after this throw an IOException so a stream or controller that is still open 
+	 * can't allocate pages that would never be given back.
+	 */
+	public synchronized void release() {
+		released = true;
+		current = null;
+		for(Page page : pages) {
+			unref(page);
+		}
+		pages = new ArrayList<>();
+		length = 0;
+	}
+
+	/**
+	 * @return a copy of the content as a single array
+	 * @throws IOException if the content is too large for an array
+	 */
+	public synchronized byte[] toByteArray() throws IOException {
+		if( length > Integer.MAX_VALUE-8) {
+			throw new IOException("Content is too large for an array length="+length);
+		}
+		byte [] ret = new byte[(int) length];
+		read(0, ret, 0, ret.length);
+		return ret;
+	}
+
+	/**
+	 * @param startingPos
+	 * @return a stream of the content as it is now, later writes are not seen
+	 */
+	public InputStream getInputStream(long startingPos) {
+		return openSnapshot().getInputStream(startingPos);
+	}
+
+	/**
+	 * @return a stream that appends to this storage
+	 */
+	public OutputStream getOutputStream() {
+		return new OutputStream() {
+
+			@Override
+			public void write(int b) throws IOException {
+				synchronized (MemoryBlockStorage.this) {
+					MemoryBlockStorage.this.write(length, (byte) b);
+				}
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				append(b, off, len);
+			}
+		};
+	}
+
+}
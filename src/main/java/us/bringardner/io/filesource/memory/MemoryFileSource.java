@@ -30,8 +30,8 @@
 package us.bringardner.io.filesource.memory;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -40,9 +40,10 @@ import java.net.URL;
 import java.nio.file.attribute.GroupPrincipal;
 import java.nio.file.attribute.UserPrincipal;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
 
 import javax.swing.ProgressMonitor;
 
@@ -68,14 +69,15 @@ public class MemoryFileSource implements FileSource {
 
 	boolean isRoot = false;
 	private String name;
-	private FileType fileType=FileType.Undefined;
+	private volatile FileType fileType=FileType.Undefined;
 
 	private MemoryFileSourceFactory theCreator ;
 	private FileSourceGroup group;
 	private FileSourceUser owner;
 	private MemoryFileSource parent;
 	FileSource linkedTo;
-	private Map<String,MemoryFileSource> kidsMap = new TreeMap<>();
+	//  Sorted and safe to iterate while other threads add children
+	private final ConcurrentNavigableMap<String,MemoryFileSource> kidsMap = new ConcurrentSkipListMap<>();
 	private boolean canOwnerRead=true;
 	private boolean canOwnerWrite=true;
 	private boolean canExecute=true;
@@ -85,11 +87,12 @@ public class MemoryFileSource implements FileSource {
 	private boolean canOtherRead=true;
 	private boolean canOtherWrite=true;
 	private boolean canOtherExecute=true;
-	private boolean deleted;
-	private byte[] data;
+	private volatile boolean deleted;
+	//  replaced, never modified in place, so readers always see a complete content object
+	private volatile MemoryBlockStorage data;
 	private String cananicalPath;
-	private long lastAccessed=System.currentTimeMillis();
-	private long lastModified=System.currentTimeMillis();
+	private volatile long lastAccessed=System.currentTimeMillis();
+	private volatile long lastModified=System.currentTimeMillis();
 	private long createDate=System.currentTimeMillis();
 
 	public MemoryFileSource(MemoryFileSource parent,String name,MemoryFileSourceFactory creator) {
@@ -107,6 +110,25 @@ public class MemoryFileSource implements FileSource {
 		return kidsMap.get(name);
 	}
 
+	/**
+	 * Get the child with this name, creating it if needed.
+	 * If two threads race to create the same child both get the same object.
+	 * 
+	 * @param name
+	 * @return the child
+	 */
+	MemoryFileSource getOrCreateChild(String name) {
+		MemoryFileSource ret = kidsMap.get(name);
+		if( ret == null ) {
+			MemoryFileSource tmp = new MemoryFileSource(this, name, theCreator);
+			ret = kidsMap.putIfAbsent(name, tmp);
+			if( ret == null ) {
+				ret = tmp;
+			}
+		}
+		return ret;
+	}
+
 	public FileType getFileType() {
 		return fileType;
 	}
@@ -176,7 +198,11 @@ public class MemoryFileSource implements FileSource {
 	 */
 	public boolean delete() {
 		deleted = true;
+		MemoryBlockStorage storage = data;
 		data = null;
+		if( storage != null ) {
+			storage.release();
+		}
 		fileType = FileType.Undefined;
 		return deleted;
 	}
@@ -270,7 +296,8 @@ public class MemoryFileSource implements FileSource {
 	 * @see us.bringardner.io.FileSource#length()
 	 */
 	public long length() {
-		return data == null ? 0 : data.length;
+		MemoryBlockStorage storage = data;
+		return storage == null ? 0 : storage.length();
 	}
 
 	/* (non-Javadoc)
@@ -288,6 +315,22 @@ public class MemoryFileSource implements FileSource {
 		return listFiles((FileSourceFilter)null);
 	}
 
+	/**
+	 * A live view of the children, 
+	 * a child added or removed while the stream is in use may or may not be seen.
+	 *  
+	 * @see us.bringardner.io.filesource.FileSource#streamFiles(us.bringardner.io.filesource.FileSourceFilter)
+	 */
+	@Override
+	public Stream<FileSource> streamFiles(FileSourceFilter filter) throws IOException {
+		if( !canRead() ) {
+			throw new IllegalAccessError("Permission denied");
+		}
+		return kidsMap.values().stream()
+				.filter(file -> file.fileType != FileType.Undefined && (filter==null || filter.accept(file)))
+				.map(file -> (FileSource)file);
+	}
+
 	/* (non-Javadoc)
 	 * @see us.bringardner.io.FileSource#listFiles(us.bringardner.io.FileSourceFilter)
 	 */
@@ -373,6 +416,8 @@ public class MemoryFileSource implements FileSource {
 					newFile.isRoot = isRoot;
 
 
+					//  the content belongs to the new file now
+					data = null;
 					fileType = FileType.Undefined;
 					canOwnerRead = canOwnerWrite = false;
 					ret = true;
@@ -413,10 +458,7 @@ public class MemoryFileSource implements FileSource {
 			throw new FileNotFoundException();
 		}
 
-		if( data == null ) {
-			data = new byte[0];
-		}
-		ByteArrayInputStream ret = new ByteArrayInputStream(data);
+		InputStream ret = getStorage().getInputStream(0);
 		lastAccessed = System.currentTimeMillis();
 
 		return ret;
@@ -433,11 +475,22 @@ public class MemoryFileSource implements FileSource {
 			throw new FileNotFoundException();
 		}
 
-		ByteArrayOutputStream ret = new ByteArrayOutputStream() {
+		//  The new content replaces the old when the stream is closed
+		final MemoryBlockStorage storage = newStorage();
+		OutputStream ret = new FilterOutputStream(storage.getOutputStream()) {
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+			}
+
 			@Override
 			public void close() throws IOException {
 				super.close();
-				data = super.toByteArray();
+				MemoryBlockStorage old = data;
+				data = storage;
+				if( old != null && old != storage) {
+					old.release();
+				}
 			}
 		};
 		fileType = FileType.File;
@@ -456,33 +509,13 @@ public class MemoryFileSource implements FileSource {
 			throw new FileNotFoundException();
 		}
 
-		if( data == null ) {
-			data = new byte[0];
+		if( fileType != FileType.File ) {
 			fileType = FileType.File;
 			canOwnerRead = canOwnerWrite = true;
 		}
 
-		ByteArrayOutputStream ret = new ByteArrayOutputStream(data.length==0?200:data.length) {
-			@Override
-			public void close() throws IOException {
-				super.close();
-				byte [] tmp = super.toByteArray();
-				if( tmp.length>0) {
-					if( data.length == 0 ) {
-						data = tmp;
-					} else {
-						byte [] tmp2 = new byte [data.length+tmp.length];
-						for (int idx = 0; idx < data.length; idx++) {
-							tmp2[idx] = data[idx];
-						}
-						for (int idx = 0; idx < tmp.length; idx++) {
-							tmp2[data.length+idx] = tmp[idx];
-						}
-						data = tmp2;
-					}
-				}
-			}
-		};
+		//  Appends go directly to the end of the existing pages, they fail once the file is deleted or replaced
+		OutputStream ret = getStorage().getOutputStream();
 		lastAccessed = System.currentTimeMillis();
 		lastModified = System.currentTimeMillis();
 		return ret;
@@ -541,12 +574,38 @@ public class MemoryFileSource implements FileSource {
 	}
 
 
-	byte[] getData() {
-		return data;
+	/**
+	 * @return the content of this file, created if needed
+	 */
+	MemoryBlockStorage getStorage() {
+		MemoryBlockStorage ret = data;
+		if( ret == null ) {
+			synchronized (this) {
+				ret = data;
+				if( ret == null ) {
+					data = ret = newStorage();
+				}
+			}
+		}
+		return ret;
 	}
 
-	void setData(byte[] data) {
-		this.data = data;
+	private MemoryBlockStorage newStorage() {
+		return ((MemoryFileSourceFactory)getFileSourceFactory()).createStorage();
+	}
+
+	/**
+	 * Release the content of this file and all of it's children.
+	 */
+	void releaseStorage() {
+		MemoryBlockStorage storage = data;
+		data = null;
+		if( storage != null ) {
+			storage.release();
+		}
+		for(MemoryFileSource kid : kidsMap.values()) {
+			kid.releaseStorage();
+		}
 	}
 
 	public static String getContentType(String name) {
@@ -574,13 +633,14 @@ public class MemoryFileSource implements FileSource {
 	 * @see us.bringardner.io.filesource.FileSource#list()
 	 */
 	public String[] list() {
-		String ret [] = new String[kidsMap.size()];
-		int idx=0;
-		for (String n : kidsMap.keySet()) {
-			ret[idx] = n;
+		List<String> ret = new ArrayList<>();
+		for (MemoryFileSource file : kidsMap.values()) {
+			if( file.fileType != FileType.Undefined) {
+				ret.add(file.getName());
+			}
 		}
 
-		return ret; 
+		return ret.toArray(new String[ret.size()]); 
 	}
 
 	/* (non-Javadoc)
@@ -685,12 +745,13 @@ public class MemoryFileSource implements FileSource {
 			throw new FileNotFoundException();
 		}
 
-		ByteArrayInputStream ret = null;
+		InputStream ret = null;
+		MemoryBlockStorage storage = data;
 
-		if( data == null ) {
+		if( storage == null ) {
 			ret = new ByteArrayInputStream(new byte[0]);
 		} else {
-			ret = new ByteArrayInputStream(data,(int)startingPos,data.length);
+			ret = storage.getInputStream(startingPos);
 		}
 		fileType = FileType.File;
 		canOwnerRead = canOwnerWrite = true;
@@ -750,22 +811,27 @@ public class MemoryFileSource implements FileSource {
 		if( !canRead() ) {
 			throw new IllegalAccessError("Permission denied");
 		}
-		if( data == null ) {
-			data = new byte[0];
-		}
 
 		final MemoryFileSource owner = this;
+		//  shares the pages with the file, later writes copy the pages they change
+		final MemoryBlockStorage.Snapshot snapshot = getStorage().openSnapshot();
 
 		return new ISeekableInputStream() {
-			int filePointer = 0;
+			long filePointer = 0;
+			boolean closed = false;
+
+			private void checkOpen() throws IOException {
+				if( closed ) {
+					throw new IOException("Stream closed");
+				}
+			}
 
-			byte [] myData = Arrays.copyOf(owner.data, owner.data.length);
 			@Override
-			public void seek(long length) throws IOException {
-				filePointer = (int)length;
-				if( filePointer >= myData.length) {
-					filePointer = myData.length-1;
+			public void seek(long pos) throws IOException {
+				if( pos < 0 ) {
+					throw new IOException("Negative seek offset");
 				}
+				filePointer = pos;
 			}
 
 			@Override
@@ -776,24 +842,20 @@ public class MemoryFileSource implements FileSource {
 
 			@Override
 			public int read(byte[] data, int i, int toRead) throws IOException {
-				int ret = 0;
-
-				for (int idx = i; idx < data.length && ret < toRead; idx++) {
-					int tmp = read();
-					if( tmp == -1) {
-						break;
-					}
-					data[idx]  =(byte) tmp;
+				checkOpen();
+				int ret = snapshot.read(filePointer, data, i, toRead);
+				if( ret > 0 ) {
+					filePointer += ret;
 				}
-
 				return ret;
 			}
 
 			@Override
 			public int read() throws IOException {
-				int ret = -1;
-				if( filePointer < myData.length) {
-					ret = (int)myData[filePointer++];
+				checkOpen();
+				int ret = snapshot.read(filePointer);
+				if( ret >= 0 ) {
+					filePointer++;
 				}
 				return ret;
 			}
@@ -801,7 +863,7 @@ public class MemoryFileSource implements FileSource {
 			@Override
 			public long length() throws IOException {
 
-				return myData.length;
+				return snapshot.length();
 			}
 
 			@Override
@@ -821,7 +883,10 @@ public class MemoryFileSource implements FileSource {
 
 			@Override
 			public void close() throws IOException {
-				filePointer = myData.length+1;				
+				if( !closed ) {
+					closed = true;
+					snapshot.close();
+				}
 			}
 		};
 	}
@@ -36,10 +36,13 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
 
+import us.bringardner.io.filesource.DirectBuffers;
 import us.bringardner.io.filesource.FileSource;
 import us.bringardner.io.filesource.FileSourceFactory;
 
@@ -84,15 +87,118 @@ public class MemoryFileSourceFactory extends FileSourceFactory {
 	}
 
 	
+	/**
+	 * Keeps track of the memory used by the files of this factory 
+	 * and allocates heap or direct pages. 
+	 */
+	private class Budget implements MemoryBlockStorage.PageAllocator {
+
+		@Override
+		public ByteBuffer allocate(int size) throws IOException {
+			long used = memoryUsed.addAndGet(size);
+			if( memoryLimit > 0 && used > memoryLimit ) {
+				memoryUsed.addAndGet(-size);
+				throw new IOException("Memory limit of "+memoryLimit+" bytes exceeded for "+name);
+			}
+			try {
+				return offHeap ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+			} catch (OutOfMemoryError e) {
+				memoryUsed.addAndGet(-size);
+				throw new IOException("Can't allocate "+size+" bytes for "+name,e);
+			}
+		}
+
+		@Override
+		public void release(ByteBuffer page) {
+			memoryUsed.addAndGet(-page.capacity());
+			if( page.isDirect()) {
+				DirectBuffers.free(page);
+			}
+		}
+	}
+
 	public static final String FACTORY_ID = "memory";
 
 	private static final String PROP_NAME = "name";
-	
-	
+	/** heap (the default) or offheap */
+	public static final String PROP_STORAGE = "storage";
+	public static final String STORAGE_HEAP = "heap";
+	public static final String STORAGE_OFF_HEAP = "offheap";
+	/** Maximum bytes of file content, 0 is no limit.  K, M or G may be used as a suffix. */
+	public static final String PROP_MEMORY_LIMIT = "memoryLimit";
+
 	private volatile  MemoryFileSource [] roots;
 	private volatile FileSource currentDirectory;
 	private String name = "MemoryFileSet";
 	private boolean connected = false;
+	private volatile boolean offHeap = false;
+	private volatile long memoryLimit = 0;
+	private final AtomicLong memoryUsed = new AtomicLong();
+	private final Budget budget = new Budget();
+
+	/**
+	 * Parse a size like 1024, 64K, 512M or 2G
+	 * @param value
+	 * @return the number of bytes
+	 */
+	static long parseSize(String value) {
+		String tmp = value.trim().toUpperCase();
+		long mult = 1;
+		if( tmp.endsWith("K")) {
+			mult = 1024;
+		} else if( tmp.endsWith("M")) {
+			mult = 1024*1024;
+		} else if( tmp.endsWith("G")) {
+			mult = 1024*1024*1024;
+		}
+		if( mult > 1 ) {
+			tmp = tmp.substring(0, tmp.length()-1).trim();
+		}
+		return Long.parseLong(tmp)*mult;
+	}
+
+	/**
+	 * @return true if file content is stored in direct (off heap) buffers
+	 */
+	public boolean isOffHeap() {
+		return offHeap;
+	}
+
+	/**
+	 * Pages allocated after this call use the new setting.
+	 * @param offHeap
+	 */
+	public void setOffHeap(boolean offHeap) {
+		this.offHeap = offHeap;
+	}
+
+	/**
+	 * @return maximum number of bytes of file content, 0 means no limit
+	 */
+	public long getMemoryLimit() {
+		return memoryLimit;
+	}
+
+	public void setMemoryLimit(long memoryLimit) {
+		if( memoryLimit < 0 ) {
+			throw new IllegalArgumentException("Memory limit can not be negative");
+		}
+		this.memoryLimit = memoryLimit;
+	}
+
+	/**
+	 * @return number of bytes allocated for file content
+	 */
+	public long getMemoryUsed() {
+		return memoryUsed.get();
+	}
+
+	/**
+	 * @return a new empty storage that uses this factory's memory settings
+	 */
+	MemoryBlockStorage createStorage() {
+		return new MemoryBlockStorage(MemoryBlockStorage.DEFAULT_PAGE_SIZE, budget);
+	}
 
 	public String getName() {
 		return name;
@@ -212,15 +318,37 @@ public class MemoryFileSourceFactory extends FileSourceFactory {
 	}
 
 	protected void disConnectImpl() {
+		//  give the memory back before dropping the tree
+		for(MemoryFileSource root : roots) {
+			root.releaseStorage();
+		}
 		init();
 	}
 
 	public Properties getConnectProperties() {
 		Properties ret = new Properties();
 		ret.setProperty(PROP_NAME, name==null?"":name);
+		ret.setProperty(PROP_STORAGE, offHeap ? STORAGE_OFF_HEAP : STORAGE_HEAP);
+		ret.setProperty(PROP_MEMORY_LIMIT, ""+memoryLimit);
 		return ret;
 	}
 
+	private void setConnectionProperty(String key, String value) {
+		if( PROP_NAME.equals(key)) {
+			name = value;
+		} else if( PROP_STORAGE.equals(key)) {
+			if( STORAGE_OFF_HEAP.equalsIgnoreCase(value.trim())) {
+				offHeap = true;
+			} else if( STORAGE_HEAP.equalsIgnoreCase(value.trim())) {
+				offHeap = false;
+			} else {
+				throw new IllegalArgumentException("Invalid "+PROP_STORAGE+" "+value);
+			}
+		} else if( PROP_MEMORY_LIMIT.equals(key)) {
+			setMemoryLimit(parseSize(value));
+		}
+	}
+
 	public boolean isConnected() {
 		return connected;
 	}
@@ -241,11 +369,11 @@ public class MemoryFileSourceFactory extends FileSourceFactory {
 	public void setConnectionProperties(URL url) {
 		
 			String tmp = url.getQuery();			
-			String [] q = tmp.split(",");
+			String [] q = tmp.split("[,&]");
 			for (int idx = 0; idx < q.length; idx++) {				
 				String [] q2 = q[idx].split("=");
-				if( q2.length==2 && PROP_NAME.equals(q2[0])) {
-					name = q2[1];
+				if( q2.length==2 ) {
+					setConnectionProperty(q2[0], q2[1]);
 				}	
 		}		
 	}
@@ -257,9 +385,11 @@ public class MemoryFileSourceFactory extends FileSourceFactory {
 	 */
 	@Override
 	public void setConnectionProperties(Properties prop) {
-		String tmp = prop.getProperty(PROP_NAME);
-		if( tmp != null ) {
-			this.name = tmp;
+		for(String key : new String[] {PROP_NAME,PROP_STORAGE,PROP_MEMORY_LIMIT}) {
+			String tmp = prop.getProperty(key);
+			if( tmp != null ) {
+				setConnectionProperty(key, tmp);
+			}
 		}
 	}
 
@@ -286,11 +416,7 @@ public class MemoryFileSourceFactory extends FileSourceFactory {
 		for (int idx = 1; idx < parts.length; idx++) {		
 			String name = parts[idx].trim();
 			if(!name.isEmpty()) {				
-				if( (ret=parent.getChildByName(name))==null) {
-					ret = new MemoryFileSource(parent, name, this);
-					parent.addChild(ret);
-				}
-				
+				ret = parent.getOrCreateChild(name);
 				parent = ret;
 			}
 		}
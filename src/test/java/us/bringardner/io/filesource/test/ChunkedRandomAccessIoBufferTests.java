@@ -0,0 +1,324 @@
+package us.bringardner.io.filesource.test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import us.bringardner.io.filesource.AbstractRandomAccessIoController;
+import us.bringardner.io.filesource.FileSource;
+import us.bringardner.io.filesource.IRandomAccessIoController;
+import us.bringardner.io.filesource.RandomAccessIoStatistics;
+import us.bringardner.io.filesource.fileproxy.FileProxy;
+import us.bringardner.io.filesource.fileproxy.FileProxyFactory;
+
+/**
+ * Runs the random access tests through AbstractRandomAccessIoController
+ * using a small page size so the page cache is exercised.
+ */
+@TestMethodOrder(OrderAnnotation.class)
+public class ChunkedRandomAccessIoBufferTests extends FileSourceRandomAccessIoBufferTests {
+
+	static class ChunkedIoController extends AbstractRandomAccessIoController {
+
+		private RandomAccessFile raf;
+		//  Used to check that sub class IO is never done on two threads at once
+		private final AtomicInteger activeIo = new AtomicInteger();
+		final AtomicInteger maxConcurrentIo = new AtomicInteger();
+
+		public ChunkedIoController(FileProxy file,int pageSize, int maxPages) throws IOException {
+			super(file,pageSize,maxPages);
+			raf = new RandomAccessFile(file.getTarget(), "rw");
+		}
+
+		@Override
+		protected Chunk readChunkForPos(long pos) throws IOException {
+			startIo();
+			try {
+				return readChunk(pos);
+			} finally {
+				activeIo.decrementAndGet();
+			}
+		}
+
+		private void startIo() {
+			int cnt = activeIo.incrementAndGet();
+			maxConcurrentIo.accumulateAndGet(cnt, Math::max);
+		}
+
+		private Chunk readChunk(long pos) throws IOException {
+			long len = raf.length();
+			Chunk ret = null;
+			if( pos >= len) {
+				ret = new Chunk(len, len/getPageSize(), new byte[getPageSize()]);
+				ret.isNew = true;
+			} else {
+				long cn = pos/getPageSize();
+				long start = cn*getPageSize();
+				byte [] data = new byte[(int)Math.min(getPageSize(), len-start)];
+				raf.seek(start);
+				raf.readFully(data);
+				ret = new Chunk(start, cn, data);
+				ret.size = data.length;
+			}
+			return ret;
+		}
+
+		@Override
+		protected void writeChunk(Chunk chunk) throws IOException {
+			startIo();
+			try {
+				raf.seek(chunk.start);
+				raf.write(chunk.data);
+			} finally {
+				activeIo.decrementAndGet();
+			}
+			//  The file is changed without going through the FileProxy
+			FileProxy.refreshAll();
+		}
+
+		@Override
+		protected void setLength0(long newLength) throws IOException {
+			raf.setLength(newLength);
+			FileProxy.refreshAll();
+		}
+
+		@Override
+		public void close() throws Exception {
+			super.close();
+			raf.close();
+		}
+	}
+
+	@BeforeAll
+	public static void setup() throws IOException {
+		factory = new FileProxyFactory();
+
+		Properties prop = new Properties();
+
+		if(!factory.connect(prop)) {
+			throw new IOException("Can't connect");
+		}
+
+
+		testDir = factory.createFileSource("target/UnitTests");
+		if( !testDir.exists()) {
+			assertTrue(testDir.mkdirs(),"Can't create test dir");
+		}
+
+	}
+
+	@AfterAll
+	public static void teardown() throws IOException {
+		factory.disConnect();
+	}
+
+	@Override
+	IRandomAccessIoController getRandomAccessFileStream(FileSource file) throws IOException {
+		return new ChunkedIoController((FileProxy) file, 64, 4);
+	}
+
+	@Test
+	@Order(5)
+	public void testPageCache() throws IOException {
+		long len = file.length();
+
+		try(ChunkedIoController buf = new ChunkedIoController((FileProxy) file, 64, 4)){
+			//  touch more pages than the cache holds
+			for(long pos = 0; pos < len; pos+=64) {
+				buf.write(pos, (byte) 'x');
+			}
+			assertEquals(4, buf.getCachedPageCount(),"Cache size not correct");
+
+			//  evicted pages were written back
+			for(long pos = 0; pos < len; pos+=64) {
+				assertEquals('x', (char)buf.read(pos),"Evicted write not correct pos="+pos);
+			}
+
+			//  moving between two pages should not reload either one
+			buf.write(10, (byte) 'a');
+			buf.write(len-10, (byte) 'b');
+			RandomAccessIoStatistics before = buf.getStatistics();
+			for (int idx = 0; idx < 10; idx++) {
+				assertEquals('a', (char)buf.read(10),"Read not correct");
+				assertEquals('b', (char)buf.read(len-10),"Read not correct");
+			}
+			RandomAccessIoStatistics after = buf.getStatistics();
+			assertEquals(before.getChunkLoads(), after.getChunkLoads(),"Pages were reloaded");
+			assertEquals(before.getCacheHits()+20, after.getCacheHits(),"Cache hits not correct");
+			assertEquals(before.getBytesRead()+20, after.getBytesRead(),"Bytes read not correct");
+			assertTrue(buf.isDirty(),"Cache should be dirty");
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+
+		try(IRandomAccessIoController buf = getRandomAccessFileStream(file)){
+			assertEquals('a', (char)buf.read(10),"Saved read not correct");
+			assertEquals('b', (char)buf.read(len-10),"Saved read not correct");
+			assertEquals(len, buf.length(),"Length should not change");
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+	}
+
+	@Test
+	@Order(8)
+	public void testStatistics() throws Exception {
+		long len = file.length();
+		RandomAccessIoStatistics total = AbstractRandomAccessIoController.getTotalStatistics();
+		RandomAccessIoStatistics stats = null;
+
+		try(ChunkedIoController buf = new ChunkedIoController((FileProxy) file, 64, 4)){
+			byte [] tmp = new byte[(int) len];
+			assertEquals(len, buf.read(0, tmp, 0, tmp.length),"Read length not correct");
+			stats = buf.getStatistics();
+			long pages = (len+63)/64;
+			assertEquals(len, stats.getBytesRead(),"Bytes read not correct");
+			assertEquals(pages, stats.getCacheMisses(),"Misses not correct");
+			assertEquals(pages, stats.getChunkLoads(),"Loads not correct");
+			assertEquals(0, stats.getChunkSaves(),"Nothing was dirty when evicted");
+
+			//  the first two pages were evicted so they are loaded again
+			buf.write(0, tmp, 0, 100);
+			stats = buf.getStatistics();
+			assertEquals(100, stats.getBytesWritten(),"Bytes written not correct");
+			assertEquals(pages+2, stats.getChunkLoads(),"Loads not correct");
+			buf.save();
+			assertEquals(stats.getChunkSaves()+2, buf.getStatistics().getChunkSaves(),"Saves not correct");
+			stats = buf.getStatistics();
+		}
+
+		RandomAccessIoStatistics total2 = AbstractRandomAccessIoController.getTotalStatistics();
+		assertTrue(total2.getBytesRead()-total.getBytesRead() >= stats.getBytesRead(),"Total not updated on close");
+
+		AbstractRandomAccessIoController.registerMBean();
+		ObjectName name = new ObjectName(AbstractRandomAccessIoController.MBEAN_NAME);
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		assertTrue(server.isRegistered(name),"MBean not registered");
+		assertEquals(AbstractRandomAccessIoController.getTotalStatistics().getChunkLoads(), server.getAttribute(name, "ChunkLoads"),"MBean value not correct");
+		AbstractRandomAccessIoController.unregisterMBean();
+		assertTrue(!server.isRegistered(name),"MBean not unregistered");
+	}
+
+	@Test
+	@Order(9)
+	public void testReadAhead() throws Exception {
+		long len = file.length();
+		long pages = (len+63)/64;
+		assertTrue(pages > 8,"File is too small to test read ahead");
+		byte [] expect = new byte[(int) len];
+		try(IRandomAccessIoController buf = getRandomAccessFileStream(file)){
+			assertEquals(len, buf.read(0, expect, 0, expect.length),"Read length not correct");
+		}
+
+		try(ChunkedIoController buf = new ChunkedIoController((FileProxy) file, 64, 4)){
+			//  Run the prefetches on the caller's thread so the counts don't depend on timing
+			buf.setReadAheadExecutor((r)->r.run());
+			buf.setReadAhead(4);
+			byte [] tmp = new byte[(int) len];
+			for(int pos=0; pos < len; pos+=10 ) {
+				assertEquals(Math.min(10, len-pos), buf.read(pos, tmp, pos, (int) Math.min(10, len-pos)),"Read length not correct");
+			}
+			assertArrayEquals(expect, tmp,"Sequential read not correct");
+			RandomAccessIoStatistics stats = buf.getStatistics();
+			assertEquals(pages, stats.getChunkLoads(),"Loads not correct");
+			assertEquals(pages, stats.getCacheMisses(),"Misses not correct");
+			//  It takes two loads in order to start reading ahead
+			assertEquals(pages-2, stats.getPrefetchHits(),"Only the first two chunks should be read by the caller");
+			assertTrue(stats.getPrefetchLoads() >= stats.getPrefetchHits(),"Prefetch loads not correct");
+			assertEquals(4, buf.getReadAheadWindow(),"Window should grow to the max");
+
+			//  Out of order loads collapse the window
+			buf.read(0);
+			assertEquals(0, buf.getReadAheadWindow(),"Window should collapse");
+			buf.read(64);
+			assertEquals(1, buf.getReadAheadWindow(),"Window should restart");
+
+			//  A write makes the chunks read ahead before it stale
+			buf.write(64*3, (byte)'z');
+			buf.save();
+			assertEquals('z', (char)buf.read(64*3),"Write not seen");
+			buf.read(len-1);
+			long loads = buf.getStatistics().getPrefetchLoads();
+			buf.setReadAhead(0);
+			for(int pos=0; pos < len; pos+=64 ) {
+				buf.read(pos);
+			}
+			assertEquals(loads, buf.getStatistics().getPrefetchLoads(),"Read ahead should be off");
+			assertEquals(0, buf.getReadAheadWindow(),"Window should be 0 when read ahead is off");
+
+			//  Put the file back the way it was
+			buf.write(0, expect, 0, expect.length);
+		}
+	}
+
+	@Test
+	@Order(10)
+	public void testReadAheadThreads() throws Exception {
+		long len = file.length();
+		long pages = (len+63)/64;
+		byte [] expect = new byte[(int) len];
+		try(IRandomAccessIoController buf = getRandomAccessFileStream(file)){
+			assertEquals(len, buf.read(0, expect, 0, expect.length),"Read length not correct");
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try(ChunkedIoController buf = new ChunkedIoController((FileProxy) file, 64, 4)){
+			assertEquals(0, buf.getReadAhead(),"Read ahead should be off by default");
+			buf.setReadAheadExecutor(executor);
+			buf.setReadAhead(8);
+			byte [] tmp = new byte[(int) len];
+			for (int pass = 0; pass < 20; pass++) {
+				//  Change a byte in the middle of the file, the chunks read ahead before the save must not be used
+				int mark = (int) (len/2)+pass;
+				expect[mark] = (byte) ('a'+pass);
+				buf.write(mark, expect[mark]);
+				buf.save();
+				for(int pos=0; pos < len; pos+=10 ) {
+					int cnt = (int) Math.min(10, len-pos);
+					assertEquals(cnt, buf.read(pos, tmp, pos, cnt),"Read length not correct");
+					//  The caller is usually faster than the pool, on a busy machine wait once for a chunk to be read ahead
+					long end = System.currentTimeMillis()+100;
+					while( pass == 0 && buf.getStatistics().getPrefetchLoads() == 0 && System.currentTimeMillis() < end ) {
+						Thread.sleep(1);
+					}
+				}
+				assertArrayEquals(expect, tmp,"Sequential read not correct pass="+pass);
+			}
+			RandomAccessIoStatistics stats = buf.getStatistics();
+			assertTrue(stats.getPrefetchLoads() > 0,"Nothing was read ahead");
+			assertTrue(stats.getPrefetchHits() > 0,"Nothing read ahead was used");
+			//  Each pass loads every chunk plus the one written
+			assertEquals(pages*20+20, stats.getChunkLoads(),"Chunks were loaded more than once");
+			assertEquals(1, buf.maxConcurrentIo.get(),"Sub class IO should never overlap");
+
+			//  Put the file back the way it was
+			for (int pass = 0; pass < 20; pass++) {
+				int mark = (int) (len/2)+pass;
+				buf.write(mark, tmp[mark]);
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS),"Read ahead did not finish");
+	}
+
+}
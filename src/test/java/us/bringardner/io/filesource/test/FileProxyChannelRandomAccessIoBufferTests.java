@@ -0,0 +1,91 @@
+package us.bringardner.io.filesource.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import us.bringardner.io.filesource.FileSource;
+import us.bringardner.io.filesource.IRandomAccessIoController;
+import us.bringardner.io.filesource.IRandomAccessStream;
+import us.bringardner.io.filesource.fileproxy.FileProxy;
+import us.bringardner.io.filesource.fileproxy.FileProxyChannelIoController;
+import us.bringardner.io.filesource.fileproxy.FileProxyFactory;
+import us.bringardner.io.filesource.fileproxy.FileProxyFactory.RandomAccessIo;
+import us.bringardner.io.filesource.fileproxy.FileProxyRandomAccessIoController;
+
+/**
+ * Runs the FileProxy random access tests using FileChannel IO
+ */
+@TestMethodOrder(OrderAnnotation.class)
+public class FileProxyChannelRandomAccessIoBufferTests extends FileProxyRandomAccessIoBufferTests {
+
+	@Override
+	IRandomAccessIoController getRandomAccessFileStream(FileSource file) throws IOException {
+		return new FileProxyChannelIoController((FileProxy) file, "rw");
+	}
+
+	@Test
+	@Order(7)
+	public void testMappedRead() throws IOException {
+		long len = file.length();
+		byte [] expect = new byte[(int) len];
+		try(IRandomAccessIoController buf = getRandomAccessFileStream(file)){
+			assertEquals(len, buf.read(0, expect, 0, expect.length),"Read length not correct");
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+
+		try(FileProxyChannelIoController buf = new FileProxyChannelIoController((FileProxy) file, "r",true)){
+			assertTrue(buf.isMapped(),"Should be mapped");
+			//  small map so the window has to move
+			buf.setMapSize(100);
+			for (int idx = 0; idx < expect.length; idx++) {
+				assertEquals(expect[idx]&0xff, buf.read(idx),"Mapped read not correct pos="+idx);
+			}
+			assertEquals(-1, buf.read(len),"Read past end should return -1");
+			//  Backwards so each region is mapped again after the one it replaced is released
+			for (int idx = expect.length-1; idx >= 0; idx--) {
+				assertEquals(expect[idx]&0xff, buf.read(idx),"Mapped read backwards not correct pos="+idx);
+			}
+			byte [] tmp = new byte[expect.length];
+			assertEquals(len, buf.read(0, tmp, 0, tmp.length),"Mapped read length not correct");
+			for (int idx = 0; idx < expect.length; idx++) {
+				assertEquals(expect[idx], tmp[idx],"Mapped bulk read not correct pos="+idx);
+			}
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+
+		for(RandomAccessIo io : RandomAccessIo.values()) {
+			try(IRandomAccessStream in = ((FileProxy)file).getRandomAccessStream("r", io)) {
+				byte [] tmp = new byte[expect.length];
+				in.readFully(tmp);
+				for (int idx = 0; idx < expect.length; idx++) {
+					assertEquals(expect[idx], tmp[idx],io+" read not correct pos="+idx);
+				}
+			}
+		}
+	}
+
+	@Test
+	@Order(8)
+	public void testModes() throws IOException {
+		//  Channel IO is opt in
+		if( System.getProperty(FileProxyFactory.PROP_RANDOM_ACCESS_IO) == null ) {
+			assertEquals(RandomAccessIo.RandomAccessFile, new FileProxyFactory().getRandomAccessIo(),"Wrong default random access io");
+		}
+
+		//  Same modes as java.io.RandomAccessFile
+		for(String mode : new String[] {"w","rwx","x",""}) {
+			assertThrows(IllegalArgumentException.class, ()->new FileProxyRandomAccessIoController((FileProxy) file, mode),"RandomAccessFile accepted mode="+mode);
+			assertThrows(IllegalArgumentException.class, ()->new FileProxyChannelIoController((FileProxy) file, mode),"Channel accepted mode="+mode);
+		}
+	}
+}
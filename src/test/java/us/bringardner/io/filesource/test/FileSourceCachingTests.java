@@ -0,0 +1,228 @@
+/**
+ * <PRE>
+ * 
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ * 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *   
+ *   
+ *	@author Tony Bringardner   
+ *
+ */
+package us.bringardner.io.filesource.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import us.bringardner.io.filesource.FileSource;
+import us.bringardner.io.filesource.FileSourceFactory;
+import us.bringardner.io.filesource.ISeekableInputStream;
+import us.bringardner.io.filesource.caching.CachingFileSource;
+import us.bringardner.io.filesource.caching.CachingFileSourceFactory;
+import us.bringardner.io.filesource.caching.ContentCache;
+import us.bringardner.io.filesource.memory.MemoryFileSourceFactory;
+
+/**
+ * Run the standard tests through a CachingFileSourceFactory wrapped around a memory factory.
+ */
+public class FileSourceCachingTests extends AbstractTestClass {
+
+	@BeforeAll
+	public static void setUpBeforeAll() throws IOException  {
+		localTestFileDirPath = "TestFiles";
+		remoteTestFileDirPath = "target/CachingTests";		
+		localCacheDirPath = "target/CachingTestsCache";
+		factory = new CachingFileSourceFactory(new MemoryFileSourceFactory());
+	}
+
+	private static byte[] write(FileSource file, int size, int seed) throws IOException {
+		byte [] ret = new byte[size];
+		for (int idx = 0; idx < ret.length; idx++) {
+			ret[idx] = (byte) (idx*seed);
+		}
+		try(OutputStream out = file.getOutputStream()) {
+			out.write(ret);
+		}
+		return ret;
+	}
+
+	private static byte[] read(InputStream in, int size) throws IOException {
+		byte [] ret = new byte[size];
+		int pos = 0;
+		int got = 0;
+		while( pos < size && (got = in.read(ret, pos, size-pos)) > 0 ) {
+			pos += got;
+		}
+		assertEquals("Wrong number of bytes read",size,pos);
+		assertEquals("Expected end of file",-1,in.read());
+		return ret;
+	}
+
+	@Test
+	public void testContentCache() throws IOException {
+		MemoryFileSourceFactory mem = new MemoryFileSourceFactory();
+		FileSource cacheDir = FileSourceFactory.getDefaultFactory().createFileSource("target/CachingTestsContent");
+		ContentCache cache = new ContentCache(cacheDir, 150000);
+		CachingFileSourceFactory caching = new CachingFileSourceFactory(mem, cache);
+		FileSource dir = caching.createFileSource("/cached");
+		assertTrue("Can't create dir",dir.mkdirs());
+		FileSource file = dir.getChild("data.dat");
+		assertTrue("Children should be cached",file instanceof CachingFileSource);
+		byte [] data = write(file, 100000, 3);
+		assertEquals("Writing should not cache anything",0,cache.getBytesFromOrigin());
+
+		//  Read the second half then all of it
+		try(InputStream in = file.getInputStream(50000)) {
+			byte [] half = read(in, 50000);
+			for (int idx = 0; idx < half.length; idx++) {
+				assertEquals("Wrong byte at "+idx,data[50000+idx],half[idx]);
+			}
+		}
+		assertEquals("Wrong bytes from origin",50000,cache.getBytesFromOrigin());
+		try(InputStream in = file.getInputStream()) {
+			assertArrayEquals("Wrong content",data,read(in, data.length));
+		}
+		assertEquals("Only the first half should come from the origin",100000,cache.getBytesFromOrigin());
+		assertEquals("The second half should come from the cache",50000,cache.getBytesFromCache());
+
+		try(InputStream in = file.getInputStream()) {
+			assertArrayEquals("Wrong cached content",data,read(in, data.length));
+		}
+		assertEquals("Nothing should come from the origin",100000,cache.getBytesFromOrigin());
+		assertEquals("Wrong cached bytes",100000,cache.getTotalBytes());
+
+		ISeekableInputStream seekable = file.getSeekableInputStream();
+		try {
+			seekable.seek(12345);
+			assertEquals("Wrong byte after seek",data[12345] & 0xff,seekable.read());
+			assertEquals("Wrong position",12346,seekable.getFilePointer());
+		} finally {
+			seekable.close();
+		}
+		assertEquals("Seek should be served from the cache",100000,cache.getBytesFromOrigin());
+
+		//  Changed without going through the cache
+		byte [] data2 = write(mem.createFileSource(file.getAbsolutePath()), 90000, 7);
+		try(InputStream in = file.getInputStream()) {
+			assertArrayEquals("Changed content not read",data2,read(in, data2.length));
+		}
+		assertEquals("Change not detected",1,cache.getInvalidations());
+
+		//  Changed through the cache
+		data = write(file, 100000, 5);
+		try(InputStream in = file.getInputStream()) {
+			assertArrayEquals("Content written through the cache not read",data,read(in, data.length));
+		}
+		assertEquals("Write did not invalidate",2,cache.getInvalidations());
+
+		FileSource file2 = dir.getChild("data2.dat");
+		byte [] data3 = write(file2, 100000, 11);
+		try(InputStream in = file2.getInputStream()) {
+			assertArrayEquals("Wrong content",data3,read(in, data3.length));
+		}
+		assertTrue("Nothing was evicted",cache.getEvictions() > 0);
+		assertTrue("Cache is over it's limit "+cache,cache.getTotalBytes() <= cache.getMaxBytes());
+
+		cache.clear();
+		assertEquals("Clear left entries",0,cache.size());
+		assertEquals("Clear left cache files",0,cacheDir.listFiles().length);
+		deleteAll(cacheDir);
+	}
+
+	@Test
+	public void testContentCacheTotalBytes() throws Exception {
+		MemoryFileSourceFactory mem = new MemoryFileSourceFactory();
+		ContentCache cache = new ContentCache(mem.createFileSource("/contentCache"), 60000);
+		CachingFileSourceFactory caching = new CachingFileSourceFactory(mem, cache);
+		FileSource dir = caching.createFileSource("/totals");
+		assertTrue("Can't create dir",dir.mkdirs());
+		int files = 4;
+		byte [][] data = new byte[files][];
+		for (int idx = 0; idx < files; idx++) {
+			data[idx] = write(dir.getChild("file"+idx), 20000, idx+3);
+		}
+
+		//  Readers fill the cache while entries are invalidated and evicted
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> results = new ArrayList<>();
+			for (int task = 0; task < 4; task++) {
+				int seed = task;
+				results.add(pool.submit(()->{
+					for (int pass = 0; pass < 50; pass++) {
+						int idx = (pass+seed)%files;
+						FileSource file = dir.getChild("file"+idx);
+						if( seed == 0 && pass%5 == 0 ) {
+							cache.invalidate(mem.createFileSource(file.getAbsolutePath()).getAbsolutePath());
+						}
+						try(InputStream in = file.getInputStream((pass*997)%10000)) {
+							in.read(new byte[20000]);
+						}
+						assertTrue("Negative cached bytes "+cache.getTotalBytes(),cache.getTotalBytes() >= 0);
+					}
+					return null;
+				}));
+			}
+			for(Future<?> result : results) {
+				result.get();
+			}
+		} finally {
+			pool.shutdown();
+		}
+		assertTrue("Cache is over it's limit "+cache,cache.getTotalBytes() <= cache.getMaxBytes());
+		cache.clear();
+		assertEquals("Clear should leave no cached bytes",0,cache.getTotalBytes());
+	}
+
+	@Test
+	public void testContentCacheWriteFails() throws IOException {
+		MemoryFileSourceFactory mem = new MemoryFileSourceFactory();
+		FileSource cacheDir = FileSourceFactory.getDefaultFactory().createFileSource("target/CachingTestsBroken");
+		ContentCache cache = new ContentCache(cacheDir, 150000);
+		CachingFileSourceFactory caching = new CachingFileSourceFactory(mem, cache);
+		FileSource dir = caching.createFileSource("/broken");
+		assertTrue("Can't create dir",dir.mkdirs());
+		FileSource file = dir.getChild("data.dat");
+		byte [] data = write(file, 50000, 13);
+
+		//  Replace the cache directory with a file so the cache files can't be created
+		assertTrue("Can't delete "+cacheDir,cacheDir.delete());
+		cacheDir.getOutputStream().close();
+		try {
+			try(InputStream in = file.getInputStream()) {
+				assertArrayEquals("A cache failure should not fail the read",data,read(in, data.length));
+			}
+			assertEquals("The entry should be dropped",0,cache.size());
+			assertTrue("Failure should invalidate",cache.getInvalidations() > 0);
+			assertEquals("Nothing should be cached",0,cache.getTotalBytes());
+		} finally {
+			cacheDir.delete();
+		}
+	}
+
+}
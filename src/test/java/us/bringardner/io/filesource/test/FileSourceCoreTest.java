@@ -39,7 +39,10 @@ import org.junit.jupiter.api.Test;
 
 import us.bringardner.io.filesource.FileSource;
 import us.bringardner.io.filesource.FileSourceFactory;
+import us.bringardner.io.filesource.FileSourceGroup;
+import us.bringardner.io.filesource.FileSourceUser;
 import us.bringardner.io.filesource.fileproxy.FileProxyFactory;
+import us.bringardner.io.filesource.memory.MemoryFileSourceFactory;
 
 
 public class FileSourceCoreTest  extends AbstractTestClass {
@@ -70,6 +73,33 @@ public class FileSourceCoreTest  extends AbstractTestClass {
 		}
 	}
 
+	@Test
+	public void testWhoAmI() throws IOException, InterruptedException {
+		FileSourceUser me = new FileProxyFactory().whoAmI();
+		assertNotNull("No local user",me);
+		assertTrue("The local user should be shared by all factories",me == new MemoryFileSourceFactory().whoAmI());
+
+		if( !FileSourceFactory.isWindows()) {
+			//  Should match the id command even if it was not used to find the user
+			Process process = new ProcessBuilder("id").start();
+			String out = new String(process.getInputStream().readAllBytes());
+			assertEquals(0, process.waitFor());
+			assertEquals(FileSourceUser.fromId(out).toString(), me.toString());
+		}
+
+		String groupName = me.getGroups().values().iterator().next().getName();
+		assertTrue("Group lookup should ignore case",me.hasGroup(groupName.toUpperCase()));
+		assertEquals(FileSourceUser.Access.Owner, me.getAccess(me.getName(), "noSuchGroup"));
+		assertEquals(FileSourceUser.Access.Group, me.getAccess("noSuchUser", groupName));
+		assertEquals(FileSourceUser.Access.Other, me.getAccess("noSuchUser", "noSuchGroup"));
+
+		//  Cached decisions change when the groups do
+		FileSourceUser user = new FileSourceUser(1000, "someone");
+		assertEquals(FileSourceUser.Access.Other, user.getAccess("noSuchUser", "staff"));
+		user.addGroup(new FileSourceGroup(20, "staff"));
+		assertEquals(FileSourceUser.Access.Group, user.getAccess("noSuchUser", "staff"));
+	}
+
 	@Test
 	public void testExpandDots() throws IOException {
 
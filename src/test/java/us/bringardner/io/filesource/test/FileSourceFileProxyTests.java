@@ -25,11 +25,33 @@
  */
 package us.bringardner.io.filesource.test;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
 
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
 
+import us.bringardner.io.filesource.FileSource;
+import us.bringardner.io.filesource.FileSourceCopier;
+import us.bringardner.io.filesource.FileSourceCache;
+import us.bringardner.io.filesource.FileSourceFilter;
+import us.bringardner.io.filesource.ISeekableInputStream;
+import us.bringardner.io.filesource.fileproxy.FileProxy;
 import us.bringardner.io.filesource.fileproxy.FileProxyFactory;
+import us.bringardner.io.filesource.fileproxy.FileProxySeekableInputStream;
 
 
 
@@ -48,4 +70,262 @@ public class FileSourceFileProxyTests extends AbstractTestClass {
 
 	}
 
+	@Test
+	@Order(20)
+	public void testAttributeCache() throws IOException {
+		FileProxyFactory proxyFactory = new FileProxyFactory();
+		proxyFactory.setAttributeTtl(60000);
+		File dir = new File("target/FileProxyAttributeTests");
+		dir.mkdirs();
+		FileSource file = proxyFactory.createFileSource(new File(dir,"attributes.txt").getAbsolutePath());
+		if( file.exists()) {
+			assertTrue(file.delete(),"Can't delete "+file);
+		}
+		assertFalse(file.exists(),"Should not exist after delete");
+
+		//  Changes made through the FileProxy are seen right away
+		try(OutputStream out = file.getOutputStream()) {
+			out.write(new byte[10]);
+		}
+		assertTrue(file.exists(),"Should exist after write");
+		assertTrue(file.isFile(),"Should be a file");
+		assertFalse(file.isDirectory(),"Should not be a directory");
+		assertEquals(10, file.length(),"Wrong length after write");
+
+		if( !FileProxyFactory.isWindows()) {
+			boolean readable = file.canGroupRead();
+			assertTrue(file.setGroupReadable(!readable),"Can't set group read");
+			assertEquals(!readable, file.canGroupRead(),"Group read not changed");
+			assertTrue(file.setGroupReadable(readable),"Can't reset group read");
+			assertEquals(readable, file.canGroupRead(),"Group read not reset");
+		}
+
+		//  Changes made by someone else are not seen until the ttl expires or refresh is called
+		try(OutputStream out = new FileOutputStream(new File(file.getAbsolutePath()),true)) {
+			out.write(new byte[5]);
+		}
+		assertEquals(10, file.length(),"Length should come from the cached attributes");
+		file.refresh();
+		assertEquals(15, file.length(),"Wrong length after refresh");
+
+		//  A change to another file through a FileProxy does not discard the attributes of this one
+		try(OutputStream out = new FileOutputStream(new File(file.getAbsolutePath()),true)) {
+			out.write(new byte[5]);
+		}
+		FileSource other = file.getParentFile().getChild("other.txt");
+		try(OutputStream out = other.getOutputStream()) {
+			out.write(new byte[3]);
+		}
+		assertEquals(15, file.length(),"A change to another file should not refresh the attributes");
+
+		//  So does a copy between local files, only the target is refreshed
+		FileSource copy = file.getParentFile().getChild("copy.txt");
+		copy.exists();
+		new FileSourceCopier().copy(other, copy);
+		assertEquals(3, copy.length(),"Copy target should be refreshed");
+		assertEquals(15, file.length(),"A copy to another file should not refresh the attributes");
+		assertTrue(copy.delete(),"Can't delete "+copy);
+		assertTrue(other.delete(),"Can't delete "+other);
+
+		//  A change to the same path through another FileProxy does
+		FileSource same = proxyFactory.createFileSource(file.getAbsolutePath());
+		try(OutputStream out = same.getOutputStream(true)) {
+			out.write(new byte[5]);
+		}
+		assertEquals(25, file.length(),"A change to the same path should refresh the attributes");
+		try(OutputStream out = new FileOutputStream(new File(file.getAbsolutePath()))) {
+			out.write(new byte[15]);
+		}
+		FileProxy.refreshAll();
+		assertEquals(15, file.length(),"Wrong length after refreshAll");
+
+		proxyFactory.setAttributeTtl(0);
+		try(OutputStream out = new FileOutputStream(new File(file.getAbsolutePath()),true)) {
+			out.write(new byte[5]);
+		}
+		assertEquals(20, file.length(),"Wrong length with no ttl");
+
+		assertTrue(file.delete(),"Can't delete "+file);
+		assertFalse(file.exists(),"Should not exist after delete");
+	}
+
+	@Test
+	@Order(21)
+	public void testPrefetchAttributes() throws IOException {
+		FileProxyFactory proxyFactory = new FileProxyFactory();
+		proxyFactory.setAttributeTtl(60000);
+		File dir = new File("target/FileProxyPrefetchTests");
+		FileSource root = proxyFactory.createFileSource(dir.getAbsolutePath());
+		if( root.exists()) {
+			deleteAll(root);
+		}
+		assertTrue(root.mkdirs(),"Can't create "+root);
+		assertTrue(root.getChild("subdir").mkdir(),"Can't create subdir");
+		for (int idx = 0; idx < 5; idx++) {
+			try(OutputStream out = root.getChild("file"+idx+".txt").getOutputStream()) {
+				out.write(new byte[idx*10]);
+			}
+		}
+
+		proxyFactory.setPrefetchAttributes(false);
+		FileSource [] expect = root.listFiles();
+		proxyFactory.setPrefetchAttributes(true);
+		FileSource [] actual = root.listFiles();
+		assertEquals(expect.length, actual.length,"Wrong number of children");
+		Arrays.sort(expect,(a,b)->a.getName().compareTo(b.getName()));
+		Arrays.sort(actual,(a,b)->a.getName().compareTo(b.getName()));
+		for (int idx = 0; idx < actual.length; idx++) {
+			assertEquals(expect[idx].getAbsolutePath(), actual[idx].getAbsolutePath(),"Wrong path");
+			assertEquals(expect[idx].isDirectory(), actual[idx].isDirectory(),"Wrong isDirectory "+actual[idx]);
+			assertEquals(expect[idx].length(), actual[idx].length(),"Wrong length "+actual[idx]);
+			assertEquals(expect[idx].lastModified(), actual[idx].lastModified(),"Wrong lastModified "+actual[idx]);
+		}
+
+		//  The filter sees the prefetched attributes
+		FileSource [] dirs = root.listFiles(new FileSourceFilter() {
+			@Override
+			public boolean accept(FileSource f) {
+				try {
+					return f.isDirectory();
+				} catch (IOException e) {
+					return false;
+				}
+			}
+
+			@Override
+			public String getDescription() {
+				return "Directories";
+			}
+		});
+		assertEquals(1, dirs.length,"Wrong number of directories");
+		assertEquals("subdir", dirs[0].getName(),"Wrong directory");
+
+		//  A change made outside of FileProxy is not seen until refresh 
+		FileSource file = null;
+		for(FileSource f : root.listFiles()) {
+			if( f.getName().equals("file1.txt")) {
+				file = f;
+			}
+		}
+		try(OutputStream out = new FileOutputStream(new File(file.getAbsolutePath()),true)) {
+			out.write(new byte[5]);
+		}
+		assertEquals(10, file.length(),"Length should come from the prefetched attributes");
+		file.refresh();
+		assertEquals(15, file.length(),"Wrong length after refresh");
+
+		assertEquals(null, root.getChild("file0.txt").listFiles(),"A file should not have children");
+		deleteAll(root);
+	}
+
+	@Test
+	@Order(22)
+	public void testFileCache() throws IOException {
+		FileProxyFactory proxyFactory = new FileProxyFactory();
+		File dir = new File("target/FileProxyCacheTests");
+		FileSource root = proxyFactory.createFileSource(dir.getAbsolutePath());
+		assertFalse(root == proxyFactory.createFileSource(dir.getAbsolutePath()),"Files should not be interned by default");
+
+		FileSourceCache cache = new FileSourceCache(3, FileSourceCache.ReferenceType.Weak);
+		proxyFactory.setFileCache(cache);
+		root = proxyFactory.createFileSource(dir.getAbsolutePath());
+		if( root.exists()) {
+			deleteAll(root);
+		}
+		assertTrue(root.mkdirs(),"Can't create "+root);
+		FileSource child = root.getChild("file.txt");
+		try(OutputStream out = child.getOutputStream()) {
+			out.write(new byte[10]);
+		}
+
+		assertSame(root, proxyFactory.createFileSource(dir.getAbsolutePath()),"createFileSource should return the interned file");
+		assertSame(child, root.getChild("file.txt"),"getChild should return the interned file");
+		assertSame(root, child.getParentFile(),"getParentFile should return the interned file");
+		FileSource [] kids = root.listFiles();
+		assertEquals(1, kids.length,"Wrong number of children");
+		assertSame(child, kids[0],"listFiles should return the interned file");
+		assertEquals(10, kids[0].length(),"Wrong length");
+		assertTrue(cache.getHits() >= 4,"Wrong number of hits "+cache);
+
+		//  The least recently used path is dropped when the cache is full
+		root.getChild("a");
+		root.getChild("b");
+		root.getChild("c");
+		assertEquals(3, cache.size(),"Cache should not grow past max size");
+		assertTrue(cache.getEvictions() > 0,"Nothing was evicted "+cache);
+
+		proxyFactory.setFileCache(null);
+		deleteAll(root);
+	}
+
+	@Test
+	@Order(23)
+	public void testSeekableInputStream() throws IOException {
+		FileProxyFactory proxyFactory = new FileProxyFactory();
+		FileSource root = proxyFactory.createFileSource(new File("target/FileProxySeekableTests").getAbsolutePath());
+		if( root.exists()) {
+			deleteAll(root);
+		}
+		assertTrue(root.mkdirs(),"Can't create "+root);
+		FileSource file = root.getChild("file.dat");
+		byte [] data = new byte[100000];
+		for (int idx = 0; idx < data.length; idx++) {
+			data[idx] = (byte) (idx*31);
+		}
+		try(OutputStream out = file.getOutputStream()) {
+			out.write(data);
+		}
+
+		proxyFactory.setSeekableBufferSize(1024);
+		for(long mappedSize : new long[] {0,data.length}) {
+			proxyFactory.setMappedSeekableSize(mappedSize);
+			ISeekableInputStream in = file.getSeekableInputStream();
+			try {
+				assertEquals(mappedSize > 0, ((FileProxySeekableInputStream)in).isMapped(),"Wrong mapped mode");
+				assertEquals(data.length, in.length(),"Wrong length");
+				assertEquals(data[0] & 0xff, in.read(),"Wrong first byte");
+
+				//  Inside then outside the buffer, forward and back
+				for(long pos : new long[] {500,10,50000,49000,data.length-1}) {
+					in.seek(pos);
+					assertEquals(pos, in.getFilePointer(),"Wrong file pointer");
+					assertEquals(data[(int) pos] & 0xff, in.read(),"Wrong byte at "+pos);
+				}
+				assertEquals(-1, in.read(),"Should be at the end");
+
+				byte [] buf = new byte[3000];
+				in.seek(70000);
+				int got = in.read(buf, 0, 100);
+				assertTrue(got > 0,"Nothing read");
+				assertArrayEquals(Arrays.copyOfRange(data, 70000, 70000+got), Arrays.copyOf(buf, got),"Wrong small read");
+				in.seek(20000);
+				//  Bigger than the buffer
+				got = in.read(buf, 0, buf.length);
+				assertTrue(got > 0,"Nothing read");
+				assertArrayEquals(Arrays.copyOfRange(data, 20000, 20000+got), Arrays.copyOf(buf, got),"Wrong large read");
+
+				in.seek(0);
+				InputStream bulk = in.getInputStream();
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				int cnt = 0;
+				while( (cnt = bulk.read(buf, 0, 777)) > 0 ) {
+					out.write(buf, 0, cnt);
+				}
+				assertArrayEquals(data, out.toByteArray(),"Wrong bulk read");
+				in.seek(data.length-10);
+				assertEquals(10, bulk.available(),"Wrong available");
+				assertEquals(10, bulk.skip(100),"Wrong skip");
+				assertEquals(-1, bulk.read(),"Should be at the end");
+				assertThrows(IOException.class, ()->in.seek(-1),"Negative seek should fail");
+			} finally {
+				in.close();
+			}
+			//  The mapping is released by close so the stream must not touch it again
+			assertThrows(IOException.class, ()->in.read(),"Read after close should fail");
+			assertThrows(IOException.class, ()->in.length(),"Length after close should fail");
+			in.close();
+		}
+		deleteAll(root);
+	}
+
 }
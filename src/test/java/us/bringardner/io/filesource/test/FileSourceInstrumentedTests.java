@@ -0,0 +1,138 @@
+/**
+ * <PRE>
+ * 
+ * Copyright Tony Bringarder 1998, 2025 <A href="http://bringardner.com/tony">Tony Bringardner</A>
+ * 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       <A href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</A>
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  </PRE>
+ *   
+ *   
+ *	@author Tony Bringardner   
+ *
+ */
+package us.bringardner.io.filesource.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import us.bringardner.io.filesource.FileSource;
+import us.bringardner.io.filesource.instrumented.FileSourceStatistics;
+import us.bringardner.io.filesource.instrumented.FileSourceStatistics.Operation;
+import us.bringardner.io.filesource.instrumented.InstrumentedFileSource;
+import us.bringardner.io.filesource.instrumented.InstrumentedFileSourceFactory;
+import us.bringardner.io.filesource.instrumented.LatencyHistogram;
+import us.bringardner.io.filesource.instrumented.OperationStatistics;
+import us.bringardner.io.filesource.memory.MemoryFileSourceFactory;
+
+/**
+ * Run the standard tests through an InstrumentedFileSourceFactory wrapped around a memory factory.
+ */
+public class FileSourceInstrumentedTests extends AbstractTestClass {
+
+	@BeforeAll
+	public static void setUpBeforeAll()  {
+		localTestFileDirPath = "TestFiles";
+		remoteTestFileDirPath = "target/InstrumentedTests";		
+		localCacheDirPath = "target/InstrumentedTestsCache";
+		factory = new InstrumentedFileSourceFactory(new MemoryFileSourceFactory());
+	}
+
+	@Test
+	public void testStatistics() throws IOException, JMException {
+		InstrumentedFileSourceFactory instrumented = new InstrumentedFileSourceFactory(new MemoryFileSourceFactory());
+		FileSourceStatistics stats = instrumented.getStatistics();
+		FileSource dir = instrumented.createFileSource("/stats");
+		assertTrue("Can't create dir",dir.mkdirs());
+		FileSource file = dir.getChild("data.txt");
+		assertTrue("Children should be instrumented",file instanceof InstrumentedFileSource);
+		assertSame("Wrong factory",instrumented,file.getFileSourceFactory());
+
+		byte [] data = new byte[1000];
+		try(OutputStream out = file.getOutputStream()) {
+			out.write(data);
+			out.write(data, 0, 500);
+		}
+		long total = 0;
+		try(InputStream in = file.getInputStream()) {
+			int got = 0;
+			while( (got = in.read(data)) > 0 ) {
+				total += got;
+			}
+		}
+		assertEquals("Wrong bytes read",1500,total);
+		assertEquals("Wrong length",1500,file.length());
+		assertEquals("Wrong number of children",1,dir.listFiles().length);
+		assertTrue("listFiles should return instrumented children",dir.listFiles()[0] instanceof InstrumentedFileSource);
+		try {
+			dir.getChild("missing.txt").getRandomAccessStream("r");
+			fail("Opened a file that does not exist");
+		} catch (IOException e) {
+		}
+
+		OperationStatistics write = stats.getStatistics(Operation.Write);
+		assertEquals("Wrong write count",2,write.getCount());
+		assertEquals("Wrong bytes written",1500,write.getBytes());
+		assertEquals("Wrong bytes read",1500,stats.getStatistics(Operation.Read).getBytes());
+		assertEquals("Wrong length count",1,stats.getStatistics(Operation.Length).getCount());
+		assertEquals("Wrong list count",2,stats.getStatistics(Operation.ListFiles).getCount());
+		assertEquals("Wrong close count",2,stats.getStatistics(Operation.Close).getCount());
+		OperationStatistics open = stats.getStatistics(Operation.OpenRandomAccess);
+		assertEquals("Wrong error count",1,open.getErrors());
+		assertTrue("Max should be recorded",write.getMaxNanos() > 0);
+		assertTrue("Percentiles out of order",write.getP50Nanos() <= write.getP99Nanos() && write.getP99Nanos() <= write.getMaxNanos());
+		for(OperationStatistics op : stats.getOperations()) {
+			assertTrue("Unused operation returned "+op,op.getCount() > 0);
+		}
+
+		for(long value : new long[] {0,15,16,17,1000,123456789,1L<<36}) {
+			int bucket = LatencyHistogram.getBucket(value);
+			assertTrue("Wrong bucket for "+value,LatencyHistogram.getLowestValue(bucket) <= value && value <= LatencyHistogram.getHighestValue(bucket));
+			assertTrue("Bucket is too wide for "+value,LatencyHistogram.getHighestValue(bucket)-LatencyHistogram.getLowestValue(bucket) <= value/16);
+		}
+
+		stats.registerMBean("testStatistics");
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			CompositeData [] ops = (CompositeData[]) server.getAttribute(stats.getMBeanName(), "Operations");
+			assertEquals("Wrong number of operations",stats.getOperations().size(),ops.length);
+			boolean found = false;
+			for(CompositeData op : ops) {
+				if( Operation.Write.name().equals(op.get("operation"))) {
+					assertEquals("Wrong JMX write count",2L,op.get("count"));
+					found = true;
+				}
+			}
+			assertTrue("Write not published",found);
+			server.invoke(stats.getMBeanName(), "reset", null, null);
+			assertEquals("Reset did not clear the counters",0,stats.getOperations().size());
+		} finally {
+			stats.unregisterMBean();
+		}
+	}
+
+}
@@ -25,8 +25,35 @@ package us.bringardner.io.filesource.test;
 
 
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
 
+import us.bringardner.io.filesource.FileSource;
+import us.bringardner.io.filesource.FileSourceCopier;
+import us.bringardner.io.filesource.FileSourceFactory;
+import us.bringardner.io.filesource.FileSourceFilter;
+import us.bringardner.io.filesource.FileSourceSessionRegistry;
+import us.bringardner.io.filesource.FileSourceTreeWalker;
 import us.bringardner.io.filesource.memory.MemoryFileSourceFactory;
 
 
@@ -44,5 +71,355 @@ public class FileSourceMemoryTests extends AbstractTestClass {
 
 	}
 
+	@Test
+	public void testConcurrentTree() throws Exception {
+		MemoryFileSourceFactory mem = new MemoryFileSourceFactory();
+		FileSource dir = mem.createFileSource("/concurrent");
+		dir.mkdirs();
+		int threads = 8;
+		int filesPerThread = 200;
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> list = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				list.add(pool.submit(()->{
+					//  every thread creates the same files
+					for (int idx = 0; idx < filesPerThread; idx++) {
+						FileSource file = mem.createFileSource("/concurrent/file"+idx);
+						try(OutputStream out = file.getOutputStream()) {
+							out.write(("data"+idx).getBytes());
+						}
+						dir.listFiles();
+					}
+					return null;
+				}));
+			}
+			for(Future<?> f : list) {
+				f.get();
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		assertEquals("Wrong number of children",filesPerThread,dir.listFiles().length);
+		assertEquals("Wrong number of names",filesPerThread,dir.list().length);
+		for (int idx = 0; idx < filesPerThread; idx++) {
+			FileSource file = mem.createFileSource("/concurrent/file"+idx);
+			assertSame("Create should return the existing child",file,mem.createFileSource("/concurrent/file"+idx));
+			assertEquals("Wrong content length",("data"+idx).length(),file.length());
+		}
+	}
+
+	@Test
+	public void testTreeWalker() throws Exception {
+		MemoryFileSourceFactory mem = new MemoryFileSourceFactory();
+		FileSource root = mem.createFileSource("/walk");
+		root.mkdirs();
+		int expectFiles = 0;
+		int expectDirs = 1;
+		//  3 levels of 4 directories with 5 files in each directory
+		List<FileSource> dirs = new ArrayList<>();
+		dirs.add(root);
+		for (int level = 0; level < 3; level++) {
+			List<FileSource> next = new ArrayList<>();
+			for(FileSource dir : dirs) {
+				for (int idx = 0; idx < 5; idx++) {
+					try(OutputStream out = dir.getChild("file"+idx+".txt").getOutputStream()) {
+						out.write(idx);
+					}
+					expectFiles++;
+				}
+				for (int idx = 0; idx < 4; idx++) {
+					FileSource kid = dir.getChild("dir"+idx);
+					kid.mkdirs();
+					next.add(kid);
+					expectDirs++;
+				}
+			}
+			dirs = next;
+		}
+
+		for(boolean virtual : new boolean[] {false,true}) {
+			Set<String> visited = ConcurrentHashMap.newKeySet();
+			Set<String> done = ConcurrentHashMap.newKeySet();
+			AtomicInteger files = new AtomicInteger();
+			AtomicInteger errors = new AtomicInteger();
+			FileSourceTreeWalker walker = new FileSourceTreeWalker();
+			walker.setVirtualThreads(virtual);
+			walker.walk(root, new FileSourceTreeWalker.Visitor() {
+
+				@Override
+				public boolean preVisitDirectory(FileSource dir, FileSource parent, int depth) throws IOException {
+					if( parent != null && !visited.contains(parent.getAbsolutePath())) {
+						errors.incrementAndGet();
+					}
+					visited.add(dir.getAbsolutePath());
+					return true;
+				}
+
+				@Override
+				public void visitFile(FileSource file, FileSource parent, int depth) throws IOException {
+					files.incrementAndGet();
+				}
+
+				@Override
+				public void postVisitDirectory(FileSource dir, FileSource parent, int depth) throws IOException {
+					//  every child directory must be done before it's parent
+					for(FileSource kid : dir.listFiles()) {
+						if( kid.isDirectory() && !done.contains(kid.getAbsolutePath())) {
+							errors.incrementAndGet();
+						}
+					}
+					done.add(dir.getAbsolutePath());
+				}
+			});
+			assertEquals("Wrong number of directories visited",expectDirs,visited.size());
+			assertEquals("Wrong number of directories done",expectDirs,done.size());
+			assertEquals("Wrong number of files",expectFiles,files.get());
+			assertEquals("Visited out of order",0,errors.get());
+		}
+
+		//  maxDepth and filter
+		AtomicInteger count = new AtomicInteger();
+		FileSourceTreeWalker walker = new FileSourceTreeWalker();
+		walker.setMaxDepth(1);
+		walker.walk(root, (file, parent, depth) -> count.incrementAndGet());
+		assertEquals("Wrong count with maxDepth=1",9,count.get());
+
+		count.set(0);
+		walker = new FileSourceTreeWalker();
+		walker.setFilter(new FileSourceFilter() {
+			@Override
+			public boolean accept(FileSource f) {
+				return !f.getName().equals("dir0");
+			}
+
+			@Override
+			public String getDescription() {
+				return "Not dir0";
+			}
+		});
+		walker.walk(root, (file, parent, depth) -> count.incrementAndGet());
+		//  The root has 5 files and 3 walked directories, each with 5 files and 3 walked (empty) directories
+		assertEquals("Wrong count with filter",5+(3*5)+(9*5),count.get());
+
+		//  An exception from the visitor stops the walk
+		try {
+			new FileSourceTreeWalker().walk(root, (file, parent, depth) -> {
+				throw new IOException("Stop");
+			});
+			fail("Walk should throw the visitor exception");
+		} catch (IOException e) {
+			assertEquals("Wrong exception","Stop",e.getMessage());
+		}
+
+		//  Delete the tree the same way rm -r does
+		new FileSourceTreeWalker().walk(root, new FileSourceTreeWalker.Visitor() {
+			@Override
+			public void visitFile(FileSource file, FileSource parent, int depth) throws IOException {
+				assertTrue("Can't delete "+file,file.delete());
+			}
+
+			@Override
+			public void postVisitDirectory(FileSource dir, FileSource parent, int depth) throws IOException {
+				assertTrue("Can't delete "+dir,dir.delete());
+			}
+		});
+		assertFalse("Root should be deleted",root.exists());
+	}
+
+	@Test
+	public void testCopier() throws Exception {
+		MemoryFileSourceFactory mem = new MemoryFileSourceFactory();
+		FileSource src = mem.createFileSource("/copyFrom");
+		FileSource dest = mem.createFileSource("/copyTo");
+		src.mkdirs();
+		dest.mkdirs();
+
+		//  Small files fit in one buffer, the large ones go through the reader / writer pipeline
+		int [] sizes = {0,1,1000,4096,4097,100000,300001};
+		long expectBytes = 0;
+		for (int idx = 0; idx < sizes.length; idx++) {
+			try(OutputStream out = src.getChild("file"+idx).getOutputStream()) {
+				for (int pos = 0; pos < sizes[idx]; pos++) {
+					out.write(pos*31+idx);
+				}
+			}
+			expectBytes += sizes[idx];
+		}
+
+		AtomicInteger completed = new AtomicInteger();
+		AtomicInteger reports = new AtomicInteger();
+		FileSourceCopier copier = new FileSourceCopier();
+		copier.setMinBufferSize(4096);
+		copier.setMaxBufferSize(8192);
+		copier.setMaxTransfers(2);
+		copier.setProgressInterval(0);
+		copier.setListener(new FileSourceCopier.ProgressListener() {
+			@Override
+			public void progress(FileSourceCopier.Progress progress) {
+				reports.incrementAndGet();
+			}
+
+			@Override
+			public void completed(FileSource from, FileSource to, long size, long millis) {
+				completed.incrementAndGet();
+			}
+		});
+
+		for (int idx = 0; idx < sizes.length; idx++) {
+			copier.submit(src.getChild("file"+idx), dest.getChild("file"+idx));
+		}
+		copier.await();
+
+		FileSourceCopier.Progress progress = copier.getProgress();
+		assertEquals("Wrong number of files",sizes.length,progress.getFilesCompleted());
+		assertEquals("Wrong number of bytes",expectBytes,progress.getBytes());
+		assertEquals("Wrong number of completed calls",sizes.length,completed.get());
+		assertTrue("Progress was not reported",reports.get() > 0);
+
+		for (int idx = 0; idx < sizes.length; idx++) {
+			FileSource file = dest.getChild("file"+idx);
+			assertEquals("Wrong length for "+file,sizes[idx],file.length());
+			try(InputStream in = file.getInputStream()) {
+				for (int pos = 0; pos < sizes[idx]; pos++) {
+					assertEquals("Wrong data at "+pos+" in "+file,(pos*31+idx)&0xff,in.read());
+				}
+				assertEquals("Expected end of file for "+file,-1,in.read());
+			}
+		}
+
+		//  One thread for the copies and the readers, the copies have to read on their own thread
+		ExecutorService single = Executors.newFixedThreadPool(1);
+		try {
+			FileSourceCopier bounded = new FileSourceCopier();
+			bounded.setMinBufferSize(4096);
+			bounded.setMaxBufferSize(8192);
+			bounded.setMaxTransfers(2);
+			bounded.setExecutor(single);
+			for (int idx = 0; idx < sizes.length; idx++) {
+				bounded.submit(src.getChild("file"+idx), dest.getChild("bounded"+idx));
+			}
+			bounded.await();
+			assertEquals("Wrong number of bytes with one thread",expectBytes,bounded.getProgress().getBytes());
+			for (int idx = 0; idx < sizes.length; idx++) {
+				assertEquals("Wrong length with one thread",sizes[idx],dest.getChild("bounded"+idx).length());
+			}
+
+			//  The writer fails while the reader is running
+			FileSourceCopier failing = new FileSourceCopier();
+			failing.setMinBufferSize(4096);
+			failing.setMaxBufferSize(4096);
+			failing.setProgressInterval(0);
+			failing.setListener(new FileSourceCopier.ProgressListener() {
+				@Override
+				public void progress(FileSourceCopier.Progress progress) {
+					throw new IllegalStateException("Writer failed");
+				}
+			});
+			failing.setExecutor(Executors.newFixedThreadPool(2));
+			try {
+				failing.copy(src.getChild("file6"), dest.getChild("failing"));
+				fail("Copy should fail when the writer fails");
+			} catch (IllegalStateException e) {
+				// expected
+			}
+			failing.getExecutor().shutdown();
+		} finally {
+			single.shutdown();
+		}
+
+		//  A failed copy is reported by await and stops later copies
+		FileSourceCopier failed = new FileSourceCopier();
+		failed.submit(src, dest.getChild("notAFile"));
+		try {
+			failed.await();
+			fail("Copying a directory should fail");
+		} catch (IOException e) {
+			// expected
+		}
+		try {
+			failed.submit(src.getChild("file1"), dest.getChild("again"));
+			fail("Submit should fail after a copy fails");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * A factory that is not thread safe so the registry has to pool copies
+	 */
+	public static class CopyingMemoryFactory extends MemoryFileSourceFactory {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public FileSourceFactory createThreadSafeCopy() {
+			CopyingMemoryFactory ret = new CopyingMemoryFactory();
+			ret.setConnectionProperties(getConnectProperties());
+			return ret;
+		}
+	}
+
+	@Test
+	public void testSessionRegistry() throws Exception {
+		FileSourceSessionRegistry registry = new FileSourceSessionRegistry();
+		Properties p = new Properties();
+		p.setProperty("name", "registry");
+
+		FileSourceFactory f1 = new CopyingMemoryFactory();
+		f1.setConnectionProperties(p);
+		FileSourceFactory f2 = new CopyingMemoryFactory();
+		f2.setConnectionProperties(p);
+
+		assertSame("First session should be the factory",f1,registry.getSession(f1));
+		assertTrue("Session should be connected",f1.isConnected());
+		assertSame("Same properties should share the session",f1,registry.getSession(f2));
+		assertEquals("Wrong misses",1,registry.getMisses());
+		assertEquals("Wrong hits",1,registry.getHits());
+
+		p.setProperty("name", "other");
+		FileSourceFactory f3 = new CopyingMemoryFactory();
+		f3.setConnectionProperties(p);
+		assertSame("Different properties need a new session",f3,registry.getSession(f3));
+
+		//  Leases are copies of the shared factory and are reused once released
+		FileSourceFactory l1 = registry.lease(f2);
+		FileSourceFactory l2 = registry.lease(f2);
+		assertFalse("Lease should be a copy",l1 == f1 || l2 == f1 || l1 == l2);
+		assertEquals("Wrong leased count",2,registry.getLeasedCount());
+		registry.release(l1);
+		registry.release(l2);
+		assertEquals("Wrong idle count",2,registry.getIdleCount());
+		assertSame("Most recently released should be reused",l2,registry.lease(f2));
+		registry.release(l2);
+		try {
+			registry.release(l2);
+			fail("Release of a factory that is not leased should fail");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		//  Only the shared factories can be found by session id
+		FileSourceSessionRegistry ids = FileSourceFactory.getSessionRegistry();
+		assertSame("Shared session should have an id",f1,ids.getSession(f1.getSessionId()));
+		assertEquals("Leased copy should not have an id",-1,l1.getSessionId());
+		assertEquals("Leased copy should not have an id",-1,l2.getSessionId());
+		int sessionCount = ids.getSessionCount();
+		registry.release(registry.lease(f2));
+		assertEquals("Leases should not add session ids",sessionCount,ids.getSessionCount());
+
+		registry.setIdleTimeout(0);
+		registry.evictIdle();
+		assertEquals("Idle factories should be evicted",0,registry.getIdleCount());
+		assertEquals("Wrong evictions",2,registry.getEvictions());
+		assertSame("Shared session should not be evicted",f1,registry.getSession(f2));
+
+		int id = f3.getSessionId();
+		assertSame("Session should have an id",f3,ids.getSession(id));
+		f3.disConnect();
+		assertNull("Disconnected session should not be found by id",ids.getSession(id));
+		assertEquals("Disconnected session should give up it's id",-1,f3.getSessionId());
+		assertEquals("Wrong session count",sessionCount-1,ids.getSessionCount());
+	}
 
 }
@@ -28,11 +28,20 @@ package us.bringardner.io.filesource.test;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
@@ -42,19 +51,27 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.FileTime;
 import java.nio.file.attribute.PosixFileAttributes;
 import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
 import org.junit.jupiter.api.AfterAll;
@@ -63,8 +80,15 @@ import org.junit.jupiter.api.Test;
 
 import us.bringardner.io.filesource.FileSource;
 import us.bringardner.io.filesource.FileSourceFactory;
+import us.bringardner.io.filesource.FileSourceFilter;
+import us.bringardner.io.filesource.FileSourceRandomAccessStream;
 import us.bringardner.io.filesource.fileproxy.FileProxyFactory;
+import us.bringardner.io.filesource.java.file.FileSourceAsynchronousFileChannel;
+import us.bringardner.io.filesource.java.file.FileSourceFileChannel;
 import us.bringardner.io.filesource.java.file.FileSourcePath;
+import us.bringardner.io.filesource.memory.MemoryFileSource;
+import us.bringardner.io.filesource.memory.MemoryFileSourceFactory;
+import us.bringardner.io.filesource.memory.MemoryRandomAccessIoController;
 
 public class FileSourceProviderTests extends AbstractTestClass {
 	class Index {
@@ -135,6 +159,14 @@ public class FileSourceProviderTests extends AbstractTestClass {
 
 		}
 
+		//  Only the requested attributes are returned and unknown names are skipped
+		Map<String, Object> actualMap = Files.readAttributes(source, "size,noSuchAttribute");
+		assertEquals("Wrong number of attributes",1,actualMap.size());
+		assertEquals("Wrong size",Files.size(source),actualMap.get("size"));
+		actualMap = Files.readAttributes(source, "posix:permissions,isDirectory");
+		assertEquals("Wrong number of attributes",2,actualMap.size());
+		assertEquals("Wrong permissions",Files.readAttributes(source, PosixFileAttributes.class).permissions(),actualMap.get("permissions"));
+		assertEquals("Wrong isDirectory",Boolean.TRUE,actualMap.get("isDirectory"));
 	}
 
 	@Test
@@ -446,6 +478,29 @@ public class FileSourceProviderTests extends AbstractTestClass {
 			assertTrue("", fileSourcePath.resolve(last).toString().endsWith( filePath.resolve(last).toString().substring(2))	);
 		}
 
+		//  Derived paths share the parsed names
+		MemoryFileSourceFactory mem = new MemoryFileSourceFactory();
+		FileSourcePath memPath = new FileSourcePath("/one/two/three", mem);
+		assertEquals("subpath invalid","two/three",memPath.subpath(1, 3).toString());
+		assertEquals("getParent invalid","/one/two",memPath.getParent().toString());
+		assertEquals("getParent of one name invalid","/",memPath.getParent().getParent().getParent().toString());
+		assertNull("getParent of the root should be null",new FileSourcePath("/", mem).getParent());
+		assertNull("getParent of a relative name should be null",new FileSourcePath("one", mem).getParent());
+		int depth = 0;
+		for(Path p = memPath; p != null; p = p.getParent()) {
+			depth++;
+		}
+		assertEquals("Wrong number of parents",4,depth);
+		assertTrue("startsWith invalid",memPath.startsWith(new FileSourcePath("/one/two", mem)));
+		assertFalse("startsWith partial name",memPath.startsWith(new FileSourcePath("/one/tw", mem)));
+		assertTrue("endsWith invalid",memPath.endsWith(new FileSourcePath("two/three", mem)));
+		assertFalse("endsWith partial name",memPath.endsWith(new FileSourcePath("o/three", mem)));
+		assertEquals("equals invalid",new FileSourcePath("/one//two/three/", mem),memPath);
+		assertEquals("hashCode invalid",new FileSourcePath("/one//two/three/", mem).hashCode(),memPath.hashCode());
+		assertEquals("resolve invalid",memPath,memPath.getParent().resolve(memPath.getFileName()));
+		assertEquals("relativize invalid","../four",memPath.relativize(new FileSourcePath("/one/two/four", mem)).toString());
+		assertTrue("compareTo invalid",memPath.compareTo(new FileSourcePath("/one/two/three/four", mem)) < 0);
+		assertEquals("normalize invalid","/one/three",new FileSourcePath("/one/./two/../three", mem).normalize().toString());
 	}
 
 
@@ -491,4 +546,286 @@ public class FileSourceProviderTests extends AbstractTestClass {
 		}
 	}
 
+	@Test
+	public void testByteChannel() throws Exception {
+		byte [] data = new byte[1024*200];
+		for (int idx = 0; idx < data.length; idx++) {
+			data[idx] = (byte) (idx % 251);
+		}
+
+		MemoryFileSourceFactory mem = new MemoryFileSourceFactory();
+		FileSource dir = mem.createFileSource("/channel");
+		dir.mkdirs();
+		Path memPath = new FileSourcePath("/channel/test.dat", mem);
+		Path proxyPath = Paths.get(new URI("filesource:./target/ChannelTest.dat?sourcetype=fileproxy"));
+
+		for(Path path : new Path[] {memPath,proxyPath}) {
+			Files.deleteIfExists(path);
+			try(FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE_NEW,StandardOpenOption.WRITE,StandardOpenOption.READ)) {
+				if( path == proxyPath ) {
+					assertFalse("FileProxy should use the default channel",ch instanceof FileSourceFileChannel);
+				} else {
+					assertTrue("Memory should use a FileSourceFileChannel",ch instanceof FileSourceFileChannel);
+				}
+				assertEquals("Wrong write count",data.length,ch.write(ByteBuffer.wrap(data)));
+				assertEquals("Wrong position",data.length,ch.position());
+				assertEquals("Wrong size",data.length,ch.size());
+
+				// positional read does not move the position
+				ByteBuffer buf = ByteBuffer.allocate(100);
+				assertEquals("Wrong positional read count",100,ch.read(buf, 1000));
+				for (int idx = 0; idx < 100; idx++) {
+					assertEquals("Positional read not correct",data[1000+idx],buf.get(idx));
+				}
+				assertEquals("Positional read changed the position",data.length,ch.position());
+
+				// positional write into a direct buffer
+				ByteBuffer tmp = ByteBuffer.allocateDirect(3);
+				tmp.put("abc".getBytes()).flip();
+				ch.write(tmp, 10);
+				data[10]='a';data[11]='b';data[12]='c';
+
+				buf = ByteBuffer.allocate(10);
+				ch.position(data.length-5);
+				assertEquals("Wrong read count at end",5,ch.read(buf));
+				buf.clear();
+				assertEquals("Read past end should return -1",-1,ch.read(buf));
+
+				ch.truncate(data.length-1);
+				assertEquals("Truncate did not change the size",data.length-1,ch.size());
+				assertEquals("Truncate did not move position",data.length-1,ch.position());
+			}
+
+			byte [] actual = Files.readAllBytes(path);
+			assertEquals("Wrong length",data.length-1,actual.length);
+			for (int idx = 0; idx < actual.length; idx++) {
+				assertEquals("Data not correct at "+idx,data[idx],actual[idx]);
+			}
+
+			//  transferTo and transferFrom between the two paths
+			Path other = path == memPath ? new FileSourcePath("/channel/copy.dat", mem) : Paths.get(new URI("filesource:./target/ChannelCopy.dat?sourcetype=fileproxy"));
+			try(FileChannel in = FileChannel.open(path, StandardOpenOption.READ);
+					FileChannel out = FileChannel.open(other, StandardOpenOption.CREATE,StandardOpenOption.WRITE,StandardOpenOption.TRUNCATE_EXISTING)) {
+				long done = 0;
+				while( done < in.size()) {
+					done += in.transferTo(done, in.size()-done, out);
+				}
+				assertEquals("transferTo size not correct",in.size(),out.size());
+			}
+			try(FileChannel in = FileChannel.open(other, StandardOpenOption.READ);
+					FileChannel out = FileChannel.open(path, StandardOpenOption.WRITE)) {
+				assertEquals("transferFrom count not correct",in.size(),out.transferFrom(in, 0, in.size()));
+			}
+			assertTrue("Copy not correct",Arrays.equals(actual, Files.readAllBytes(other)));
+			Files.delete(other);
+			Files.delete(path);
+		}
+	}
+
+	@Test
+	public void testChannelForce() throws Exception {
+		MemoryFileSourceFactory mem = new MemoryFileSourceFactory();
+		MemoryFileSource file = (MemoryFileSource) mem.createFileSource("/force.dat");
+		file.getOutputStream().close();
+		AtomicInteger saves = new AtomicInteger();
+		MemoryRandomAccessIoController controller = new MemoryRandomAccessIoController(file) {
+			@Override
+			public void save() throws IOException {
+				saves.incrementAndGet();
+				super.save();
+			}
+		};
+		try(FileChannel ch = new FileSourceFileChannel(file, new FileSourceRandomAccessStream(controller, "rw"), true, true, false, false)) {
+			ch.write(ByteBuffer.wrap(new byte[10]));
+			ch.force(false);
+			assertEquals("force should save the controller",1,saves.get());
+		}
+	}
+
+	@Test
+	public void testChannelRefreshesAttributes() throws Exception {
+		Path path = Paths.get(new URI("filesource:./target/ChannelAttributes.dat?sourcetype=fileproxy"));
+		FileSource file = ((FileSourcePath)path).getFileSource();
+		FileProxyFactory proxy = (FileProxyFactory) file.getFileSourceFactory();
+		long ttl = proxy.getAttributeTtl();
+		//  Long enough that only a refresh from the channel shows the new size
+		proxy.setAttributeTtl(60000);
+		try {
+			Files.deleteIfExists(path);
+			try(SeekableByteChannel ch = Files.newByteChannel(path, StandardOpenOption.CREATE,StandardOpenOption.WRITE)) {
+				assertEquals("Wrong size before write",0,Files.size(path));
+				ch.write(ByteBuffer.wrap(new byte[100]));
+			}
+			assertEquals("Write through the channel not seen by Files.size",100,Files.size(path));
+			assertEquals("Write through the channel not seen by the FileSource",100,file.length());
+
+			try(AsynchronousFileChannel ch = AsynchronousFileChannel.open(path, StandardOpenOption.WRITE)) {
+				assertEquals("Wrong size before async write",100,file.length());
+				ch.write(ByteBuffer.wrap(new byte[50]), 100).get(10, TimeUnit.SECONDS);
+				assertEquals("Async write not seen",150,file.length());
+				ch.truncate(10);
+				assertEquals("Async truncate not seen",10,file.length());
+			}
+
+			try(FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+				ch.truncate(5);
+				assertEquals("Truncate not seen",5,Files.size(path));
+			}
+			Files.delete(path);
+		} finally {
+			proxy.setAttributeTtl(ttl);
+		}
+	}
+
+	@Test
+	public void testAsynchronousChannel() throws Exception {
+		byte [] data = new byte[1024*10];
+		for (int idx = 0; idx < data.length; idx++) {
+			data[idx] = (byte) (idx % 251);
+		}
+
+		MemoryFileSourceFactory mem = new MemoryFileSourceFactory();
+		FileSource dir = mem.createFileSource("/async");
+		dir.mkdirs();
+		Path memPath = new FileSourcePath("/async/test.dat", mem);
+		Path proxyPath = Paths.get(new URI("filesource:./target/AsyncTest.dat?sourcetype=fileproxy"));
+
+		for(Path path : new Path[] {memPath,proxyPath}) {
+			Files.deleteIfExists(path);
+			try(AsynchronousFileChannel ch = AsynchronousFileChannel.open(path, StandardOpenOption.CREATE,StandardOpenOption.WRITE,StandardOpenOption.READ)) {
+				if( path == memPath ) {
+					assertTrue("Memory should use a FileSourceAsynchronousFileChannel",ch instanceof FileSourceAsynchronousFileChannel);
+				}
+				//  write the blocks out of order
+				int blockSize = 1024;
+				List<Future<Integer>> writes = new ArrayList<>();
+				for (int pos = data.length-blockSize; pos >= 0; pos-=blockSize) {
+					writes.add(ch.write(ByteBuffer.wrap(data, pos, blockSize), pos));
+				}
+				for(Future<Integer> f : writes) {
+					assertEquals("Wrong write count",blockSize,f.get(10, TimeUnit.SECONDS).intValue());
+				}
+				assertEquals("Wrong size",data.length,ch.size());
+
+				ByteBuffer buf = ByteBuffer.allocate(100);
+				assertEquals("Wrong read count",100,ch.read(buf, 500).get(10, TimeUnit.SECONDS).intValue());
+				for (int idx = 0; idx < 100; idx++) {
+					assertEquals("Read not correct",data[500+idx],buf.get(idx));
+				}
+
+				CompletableFuture<Integer> done = new CompletableFuture<>();
+				ch.read(ByteBuffer.allocate(10), data.length, "eof", new CompletionHandler<Integer, String>() {
+					@Override
+					public void completed(Integer result, String attachment) {
+						done.complete(result);
+					}
+
+					@Override
+					public void failed(Throwable exc, String attachment) {
+						done.completeExceptionally(exc);
+					}
+				});
+				assertEquals("Read past end should return -1",-1,done.get(10, TimeUnit.SECONDS).intValue());
+			}
+			assertTrue("Data not correct",Arrays.equals(data, Files.readAllBytes(path)));
+
+			//  Reads from a read only channel run in parallel
+			ExecutorService executor = Executors.newFixedThreadPool(8);
+			try(AsynchronousFileChannel ch = AsynchronousFileChannel.open(path, Collections.singleton(StandardOpenOption.READ), executor)) {
+				Random random = new Random(1);
+				List<Future<Integer>> reads = new ArrayList<>();
+				List<ByteBuffer> bufs = new ArrayList<>();
+				List<Integer> positions = new ArrayList<>();
+				for (int idx = 0; idx < 200; idx++) {
+					int pos = random.nextInt(data.length-100);
+					ByteBuffer buf = idx % 2 == 0 ? ByteBuffer.allocate(100) : ByteBuffer.allocateDirect(100);
+					bufs.add(buf);
+					positions.add(pos);
+					reads.add(ch.read(buf, pos));
+				}
+				for (int idx = 0; idx < reads.size(); idx++) {
+					assertEquals("Wrong parallel read count",100,reads.get(idx).get(10, TimeUnit.SECONDS).intValue());
+					ByteBuffer buf = bufs.get(idx);
+					for (int i = 0; i < 100; i++) {
+						assertEquals("Parallel read not correct",data[positions.get(idx)+i],buf.get(i));
+					}
+				}
+				assertEquals("Read past end should return -1",-1,ch.read(ByteBuffer.allocate(10), data.length).get(10, TimeUnit.SECONDS).intValue());
+			} finally {
+				executor.shutdown();
+			}
+			Files.delete(path);
+		}
+	}
+
+	@Test
+	public void testStreamFiles() throws Exception {
+		MemoryFileSourceFactory mem = new MemoryFileSourceFactory();
+		FileSourceFactory proxy = new FileProxyFactory();
+
+		for(FileSourceFactory f : new FileSourceFactory[] {mem,proxy}) {
+			FileSource dir = f.createFileSource(f == mem ? "/stream" : new File("target/StreamTest").getAbsolutePath());
+			if( dir.exists()) {
+				for(FileSource kid : dir.listFiles()) {
+					kid.delete();
+				}
+			}
+			assertTrue("Can't create "+dir,dir.exists() || dir.mkdirs());
+			assertTrue("Can't create subdir",dir.getChild("subdir").mkdir());
+			for (int idx = 0; idx < 5; idx++) {
+				try(OutputStream out = dir.getChild("file"+idx+".txt").getOutputStream()) {
+					out.write(new byte[idx]);
+				}
+			}
+			try(OutputStream out = dir.getChild("other.dat").getOutputStream()) {
+				out.write(1);
+			}
+
+			try(Stream<FileSource> kids = dir.streamFiles()) {
+				assertEquals(f.getTypeId()+" wrong number of children",7,kids.count());
+			}
+			try(Stream<FileSource> kids = dir.streamFiles(new FileSourceFilter() {
+				@Override
+				public boolean accept(FileSource file) {
+					return file.getName().endsWith(".txt");
+				}
+
+				@Override
+				public String getDescription() {
+					return "Text files";
+				}
+			})) {
+				assertEquals(f.getTypeId()+" wrong number of filtered children",5,kids.count());
+			}
+			try(Stream<FileSource> kids = dir.getChild("file1.txt").streamFiles()) {
+				assertEquals(f.getTypeId()+" a file should not have children",0,kids.count());
+			}
+
+			Path path = f == mem ? new FileSourcePath("/stream", mem) : Paths.get(new URI("filesource:./target/StreamTest?sourcetype=fileproxy"));
+			List<String> names = new ArrayList<>();
+			try(DirectoryStream<Path> ds = Files.newDirectoryStream(path, p->p.getFileName().toString().endsWith(".txt"))) {
+				for(Path p : ds) {
+					names.add(p.getFileName().toString());
+				}
+				try {
+					ds.iterator();
+					fail("Second iterator should fail");
+				} catch (IllegalStateException e) {
+					// expected
+				}
+			}
+			names.sort(null);
+			assertEquals(f.getTypeId()+" wrong directory stream",Arrays.asList("file0.txt","file1.txt","file2.txt","file3.txt","file4.txt"),names);
+
+			try(Stream<Path> walk = Files.walk(path)) {
+				assertEquals(f.getTypeId()+" wrong walk count",8,walk.count());
+			}
+
+			for(FileSource kid : dir.listFiles()) {
+				assertTrue("Can't delete "+kid,kid.delete());
+			}
+			assertTrue("Can't delete "+dir,dir.delete());
+		}
+	}
+
 }
@@ -1,6 +1,7 @@
 package us.bringardner.io.filesource.test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -179,7 +180,39 @@ public abstract class FileSourceRandomAccessIoBufferTests {
 	
 		
 		//System.out.println("done with testWritePastEnd");
-		
+
 	}
-	
+
+	@Test
+	@Order(6)
+	public void testBulkReadWrite() throws IOException {
+		byte [] data = new byte[(int) (targetFileSize*2)];
+		for (int idx = 0; idx < data.length; idx++) {
+			data[idx] = (byte) (idx % 256);
+		}
+
+		try(IRandomAccessIoController buf = getRandomAccessFileStream(file)){
+			buf.setLength(0);
+			buf.write(0, data, 0, data.length);
+			assertEquals(data.length, buf.length(),"Bulk write length not correct");
+
+			byte [] tmp = new byte[data.length];
+			int got = 0;
+			while( got < tmp.length) {
+				int cnt = buf.read(got, tmp, got, Math.min(100, tmp.length-got));
+				assertTrue(cnt > 0,"Bulk read returned "+cnt+" at "+got);
+				got += cnt;
+			}
+			for (int idx = 0; idx < tmp.length; idx++) {
+				assertEquals(data[idx], tmp[idx],"Bulk read not correct at "+idx);
+			}
+			assertEquals(-1, buf.read(data.length, tmp, 0, 10),"Bulk read past end should return -1");
+
+			// values above 127 should not look like EOF
+			assertEquals(255, buf.read(255),"Single byte read not correct");
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+	}
+
 }
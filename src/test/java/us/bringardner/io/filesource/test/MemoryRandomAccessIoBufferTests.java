@@ -2,9 +2,13 @@ package us.bringardner.io.filesource.test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URL;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
@@ -17,8 +21,13 @@ import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
 
+import us.bringardner.io.filesource.FileSource;
 import us.bringardner.io.filesource.IRandomAccessIoController;
+import us.bringardner.io.filesource.ISeekableInputStream;
+import us.bringardner.io.filesource.memory.MemoryBlockStorage;
+import us.bringardner.io.filesource.memory.MemoryFileSource;
 import us.bringardner.io.filesource.memory.MemoryFileSourceFactory;
+import us.bringardner.io.filesource.memory.MemoryRandomAccessIoController;
 
 
 @TestMethodOrder(OrderAnnotation.class)
@@ -172,4 +181,291 @@ public class MemoryRandomAccessIoBufferTests extends FileSourceRandomAccessIoBuf
 
 	}
 	
+	@Test
+	@Order(7)
+	public void testBlockStorage() throws IOException {
+		MemoryBlockStorage storage = new MemoryBlockStorage(100);
+		byte [] data = new byte[250];
+		for (int idx = 0; idx < data.length; idx++) {
+			data[idx] = (byte) idx;
+		}
+
+		//  crosses page boundaries
+		storage.write(50, data, 0, data.length);
+		assertEquals(300, storage.length(),"Length not correct");
+		assertEquals(3, storage.getAllocatedPageCount(),"Page count not correct");
+		assertEquals(0, storage.read(10),"Unwritten data should be zero");
+		byte [] tmp = new byte[data.length];
+		assertEquals(data.length, storage.read(50, tmp, 0, tmp.length),"Read count not correct");
+		for (int idx = 0; idx < data.length; idx++) {
+			assertEquals(data[idx], tmp[idx],"Read not correct idx="+idx);
+		}
+		assertEquals(-1, storage.read(300, tmp, 0, 10),"Read past end should be -1");
+
+		//  truncate releases pages and clears the tail
+		storage.setLength(150);
+		assertEquals(2, storage.getAllocatedPageCount(),"Truncate did not release pages");
+		storage.setLength(300);
+		assertEquals(0, storage.read(160),"Truncated data should read as zero");
+
+		//  files larger than an array
+		long big = 1024L*1024*1024*3;
+		storage.write(big, (byte) 'x');
+		assertEquals(big+1, storage.length(),"Large length not correct");
+		assertEquals('x', storage.read(big),"Large read not correct");
+		assertEquals(3, storage.getAllocatedPageCount(),"Holes should not be allocated");
+
+		//  append does not replace the content
+		MemoryFileSource mfs = (MemoryFileSource) testDir.getChild("BlockAppend.txt");
+		try(OutputStream out = mfs.getOutputStream()) {
+			out.write(testData);
+		}
+		for (int idx = 0; idx < 3; idx++) {
+			try(OutputStream out = mfs.getOutputStream(true)) {
+				out.write(testData);
+			}
+		}
+		assertEquals(testData.length*4, mfs.length(),"Append length not correct");
+		try(InputStream in = mfs.getInputStream(testData.length*3)) {
+			tmp = new byte[testData.length];
+			assertEquals(testData.length, in.read(tmp),"Read count not correct");
+			assertEquals(testDataString, new String(tmp),"Read after append not correct");
+			assertEquals(-1, in.read(),"Should be at the end");
+		}
+		mfs.delete();
+	}
+
+	@Test
+	@Order(8)
+	public void testOffHeap() throws Exception {
+		MemoryFileSourceFactory mem = new MemoryFileSourceFactory();
+		mem.setConnectionProperties(new URL("http://localhost/test?storage=offheap&memoryLimit=256K"));
+		assertTrue(mem.isOffHeap(),"Should be off heap");
+		assertEquals(256*1024, mem.getMemoryLimit(),"Limit not correct");
+
+		Properties prop = new Properties();
+		prop.setProperty(MemoryFileSourceFactory.PROP_STORAGE, MemoryFileSourceFactory.STORAGE_OFF_HEAP);
+		prop.setProperty(MemoryFileSourceFactory.PROP_MEMORY_LIMIT, ""+(256*1024));
+		mem = new MemoryFileSourceFactory();
+		assertTrue(mem.connect(prop),"Can't connect");
+		assertTrue(mem.isOffHeap(),"Should be off heap");
+
+		byte [] data = new byte[MemoryBlockStorage.DEFAULT_PAGE_SIZE];
+		FileSource f1 = mem.createFileSource("/offheap/one.dat");
+		f1.getParentFile().mkdirs();
+		try(OutputStream out = f1.getOutputStream()) {
+			out.write(data);
+			out.write(data);
+		}
+		assertEquals(data.length*2, mem.getMemoryUsed(),"Memory used not correct");
+
+		FileSource f2 = mem.createFileSource("/offheap/two.dat");
+		try(OutputStream out = f2.getOutputStream()) {
+			out.write(data);
+			out.write(data);
+			out.write(data);
+			fail("Memory limit was not enforced");
+		} catch (IOException e) {
+			// expected
+		}
+		assertEquals(data.length*4, mem.getMemoryUsed(),"Memory used not correct after limit");
+
+		f1.delete();
+		assertEquals(data.length*2, mem.getMemoryUsed(),"Delete did not release memory");
+
+		mem.disConnect();
+		assertEquals(0, mem.getMemoryUsed(),"Disconnect did not release memory");
+	}
+
+	@Test
+	@Order(9)
+	public void testSnapshot() throws Exception {
+		MemoryFileSourceFactory mem = new MemoryFileSourceFactory();
+		byte [] data = new byte[MemoryBlockStorage.DEFAULT_PAGE_SIZE*3];
+		for (int idx = 0; idx < data.length; idx++) {
+			data[idx] = (byte) (idx % 256);
+		}
+		MemoryFileSource mfs = (MemoryFileSource) mem.createFileSource("/snapshot/test.dat");
+		mfs.getParentFile().mkdirs();
+		try(OutputStream out = mfs.getOutputStream()) {
+			out.write(data);
+		}
+		long used = mem.getMemoryUsed();
+		assertEquals(data.length, used,"Memory used not correct");
+
+		ISeekableInputStream [] streams = new ISeekableInputStream[5];
+		for (int idx = 0; idx < streams.length; idx++) {
+			streams[idx] = mfs.getSeekableInputStream();
+		}
+		assertEquals(used, mem.getMemoryUsed(),"Opening a stream should not copy");
+
+		//  a write copies only the page it changes
+		try(IRandomAccessIoController buf = new MemoryRandomAccessIoController(mfs)) {
+			buf.write(10, (byte) 'x');
+			buf.write(20, (byte) 'y');
+		}
+		assertEquals(used+MemoryBlockStorage.DEFAULT_PAGE_SIZE, mem.getMemoryUsed(),"Write should copy one page");
+
+		for(ISeekableInputStream in : streams) {
+			byte [] tmp = new byte[data.length];
+			int got = 0;
+			while( got < tmp.length) {
+				int cnt = in.read(tmp, got, tmp.length-got);
+				assertTrue(cnt > 0,"Read returned "+cnt);
+				got += cnt;
+			}
+			assertEquals(-1, in.read(),"Should be at the end");
+			for (int idx = 0; idx < data.length; idx++) {
+				assertEquals(data[idx], tmp[idx],"Snapshot changed at "+idx);
+			}
+			in.seek(255);
+			assertEquals(255, in.read(),"Single byte read not correct");
+			in.close();
+		}
+		assertEquals(used, mem.getMemoryUsed(),"Closing the streams should release the old page");
+
+		ISeekableInputStream in = mfs.getSeekableInputStream();
+		in.seek(10);
+		assertEquals('x', in.read(),"New stream should see the write");
+		in.close();
+	}
+
+	@Test
+	@Order(10)
+	public void testOffHeapReleaseWithOpenStreams() throws Exception {
+		MemoryFileSourceFactory mem = new MemoryFileSourceFactory();
+		Properties prop = new Properties();
+		prop.setProperty(MemoryFileSourceFactory.PROP_STORAGE, MemoryFileSourceFactory.STORAGE_OFF_HEAP);
+		assertTrue(mem.connect(prop),"Can't connect");
+
+		byte [] data = new byte[MemoryBlockStorage.DEFAULT_PAGE_SIZE*3];
+		for (int idx = 0; idx < data.length; idx++) {
+			data[idx] = (byte) (idx % 251);
+		}
+		FileSource file = mem.createFileSource("/release/test.dat");
+		file.getParentFile().mkdirs();
+		try(OutputStream out = file.getOutputStream()) {
+			out.write(data);
+		}
+
+		InputStream in = file.getInputStream();
+		ISeekableInputStream seekable = file.getSeekableInputStream();
+
+		//  Replace, delete and disconnect while the streams are open, 
+		//  the direct pages they read must not be freed until they are closed
+		try(OutputStream out = file.getOutputStream()) {
+			out.write(new byte[10]);
+		}
+		file.delete();
+		mem.disConnect();
+		assertEquals(data.length, mem.getMemoryUsed(),"Pages held by open streams should not be released");
+
+		byte [] tmp = new byte[data.length];
+		int got = 0;
+		int cnt = 0;
+		while( (cnt = in.read(tmp, got, tmp.length-got)) > 0 ) {
+			got += cnt;
+		}
+		assertEquals(data.length, got,"Read length not correct");
+		assertTrue(Arrays.equals(data, tmp),"Stream read not correct after release");
+		in.close();
+
+		seekable.seek(data.length-1);
+		assertEquals(data[data.length-1] & 0xff, seekable.read(),"Seekable read not correct after release");
+		seekable.close();
+
+		assertEquals(0, mem.getMemoryUsed(),"Closing the streams should release the pages");
+	}
+
+	@Test
+	@Order(11)
+	public void testWriteAfterRelease() throws Exception {
+		MemoryFileSourceFactory mem = new MemoryFileSourceFactory();
+		Properties prop = new Properties();
+		prop.setProperty(MemoryFileSourceFactory.PROP_STORAGE, MemoryFileSourceFactory.STORAGE_OFF_HEAP);
+		assertTrue(mem.connect(prop),"Can't connect");
+
+		byte [] page = new byte[MemoryBlockStorage.DEFAULT_PAGE_SIZE];
+		MemoryFileSource file = (MemoryFileSource) mem.createFileSource("/released/test.dat");
+		file.getParentFile().mkdirs();
+		try(OutputStream out = file.getOutputStream()) {
+			out.write(page);
+		}
+
+		//  Deleted while an append stream and a controller are open
+		OutputStream append = file.getOutputStream(true);
+		IRandomAccessIoController buf = new MemoryRandomAccessIoController(file);
+		append.write(page);
+		file.delete();
+		try {
+			append.write(page);
+			fail("Append after delete should fail");
+		} catch (IOException e) {
+			// expected
+		}
+		try {
+			buf.write(page.length*4, page, 0, page.length);
+			fail("Controller write after delete should fail");
+		} catch (IOException e) {
+			// expected
+		}
+		append.close();
+		buf.close();
+		assertEquals(0, mem.getMemoryUsed(),"Writes after delete should not hold memory");
+
+		//  Replaced while an append stream is open
+		try(OutputStream out = file.getOutputStream()) {
+			out.write(page);
+		}
+		append = file.getOutputStream(true);
+		try(OutputStream out = file.getOutputStream()) {
+			out.write(page, 0, 10);
+		}
+		try {
+			append.write(page);
+			fail("Append after replace should fail");
+		} catch (IOException e) {
+			// expected
+		}
+		append.close();
+		assertEquals(10, file.length(),"Replaced length not correct");
+		assertEquals(page.length, mem.getMemoryUsed(),"Only the new content should hold memory");
+
+		file.delete();
+		assertEquals(0, mem.getMemoryUsed(),"Delete did not release memory");
+		mem.disConnect();
+	}
+
+	@Test
+	@Order(12)
+	public void testUnclosedStreamRelease() throws Exception {
+		MemoryFileSourceFactory mem = new MemoryFileSourceFactory();
+		Properties prop = new Properties();
+		prop.setProperty(MemoryFileSourceFactory.PROP_STORAGE, MemoryFileSourceFactory.STORAGE_OFF_HEAP);
+		assertTrue(mem.connect(prop),"Can't connect");
+
+		byte [] data = new byte[MemoryBlockStorage.DEFAULT_PAGE_SIZE*3];
+		FileSource file = mem.createFileSource("/unclosed/test.dat");
+		file.getParentFile().mkdirs();
+		try(OutputStream out = file.getOutputStream()) {
+			out.write(data);
+		}
+
+		//  Streams that are dropped without being closed
+		for (int idx = 0; idx < 3; idx++) {
+			assertEquals(0, file.getInputStream().read(),"Read not correct");
+			assertEquals(0, file.getSeekableInputStream().read(),"Seekable read not correct");
+		}
+		file.delete();
+		assertEquals(data.length, mem.getMemoryUsed(),"Pages held by unclosed streams should not be released yet");
+
+		//  The cleaner gives the pages back once the snapshots are garbage collected
+		for (int idx = 0; idx < 100 && mem.getMemoryUsed() > 0; idx++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		assertEquals(0, mem.getMemoryUsed(),"Unclosed streams should release the pages when they are collected");
+		mem.disConnect();
+	}
+
 }